@@ -13,6 +13,12 @@ public class AppProperties {
 
     private final Auth auth = new Auth();
     private final OAuth2 oAuth2 = new OAuth2();
+    private final Sandbox sandbox = new Sandbox();
+    private final Submission submission = new Submission();
+    private final Regrade regrade = new Regrade();
+    private final DebugStream debugStream = new DebugStream();
+    private final Sql sql = new Sql();
+    private final Docker docker = new Docker();
 
     @Getter
     @Setter
@@ -32,4 +38,202 @@ public class AppProperties {
         }
     }
 
+    @Getter
+    @Setter
+    public static class Sandbox {
+        /**
+         * Backend used to run sandboxes: "docker-api" (Docker Engine API over the unix socket),
+         * "docker-cli", "bwrap" (bubblewrap namespaces over the host toolchains) or "local"
+         * (plain processes, for tests/dev only)
+         */
+        private String backend = "docker-api";
+        private String workRoot = "/tmp/code-execution";
+        private String memoryLimit = "256m";
+        private String cpuLimit = "1";
+        /**
+         * Bytes of stdout and of stderr kept per execution; the rest is discarded and marked as truncated
+         */
+        private long maxOutputBytes = 1024 * 1024;
+        private final Pool pool = new Pool();
+        private final ArtifactCache artifactCache = new ArtifactCache();
+        private final Admission admission = new Admission();
+        private final Bubblewrap bubblewrap = new Bubblewrap();
+        private final Runtimes runtimes = new Runtimes();
+        private final Workspace workspace = new Workspace();
+    }
+
+    @Getter
+    @Setter
+    public static class Workspace {
+        /**
+         * Directory the work directories of cold executions are created in; empty uses
+         * workRoot/workspaces, which is also used if this one cannot be created. The docker
+         * backends bind-mount these directories, so the path has to resolve to the same files on
+         * the daemon's host: a tmpfs keeps them off the disk only when it is mounted at the same
+         * path on the host and in this container.
+         */
+        private String root = "";
+        /**
+         * Work directories created up front and reused, cleaned between executions
+         */
+        private int slots = 8;
+        /**
+         * A work directory held longer than this is treated as leaked and deleted by the reaper
+         */
+        private long maxLeaseMsec = 600000;
+        private long reaperIntervalMsec = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Runtimes {
+        /**
+         * Runtimes file on disk, reloaded when it changes; empty uses the bundled runtimes.yaml
+         */
+        private String file = "";
+        private long reloadIntervalMsec = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Bubblewrap {
+        private String binary = "bwrap";
+        /**
+         * Host paths mounted read-only into the sandbox; paths that do not exist are skipped
+         */
+        private List<String> readOnlyPaths = List.of(
+                "/usr", "/bin", "/sbin", "/lib", "/lib32", "/lib64", "/etc/alternatives",
+                "/etc/ld.so.cache", "/etc/ld.so.conf", "/etc/ld.so.conf.d", "/etc/java-17-openjdk");
+        /**
+         * Virtual memory limit per job (ulimit -v); JVMs reserve far more address space than they use
+         */
+        private String addressSpaceLimit = "4g";
+    }
+
+    @Getter
+    @Setter
+    public static class Pool {
+        private boolean enabled = false;
+        /**
+         * Sandboxes per language, idle or busy; how many are kept warm is the poolSize of each runtime
+         */
+        private int maxSize = 8;
+        private long acquireTimeoutMsec = 2000;
+        private long idleTimeoutMsec = 600000;
+        private int maxUses = 100;
+        private long maintenanceIntervalMsec = 30000;
+    }
+
+    @Getter
+    @Setter
+    public static class ArtifactCache {
+        private boolean enabled = true;
+        private long maxBytes = 512L * 1024 * 1024;
+        private int maxEntries = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        /**
+         * Sandboxes allowed to run at the same time; 0 derives it from host CPUs and memory
+         */
+        private int maxConcurrent = 0;
+        private int maxQueued = 100;
+        private long queueTimeoutMsec = 10000;
+        /**
+         * Slots that debug and reference runs may not use, so graded submissions never wait behind them
+         */
+        private int reservedForSubmissions = 1;
+        /**
+         * Token bucket per user: burst size and tokens added per minute
+         */
+        private int userBurst = 5;
+        private int userRefillPerMinute = 12;
+    }
+
+    @Getter
+    @Setter
+    public static class Submission {
+        /**
+         * Number of submissions graded concurrently
+         */
+        private int workers = 4;
+        private int queueCapacity = 500;
+        private long sseTimeoutMsec = 120000;
+        /**
+         * Test cases of one submission run at the same time when its language cannot run them
+         * in one sandbox; each case beyond the first needs a free slot of the execution scheduler
+         */
+        private int maxParallelCases = 4;
+        /**
+         * A submission whose code, input and question version match a graded one copies its
+         * verdict instead of running again; questions can opt out with reuseVerdicts = false
+         */
+        private boolean reuseVerdicts = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Regrade {
+        /**
+         * Re-grade stored submissions when a question's test cases change
+         */
+        private boolean enabled = true;
+        /**
+         * Pause after each distinct code, on top of running in the lowest scheduler lane
+         */
+        private long pauseMsec = 50;
+        /**
+         * Finished jobs whose progress stays available
+         */
+        private int keepFinishedJobs = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class DebugStream {
+        private int maxConcurrentStreams = 20;
+        /**
+         * Output is collected and sent to the browser at this interval
+         */
+        private long flushIntervalMsec = 100;
+        /**
+         * Unsent output kept per stream while the browser is not keeping up; the rest is dropped
+         */
+        private int maxPendingChars = 64 * 1024;
+        private long sseTimeoutMsec = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Sql {
+        /**
+         * Rows printed per result set; the rest is cut off with a note on stderr
+         */
+        private int maxRows = 1000;
+        /**
+         * Size one execution's copy of the database may grow to
+         */
+        private long maxDatabaseBytes = 64L * 1024 * 1024;
+        /**
+         * Process-wide cap on memory used by the embedded SQLite library
+         */
+        private long heapLimitBytes = 256L * 1024 * 1024;
+        /**
+         * Template databases (one per distinct initialCode) kept on disk
+         */
+        private int maxTemplates = 200;
+    }
+
+    @Getter
+    @Setter
+    public static class Docker {
+        private String socketPath = "/var/run/docker.sock";
+        private String apiVersion = "v1.41";
+        /**
+         * Keep-alive connections kept open to the daemon between requests
+         */
+        private int maxIdleConnections = 16;
+    }
 }
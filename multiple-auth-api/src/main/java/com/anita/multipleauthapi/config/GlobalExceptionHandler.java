@@ -2,8 +2,10 @@ package com.anita.multipleauthapi.config;
 
 import com.anita.multipleauthapi.model.error.BadRequestException;
 import com.anita.multipleauthapi.model.error.ErrorMessage;
+import com.anita.multipleauthapi.model.error.TooManyRequestsException;
 import com.anita.multipleauthapi.model.error.UserAlreadyExistsException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
@@ -56,4 +58,19 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
                 .status(HttpStatus.CONFLICT)
                 .body(errorMessage);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorMessage> handleTooManyRequestsException(TooManyRequestsException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                e.getMessage(),
+                HttpStatus.TOO_MANY_REQUESTS
+        );
+
+        log.warn("TooManyRequestsException: {}", e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorMessage);
+    }
 }
\ No newline at end of file
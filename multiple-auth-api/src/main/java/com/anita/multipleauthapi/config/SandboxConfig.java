@@ -0,0 +1,31 @@
+package com.anita.multipleauthapi.config;
+
+import com.anita.multipleauthapi.service.docker.DockerEngineClient;
+import com.anita.multipleauthapi.service.sandbox.BubblewrapSandboxBackend;
+import com.anita.multipleauthapi.service.sandbox.DockerCliSandboxBackend;
+import com.anita.multipleauthapi.service.sandbox.DockerEngineSandboxBackend;
+import com.anita.multipleauthapi.service.sandbox.LocalProcessSandboxBackend;
+import com.anita.multipleauthapi.service.sandbox.SandboxBackend;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SandboxConfig {
+
+    @Bean
+    public SandboxBackend sandboxBackend(AppProperties appProperties, DockerEngineClient dockerEngineClient) {
+        AppProperties.Sandbox sandbox = appProperties.getSandbox();
+        switch (sandbox.getBackend()) {
+            case "local":
+                return new LocalProcessSandboxBackend(sandbox.getMaxOutputBytes());
+            case "docker-api":
+                return new DockerEngineSandboxBackend(sandbox, dockerEngineClient);
+            case "docker-cli":
+                return new DockerCliSandboxBackend(sandbox);
+            case "bwrap":
+                return new BubblewrapSandboxBackend(sandbox);
+            default:
+                throw new IllegalStateException("Unknown sandbox backend: " + sandbox.getBackend());
+        }
+    }
+}
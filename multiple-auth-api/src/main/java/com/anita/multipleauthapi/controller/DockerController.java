@@ -1,10 +1,22 @@
 package com.anita.multipleauthapi.controller;
 
+import com.anita.multipleauthapi.controller.request.LanguageType;
 import com.anita.multipleauthapi.service.DockerContainerService;
+import com.anita.multipleauthapi.service.DockerService;
+import com.anita.multipleauthapi.service.runtime.LanguageRuntime;
+import com.anita.multipleauthapi.service.runtime.RuntimeRegistry;
+import com.anita.multipleauthapi.service.sandbox.CompileArtifactCache;
+import com.anita.multipleauthapi.service.sandbox.ContainerPool;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
+import com.anita.multipleauthapi.service.sandbox.SandboxBenchmark;
+import com.anita.multipleauthapi.service.sandbox.WorkspaceManager;
+import com.anita.multipleauthapi.service.sql.EmbeddedSqlEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -16,6 +28,14 @@ import java.util.Map;
 public class DockerController {
 
     private final DockerContainerService dockerContainerService;
+    private final ContainerPool containerPool;
+    private final CompileArtifactCache artifactCache;
+    private final ExecutionScheduler executionScheduler;
+    private final EmbeddedSqlEngine sqlEngine;
+    private final DockerService dockerService;
+    private final SandboxBenchmark sandboxBenchmark;
+    private final RuntimeRegistry runtimeRegistry;
+    private final WorkspaceManager workspaceManager;
 
     /**
      * Creates a new Docker container
@@ -57,4 +77,84 @@ public class DockerController {
         String result = dockerContainerService.listContainers();
         return ResponseEntity.ok(result);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Shows warm sandbox pool statistics per language
+     */
+    @GetMapping("/pool")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<Map<LanguageType, ContainerPool.PoolStats>> getPoolStats() {
+        return ResponseEntity.ok(containerPool.getStats());
+    }
+
+    /**
+     * Shows compile artifact cache hit/miss statistics
+     */
+    @GetMapping("/artifact-cache")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<CompileArtifactCache.CacheStats> getArtifactCacheStats() {
+        return ResponseEntity.ok(artifactCache.getStats());
+    }
+
+    /**
+     * Shows running/queued sandbox executions, wait times and rejections
+     */
+    @GetMapping("/scheduler")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<ExecutionScheduler.SchedulerStats> getSchedulerStats() {
+        return ResponseEntity.ok(executionScheduler.getStats());
+    }
+
+    /**
+     * Shows how often SQL executions reused a seeded template database
+     */
+    @GetMapping("/sql-templates")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<EmbeddedSqlEngine.TemplateStats> getSqlTemplateStats() {
+        return ResponseEntity.ok(sqlEngine.getStats());
+    }
+
+    /**
+     * Shows how the work directories of cold executions are used, and how many leaked
+     */
+    @GetMapping("/workspaces")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<WorkspaceManager.WorkspaceStats> getWorkspaceStats() {
+        return ResponseEntity.ok(workspaceManager.getStats());
+    }
+
+    /**
+     * Measures cold and warm execution latency of the configured sandbox backend,
+     * and the cost of passing an input of the given size as a file versus through stdin
+     */
+    @PostMapping("/benchmark")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<SandboxBenchmark.BenchmarkResult> runBenchmark(
+            @RequestParam(defaultValue = "PYTHON") LanguageType language,
+            @RequestParam(defaultValue = "20") int iterations,
+            @RequestParam(defaultValue = "65536") int inputBytes) throws IOException {
+        return ResponseEntity.ok(sandboxBenchmark.run(language, dockerService.getImage(language), iterations, inputBytes));
+    }
+
+    /**
+     * Shows the language runtimes currently in use
+     */
+    @GetMapping("/runtimes")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<Map<LanguageType, LanguageRuntime>> getRuntimes() {
+        return ResponseEntity.ok(runtimeRegistry.getAll());
+    }
+
+    /**
+     * Reloads the language runtimes file without waiting for the change to be picked up
+     */
+    @PostMapping("/runtimes/reload")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<?> reloadRuntimes() {
+        try {
+            return ResponseEntity.ok(runtimeRegistry.reload());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
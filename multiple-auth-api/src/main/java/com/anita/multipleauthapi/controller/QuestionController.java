@@ -6,8 +6,10 @@ import com.anita.multipleauthapi.model.payload.QuestionResponse;
 import com.anita.multipleauthapi.security.CurrentUser;
 import com.anita.multipleauthapi.security.UserPrincipal;
 import com.anita.multipleauthapi.service.QuestionService;
+import com.anita.multipleauthapi.service.RegradeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -19,6 +21,9 @@ public class QuestionController {
     
     @Autowired
     private QuestionService questionService;
+
+    @Autowired
+    private RegradeService regradeService;
     
     /**
      * Get all questions with optional filtering by language and keyword
@@ -127,4 +132,27 @@ public class QuestionController {
         questionService.deactivateQuestion(questionId, userPrincipal.getId());
         return ResponseEntity.ok("Question deactivated successfully");
     }
+
+    /**
+     * Turn reusing the verdict of identical earlier submissions on or off for a question
+     */
+    @PutMapping("/questions/{questionId}/reuse-verdicts")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<String> setReuseVerdicts(
+            @PathVariable UUID questionId,
+            @RequestParam boolean enabled) {
+        questionService.setReuseVerdicts(questionId, enabled);
+        return ResponseEntity.ok(enabled ? "Verdict reuse enabled" : "Verdict reuse disabled");
+    }
+
+    /**
+     * Get the progress of the latest re-grade after the question's test cases changed
+     */
+    @GetMapping("/questions/{questionId}/regrade")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<RegradeService.RegradeProgress> getRegradeProgress(
+            @PathVariable UUID questionId) {
+        RegradeService.RegradeProgress progress = regradeService.getProgress(questionId);
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
 }
@@ -8,11 +8,17 @@ import com.anita.multipleauthapi.model.payload.QuestionStatusResponse;
 import com.anita.multipleauthapi.model.payload.SubmissionResponse;
 import com.anita.multipleauthapi.security.CurrentUser;
 import com.anita.multipleauthapi.security.UserPrincipal;
+import com.anita.multipleauthapi.service.ConnectionPoolMonitor;
+import com.anita.multipleauthapi.service.DebugStreamService;
+import com.anita.multipleauthapi.service.SubmissionQueue;
 import com.anita.multipleauthapi.service.SubmissionService;
+import com.anita.multipleauthapi.service.VerdictReuseService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
@@ -22,6 +28,10 @@ import java.util.UUID;
 @RequestMapping("/api/submissions")
 public class SubmissionController {
     private final SubmissionService submissionService;
+    private final SubmissionQueue submissionQueue;
+    private final DebugStreamService debugStreamService;
+    private final VerdictReuseService verdictReuseService;
+    private final ConnectionPoolMonitor connectionPoolMonitor;
     
     /**
      * Submit code for a specific question
@@ -29,7 +39,7 @@ public class SubmissionController {
      * @param userPrincipal Current authenticated user
      * @param questionId Question ID
      * @param submissionRequest Code submission request
-     * @return Submission response with grading results
+     * @return Submission response with PENDING status; poll or subscribe for the grading result
      */
     @PostMapping("/questions/{questionId}")
     public ResponseEntity<SubmissionResponse> submitCode(
@@ -37,7 +47,7 @@ public class SubmissionController {
             @PathVariable UUID questionId,
             @RequestBody SubmissionRequest submissionRequest) {
         
-        SubmissionResponse response = submissionService.processSubmission(
+        SubmissionResponse response = submissionService.submitCode(
                 userPrincipal, 
                 questionId, 
                 submissionRequest
@@ -45,6 +55,70 @@ public class SubmissionController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Get a single submission, used to poll for the result of a queued submission
+     * 
+     * @param userPrincipal Current authenticated user
+     * @param submissionId Submission ID
+     * @return Submission response
+     */
+    @GetMapping("/{submissionId}")
+    public ResponseEntity<SubmissionResponse> getSubmission(
+            @CurrentUser UserPrincipal userPrincipal,
+            @PathVariable UUID submissionId) {
+        
+        return ResponseEntity.ok(submissionService.getSubmission(userPrincipal, submissionId));
+    }
+    
+    /**
+     * Stream status events of a submission until it has been graded
+     * 
+     * @param userPrincipal Current authenticated user
+     * @param submissionId Submission ID
+     * @return Server-sent event stream
+     */
+    @GetMapping(value = "/{submissionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSubmission(
+            @CurrentUser UserPrincipal userPrincipal,
+            @PathVariable UUID submissionId) {
+        
+        return submissionService.subscribe(userPrincipal, submissionId);
+    }
+    
+    /**
+     * Get the state of the grading queue (Admin only)
+     * 
+     * @return Queue statistics
+     */
+    @GetMapping("/queue")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<SubmissionQueue.QueueStats> getQueueStats() {
+        return ResponseEntity.ok(submissionQueue.getStats());
+    }
+
+    /**
+     * Get how many database connections are in use, e.g. while submissions are graded under load (Admin only)
+     * 
+     * @return Connection pool occupancy, or 404 if the pool cannot be inspected
+     */
+    @GetMapping("/connections")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<ConnectionPoolMonitor.PoolStats> getConnectionPoolStats() {
+        ConnectionPoolMonitor.PoolStats stats = connectionPoolMonitor.getStats();
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Get how often repeated identical submissions reused an earlier verdict (Admin only)
+     * 
+     * @return Hit and miss counts since startup
+     */
+    @GetMapping("/reuse")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<VerdictReuseService.ReuseStats> getReuseStats() {
+        return ResponseEntity.ok(verdictReuseService.getStats());
+    }
     /**
      * Check if there exists any submission with perfect score (100) for the given question
      * 
@@ -66,30 +140,61 @@ public class SubmissionController {
     /**
      * Debug code without submitting or saving
      * 
+     * @param userPrincipal Current authenticated user
      * @param debugRequest Debug request containing code and language
      * @return Debug response with execution results
      */
     @PostMapping("/debug")
     public ResponseEntity<DebugResponse> debugCode(
+            @CurrentUser UserPrincipal userPrincipal,
             @RequestBody DebugRequest debugRequest) {
         
-        DebugResponse response = submissionService.debugCode(debugRequest);
+        DebugResponse response = submissionService.debugCode(userPrincipal, debugRequest);
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Debug code while streaming its compile/run phases and output as server-sent events
+     * 
+     * @param userPrincipal Current authenticated user
+     * @param debugRequest Debug request containing code and language
+     * @return Server-sent event stream ending with an "exit" event
+     */
+    @PostMapping(value = "/debug/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDebugCode(
+            @CurrentUser UserPrincipal userPrincipal,
+            @RequestBody DebugRequest debugRequest) {
+        
+        return debugStreamService.stream(userPrincipal, debugRequest);
+    }
+    
+    /**
+     * Get the number of open debug streams and dropped output (Admin only)
+     * 
+     * @return Stream statistics
+     */
+    @GetMapping("/debug/stream/stats")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('SYSTEM_ADMIN')")
+    public ResponseEntity<DebugStreamService.StreamStats> getDebugStreamStats() {
+        return ResponseEntity.ok(debugStreamService.getStats());
+    }
+    
     /**
      * Debug code for a specific question without submitting
      * 
+     * @param userPrincipal Current authenticated user
      * @param questionId Question ID
      * @param debugRequest Debug request containing code
      * @return Debug response with execution results
      */
     @PostMapping("/debug/questions/{questionId}")
     public ResponseEntity<DebugResponse> debugQuestionCode(
+            @CurrentUser UserPrincipal userPrincipal,
             @PathVariable UUID questionId,
             @RequestBody DebugRequest debugRequest) {
         
         DebugResponse response = submissionService.debugQuestionCode(
+                userPrincipal,
                 questionId,
                 debugRequest.getCode(),
                 debugRequest.getLanguage()
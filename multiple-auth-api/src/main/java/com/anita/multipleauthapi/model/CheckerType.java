@@ -0,0 +1,19 @@
+package com.anita.multipleauthapi.model;
+
+/**
+ * How a question decides whether a program's output is an accepted answer
+ */
+public enum CheckerType {
+    /** Same text, ignoring whitespace at the start and end of the output */
+    EXACT,
+    /** Same whitespace-separated tokens, however they are spaced or broken into lines */
+    TOKENS,
+    /** Same lines, ignoring whitespace at the end of each line and empty lines at the end */
+    LINES,
+    /** Same tokens, numbers may differ by the question's epsilon (absolute, or relative for large values) */
+    FLOAT,
+    /** Same non-empty lines in any order */
+    UNORDERED_LINES,
+    /** The question's checker program decides, see CustomChecker */
+    CUSTOM
+}
@@ -23,6 +23,11 @@ public class TestCase {
      */
     private String output;
     
+    /**
+     * Share of the score this case is worth relative to the others, 1 if not set
+     */
+    private Integer weight;
+    
     /**
      * Convert input list to string format suitable for program input
      * Each input value is placed on a separate line
@@ -0,0 +1,21 @@
+package com.anita.multipleauthapi.model;
+
+/**
+ * Outcome of one test case of a graded submission
+ */
+public enum Verdict {
+    /** Accepted: the program exited normally with the expected output */
+    AC,
+    /** Wrong answer: the program exited normally with other output */
+    WA,
+    /** Time limit exceeded */
+    TLE,
+    /** Runtime error: the program exited with a non-zero status */
+    RE,
+    /** Memory limit exceeded: killed by the sandbox's memory limit or out of heap */
+    MLE,
+    /** Compile error, the case never ran */
+    CE,
+    /** Not run, another case had already failed an all-or-nothing grade */
+    SKIPPED
+}
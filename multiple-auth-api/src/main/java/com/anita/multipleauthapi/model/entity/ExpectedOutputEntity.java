@@ -0,0 +1,40 @@
+package com.anita.multipleauthapi.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Materialized output of a question's compareCode for one input.
+ * Rows are only valid while questionUpdatedAt matches the question's updatedAt.
+ */
+@Data
+@Entity
+@Table(name = "expected_outputs", indexes = @Index(name = "idx_expected_outputs_question", columnList = "question_id"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpectedOutputEntity {
+    @Id
+    @Column(name = "expected_output_id")
+    private UUID id;
+
+    @Column(name = "question_id", nullable = false)
+    private UUID questionId;
+
+    @Column(name = "question_updated_at")
+    private String questionUpdatedAt;
+
+    @Column(name = "input_hash", length = 64, nullable = false)
+    private String inputHash;
+
+    @Column(name = "output", columnDefinition = "TEXT")
+    private String output;
+
+    @Column(name = "created_at")
+    private String createdAt;
+}
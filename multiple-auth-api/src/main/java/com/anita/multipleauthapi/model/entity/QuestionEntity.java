@@ -1,6 +1,7 @@
 package com.anita.multipleauthapi.model.entity;
 
 import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.CheckerType;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -73,6 +74,25 @@ public class QuestionEntity {
     @Column(name = "is_test_case")
     private Boolean isTestCase;
     
+    // Score test cases by their weights instead of all-or-nothing
+    @Column(name = "partial_credit")
+    private Boolean partialCredit;
+    
+    // Repeated identical submissions reuse the earlier verdict; null counts as enabled
+    @Column(name = "reuse_verdicts")
+    private Boolean reuseVerdicts;
+    
+    // How outputs are compared with the expected output; null compares them exactly
+    @Column(name = "checker")
+    @Enumerated(EnumType.STRING)
+    private CheckerType checker;
+    
+    @Column(name = "checker_epsilon")
+    private Double checkerEpsilon; // tolerance of the FLOAT checker
+    
+    @Column(name = "checker_code", columnDefinition = "TEXT")
+    private String checkerCode; // checker program of the CUSTOM checker, in the question's language
+    
     @Column(name = "created_by")
     private UUID createdBy;
     
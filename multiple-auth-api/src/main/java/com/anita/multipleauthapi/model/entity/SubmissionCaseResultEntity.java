@@ -0,0 +1,58 @@
+package com.anita.multipleauthapi.model.entity;
+
+import com.anita.multipleauthapi.model.Verdict;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Verdict of one test case of a graded submission, kept so results can be shown and analysed
+ * without running the code again. Rows are replaced whenever the submission is graded again.
+ */
+@Data
+@Entity
+@Table(name = "submission_case_results", indexes = @Index(name = "idx_submission_case_results_submission", columnList = "submission_id"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionCaseResultEntity {
+    @Id
+    @Column(name = "case_result_id")
+    private UUID id;
+
+    @Column(name = "submission_id", nullable = false)
+    private UUID submissionId;
+
+    @Column(name = "case_index", nullable = false)
+    private Integer caseIndex; // 1-based, in the order of the question's test cases
+
+    @Column(name = "case_hash", length = 64)
+    private String caseHash; // content of the case the verdict belongs to, see GradingCase
+
+    @Column(name = "verdict", length = 8, nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Verdict verdict;
+
+    @Column(name = "weight")
+    private Integer weight;
+
+    @Column(name = "run_time")
+    private Long runTime; // milliseconds, measured inside the sandbox
+
+    @Column(name = "peak_memory_kb")
+    private Long peakMemoryKb;
+
+    @Column(name = "exit_code")
+    private Integer exitCode;
+
+    @PrePersist
+    public void generateUUID() {
+        if (this.id == null) {
+            this.id = UUID.randomUUID();
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name="submissions")
+@Table(name="submissions", indexes = @Index(name = "idx_submissions_code_fingerprint", columnList = "code_fingerprint"))
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +33,9 @@ public class SubmissionEntity {
     @Column(name = "code", columnDefinition = "TEXT")
     private String code;
     
+    @Column(name = "input_data", columnDefinition = "TEXT")
+    private String inputData;
+    
     @Column(name = "language")
     @Enumerated(EnumType.STRING)
     private LanguageType language;
@@ -52,8 +55,47 @@ public class SubmissionEntity {
     @Column(name = "execution_time")
     private Long executionTime;
     
+    // Test case summary; the verdict of each case is in submission_case_results
+    @Column(name = "passed_cases")
+    private Integer passedCases;
+    
+    @Column(name = "total_cases")
+    private Integer totalCases;
+    
+    // Where grading time went, in milliseconds; null where a phase did not run or was not measured
+    @Column(name = "queue_wait_time")
+    private Long queueWaitTime; // from submitting until a sandbox slot was granted
+    
+    @Column(name = "sandbox_start_time")
+    private Long sandboxStartTime; // sandbox start-up and teardown around the compile and run steps
+    
+    @Column(name = "compile_time")
+    private Long compileTime;
+    
+    @Column(name = "run_time")
+    private Long runTime; // all runs of the program, comparable between solutions
+    
+    @Column(name = "cpu_user_time")
+    private Long cpuUserTime;
+    
+    @Column(name = "cpu_system_time")
+    private Long cpuSystemTime;
+    
+    @Column(name = "peak_memory_kb")
+    private Long peakMemoryKb;
+    
+    // Same code, input and question version as an earlier submission grade the same
+    @Column(name = "code_fingerprint", length = 64)
+    private String codeFingerprint;
+    
+    @Column(name = "reused_from")
+    private UUID reusedFrom; // submission whose verdict was copied instead of running the code again
+    
+    @Column(name = "regraded_at")
+    private String regradedAt; // when an edit of the question last re-graded it, null if never
+    
     @Column(name = "status")
-    private String status; // "PENDING", "COMPLETED", "FAILED"
+    private String status; // "PENDING" while queued or grading, then "COMPLETED" or "FAILED"
     
     @Column(name = "created_at")
     private String createdAt;
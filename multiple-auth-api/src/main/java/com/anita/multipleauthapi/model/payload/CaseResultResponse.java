@@ -0,0 +1,20 @@
+package com.anita.multipleauthapi.model.payload;
+
+import com.anita.multipleauthapi.model.Verdict;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CaseResultResponse {
+    private Integer caseIndex;
+    private Verdict verdict;
+    private Integer weight;
+    private Long runTime;
+    private Long peakMemoryKb;
+    private Integer exitCode;
+}
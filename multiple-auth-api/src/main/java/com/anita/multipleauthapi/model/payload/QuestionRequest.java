@@ -1,6 +1,7 @@
 package com.anita.multipleauthapi.model.payload;
 
 import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.CheckerType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,6 +32,16 @@ public class QuestionRequest {
     
     private Boolean isTestCase;
     
+    private Boolean partialCredit;
+    
+    private Boolean reuseVerdicts;
+    
+    private CheckerType checker;
+    
+    private Double checkerEpsilon;
+    
+    private String checkerCode;
+    
     private Boolean isCompare;
     
     private String compareCode;
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -23,6 +24,18 @@ public class SubmissionResponse {
     private String error;
     private String expectedOutput;
     private Long executionTime;
+    private Integer passedCases;
+    private Integer totalCases;
+    private List<CaseResultResponse> caseResults; // only in views of a single submission
+    private Long queueWaitTime;
+    private Long sandboxStartTime;
+    private Long compileTime;
+    private Long runTime;
+    private Long cpuUserTime;
+    private Long cpuSystemTime;
+    private Long peakMemoryKb;
+    private UUID reusedFrom;
+    private String regradedAt;
     private String status;
     private String createdAt;
 } 
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.anita.multipleauthapi.repository;
+
+import com.anita.multipleauthapi.model.entity.ExpectedOutputEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+@Repository
+public interface ExpectedOutputRepository extends JpaRepository<ExpectedOutputEntity, UUID> {
+
+    /**
+     * Insert a stored output, leaving an existing row with the same id untouched.
+     * Concurrent misses for the same key therefore never fail the surrounding transaction.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO expected_outputs (expected_output_id, question_id, question_updated_at, input_hash, output, created_at) " +
+            "VALUES (:id, :questionId, :questionUpdatedAt, :inputHash, :output, :createdAt) " +
+            "ON CONFLICT (expected_output_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("questionId") UUID questionId,
+                       @Param("questionUpdatedAt") String questionUpdatedAt,
+                       @Param("inputHash") String inputHash,
+                       @Param("output") String output,
+                       @Param("createdAt") String createdAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ExpectedOutputEntity e WHERE e.questionId = :questionId")
+    int deleteByQuestionId(@Param("questionId") UUID questionId);
+}
@@ -0,0 +1,31 @@
+package com.anita.multipleauthapi.repository;
+
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SubmissionCaseResultRepository extends JpaRepository<SubmissionCaseResultEntity, UUID> {
+
+    List<SubmissionCaseResultEntity> findBySubmissionIdOrderByCaseIndex(UUID submissionId);
+
+    List<SubmissionCaseResultEntity> findBySubmissionIdIn(Collection<UUID> submissionIds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SubmissionCaseResultEntity r WHERE r.submissionId = :submissionId")
+    int deleteBySubmissionId(@Param("submissionId") UUID submissionId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SubmissionCaseResultEntity r WHERE r.submissionId IN :submissionIds")
+    int deleteBySubmissionIdIn(@Param("submissionIds") Collection<UUID> submissionIds);
+}
@@ -2,9 +2,15 @@ package com.anita.multipleauthapi.repository;
 
 import com.anita.multipleauthapi.model.entity.SubmissionEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -15,6 +21,10 @@ public interface SubmissionRepository extends JpaRepository<SubmissionEntity, UU
     
     List<SubmissionEntity> findByUserIdAndQuestionId(UUID userId, UUID questionId);
     
+    List<SubmissionEntity> findByStatus(String status);
+    
+    List<SubmissionEntity> findByQuestionIdAndStatus(UUID questionId, String status);
+    
     /**
      * Check if there exists any submission with the given questionId and score
      * @param questionId Question ID
@@ -22,4 +32,23 @@ public interface SubmissionRepository extends JpaRepository<SubmissionEntity, UU
      * @return true if any submission exists with the given questionId and score
      */
     boolean existsByQuestionIdAndScore(UUID questionId, Integer score);
+
+    /**
+     * Latest submission with the given fingerprint and status, e.g. the last graded copy of identical code
+     */
+    Optional<SubmissionEntity> findFirstByCodeFingerprintAndStatusOrderByCreatedAtDesc(String codeFingerprint, String status);
+
+    /**
+     * Set the same grade on several submissions at once, e.g. all submissions of identical code
+     * @return Number of updated submissions
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SubmissionEntity s SET s.score = :score, s.passedCases = :passedCases, " +
+            "s.totalCases = :totalCases, s.regradedAt = :regradedAt WHERE s.id IN :ids")
+    int updateGrades(@Param("ids") Collection<UUID> ids,
+                     @Param("score") Integer score,
+                     @Param("passedCases") Integer passedCases,
+                     @Param("totalCases") Integer totalCases,
+                     @Param("regradedAt") String regradedAt);
 } 
\ No newline at end of file
@@ -0,0 +1,301 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.DebugRequest;
+import com.anita.multipleauthapi.model.error.TooManyRequestsException;
+import com.anita.multipleauthapi.security.UserPrincipal;
+import com.anita.multipleauthapi.service.sandbox.Cancellation;
+import com.anita.multipleauthapi.service.sandbox.ExecutionListener;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs debug executions while streaming their phases and output to the browser as server-sent events.
+ * <p>
+ * Events: "phase" (COMPILE/RUN), "output" (stdout/stderr chunks), "dropped" (output the browser
+ * could not keep up with) and finally "exit" with the exit status.
+ * Output is buffered per session and flushed at a fixed interval, so a slow browser never blocks
+ * the running program; output beyond the pending limit is dropped and reported instead.
+ * When the browser goes away the run is killed, so it does not keep its slot until the timeout.
+ */
+@Slf4j
+@Service
+public class DebugStreamService {
+    private static final int FLUSH_THREADS = 2;
+
+    private final DockerService dockerService;
+    private final ExecutionScheduler executionScheduler;
+    private final AppProperties.DebugStream config;
+    private final Semaphore streams;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong droppedChars = new AtomicLong();
+
+    public DebugStreamService(DockerService dockerService, ExecutionScheduler executionScheduler, AppProperties appProperties) {
+        this.dockerService = dockerService;
+        this.executionScheduler = executionScheduler;
+        this.config = appProperties.getDebugStream();
+        this.streams = new Semaphore(config.getMaxConcurrentStreams());
+        AtomicInteger threadCount = new AtomicInteger();
+        // Bounded by the semaphore
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "debug-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher = Executors.newScheduledThreadPool(FLUSH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "debug-stream-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a debug run and return the event stream it reports to
+     *
+     * @param userPrincipal Current user, charged against the execution rate limit
+     * @param debugRequest  Debug request containing code and language
+     * @return Server-sent event stream
+     * @throws TooManyRequestsException if too many streams are open or the user is rate limited
+     */
+    public SseEmitter stream(UserPrincipal userPrincipal, DebugRequest debugRequest) {
+        if (!streams.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new TooManyRequestsException("Too many live debug sessions, please try again shortly", 5);
+        }
+        ExecutionScheduler.Permit permit;
+        try {
+            permit = executionScheduler.admit(userPrincipal.getId(), userPrincipal.getCourseId(), ExecutionScheduler.Lane.DEBUG);
+        } catch (RuntimeException e) {
+            streams.release();
+            throw e;
+        }
+
+        started.incrementAndGet();
+        SseEmitter emitter = new SseEmitter(config.getSseTimeoutMsec());
+        Session session = new Session(emitter);
+        emitter.onCompletion(session::close);
+        emitter.onTimeout(session::close);
+        emitter.onError(error -> session.close());
+
+        executor.execute(() -> {
+            try (permit) {
+                DockerService.ExecutionResult result = dockerService.executeCodeStreaming(
+                        debugRequest.getLanguage(),
+                        debugRequest.getCode(),
+                        debugRequest.getInitialCode(),
+                        debugRequest.getInputData(),
+                        SubmissionService.DEBUG_TIMEOUT_SECONDS,
+                        session.cancellation,
+                        session
+                );
+                session.finish(result);
+            } catch (Exception e) {
+                log.error("Error streaming debug run: {}", e.getMessage(), e);
+                session.fail(e);
+            } finally {
+                streams.release();
+            }
+        });
+        return emitter;
+    }
+
+    public StreamStats getStats() {
+        return StreamStats.builder()
+                .maxConcurrentStreams(config.getMaxConcurrentStreams())
+                .active(config.getMaxConcurrentStreams() - streams.availablePermits())
+                .started(started.get())
+                .rejected(rejected.get())
+                .droppedChars(droppedChars.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        flusher.shutdownNow();
+    }
+
+    /**
+     * One streamed run. Pump threads append output, the flusher sends it.
+     */
+    private class Session implements ExecutionListener {
+        private final SseEmitter emitter;
+        // Held while sending so events keep their order
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private final StringBuilder pendingStdout = new StringBuilder();
+        private final StringBuilder pendingStderr = new StringBuilder();
+        private long pendingDropped = 0;
+        private final ScheduledFuture<?> flushTask;
+        // Fired once nothing more can be sent, which stops the run if it is still going
+        private final Cancellation cancellation = new Cancellation();
+        private volatile boolean closed = false;
+
+        private Session(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.flushTask = flusher.scheduleWithFixedDelay(
+                    this::tryFlush, config.getFlushIntervalMsec(), config.getFlushIntervalMsec(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onPhase(Phase phase) {
+            sendLock.lock();
+            try {
+                flush();
+                send("phase", Map.of("phase", phase.name()));
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onStdout(String chunk) {
+            append(pendingStdout, chunk);
+        }
+
+        @Override
+        public void onStderr(String chunk) {
+            append(pendingStderr, chunk);
+        }
+
+        private void append(StringBuilder pending, String chunk) {
+            if (closed || chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                int room = config.getMaxPendingChars() - pending.length();
+                if (room >= chunk.length()) {
+                    pending.append(chunk);
+                    return;
+                }
+                if (room > 0) {
+                    pending.append(chunk, 0, room);
+                }
+                long dropped = chunk.length() - (long) Math.max(room, 0);
+                pendingDropped += dropped;
+                droppedChars.addAndGet(dropped);
+            }
+        }
+
+        /**
+         * Skips this round if a send is still in progress; output keeps collecting meanwhile
+         */
+        private void tryFlush() {
+            if (sendLock.tryLock()) {
+                try {
+                    flush();
+                } finally {
+                    sendLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Must be called while holding the send lock
+         */
+        private void flush() {
+            String stdout;
+            String stderr;
+            long dropped;
+            synchronized (this) {
+                stdout = take(pendingStdout);
+                stderr = take(pendingStderr);
+                dropped = pendingDropped;
+                pendingDropped = 0;
+            }
+            if (!stdout.isEmpty()) {
+                send("output", Map.of("stream", "stdout", "data", stdout));
+            }
+            if (!stderr.isEmpty()) {
+                send("output", Map.of("stream", "stderr", "data", stderr));
+            }
+            if (dropped > 0) {
+                send("dropped", Map.of("chars", dropped));
+            }
+        }
+
+        private String take(StringBuilder pending) {
+            String text = pending.toString();
+            pending.setLength(0);
+            return text;
+        }
+
+        private void finish(DockerService.ExecutionResult result) {
+            Map<String, Object> exit = new HashMap<>();
+            exit.put("exitCode", result.getExitCode());
+            exit.put("timedOut", result.getTimedOut());
+            exit.put("executionTime", result.getExecutionTime());
+            exit.put("outputSize", result.getOutputSize());
+            complete("exit", exit);
+        }
+
+        private void fail(Exception e) {
+            complete("exit", Map.of("exitCode", -1, "error", "Error debugging code: " + e.getMessage()));
+        }
+
+        private void complete(String name, Object data) {
+            flushTask.cancel(false);
+            sendLock.lock();
+            try {
+                flush();
+                send(name, data);
+            } finally {
+                sendLock.unlock();
+            }
+            if (!closed) {
+                emitter.complete();
+            }
+            close();
+        }
+
+        private void send(String name, Object data) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (IOException | IllegalStateException e) {
+                // The browser went away; the run is stopped and nothing more is sent
+                close();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            flushTask.cancel(false);
+            cancellation.cancel();
+        }
+    }
+
+    @Data
+    @Builder
+    public static class StreamStats {
+        private int maxConcurrentStreams;
+        private int active;
+        private long started;
+        private long rejected;
+        private long droppedChars;
+    }
+}
@@ -1,100 +1,132 @@
 package com.anita.multipleauthapi.service;
 
+import com.anita.multipleauthapi.service.docker.DockerEngineClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.concurrent.CompletableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Service for managing Docker containers from within the Docker container
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class DockerContainerService {
-    
+    private static final int STOP_TIMEOUT_SECONDS = 10;
+
+    private final DockerEngineClient dockerEngineClient;
+
     /**
-     * Creates a new Docker container
-     * 
+     * Creates and starts a new Docker container
+     *
      * @param name Container name
      * @param image Docker image to use
      * @param ports Port mappings (format: "8080:80,9000:9000")
      * @param envs Environment variables (format: "VAR1=value1,VAR2=value2")
-     * @return Output from the command execution
+     * @return Id of the started container, or the error
      */
     public String createContainer(String name, String image, String ports, String envs) {
-        return executeCommand("/app/docker-helper.sh", "create", name, image, ports, envs);
+        try {
+            Map<String, Object> exposedPorts = new LinkedHashMap<>();
+            Map<String, Object> portBindings = new LinkedHashMap<>();
+            for (String mapping : split(ports)) {
+                String[] parts = mapping.split(":");
+                String containerPort = parts[parts.length - 1] + (parts[parts.length - 1].contains("/") ? "" : "/tcp");
+                exposedPorts.put(containerPort, Map.of());
+                if (parts.length > 1) {
+                    portBindings.put(containerPort, List.of(Map.of("HostPort", parts[parts.length - 2])));
+                }
+            }
+            Map<String, Object> spec = new LinkedHashMap<>();
+            spec.put("Image", image);
+            spec.put("Env", split(envs));
+            spec.put("ExposedPorts", exposedPorts);
+            spec.put("HostConfig", Map.of("PortBindings", portBindings));
+
+            String id = dockerEngineClient.createContainer(name, spec);
+            dockerEngineClient.startContainer(id);
+            log.info("Started container {} ({}) from {}", name, id, image);
+            return id + "\n";
+        } catch (IOException e) {
+            log.error("Error creating container {}: {}", name, e.getMessage());
+            return "Error: " + e.getMessage();
+        }
     }
-    
+
     /**
      * Stops a running container
-     * 
+     *
      * @param name Container name
-     * @return Output from the command execution
+     * @return Container name, or the error
      */
     public String stopContainer(String name) {
-        return executeCommand("/app/docker-helper.sh", "stop", name);
+        try {
+            dockerEngineClient.stopContainer(name, STOP_TIMEOUT_SECONDS);
+            return name + "\n";
+        } catch (IOException e) {
+            log.error("Error stopping container {}: {}", name, e.getMessage());
+            return "Error: " + e.getMessage();
+        }
     }
-    
+
     /**
      * Removes a container
-     * 
+     *
      * @param name Container name
-     * @return Output from the command execution
+     * @return Container name, or the error
      */
     public String removeContainer(String name) {
-        return executeCommand("/app/docker-helper.sh", "remove", name);
+        try {
+            dockerEngineClient.removeContainer(name, false);
+            return name + "\n";
+        } catch (IOException e) {
+            log.error("Error removing container {}: {}", name, e.getMessage());
+            return "Error: " + e.getMessage();
+        }
     }
-    
+
     /**
      * Lists all containers
-     * 
-     * @return Output from the command execution
+     *
+     * @return One line per container (id, image, status, names), or the error
      */
     public String listContainers() {
-        return executeCommand("/app/docker-helper.sh", "list");
-    }
-    
-    /**
-     * Executes a Docker command directly
-     * 
-     * @param args Command arguments
-     * @return Output from the command execution
-     */
-    private String executeCommand(String... args) {
         try {
-            ProcessBuilder pb = new ProcessBuilder(args);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // Read the output asynchronously
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
+            StringBuilder output = new StringBuilder(String.format("%-12s  %-30s  %-25s  %s%n", "CONTAINER ID", "IMAGE", "STATUS", "NAMES"));
+            for (JsonNode container : dockerEngineClient.listContainers(true)) {
+                List<String> names = new ArrayList<>();
+                container.path("Names").forEach(n -> names.add(n.asText().replaceFirst("^/", "")));
+                String id = container.path("Id").asText();
+                output.append(String.format("%-12s  %-30s  %-25s  %s%n",
+                        id.substring(0, Math.min(12, id.length())),
+                        container.path("Image").asText(),
+                        container.path("Status").asText(),
+                        String.join(",", names)));
             }
-            
-            // Wait for the process to complete
-            int exitCode = process.waitFor();
-            log.info("Command executed with exit code: {}", exitCode);
-            
             return output.toString();
-        } catch (Exception e) {
-            log.error("Error executing Docker command", e);
+        } catch (IOException e) {
+            log.error("Error listing containers: {}", e.getMessage());
             return "Error: " + e.getMessage();
         }
     }
-    
-    /**
-     * Executes a command asynchronously
-     * 
-     * @param args Command arguments
-     * @return A CompletableFuture containing the command output
-     */
-    public CompletableFuture<String> executeCommandAsync(String... args) {
-        return CompletableFuture.supplyAsync(() -> executeCommand(args));
+
+    private static List<String> split(String list) {
+        List<String> values = new ArrayList<>();
+        if (list == null) {
+            return values;
+        }
+        for (String value : list.split(",")) {
+            if (!value.isBlank()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
     }
-} 
\ No newline at end of file
+}
@@ -1,165 +1,78 @@
 package com.anita.multipleauthapi.service;
 
+import com.anita.multipleauthapi.config.AppProperties;
 import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.Verdict;
+import com.anita.multipleauthapi.service.runtime.CaseInputs;
+import com.anita.multipleauthapi.service.runtime.JvmWorker;
+import com.anita.multipleauthapi.service.runtime.LanguageRuntime;
+import com.anita.multipleauthapi.service.runtime.PythonWorker;
+import com.anita.multipleauthapi.service.runtime.RuntimeRegistry;
+import com.anita.multipleauthapi.service.runtime.StepUsage;
+import com.anita.multipleauthapi.service.sandbox.Cancellation;
+import com.anita.multipleauthapi.service.sandbox.CompileArtifactCache;
+import com.anita.multipleauthapi.service.sandbox.ContainerPool;
+import com.anita.multipleauthapi.service.sandbox.ExecutionListener;
+import com.anita.multipleauthapi.service.sandbox.OutputCapture;
+import com.anita.multipleauthapi.service.sandbox.SandboxHandle;
+import com.anita.multipleauthapi.service.sandbox.WorkspaceManager;
+import com.anita.multipleauthapi.service.sql.EmbeddedSqlEngine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Service for managing Docker containers from within the Docker container
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class DockerService {
-    private static final String TEMP_DIR = "/tmp/code-execution";
-    private static final Map<LanguageType, String> DOCKER_IMAGES = new HashMap<>();
-    private static final Map<LanguageType, String> FILE_EXTENSIONS = new HashMap<>();
-    private static final Map<LanguageType, List<String>> EXECUTION_COMMANDS = new HashMap<>();
-    
-    static {
-        // Initialize Docker images
-        DOCKER_IMAGES.put(LanguageType.JAVA, "openjdk:17-slim");
-        DOCKER_IMAGES.put(LanguageType.PYTHON, "amancevice/pandas");
-        DOCKER_IMAGES.put(LanguageType.C, "gcc:latest");
-        DOCKER_IMAGES.put(LanguageType.CPP, "gcc:latest");
-        DOCKER_IMAGES.put(LanguageType.JAVASCRIPT, "node:16-slim");
-        DOCKER_IMAGES.put(LanguageType.TYPESCRIPT, "node:16-slim");
-        DOCKER_IMAGES.put(LanguageType.KOTLIN, "openjdk:17-slim");
-        DOCKER_IMAGES.put(LanguageType.RUBY, "ruby:3.0-slim");
-        DOCKER_IMAGES.put(LanguageType.RUST, "rust:1.55-slim");
-        DOCKER_IMAGES.put(LanguageType.GOLANG, "golang:1.17-alpine");
-        DOCKER_IMAGES.put(LanguageType.SWIFT, "swift:5.5");
-        DOCKER_IMAGES.put(LanguageType.PHP, "php:8.0-cli");
-        DOCKER_IMAGES.put(LanguageType.SQL, "keinos/sqlite3");
-        
-        // Initialize file extensions
-        FILE_EXTENSIONS.put(LanguageType.JAVA, ".java");
-        FILE_EXTENSIONS.put(LanguageType.PYTHON, ".py");
-        FILE_EXTENSIONS.put(LanguageType.C, ".c");
-        FILE_EXTENSIONS.put(LanguageType.CPP, ".cpp");
-        FILE_EXTENSIONS.put(LanguageType.JAVASCRIPT, ".js");
-        FILE_EXTENSIONS.put(LanguageType.TYPESCRIPT, ".ts");
-        FILE_EXTENSIONS.put(LanguageType.KOTLIN, ".kt");
-        FILE_EXTENSIONS.put(LanguageType.RUBY, ".rb");
-        FILE_EXTENSIONS.put(LanguageType.RUST, ".rs");
-        FILE_EXTENSIONS.put(LanguageType.GOLANG, ".go");
-        FILE_EXTENSIONS.put(LanguageType.SWIFT, ".swift");
-        FILE_EXTENSIONS.put(LanguageType.PHP, ".php");
-        FILE_EXTENSIONS.put(LanguageType.SQL, ".sql");
-        
-        // Initialize execution commands
-        EXECUTION_COMMANDS.put(LanguageType.JAVA, List.of("javac", "Main.java", "&&", "java", "Main"));
-        EXECUTION_COMMANDS.put(LanguageType.PYTHON, List.of("python", "main.py"));
-        EXECUTION_COMMANDS.put(LanguageType.C, List.of("gcc", "main.c", "-o", "main", "&&", "./main"));
-        EXECUTION_COMMANDS.put(LanguageType.CPP, List.of("g++", "main.cpp", "-o", "main", "&&", "./main"));
-        EXECUTION_COMMANDS.put(LanguageType.JAVASCRIPT, List.of("node", "main.js"));
-        EXECUTION_COMMANDS.put(LanguageType.TYPESCRIPT, List.of("tsc", "main.ts", "&&", "node", "main.js"));
-        EXECUTION_COMMANDS.put(LanguageType.KOTLIN, List.of("kotlinc", "main.kt", "-include-runtime", "-d", "main.jar", "&&", "java", "-jar", "main.jar"));
-        EXECUTION_COMMANDS.put(LanguageType.RUBY, List.of("ruby", "main.rb"));
-        EXECUTION_COMMANDS.put(LanguageType.RUST, List.of("rustc", "main.rs", "&&", "./main"));
-        EXECUTION_COMMANDS.put(LanguageType.GOLANG, List.of("go", "run", "main.go"));
-        EXECUTION_COMMANDS.put(LanguageType.SWIFT, List.of("swift", "main.swift"));
-        EXECUTION_COMMANDS.put(LanguageType.PHP, List.of("php", "main.php"));
-        EXECUTION_COMMANDS.put(LanguageType.SQL, List.of("sqlite3", "app.db"));
-    }
-    
-    /**
-     * Creates a new Docker container
-     * 
-     * @param name Container name
-     * @param image Docker image to use
-     * @param ports Port mappings (format: "8080:80,9000:9000")
-     * @param envs Environment variables (format: "VAR1=value1,VAR2=value2")
-     * @return Output from the command execution
-     */
-    public String createContainer(String name, String image, String ports, String envs) {
-        return executeCommand("/app/docker-helper.sh", "create", name, image, ports, envs);
-    }
-    
-    /**
-     * Stops a running container
-     * 
-     * @param name Container name
-     * @return Output from the command execution
-     */
-    public String stopContainer(String name) {
-        return executeCommand("/app/docker-helper.sh", "stop", name);
-    }
-    
-    /**
-     * Removes a container
-     * 
-     * @param name Container name
-     * @return Output from the command execution
-     */
-    public String removeContainer(String name) {
-        return executeCommand("/app/docker-helper.sh", "remove", name);
-    }
-    
+    private static final int BATCH_TIMEOUT_SLACK_SECONDS = 5;
+    // Exit status of coreutils/busybox timeout when the command was killed
+    private static final int TIMEOUT_EXIT_CODE = 124;
+    // Exit status reported for executions that were cancelled, as for a program killed by SIGKILL
+    public static final int CANCELLED_EXIT_CODE = 137;
+
+    private final ContainerPool containerPool;
+    private final CompileArtifactCache artifactCache;
+    private final AppProperties appProperties;
+    private final EmbeddedSqlEngine sqlEngine;
+    private final RuntimeRegistry runtimeRegistry;
+    private final WorkspaceManager workspaceManager;
+
     /**
-     * Lists all containers
-     * 
-     * @return Output from the command execution
+     * Registers every language runtime with the warm container pool, again whenever the runtimes are reloaded
      */
-    public String listContainers() {
-        return executeCommand("/app/docker-helper.sh", "list");
+    @PostConstruct
+    public void registerPools() {
+        registerPools(runtimeRegistry.getAll());
+        runtimeRegistry.addListener(this::registerPools);
     }
-    
-    /**
-     * Executes a Docker command directly
-     * 
-     * @param args Command arguments
-     * @return Output from the command execution
-     */
-    private String executeCommand(String... args) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder(args);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // Read the output asynchronously
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
+
+    private void registerPools(Map<LanguageType, LanguageRuntime> runtimes) {
+        for (LanguageType language : LanguageType.values()) {
+            LanguageRuntime runtime = runtimes.get(language);
+            if (runtime != null) {
+                containerPool.register(runtime);
+            } else {
+                containerPool.unregister(language);
             }
-            
-            // Wait for the process to complete
-            int exitCode = process.waitFor();
-            log.info("Command executed with exit code: {}", exitCode);
-            
-            return output.toString();
-        } catch (Exception e) {
-            log.error("Error executing Docker command", e);
-            return "Error: " + e.getMessage();
         }
     }
     
-    /**
-     * Executes a command asynchronously
-     * 
-     * @param args Command arguments
-     * @return A CompletableFuture containing the command output
-     */
-    public CompletableFuture<String> executeCommandAsync(String... args) {
-        return CompletableFuture.supplyAsync(() -> executeCommand(args));
-    }
-    
     /**
      * Executes code in a Docker container and returns the result
      *
@@ -184,9 +97,32 @@ public class DockerService {
      * @return                A map containing stdout, stderr, and execution time
      */
     public ExecutionResult executeCode(LanguageType language, String code, String initialCode, String inputData, int timeout) {
+        return executeCode(language, code, initialCode, inputData, timeout, new Cancellation());
+    }
+    
+    /**
+     * Same as {@link #executeCode(LanguageType, String, String, String, int)}, stopping the sandbox
+     * when the cancellation fires. A cancelled execution fails with {@link #CANCELLED_EXIT_CODE}
+     * or whatever exit status the killed program reports.
+     */
+    public ExecutionResult executeCode(LanguageType language, String code, String initialCode, String inputData, int timeout,
+                                       Cancellation cancellation) {
+        return executeCode(language, code, initialCode, inputData, timeout, cancellation, null);
+    }
+    
+    /**
+     * Same as {@link #executeCode(LanguageType, String, String, String, int, Cancellation)}, passing
+     * the output to the listener while it is produced
+     *
+     * @param listener Receives output chunks, may be null; SQL is not run in a sandbox and reports nothing
+     */
+    public ExecutionResult executeCode(LanguageType language, String code, String initialCode, String inputData, int timeout,
+                                       Cancellation cancellation, ExecutionListener listener) {
+        if (cancellation.isCancelled()) {
+            return cancelled();
+        }
         try {
             String executionId = UUID.randomUUID().toString();
-            String workDir = TEMP_DIR + "/" + executionId;
             
             log.info("=== Code Execution Debug Info ===");
             log.info("Language: {}", language);
@@ -195,152 +131,67 @@ public class DockerService {
             log.info("Input Data is null: {}", inputData == null);
             log.info("Input Data is empty: {}", inputData != null && inputData.trim().isEmpty());
             
-            // Create temporary directory
-            try {
-                Path dirPath = Path.of(workDir);
-                Files.createDirectories(dirPath);
-                log.info("Temporary directory created successfully: {}", dirPath.toAbsolutePath());
-            } catch (Exception e) {
-                log.error("Failed to create temporary directory: {}", e.getMessage(), e);
-                return ExecutionResult.builder()
-                    .stdout("")
-                    .stderr("Failed to create execution environment: " + e.getMessage())
-                    .executionTime(0L)
-                    .exitCode(-1)
-                    .timedOut(false)
-                    .build();
-            }
-            
-            // For SQL, special handling with SQLite
+            // SQL runs in-process on SQLite, no container needed
             if (language == LanguageType.SQL) {
-                return executeSqlCode(executionId, workDir, code, initialCode, timeout);
+                return sqlEngine.execute(code, initialCode, timeout);
             }
             
-            // Check if input data is provided
-            boolean hasInput = (inputData != null && !inputData.trim().isEmpty());
-            
-            log.info("Has input: {}", hasInput);
-            
-            // For languages with input data, create input file and handle appropriately
-            String modifiedCode = code;
-            if (hasInput) {
-                // Create input file for all languages
-                File inputFile = new File(workDir + "/input.txt");
-                try (FileWriter writer = new FileWriter(inputFile)) {
-                    writer.write(inputData);
-                    log.info("Input file created for {}: {}", language, inputFile.getName());
-                } catch (Exception e) {
-                    log.error("Failed to create input file: {}", e.getMessage(), e);
-                    return ExecutionResult.builder()
-                        .stdout("")
-                        .stderr("Failed to prepare input data: " + e.getMessage())
-                        .executionTime(0L)
-                        .exitCode(-1)
-                        .timedOut(false)
-                        .build();
-                }
-                
-                // Modify code based on language
-                switch (language) {
-                    case PYTHON:
-                        // Modify Python code to read from file instead of stdin
-                        modifiedCode = "import sys\n" +
-                                      "import io\n" +
-                                      "with open('/code/input.txt', 'r') as f:\n" +
-                                      "    input_data = f.read()\n" +
-                                      "sys.stdin = io.StringIO(input_data)\n" +
-                                      "# Original user code below:\n" +
-                                      code;
-                        log.info("Modified Python code with improved input redirection");
-                        break;
-                    case JAVA:
-                        // For Java, we'll redirect stdin in the docker command
-                        break;
-                    case CPP:
-                    case C:
-                        // For C/C++, we'll redirect stdin in the docker command
-                        break;
-                    default:
-                        break;
-                }
+            LanguageRuntime runtime = runtimeRegistry.get(language);
+            if (runtime == null) {
+                return unsupported(language);
             }
             
-            // Write modified code to file
-            String extension = FILE_EXTENSIONS.getOrDefault(language, ".txt");
-            String mainFileName = getMainFileName(language);
-            File codeFile = new File(workDir + "/" + mainFileName);
+            // Prefer a warm sandbox from the pool over starting a fresh container
+            SandboxHandle sandbox = containerPool.acquire(language);
+            if (sandbox != null) {
+                return executeInSandbox(sandbox, runtime, code, inputData, timeout, cancellation, listener);
+            }
             
+            WorkspaceManager.Workspace workspace;
             try {
-                // Create the file
-                if (!codeFile.createNewFile()) {
-                    log.warn("File already exists, will overwrite: {}", codeFile.getAbsolutePath());
-                } else {
-                    log.info("Code file created successfully: {}", codeFile.getAbsolutePath());
-                }
-                
-                // Write modified code to file
-                try (FileWriter writer = new FileWriter(codeFile)) {
-                    writer.write(modifiedCode);
-                    log.info("Code written to file successfully: {}", codeFile.getName());
-                }
+                workspace = workspaceManager.acquire();
             } catch (Exception e) {
-                log.error("Failed to create or write to code file: {}", e.getMessage(), e);
+                log.error("Failed to create work directory: {}", e.getMessage(), e);
                 return ExecutionResult.builder()
                     .stdout("")
-                    .stderr("Failed to prepare code for execution: " + e.getMessage())
+                    .stderr("Failed to create execution environment: " + e.getMessage())
                     .executionTime(0L)
                     .exitCode(-1)
                     .timedOut(false)
                     .build();
             }
             
-            // Build Docker command (no longer need stdin for Python)
-            List<String> dockerCommand = buildDockerCommand(language, executionId, workDir, timeout, false);
-            log.info("Docker command: {}", String.join(" ", dockerCommand));
-            
-            // Execute Docker command
-            ProcessBuilder processBuilder = new ProcessBuilder(dockerCommand);
-            processBuilder.redirectErrorStream(false);
-            
-            long startTime = System.currentTimeMillis();
-            Process process = processBuilder.start();
-            
-            // Wait for process to complete or timeout
-            boolean completed = process.waitFor(timeout, TimeUnit.SECONDS);
-            long executionTime = System.currentTimeMillis() - startTime;
-            
-            if (!completed) {
-                process.destroyForcibly();
-                return ExecutionResult.builder()
-                    .stdout("")
-                    .stderr("Execution timed out after " + timeout + " seconds")
-                    .executionTime(executionTime)
-                    .timedOut(true)
-                    .build();
-            }
-            
-            // Read output and error streams
-            String stdout = readStream(process.getInputStream());
-            String stderr = readStream(process.getErrorStream());
-            
-            // Clean up
-            try {
-                Files.walk(Path.of(workDir))
-                    .sorted(java.util.Comparator.reverseOrder())
-                    .map(Path::toFile)
-                    .forEach(File::delete);
-            } catch (Exception e) {
-                log.error("Failed to clean up temp files: {}", e.getMessage());
+            // The work directory is returned however the run ends, timeouts included
+            try (workspace) {
+                Path workDir = workspace.getPath();
+                ExecutionResult prepareError = prepareSourceFiles(runtime, code, workDir.toString());
+                if (prepareError != null) {
+                    return prepareError;
+                }
+                
+                // Skip the compile step if this exact source was compiled before
+                boolean precompiled = restoreCompiledArtifacts(runtime, code, workDir);
+                ExecutionResult compileResult = null;
+                if (cachesCompile(runtime, precompiled)) {
+                    compileResult = compileAndStore(null, runtime, code, "code-exec-" + executionId + "-compile", workDir, timeout, cancellation);
+                    if (!Integer.valueOf(0).equals(compileResult.getExitCode())) {
+                        return compileResult;
+                    }
+                    precompiled = true;
+                }
+                
+                // Run in a throwaway sandbox of the configured backend, draining output while it runs
+                String shellCommand = buildExecutionCommand(runtime, precompiled, false);
+                log.info("Sandbox command: {}", shellCommand);
+                ExecutionResult result = runCold(runtime, "code-exec-" + executionId, workDir, timeout, shellCommand,
+                    stdinOf(inputData), listener, cancellation);
+                readSingleRunMeasurements(workDir, result);
+                if (compileResult != null) {
+                    result.setCompileTime(compileResult.getCompileTime());
+                }
+                return result;
             }
             
-            return ExecutionResult.builder()
-                .stdout(stdout)
-                .stderr(stderr)
-                .executionTime(executionTime)
-                .exitCode(process.exitValue())
-                .timedOut(false)
-                .build();
-            
         } catch (Exception e) {
             log.error("Error executing code: {}", e.getMessage(), e);
             return ExecutionResult.builder()
@@ -354,222 +205,600 @@ public class DockerService {
     }
     
     /**
-     * Special handler for executing SQL code with SQLite
-     * 
-     * @param executionId     Unique ID for this execution
-     * @param workDir         Working directory for temporary files
-     * @param code            SQL code to execute (user query)
-     * @param initialCode     Initial SQL code (create tables/insert data)
-     * @param timeout         Timeout in seconds
-     * @return                Execution result
+     * Executes code against several inputs in a single sandbox: the source is compiled once
+     * and the resulting program is run once per input, each run with its own timeout
+     *
+     * @param language        The programming language
+     * @param code            The source code to execute
+     * @param initialCode     Optional initial code (SQL schema/data setup)
+     * @param inputs          Stdin contents, one per run
+     * @param timeout         Maximum time in seconds for the compile step and for each run
+     * @return                Compile result (if the language has a compile step) and one result per input
      */
-    private ExecutionResult executeSqlCode(String executionId, String workDir, String code, String initialCode, int timeout) throws Exception {
-        // Create a combined SQL file with initialCode and user code for full execution
-        File fullSqlFile = new File(workDir + "/init_and_query.sql");
-        try (FileWriter writer = new FileWriter(fullSqlFile)) {
-            if (initialCode != null && !initialCode.isEmpty()) {
-                writer.write(initialCode);
-                writer.write("\n");
+    public BatchExecutionResult executeBatch(LanguageType language, String code, String initialCode, List<String> inputs, int timeout) {
+        // SQL reads no stdin and some runtimes cannot share a sandbox between cases,
+        // so every input is simply a separate execution
+        if (!supportsBatch(language)) {
+            List<ExecutionResult> caseResults = new ArrayList<>();
+            for (String input : inputs) {
+                caseResults.add(executeCode(language, code, initialCode, input, timeout));
             }
-            writer.write(code);
+            return BatchExecutionResult.builder()
+                .caseResults(caseResults)
+                .executionTime(caseResults.stream().mapToLong(ExecutionResult::getExecutionTime).sum())
+                .build();
         }
         
-        // Create SQLite database file
-        String dbPath = workDir + "/app.db";
-        
-        // Create directory for SQLite database
-        new File(workDir + "/data").mkdirs();
-        
-        // Build Docker command for SQLite
-        List<String> command = new ArrayList<>();
-        command.add("docker");
-        command.add("run");
-        command.add("--rm");
-        command.add("--name");
-        command.add("sql-exec-" + executionId);
-        
-        // Set resource limits
-        command.add("--memory=256m");
-        command.add("--cpus=1");
-        command.add("--network=none");  // No network access
-        
-        // Mount volume
-        command.add("-v");
-        command.add(workDir + ":/data");
-        
-        // Docker image
-        command.add("keinos/sqlite3");
+        LanguageRuntime runtime = runtimeRegistry.get(language);
+        if (runtime == null) {
+            return BatchExecutionResult.builder().compileResult(unsupported(language)).caseResults(List.of()).executionTime(0L).build();
+        }
         
-        // Command to execute
-        command.add("sqlite3");
-        command.add("/data/app.db");
-        command.add(".mode column");
-        command.add(".headers on");
+        int overallTimeout = timeout * (inputs.size() + 1) + BATCH_TIMEOUT_SLACK_SECONDS;
+        // The script, inputs included, is read from stdin rather than written into the work directory
+        String shellCommand = "sh -s";
+        SandboxHandle sandbox = containerPool.acquire(language);
+        String executionId = UUID.randomUUID().toString();
+        WorkspaceManager.Workspace workspace = null;
+        ExecutionResult scriptResult = null;
         
-        // Execute initialCode to setup database (if provided)
-        if (initialCode != null && !initialCode.isEmpty()) {
-            // Create initialization file
-            File initFile = new File(workDir + "/init.sql");
-            try (FileWriter writer = new FileWriter(initFile)) {
-                writer.write(initialCode);
+        try {
+            log.info("Batch execution of {} cases for {} (sandbox: {})", inputs.size(), language, sandbox != null ? sandbox.getId() : "none");
+            if (sandbox == null) {
+                workspace = workspaceManager.acquire();
             }
+            Path workDir = sandbox != null ? sandbox.getWorkDir() : workspace.getPath();
+            ExecutionResult prepareError = prepareSourceFiles(runtime, code, workDir.toString());
+            if (prepareError != null) {
+                return BatchExecutionResult.builder().compileResult(prepareError).caseResults(List.of()).executionTime(0L).build();
+            }
+            boolean precompiled = restoreCompiledArtifacts(runtime, code, workDir);
+            ExecutionResult compileResult = null;
+            // A worker that compiles in-process runs the cases in the same JVM, so its output is not cached
+            if (cachesCompile(runtime, precompiled) && !compilesInWorker(runtime, precompiled)) {
+                compileResult = compileAndStore(sandbox, runtime, code, "code-exec-" + executionId + "-compile", workDir, timeout, null);
+                if (!Integer.valueOf(0).equals(compileResult.getExitCode())) {
+                    scriptResult = compileResult;
+                    return BatchExecutionResult.builder()
+                        .compileResult(compileResult)
+                        .caseResults(List.of())
+                        .executionTime(compileResult.getExecutionTime())
+                        .build();
+                }
+                precompiled = true;
+            }
+            if (runtime.getJvmWorker() != null) {
+                JvmWorker.install(workDir);
+            } else if (runtime.getPythonWorker() != null) {
+                PythonWorker.install(workDir);
+            }
+            String script = buildBatchScript(runtime, inputs, timeout, precompiled, servedEarlierJobs(sandbox));
             
-            // Execute initialization SQL to set up the database
-            List<String> initCommand = new ArrayList<>(command);
-            initCommand.add(".read /data/init.sql");
-            
-            ProcessBuilder initProcessBuilder = new ProcessBuilder(initCommand);
-            initProcessBuilder.redirectErrorStream(false);
-            
-            Process initProcess = initProcessBuilder.start();
-            boolean initCompleted = initProcess.waitFor(timeout, TimeUnit.SECONDS);
-            
-            if (!initCompleted) {
-                initProcess.destroyForcibly();
-                return ExecutionResult.builder()
-                    .stdout("")
-                    .stderr("Database initialization timed out")
-                    .executionTime(0L)
-                    .exitCode(-1)
-                    .timedOut(true)
-                    .build();
+            if (sandbox != null) {
+                scriptResult = containerPool.getBackend().exec(sandbox, shellCommand, script, overallTimeout);
+            } else {
+                scriptResult = runCold(runtime, "code-exec-" + executionId, workDir, overallTimeout, shellCommand, script, null, null);
             }
             
-            // Check for errors in initialization
-            String initStderr = readStream(initProcess.getErrorStream());
-            if (!initStderr.isEmpty()) {
-                return ExecutionResult.builder()
+            BatchExecutionResult batchResult = collectBatchResults(workDir, runtime, inputs.size(), scriptResult, precompiled);
+            if (compileResult != null) {
+                batchResult.setCompileResult(compileResult);
+                batchResult.setExecutionTime(batchResult.getExecutionTime() + compileResult.getExecutionTime());
+            }
+            return batchResult;
+        } catch (Exception e) {
+            log.error("Error executing batch: {}", e.getMessage(), e);
+            return BatchExecutionResult.builder()
+                .compileResult(ExecutionResult.builder()
                     .stdout("")
-                    .stderr("Database initialization error: " + initStderr)
+                    .stderr("Internal execution error: " + e.getMessage())
                     .executionTime(0L)
-                    .exitCode(initProcess.exitValue())
+                    .exitCode(-1)
                     .timedOut(false)
-                    .build();
+                    .build())
+                .caseResults(List.of())
+                .executionTime(0L)
+                .build();
+        } finally {
+            if (sandbox != null) {
+                containerPool.release(sandbox, scriptResult != null && !Boolean.TRUE.equals(scriptResult.getTimedOut()));
+            } else if (workspace != null) {
+                workspace.close();
             }
         }
+    }
+    
+    /**
+     * Builds the POSIX shell script that compiles once and then runs every input,
+     * leaving stdout, stderr, exit code and elapsed milliseconds of each step in files.
+     * The inputs are here-documents in the script, which itself arrives on the shell's stdin,
+     * so every step but the runs has its stdin redirected.
+     * JVM languages run all inputs in one worker JVM instead of starting a JVM per input,
+     * Python forks every run from one interpreter that has already imported the common modules.
+     */
+    private String buildBatchScript(LanguageRuntime runtime, List<String> inputs, int timeout, boolean precompiled,
+                                    boolean reusedSandbox) {
+        LanguageRuntime.JvmWorkerOptions worker = runtime.getJvmWorker();
+        boolean compileInWorker = compilesInWorker(runtime, precompiled);
+        String compileStep = precompiled || compileInWorker || !runtime.isCompiled() ? null : runtime.getCompile();
+        String runStep = runtime.getRun();
         
-        // Execute the user's SQL query
-        File queryFile = new File(workDir + "/query.sql");
-        try (FileWriter writer = new FileWriter(queryFile)) {
-            writer.write(code);
+        StringBuilder script = new StringBuilder(StepUsage.functions(reusedSandbox));
+        if (compileStep != null) {
+            script.append(StepUsage.begin());
+            script.append("timeout ").append(timeout).append(" sh -c '").append(compileStep)
+                .append("' < /dev/null > compile.out 2> compile.err\n");
+            script.append("code=$?\n");
+            script.append("echo $code > compile.exit\n");
+            script.append(StepUsage.end("compile.time", "compile.usage"));
+            script.append("[ $code -eq 0 ] || exit 0\n");
+        }
+        if (worker != null) {
+            script.append(JvmWorker.batchLoop(worker.getMainClass(), worker.getClassPath(), inputs, timeout,
+                compileInWorker ? runtime.getSourceFile() : null));
+            return script.toString();
+        }
+        LanguageRuntime.PythonWorkerOptions pythonWorker = runtime.getPythonWorker();
+        if (pythonWorker != null) {
+            script.append(PythonWorker.batchCommand(pythonWorker.getInterpreter(), runtime.getSourceFile(), inputs, timeout,
+                pythonWorker.getPreload()));
+            return script.toString();
+        }
+        // Each call gets its case's input as stdin, and head passes exactly its $2 bytes on to the
+        // run step, without the newline the here-document adds to an input that does not end in one
+        script.append("run_case() {\n");
+        script.append(StepUsage.begin());
+        script.append("head -c $2 | timeout ").append(timeout).append(" sh -c '").append(runStep)
+            .append("' > out_$1.txt 2> err_$1.txt\n");
+        script.append("echo $? > exit_$1.txt\n");
+        script.append(StepUsage.end("time_$1.txt", "usage_$1.txt"));
+        script.append("}\n");
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            script.append("run_case ").append(i + 1).append(' ').append(CaseInputs.byteLength(input)).append(' ')
+                .append(CaseInputs.heredoc(input));
+        }
+        return script.toString();
+    }
+    
+    private BatchExecutionResult collectBatchResults(Path workDir, LanguageRuntime runtime, int caseCount, ExecutionResult scriptResult, boolean precompiled) throws Exception {
+        ExecutionResult compileResult = null;
+        if (!precompiled && runtime.isCompiled()) {
+            compileResult = readStepResult(workDir, "compile.out", "compile.err", "compile.exit", "compile.time", "compile.usage", scriptResult);
+            compileResult.setCompileTime(compileResult.getExecutionTime());
         }
         
-        List<String> queryCommand = new ArrayList<>(command);
-        queryCommand.add(".read /data/query.sql");
-        
-        ProcessBuilder queryProcessBuilder = new ProcessBuilder(queryCommand);
-        queryProcessBuilder.redirectErrorStream(false);
-        
-        long startTime = System.currentTimeMillis();
-        Process queryProcess = queryProcessBuilder.start();
-        
-        boolean completed = queryProcess.waitFor(timeout, TimeUnit.SECONDS);
-        long executionTime = System.currentTimeMillis() - startTime;
+        List<ExecutionResult> caseResults = new ArrayList<>();
+        if (compileResult == null || Integer.valueOf(0).equals(compileResult.getExitCode())) {
+            for (int i = 1; i <= caseCount; i++) {
+                ExecutionResult caseResult = readStepResult(workDir, "out_" + i + ".txt", "err_" + i + ".txt", "exit_" + i + ".txt",
+                    "time_" + i + ".txt", "usage_" + i + ".txt", scriptResult);
+                caseResult.setRunTime(caseResult.getExecutionTime());
+                caseResults.add(caseResult);
+            }
+        }
         
-        if (!completed) {
-            queryProcess.destroyForcibly();
+        return BatchExecutionResult.builder()
+            .compileResult(compileResult)
+            .caseResults(caseResults)
+            .executionTime(scriptResult.getExecutionTime())
+            .build();
+    }
+    
+    /**
+     * Reads the files one step of the batch script left behind. A step without an exit file
+     * never ran to completion, which means the whole script was cut off by its timeout.
+     */
+    private ExecutionResult readStepResult(Path workDir, String stdoutFile, String stderrFile, String exitFile, String timeFile,
+                                           String usageFile, ExecutionResult scriptResult) throws Exception {
+        Path exitPath = workDir.resolve(exitFile);
+        if (!Files.exists(exitPath)) {
+            boolean timedOut = Boolean.TRUE.equals(scriptResult.getTimedOut());
             return ExecutionResult.builder()
                 .stdout("")
-                .stderr("Query execution timed out after " + timeout + " seconds")
-                .executionTime(executionTime)
-                .timedOut(true)
+                .stderr(timedOut ? scriptResult.getStderr() : "Execution did not complete: " + scriptResult.getStderr())
+                .executionTime(0L)
+                .exitCode(-1)
+                .timedOut(timedOut)
                 .build();
         }
         
-        // Read output and error streams
-        String stdout = readStream(queryProcess.getInputStream());
-        String stderr = readStream(queryProcess.getErrorStream());
-        
-        return ExecutionResult.builder()
-            .stdout(stdout)
-            .stderr(stderr)
-            .executionTime(executionTime)
-            .exitCode(queryProcess.exitValue())
-            .timedOut(false)
+        int exitCode = Integer.parseInt(Files.readString(exitPath).trim());
+        Path timePath = workDir.resolve(timeFile);
+        long elapsed = Files.exists(timePath) ? Long.parseLong(Files.readString(timePath).trim()) : 0L;
+        boolean timedOut = exitCode == TIMEOUT_EXIT_CODE;
+        Path stdoutPath = workDir.resolve(stdoutFile);
+        Path stderrPath = workDir.resolve(stderrFile);
+        // Only the kept part of each file is read, however much the program wrote
+        OutputCapture stdout = Files.exists(stdoutPath) ? OutputCapture.ofFile(stdoutPath, getMaxOutputBytes()) : null;
+        ExecutionResult result = ExecutionResult.builder()
+            .stdout(stdout != null ? stdout.asString() : "")
+            .stderr(timedOut ? "Execution timed out" : Files.exists(stderrPath) ? OutputCapture.ofFile(stderrPath, getMaxOutputBytes()).asString() : "")
+            .outputSize(stdout != null ? stdout.getTotalBytes() : 0L)
+            .executionTime(elapsed)
+            .exitCode(exitCode)
+            .timedOut(timedOut)
             .build();
+        readUsage(workDir.resolve(usageFile), result);
+        return result;
     }
     
-    private List<String> buildDockerCommand(LanguageType language, String executionId, String workDir, int timeout, boolean hasInput) {
-        String dockerImage = DOCKER_IMAGES.getOrDefault(language, "alpine:latest");
-        List<String> command = new ArrayList<>();
-        
-        // Base docker run command
-        command.add("docker");
-        command.add("run");
-        command.add("--rm");
-        
-        // Add interactive flag if input data is provided (but not for Python as we handle it differently)
-        if (hasInput && language != LanguageType.PYTHON) {
-            command.add("-i");
+    /**
+     * Copies CPU time and peak memory from a usage file of {@link StepUsage} into the result;
+     * a missing or unreadable file leaves them null
+     */
+    private static void readUsage(Path usageFile, ExecutionResult result) {
+        if (!Files.exists(usageFile)) {
+            return;
+        }
+        try {
+            String[] values = Files.readString(usageFile).trim().split("\\s+");
+            result.setCpuUserTime(nonNegative(Long.parseLong(values[0])));
+            result.setCpuSystemTime(nonNegative(Long.parseLong(values[1])));
+            result.setPeakMemoryKb(nonNegative(Long.parseLong(values[2])));
+        } catch (Exception e) {
+            log.debug("Unreadable usage file {}: {}", usageFile, e.getMessage());
+        }
+    }
+    
+    private static Long nonNegative(long value) {
+        return value >= 0 ? value : null;
+    }
+    
+    /**
+     * Adds the step timings and usage the single-run script left in the work directory
+     */
+    private static void readSingleRunMeasurements(Path workDir, ExecutionResult result) {
+        result.setCompileTime(readMillis(workDir.resolve("compile.time")));
+        result.setRunTime(readMillis(workDir.resolve("run.time")));
+        readUsage(workDir.resolve("run.usage"), result);
+    }
+    
+    private static Long readMillis(Path file) {
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Writes the source file into the work directory; input data goes to the program's stdin instead
+     *
+     * @param runtime   Runtime of the language, gives the source file name
+     * @param code      The source code to execute
+     * @param workDir   Directory mounted at /code
+     * @return          An error result if the file could not be written, otherwise null
+     */
+    private ExecutionResult prepareSourceFiles(LanguageRuntime runtime, String code, String workDir) {
+        // Write code to file
+        File codeFile = new File(workDir + "/" + runtime.getSourceFile());
+
+        try {
+            // Create the file
+            if (!codeFile.createNewFile()) {
+                log.warn("File already exists, will overwrite: {}", codeFile.getAbsolutePath());
+            } else {
+                log.info("Code file created successfully: {}", codeFile.getAbsolutePath());
+            }
+
+            // Write modified code to file
+            try (FileWriter writer = new FileWriter(codeFile)) {
+                writer.write(code);
+                log.info("Code written to file successfully: {}", codeFile.getName());
+            }
+        } catch (Exception e) {
+            log.error("Failed to create or write to code file: {}", e.getMessage(), e);
+            return ExecutionResult.builder()
+                .stdout("")
+                .stderr("Failed to prepare code for execution: " + e.getMessage())
+                .executionTime(0L)
+                .exitCode(-1)
+                .timedOut(false)
+                .build();
         }
         
-        command.add("--name");
-        command.add("code-exec-" + executionId);
-        
-        // Set resource limits
-        command.add("--memory=256m");
-        command.add("--cpus=1");
-        command.add("--network=none");  // No network access
-        
-        // Set timeout
-        command.add("--stop-timeout=" + timeout);
-        
-        // Mount volume
-        command.add("-v");
-        command.add(workDir + ":/code");
-        
-        // Working directory
-        command.add("-w");
-        command.add("/code");
-        
-        // Docker image
-        command.add(dockerImage);
-        
-        // Shell with command execution based on language
-        command.add("sh");
-        command.add("-c");
-        
-        List<String> executionCommand = EXECUTION_COMMANDS.getOrDefault(language, List.of("echo", "Unsupported language"));
-        String commandString = String.join(" ", executionCommand);
+        return null;
+    }
+    
+    /**
+     * Runs code in a warm sandbox taken from the pool and returns the sandbox afterwards
+     */
+    private ExecutionResult executeInSandbox(SandboxHandle sandbox, LanguageRuntime runtime, String code, String inputData, int timeout,
+                                             Cancellation cancellation, ExecutionListener listener) {
+        ExecutionResult result = null;
+        try {
+            log.info("Using warm sandbox: {}", sandbox.getId());
+            result = prepareSourceFiles(runtime, code, sandbox.getWorkDir().toString());
+            if (result != null) {
+                return result;
+            }
+            
+            // Same command line as the fresh-container path, executed with docker exec
+            boolean precompiled = restoreCompiledArtifacts(runtime, code, sandbox.getWorkDir());
+            ExecutionResult compileResult = null;
+            if (cachesCompile(runtime, precompiled)) {
+                compileResult = compileAndStore(sandbox, runtime, code, sandbox.getId(), sandbox.getWorkDir(), timeout, cancellation);
+                if (!Integer.valueOf(0).equals(compileResult.getExitCode())) {
+                    result = compileResult;
+                    return result;
+                }
+                precompiled = true;
+            }
+            try (Cancellation.Registration registration = cancellation.onCancel(() -> containerPool.getBackend().kill(sandbox))) {
+                result = containerPool.getBackend().exec(sandbox, buildExecutionCommand(runtime, precompiled, servedEarlierJobs(sandbox)),
+                    stdinOf(inputData), timeout, listener);
+            }
+            readSingleRunMeasurements(sandbox.getWorkDir(), result);
+            if (compileResult != null) {
+                result.setCompileTime(compileResult.getCompileTime());
+            }
+            return result;
+        } finally {
+            // A timed-out job may have left processes behind and a cancelled one was killed, so that sandbox is not reused
+            containerPool.release(sandbox, result != null && !Boolean.TRUE.equals(result.getTimedOut()) && !cancellation.isCancelled());
+        }
+    }
+    
+    /**
+     * Executes code like {@link #executeCode(LanguageType, String, String, String, int)}, reporting
+     * the compile and run phases and their output to the listener while they happen.
+     * Compile and run are separate steps here, so each gets the full timeout.
+     *
+     * @param language    The programming language
+     * @param code        The source code to execute
+     * @param initialCode Optional initial code (SQL schema/data setup)
+     * @param inputData   Input data for stdin, may be null
+     * @param timeout      Maximum execution time per step in seconds
+     * @param cancellation Kills the running step when it fires, e.g. once the browser went away
+     * @param listener     Receives phase changes and output chunks
+     * @return             Result of the last step that ran
+     */
+    public ExecutionResult executeCodeStreaming(LanguageType language, String code, String initialCode, String inputData,
+                                                int timeout, Cancellation cancellation, ExecutionListener listener) {
+        if (cancellation.isCancelled()) {
+            return cancelled();
+        }
+        if (language == LanguageType.SQL) {
+            // SQLite runs in-process as a single step, its output is sent once it is complete
+            listener.onPhase(ExecutionListener.Phase.RUN);
+            ExecutionResult result = executeCode(language, code, initialCode, inputData, timeout);
+            listener.onStdout(result.getStdout());
+            listener.onStderr(result.getStderr());
+            return result;
+        }
         
-        // Add input redirection for languages that need it (except Python which handles it internally)
-        if (hasInput && language != LanguageType.PYTHON) {
-            commandString += " < input.txt";
+        LanguageRuntime runtime = runtimeRegistry.get(language);
+        if (runtime == null) {
+            return unsupported(language);
         }
         
-        command.add(commandString);
+        String executionId = UUID.randomUUID().toString();
+        SandboxHandle sandbox = containerPool.acquire(language);
+        WorkspaceManager.Workspace workspace = null;
+        ExecutionResult result = null;
+        try {
+            if (sandbox == null) {
+                workspace = workspaceManager.acquire();
+            }
+            Path workDir = sandbox != null ? sandbox.getWorkDir() : workspace.getPath();
+            result = prepareSourceFiles(runtime, code, workDir.toString());
+            if (result != null) {
+                return result;
+            }
+            
+            boolean precompiled = restoreCompiledArtifacts(runtime, code, workDir);
+            if (runtime.isCompiled() && !precompiled) {
+                listener.onPhase(ExecutionListener.Phase.COMPILE);
+                result = executeStep(sandbox, runtime, executionId + "-compile", workDir, timeout, runtime.getCompile(), null,
+                    cancellation, listener);
+                if (!Integer.valueOf(0).equals(result.getExitCode())) {
+                    return result;
+                }
+                storeCompiledArtifacts(runtime, code, workDir);
+            }
+            
+            if (cancellation.isCancelled()) {
+                result = cancelled();
+                return result;
+            }
+            listener.onPhase(ExecutionListener.Phase.RUN);
+            result = executeStep(sandbox, runtime, executionId + "-run", workDir, timeout, runtime.getRun(), stdinOf(inputData),
+                cancellation, listener);
+            return result;
+        } catch (Exception e) {
+            log.error("Error executing code: {}", e.getMessage(), e);
+            return ExecutionResult.builder()
+                .stdout("")
+                .stderr("Internal execution error: " + e.getMessage())
+                .executionTime(0L)
+                .exitCode(-1)
+                .timedOut(false)
+                .build();
+        } finally {
+            if (sandbox != null) {
+                // A killed sandbox may have been stopped half-way, so it is not reused
+                containerPool.release(sandbox, result != null && !Boolean.TRUE.equals(result.getTimedOut()) && !cancellation.isCancelled());
+            } else if (workspace != null) {
+                workspace.close();
+            }
+        }
+    }
+    
+    private ExecutionResult executeStep(SandboxHandle sandbox, LanguageRuntime runtime, String containerId, Path workDir,
+                                        int timeout, String shellCommand, String stdin, Cancellation cancellation,
+                                        ExecutionListener listener) {
+        if (sandbox != null) {
+            try (Cancellation.Registration registration = cancellation.onCancel(() -> containerPool.getBackend().kill(sandbox))) {
+                return containerPool.getBackend().exec(sandbox, shellCommand, stdin, timeout, listener);
+            }
+        }
+        return runCold(runtime, "code-exec-" + containerId, workDir, timeout, shellCommand, stdin, listener, cancellation);
+    }
+    
+    /**
+     * Runs a command in a throwaway sandbox when no warm one is available
+     *
+     * @param cancellation Kills the sandbox when it fires, may be null
+     */
+    private ExecutionResult runCold(LanguageRuntime runtime, String sandboxId, Path workDir, int timeout,
+                                    String shellCommand, String stdin, ExecutionListener listener, Cancellation cancellation) {
+        SandboxHandle handle = new SandboxHandle(sandboxId, runtime.getLanguage(), runtime.getImage(),
+            runtime.getMemoryLimit(), runtime.getCpuLimit(), workDir);
+        if (cancellation == null) {
+            return containerPool.getBackend().run(handle, shellCommand, stdin, timeout, listener);
+        }
+        try (Cancellation.Registration registration = cancellation.onCancel(() -> containerPool.getBackend().kill(handle))) {
+            return containerPool.getBackend().run(handle, shellCommand, stdin, timeout, listener);
+        }
+    }
+    
+    /**
+     * @return Image the sandboxes of the language are started from
+     * @throws IllegalArgumentException if the language has no runtime
+     */
+    public String getImage(LanguageType language) {
+        return runtimeRegistry.require(language).getImage();
+    }
         
-        return command;
-    }
-    
-    private String getMainFileName(LanguageType language) {
-        switch (language) {
-            case JAVA: return "Main.java";
-            case PYTHON: return "main.py";
-            case C: return "main.c";
-            case CPP: return "main.cpp";
-            case JAVASCRIPT: return "main.js";
-            case TYPESCRIPT: return "main.ts";
-            case KOTLIN: return "main.kt";
-            case RUBY: return "main.rb";
-            case RUST: return "main.rs";
-            case GOLANG: return "main.go";
-            case SWIFT: return "main.swift";
-            case PHP: return "main.php";
-            case SQL: return "query.sql";
-            default: return "main" + FILE_EXTENSIONS.getOrDefault(language, ".txt");
-        }
-    }
-    
-    private String readStream(java.io.InputStream stream) throws Exception {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+    /**
+     * Compiles (unless cached artifacts are in place) and runs, timing each step inside the
+     * sandbox so container start-up does not count, and measuring the run step's usage
+     */
+    private String buildExecutionCommand(LanguageRuntime runtime, boolean precompiled, boolean reusedSandbox) {
+        StringBuilder script = new StringBuilder(StepUsage.functions(reusedSandbox));
+        if (runtime.isCompiled() && !precompiled) {
+            // The program's stdin is left for the run step
+            script.append(StepUsage.begin());
+            script.append("sh -c '").append(runtime.getCompile()).append("' < /dev/null\n");
+            script.append("code=$?\n");
+            script.append(StepUsage.end("compile.time", "compile.usage"));
+            script.append("[ $code -eq 0 ] || exit $code\n");
+        }
+        script.append(StepUsage.begin());
+        script.append("sh -c '").append(runtime.getRun()).append("'\n");
+        script.append("code=$?\n");
+        script.append(StepUsage.end("run.time", "run.usage"));
+        script.append("exit $code\n");
+        return script.toString();
+    }
+    
+    /**
+     * @return true if the warm sandbox ran an earlier job, so its memory high-water mark may not be this job's
+     */
+    private static boolean servedEarlierJobs(SandboxHandle sandbox) {
+        return sandbox != null && sandbox.getUses().get() > 1;
+    }
+    
+    /**
+     * @return The input data to pipe into the program, or null to give it no stdin
+     */
+    private static String stdinOf(String inputData) {
+        return inputData != null && !inputData.trim().isEmpty() ? inputData : null;
+    }
+    
+    private String artifactKey(LanguageRuntime runtime, String code) {
+        return CompileArtifactCache.key(runtime.getLanguage().name(), runtime.getImage(), runtime.getCompile(), code);
+    }
+    
+    /**
+     * Copies cached compile output for this source into the work directory
+     *
+     * @return true if the compile step can be skipped
+     */
+    private boolean restoreCompiledArtifacts(LanguageRuntime runtime, String code, Path workDir) {
+        if (runtime.getArtifacts().isEmpty() || !artifactCache.isEnabled()) {
+            return false;
+        }
+        boolean restored = artifactCache.restore(artifactKey(runtime, code), workDir);
+        if (restored) {
+            log.info("Reusing cached {} build", runtime.getLanguage());
+        }
+        return restored;
+    }
+    
+    private void storeCompiledArtifacts(LanguageRuntime runtime, String code, Path workDir) {
+        if (!runtime.getArtifacts().isEmpty() && artifactCache.isEnabled()) {
+            artifactCache.store(artifactKey(runtime, code), workDir, runtime.getArtifacts());
+        }
+    }
+    
+    /**
+     * @return Whether the compile step that is about to run produces artifacts for the cache
+     */
+    private boolean cachesCompile(LanguageRuntime runtime, boolean precompiled) {
+        return runtime.isCompiled() && !precompiled && !runtime.getArtifacts().isEmpty() && artifactCache.isEnabled();
+    }
+    
+    private static boolean compilesInWorker(LanguageRuntime runtime, boolean precompiled) {
+        return runtime.getJvmWorker() != null && runtime.getJvmWorker().isCompileInProcess() && !precompiled;
+    }
+    
+    /**
+     * Runs the compile step on its own and caches its output if it succeeded. Nothing of the
+     * submitted program has run yet, so what is cached is exactly what the compiler produced.
+     *
+     * @param sandbox      Warm sandbox to compile in, null for a throwaway one
+     * @param cancellation Kills the compile when it fires, may be null
+     * @return             Result of the compile step, with its compile time set
+     */
+    private ExecutionResult compileAndStore(SandboxHandle sandbox, LanguageRuntime runtime, String code, String sandboxId,
+                                            Path workDir, int timeout, Cancellation cancellation) {
+        ExecutionResult compileResult;
+        if (sandbox == null) {
+            compileResult = runCold(runtime, sandboxId, workDir, timeout, runtime.getCompile(), null, null, cancellation);
+        } else if (cancellation == null) {
+            compileResult = containerPool.getBackend().exec(sandbox, runtime.getCompile(), null, timeout);
+        } else {
+            try (Cancellation.Registration registration = cancellation.onCancel(() -> containerPool.getBackend().kill(sandbox))) {
+                compileResult = containerPool.getBackend().exec(sandbox, runtime.getCompile(), null, timeout);
             }
-            return output.toString();
         }
+        compileResult.setCompileTime(compileResult.getExecutionTime());
+        if (Integer.valueOf(0).equals(compileResult.getExitCode()) && !Boolean.TRUE.equals(compileResult.getTimedOut())) {
+            storeCompiledArtifacts(runtime, code, workDir);
+        }
+        return compileResult;
+    }
+    
+    /**
+     * @return Whether {@link #executeBatch} runs the cases of this language in one sandbox; if not,
+     *         it runs them one after the other and callers may rather run them in parallel
+     */
+    public boolean supportsBatch(LanguageType language) {
+        if (language == LanguageType.SQL) {
+            return false;
+        }
+        LanguageRuntime runtime = runtimeRegistry.get(language);
+        return runtime == null || runtime.isBatched();
+    }
+    
+    /**
+     * Result of an execution that was cancelled before it started
+     */
+    public static ExecutionResult cancelled() {
+        return ExecutionResult.builder()
+            .stdout("")
+            .stderr("Cancelled: another test case already failed")
+            .executionTime(0L)
+            .exitCode(CANCELLED_EXIT_CODE)
+            .timedOut(false)
+            .cancelled(true)
+            .build();
+    }
+    
+    private static ExecutionResult unsupported(LanguageType language) {
+        return ExecutionResult.builder()
+            .stdout("")
+            .stderr("Unsupported language: " + language)
+            .executionTime(0L)
+            .exitCode(-1)
+            .timedOut(false)
+            .build();
+    }
+    
+    private long getMaxOutputBytes() {
+        return appProperties.getSandbox().getMaxOutputBytes();
     }
     
     @lombok.Builder
@@ -580,5 +809,55 @@ public class DockerService {
         private Long executionTime;
         private Integer exitCode;
         private Boolean timedOut;
+        private Long outputSize; // bytes written to stdout, including any truncated part
+        // Measured inside the sandbox, null where a step did not run or could not be measured
+        private Long compileTime; // milliseconds of the compile step
+        private Long runTime; // milliseconds of the run step, without container start-up
+        private Long cpuUserTime; // milliseconds of user CPU time of the run step
+        private Long cpuSystemTime; // milliseconds of system CPU time of the run step
+        private Long peakMemoryKb; // peak memory of the run step, see StepUsage
+        private Boolean cancelled; // true if stopped by a Cancellation before it finished
+        private Boolean outputRejected; // true if stopped early because its output could not be accepted anymore
+        private Verdict verdict; // set once the run was graded as a test case, so it is not checked twice
+    }
+    
+    @lombok.Builder
+    @lombok.Data
+    public static class BatchExecutionResult {
+        private ExecutionResult compileResult; // null for languages without a compile step
+        private List<ExecutionResult> caseResults; // empty if compilation failed
+        private Long executionTime;
+        
+        public boolean isCompileSuccessful() {
+            return compileResult == null || Integer.valueOf(0).equals(compileResult.getExitCode());
+        }
+        
+        /**
+         * @return Sum of the cases' run times, null if none was measured
+         */
+        public Long totalRunTime() {
+            return sum(ExecutionResult::getRunTime);
+        }
+        
+        public Long totalCpuUserTime() {
+            return sum(ExecutionResult::getCpuUserTime);
+        }
+        
+        public Long totalCpuSystemTime() {
+            return sum(ExecutionResult::getCpuSystemTime);
+        }
+        
+        /**
+         * @return Highest peak memory of the cases, null if none was measured
+         */
+        public Long maxPeakMemoryKb() {
+            return caseResults.stream().map(ExecutionResult::getPeakMemoryKb).filter(Objects::nonNull)
+                .max(Long::compare).orElse(null);
+        }
+        
+        private Long sum(Function<ExecutionResult, Long> value) {
+            return caseResults.stream().map(value).filter(Objects::nonNull)
+                .reduce(Long::sum).orElse(null);
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.model.entity.ExpectedOutputEntity;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.repository.ExpectedOutputRepository;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
+import com.anita.multipleauthapi.service.util.HashUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stores the output of a question's compareCode so it is executed once per
+ * (question, updatedAt, input) instead of once per submission
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpectedOutputService {
+    private final ExpectedOutputRepository expectedOutputRepository;
+    private final DockerService dockerService;
+    private final ExecutionScheduler executionScheduler;
+
+    private final ExecutorService precomputeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expected-output-precompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Get the compareCode output for the given input, executing the compareCode only on a store miss
+     *
+     * @param question  Question with isCompare enabled
+     * @param inputData Input data passed to the compareCode
+     * @param timeout   Execution timeout in seconds
+     * @return Execution result of the compareCode (served from the store when possible)
+     */
+    public DockerService.ExecutionResult getExpectedOutput(QuestionEntity question, String inputData, int timeout) {
+        UUID id = storeId(question, inputData);
+        Optional<ExpectedOutputEntity> stored = expectedOutputRepository.findById(id);
+        if (stored.isPresent()) {
+            log.info("Using stored expected output for question {}", question.getId());
+            return DockerService.ExecutionResult.builder()
+                    .stdout(stored.get().getOutput())
+                    .stderr("")
+                    .executionTime(0L)
+                    .exitCode(0)
+                    .timedOut(false)
+                    .build();
+        }
+
+        DockerService.ExecutionResult result = dockerService.executeCode(
+                question.getLanguage(),
+                question.getCompareCode(),
+                question.getInitialCode(),
+                inputData,
+                timeout
+        );
+
+        // Failed or timed-out runs are not materialized, the next submission retries them
+        if (Integer.valueOf(0).equals(result.getExitCode()) && !Boolean.TRUE.equals(result.getTimedOut())) {
+            expectedOutputRepository.insertIfAbsent(
+                    id,
+                    question.getId(),
+                    question.getUpdatedAt(),
+                    HashUtils.sha256(inputData),
+                    result.getStdout(),
+                    String.valueOf(System.currentTimeMillis())
+            );
+        }
+        return result;
+    }
+
+    /**
+     * Drop every stored output of the question and, if it compares against a reference
+     * solution, compute the output for its current input in the background
+     *
+     * @param question Question that was created or updated
+     */
+    public void refresh(QuestionEntity question) {
+        invalidate(question.getId());
+        if (Boolean.TRUE.equals(question.getIsCompare()) && question.getCompareCode() != null) {
+            precomputeExecutor.execute(() -> {
+                // Runs during grading use the submission's slot, only background runs queue in the compare lane
+                try (ExecutionScheduler.Permit permit = executionScheduler.await(null, ExecutionScheduler.Lane.COMPARE)) {
+                    getExpectedOutput(question, question.getInputData(), SubmissionService.DEFAULT_TIMEOUT_SECONDS);
+                } catch (Exception e) {
+                    log.warn("Failed to precompute expected output for question {}: {}", question.getId(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop every stored output of the question
+     *
+     * @param questionId Question ID
+     */
+    public void invalidate(UUID questionId) {
+        int deleted = expectedOutputRepository.deleteByQuestionId(questionId);
+        if (deleted > 0) {
+            log.info("Invalidated {} stored expected outputs for question {}", deleted, questionId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        precomputeExecutor.shutdownNow();
+    }
+
+    /**
+     * Deterministic row id, so concurrent misses for the same key overwrite one row instead of adding duplicates
+     */
+    private UUID storeId(QuestionEntity question, String inputData) {
+        String key = HashUtils.sha256(String.valueOf(question.getId()), question.getUpdatedAt(), inputData);
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
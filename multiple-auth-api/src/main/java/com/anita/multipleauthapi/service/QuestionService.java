@@ -1,6 +1,7 @@
 package com.anita.multipleauthapi.service;
 
 import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.CheckerType;
 import com.anita.multipleauthapi.model.entity.CourseEntity;
 import com.anita.multipleauthapi.model.entity.QuestionEntity;
 import com.anita.multipleauthapi.model.entity.RelationsEntity;
@@ -8,11 +9,14 @@ import com.anita.multipleauthapi.model.entity.UserEntity;
 import com.anita.multipleauthapi.model.enums.EntityType;
 import com.anita.multipleauthapi.model.enums.RelationsType;
 import com.anita.multipleauthapi.model.enums.StatusType;
+import com.anita.multipleauthapi.model.error.BadRequestException;
 import com.anita.multipleauthapi.model.payload.QuestionRequest;
 import com.anita.multipleauthapi.model.payload.QuestionResponse;
 import com.anita.multipleauthapi.model.payload.QuestionWithScoreResponse;
 import com.anita.multipleauthapi.repository.*;
 import com.anita.multipleauthapi.security.UserPrincipal;
+import com.anita.multipleauthapi.service.grading.OutputCheckers;
+import com.anita.multipleauthapi.service.sql.EmbeddedSqlEngine;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -20,6 +24,7 @@ import org.springframework.util.StringUtils;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -37,6 +42,12 @@ public class QuestionService {
     private RelationsEntityRepository relationsEntityRepository;
     @Autowired
     private SubmissionRepository submissionRepository;
+    @Autowired
+    private ExpectedOutputService expectedOutputService;
+    @Autowired
+    private RegradeService regradeService;
+    @Autowired
+    private EmbeddedSqlEngine sqlEngine;
 
     /**
      * Get all questions
@@ -140,6 +151,7 @@ public class QuestionService {
      * @return The created question
      */
     public QuestionResponse createQuestion(QuestionRequest questionRequest, UserPrincipal createdBy) {
+        validateChecker(questionRequest.getChecker(), questionRequest.getLanguage());
         Optional<UserEntity> optionalUserEntity = userRepository.findById(createdBy.getId());
         
         // Use courseId from request if provided, otherwise use the one from UserPrincipal
@@ -161,6 +173,11 @@ public class QuestionService {
                         .inputData(questionRequest.getInputData())
                         .testCases(questionRequest.getTestCases())
                         .isTestCase(questionRequest.getIsTestCase())
+                        .partialCredit(questionRequest.getPartialCredit())
+                        .reuseVerdicts(questionRequest.getReuseVerdicts())
+                        .checker(questionRequest.getChecker())
+                        .checkerEpsilon(questionRequest.getCheckerEpsilon())
+                        .checkerCode(questionRequest.getCheckerCode())
                         .isCompare(questionRequest.getIsCompare())
                         .compareCode(questionRequest.getCompareCode())
                         .isActive(questionRequest.getIsActive())
@@ -177,6 +194,8 @@ public class QuestionService {
                         .toType(EntityType.COURSE)
                         .relationType(RelationsType.CONTAINS_TYPE)
                         .build());
+                // Materialize the reference output ahead of the first submission
+                expectedOutputService.refresh(savedQuestion);
                 return mapToQuestionResponse(savedQuestion);
             } else {
                 throw new RuntimeException("Course id " + createdBy.getCourseId() + " does not exist");
@@ -187,6 +206,15 @@ public class QuestionService {
 
     }
     
+    /**
+     * @throws BadRequestException if the question asks for a custom checker its language cannot run
+     */
+    private static void validateChecker(CheckerType checker, LanguageType language) {
+        if (checker == CheckerType.CUSTOM && !OutputCheckers.supportsCustom(language)) {
+            throw new BadRequestException("A custom checker cannot be written in " + language);
+        }
+    }
+    
     /**
      * Update a question by its ID
      * @param questionId The ID of the question to update
@@ -198,6 +226,10 @@ public class QuestionService {
     public QuestionResponse updateQuestion(UUID questionId, QuestionRequest questionRequest, UUID userId) {
         QuestionEntity existingQuestion = questionRepository.findById(questionId)
                 .orElseThrow(() -> new RuntimeException("Question not found with ID: " + questionId));
+        validateChecker(questionRequest.getChecker() != null ? questionRequest.getChecker() : existingQuestion.getChecker(),
+                questionRequest.getLanguage());
+        String previousInitialCode = existingQuestion.getInitialCode();
+        RegradeService.Snapshot previousGrading = RegradeService.Snapshot.of(existingQuestion);
         
         // Update the question fields
         existingQuestion.setTitle(questionRequest.getTitle());
@@ -209,10 +241,32 @@ public class QuestionService {
         existingQuestion.setInputData(questionRequest.getInputData());
         existingQuestion.setTestCases(questionRequest.getTestCases());
         existingQuestion.setIsTestCase(questionRequest.getIsTestCase());
+        // Not sent by the edit form; dropping it would turn the next regrade all-or-nothing
+        if (questionRequest.getPartialCredit() != null) {
+            existingQuestion.setPartialCredit(questionRequest.getPartialCredit());
+        }
+        // Set through its own endpoint and not sent by the edit form
+        if (questionRequest.getReuseVerdicts() != null) {
+            existingQuestion.setReuseVerdicts(questionRequest.getReuseVerdicts());
+        }
+        // The edit form does not send the checker; only a request that names one replaces it
+        if (questionRequest.getChecker() != null) {
+            existingQuestion.setChecker(questionRequest.getChecker());
+            existingQuestion.setCheckerEpsilon(questionRequest.getCheckerEpsilon());
+            existingQuestion.setCheckerCode(questionRequest.getCheckerCode());
+        }
         existingQuestion.setIsCompare(questionRequest.getIsCompare());
         existingQuestion.setCompareCode(questionRequest.getCompareCode());
         existingQuestion.setUpdatedAt(String.valueOf(System.currentTimeMillis()));
         QuestionEntity updatedQuestion = questionRepository.save(existingQuestion);
+        // The seeded database of the old initial code is not needed anymore
+        if (!Objects.equals(previousInitialCode, updatedQuestion.getInitialCode())) {
+            sqlEngine.invalidate(previousInitialCode);
+        }
+        // Stored reference outputs belong to the previous version of the question
+        expectedOutputService.refresh(updatedQuestion);
+        // Stored scores may no longer match the test cases
+        regradeService.onQuestionUpdated(previousGrading, updatedQuestion);
         return mapToQuestionResponse(updatedQuestion);
     }
     
@@ -221,7 +275,10 @@ public class QuestionService {
      * @param questionId The ID of the question to delete
      */
     public void deleteQuestion(UUID questionId) {
+        questionRepository.findById(questionId)
+                .ifPresent(question -> sqlEngine.invalidate(question.getInitialCode()));
         questionRepository.deleteById(questionId);
+        expectedOutputService.invalidate(questionId);
     }
     
     /**
@@ -251,6 +308,22 @@ public class QuestionService {
         questionRepository.save(question);
     }
     
+    /**
+     * Turn reusing verdicts of identical earlier submissions on or off for a question, e.g. for
+     * questions whose programs are not deterministic. Leaves updatedAt alone, so fingerprints
+     * of the current question version stay valid.
+     * @param questionId The ID of the question
+     * @param enabled Whether repeated submissions may reuse an earlier verdict
+     * @throws RuntimeException if the question doesn't exist
+     */
+    public void setReuseVerdicts(UUID questionId, boolean enabled) {
+        QuestionEntity question = questionRepository.findById(questionId)
+                .orElseThrow(() -> new RuntimeException("Question not found with ID: " + questionId));
+        
+        question.setReuseVerdicts(enabled);
+        questionRepository.save(question);
+    }
+    
     /**
      * Deactivate a question by its ID
      * @param questionId The ID of the question to deactivate
@@ -283,6 +356,11 @@ public class QuestionService {
                 .inputData(entity.getInputData())
                 .testCases(entity.getTestCases())
                 .isTestCase(entity.getIsTestCase())
+                .partialCredit(entity.getPartialCredit())
+                .reuseVerdicts(entity.getReuseVerdicts())
+                .checker(entity.getChecker())
+                .checkerEpsilon(entity.getCheckerEpsilon())
+                .checkerCode(entity.getCheckerCode())
                 .pass(entity.getPass())
                 .isCompare(entity.getIsCompare())
                 .compareCode(entity.getCompareCode())
@@ -311,6 +389,11 @@ public class QuestionService {
                 .inputData(entity.getInputData())
                 .testCases(entity.getTestCases())
                 .isTestCase(entity.getIsTestCase())
+                .partialCredit(entity.getPartialCredit())
+                .reuseVerdicts(entity.getReuseVerdicts())
+                .checker(entity.getChecker())
+                .checkerEpsilon(entity.getCheckerEpsilon())
+                .checkerCode(entity.getCheckerCode())
                 .pass(entity.getPass())
                 .isCompare(entity.getIsCompare())
                 .compareCode(entity.getCompareCode())
@@ -0,0 +1,370 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.model.CheckerType;
+import com.anita.multipleauthapi.model.Verdict;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionEntity;
+import com.anita.multipleauthapi.repository.SubmissionCaseResultRepository;
+import com.anita.multipleauthapi.repository.SubmissionRepository;
+import com.anita.multipleauthapi.service.grading.CaseGrader;
+import com.anita.multipleauthapi.service.grading.GradingCase;
+import com.anita.multipleauthapi.service.grading.GradingCases;
+import com.anita.multipleauthapi.service.grading.OutputChecker;
+import com.anita.multipleauthapi.service.grading.OutputCheckers;
+import com.anita.multipleauthapi.service.grading.TestCaseDiff;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
+import com.anita.multipleauthapi.service.util.HashUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Re-grades the completed submissions of a question after its test cases changed. Verdicts are
+ * stored with the content hash of their case, so only cases that are new or whose input or
+ * expected output changed are run again; everything else, including re-weighted cases, is
+ * re-scored from the stored verdicts. A changed output checker makes every stored verdict stale.
+ * When the last test case is removed, the submissions are graded again from the start by the
+ * question's answer or comparison code. Re-grading by test cases keeps the stored program output;
+ * every re-grade records when it happened.
+ * Submissions with identical code are run once and updated together. Jobs run one at a time in
+ * the lowest scheduler lane, so live grading always goes first.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RegradeService {
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionCaseResultRepository caseResultRepository;
+    private final DockerService dockerService;
+    private final ExecutionScheduler executionScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final AppProperties appProperties;
+    private final OutputCheckers outputCheckers;
+    private final SubmissionService submissionService;
+
+    private final ExecutorService regradeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "regrade");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Latest job per question, oldest first; guarded by this
+    private final Map<UUID, RegradeProgress> jobs = new LinkedHashMap<>();
+
+    /**
+     * The grading-relevant part of a question, taken before an update overwrites it
+     */
+    public record Snapshot(String testCases, Boolean isTestCase, Boolean partialCredit,
+                           CheckerType checker, Double checkerEpsilon, String checkerCode) {
+        public static Snapshot of(QuestionEntity question) {
+            return new Snapshot(question.getTestCases(), question.getIsTestCase(), question.getPartialCredit(),
+                    question.getChecker(), question.getCheckerEpsilon(), question.getCheckerCode());
+        }
+
+        /**
+         * Whether outputs are judged differently, which makes every stored verdict stale
+         */
+        boolean checksOtherwiseThan(Snapshot other) {
+            return checker != other.checker
+                    || !Objects.equals(checkerEpsilon, other.checkerEpsilon)
+                    || !Objects.equals(checkerCode, other.checkerCode);
+        }
+    }
+
+    /**
+     * Start re-grading the question's submissions in the background if its test cases or their
+     * scoring changed. A job still running for the question is abandoned in favour of the new one.
+     *
+     * @param before   Snapshot of the question before the update
+     * @param question Question as saved
+     */
+    public void onQuestionUpdated(Snapshot before, QuestionEntity question) {
+        if (!appProperties.getRegrade().isEnabled()) {
+            return;
+        }
+        if (!GradingCases.hasTestCases(question)) {
+            // Grades from cases that are gone would stand, so grade by the answer or comparison instead
+            List<GradingCase> removed = previousCases(before);
+            if (!removed.isEmpty()) {
+                RegradeProgress job = startJob(question.getId(), TestCaseDiff.between(removed, List.of()));
+                regradeExecutor.execute(() -> run(job, submissions -> regradeWithoutCases(job, submissions)));
+            }
+            return;
+        }
+        List<GradingCase> cases;
+        try {
+            cases = GradingCases.parse(question, objectMapper);
+        } catch (JsonProcessingException e) {
+            log.warn("Not re-grading question {}, its test cases cannot be read: {}", question.getId(), e.getMessage());
+            return;
+        }
+        TestCaseDiff diff = TestCaseDiff.between(previousCases(before), cases);
+        boolean partialCredit = Boolean.TRUE.equals(question.getPartialCredit());
+        boolean checkerChanged = Snapshot.of(question).checksOtherwiseThan(before);
+        if (!diff.affectsScores() && !checkerChanged && partialCredit == Boolean.TRUE.equals(before.partialCredit())) {
+            return;
+        }
+
+        RegradeProgress job = startJob(question.getId(), diff);
+        String initialCode = question.getInitialCode();
+        OutputChecker checker = outputCheckers.forQuestion(question);
+        regradeExecutor.execute(() -> run(job,
+                submissions -> regrade(job, initialCode, submissions, cases, checker, checkerChanged, partialCredit)));
+    }
+
+    /**
+     * Registers a job as the question's latest, abandoning one still running
+     */
+    private RegradeProgress startJob(UUID questionId, TestCaseDiff diff) {
+        RegradeProgress job = RegradeProgress.builder()
+                .jobId(UUID.randomUUID())
+                .questionId(questionId)
+                .status(RegradeProgress.QUEUED)
+                .added(diff.getAdded())
+                .changed(diff.getChanged())
+                .removed(diff.getRemoved())
+                .reweighted(diff.getReweighted())
+                .build();
+        synchronized (this) {
+            jobs.remove(questionId);
+            jobs.put(questionId, job);
+            trimFinishedJobs();
+        }
+        log.info("Re-grading question {}: {} added, {} changed, {} removed, {} re-weighted test cases",
+                questionId, diff.getAdded(), diff.getChanged(), diff.getRemoved(), diff.getReweighted());
+        return job;
+    }
+
+    /**
+     * @return Progress of the question's latest re-grade, null if there was none
+     */
+    public synchronized RegradeProgress getProgress(UUID questionId) {
+        RegradeProgress job = jobs.get(questionId);
+        return job != null ? job.toBuilder().build() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        regradeExecutor.shutdownNow();
+    }
+
+    private List<GradingCase> previousCases(Snapshot before) {
+        if (before.testCases() == null || before.testCases().trim().isEmpty()) {
+            return List.of();
+        }
+        try {
+            return GradingCases.parse(before.testCases(), Boolean.TRUE.equals(before.isTestCase()), objectMapper);
+        } catch (JsonProcessingException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * @param regrade Re-grades submissions that share the same code
+     */
+    private void run(RegradeProgress job, Consumer<List<SubmissionEntity>> regrade) {
+        if (isSuperseded(job)) {
+            return;
+        }
+        update(job, progress -> {
+            progress.setStatus(RegradeProgress.RUNNING);
+            progress.setStartedAt(LocalDateTime.now().toString());
+        });
+        try {
+            Map<String, List<SubmissionEntity>> byCode = submissionRepository
+                    .findByQuestionIdAndStatus(job.getQuestionId(), "COMPLETED").stream()
+                    .filter(submission -> submission.getCode() != null)
+                    .collect(Collectors.groupingBy(
+                            submission -> HashUtils.sha256(String.valueOf(submission.getLanguage()), submission.getCode()),
+                            LinkedHashMap::new,
+                            Collectors.toList()));
+            update(job, progress -> {
+                progress.setTotalSubmissions(byCode.values().stream().mapToInt(List::size).sum());
+                progress.setDistinctCodes(byCode.size());
+            });
+
+            for (List<SubmissionEntity> submissions : byCode.values()) {
+                if (isSuperseded(job)) {
+                    update(job, progress -> progress.setStatus(RegradeProgress.CANCELLED));
+                    return;
+                }
+                try {
+                    regrade.accept(submissions);
+                } catch (Exception e) {
+                    log.error("Failed to re-grade submission {}: {}", submissions.get(0).getId(), e.getMessage(), e);
+                    update(job, progress -> progress.setFailedCodes(progress.getFailedCodes() + 1));
+                }
+                update(job, progress -> progress.setProcessedCodes(progress.getProcessedCodes() + 1));
+                Thread.sleep(appProperties.getRegrade().getPauseMsec());
+            }
+            update(job, progress -> progress.setStatus(RegradeProgress.COMPLETED));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            update(job, progress -> progress.setStatus(RegradeProgress.CANCELLED));
+        } catch (Exception e) {
+            log.error("Re-grade of question {} failed: {}", job.getQuestionId(), e.getMessage(), e);
+            update(job, progress -> {
+                progress.setStatus(RegradeProgress.FAILED);
+                progress.setError(e.getMessage());
+            });
+        } finally {
+            update(job, progress -> progress.setFinishedAt(LocalDateTime.now().toString()));
+        }
+    }
+
+    /**
+     * Grade submissions of a question that no longer has test cases from the start, one by one
+     * since the answer is checked against each submission's own input
+     */
+    private void regradeWithoutCases(RegradeProgress job, List<SubmissionEntity> submissions) {
+        for (SubmissionEntity submission : submissions) {
+            if (isSuperseded(job)) {
+                return;
+            }
+            if (submissionService.regradeSubmission(submission.getId())) {
+                update(job, progress -> progress.setUpdatedSubmissions(progress.getUpdatedSubmissions() + 1));
+            }
+        }
+    }
+
+    /**
+     * @param rerunAll Whether stored verdicts are stale, because outputs are checked differently now
+     */
+    /**
+     * Re-grade submissions that share the same code, running only cases no stored verdict covers
+     */
+    private void regrade(RegradeProgress job, String initialCode, List<SubmissionEntity> submissions, List<GradingCase> cases,
+                         OutputChecker checker, boolean rerunAll, boolean partialCredit) {
+        List<UUID> ids = submissions.stream().map(SubmissionEntity::getId).collect(Collectors.toList());
+        // Cut-short cases have no verdict worth keeping
+        Map<String, SubmissionCaseResultEntity> stored = new HashMap<>();
+        List<SubmissionCaseResultEntity> previous = rerunAll ? List.of() : caseResultRepository.findBySubmissionIdIn(ids);
+        for (SubmissionCaseResultEntity result : previous) {
+            if (result.getCaseHash() != null && result.getVerdict() != Verdict.SKIPPED) {
+                stored.putIfAbsent(result.getCaseHash(), result);
+            }
+        }
+
+        List<GradingCase> missing = cases.stream()
+                .filter(gradingCase -> !stored.containsKey(gradingCase.contentHash()))
+                .collect(Collectors.toList());
+        Map<String, SubmissionCaseResultEntity> fresh = new HashMap<>();
+        if (!missing.isEmpty()) {
+            SubmissionEntity sample = submissions.get(0);
+            // A custom checker runs in a sandbox as well, so grading keeps the permit
+            try (ExecutionScheduler.Permit permit = executionScheduler.await(null, ExecutionScheduler.Lane.REGRADE)) {
+                DockerService.BatchExecutionResult batch = dockerService.executeBatch(sample.getLanguage(), sample.getCode(), initialCode,
+                        missing.stream().map(GradingCase::getInput).collect(Collectors.toList()),
+                        SubmissionService.DEFAULT_TIMEOUT_SECONDS);
+                for (SubmissionCaseResultEntity result : CaseGrader.grade(batch, missing, checker)) {
+                    fresh.putIfAbsent(result.getCaseHash(), result);
+                }
+            }
+        }
+
+        List<SubmissionCaseResultEntity> verdicts = new ArrayList<>();
+        for (GradingCase gradingCase : cases) {
+            String hash = gradingCase.contentHash();
+            verdicts.add(stored.containsKey(hash) ? stored.get(hash) : fresh.get(hash));
+        }
+        List<SubmissionCaseResultEntity> results = reindex(verdicts, cases);
+        int passed = CaseGrader.countPassed(results);
+        int score = partialCredit ? CaseGrader.score(results) : CaseGrader.allPassed(results) ? 100 : 0;
+        String regradedAt = String.valueOf(System.currentTimeMillis());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            submissionRepository.updateGrades(ids, score, passed, results.size(), regradedAt);
+            caseResultRepository.deleteBySubmissionIdIn(ids);
+            List<SubmissionCaseResultEntity> rows = new ArrayList<>();
+            for (UUID id : ids) {
+                for (SubmissionCaseResultEntity row : reindex(verdicts, cases)) {
+                    row.setSubmissionId(id);
+                    rows.add(row);
+                }
+            }
+            caseResultRepository.saveAll(rows);
+        });
+        update(job, progress -> {
+            progress.setUpdatedSubmissions(progress.getUpdatedSubmissions() + ids.size());
+            progress.setCasesRun(progress.getCasesRun() + missing.size());
+            progress.setCasesReused(progress.getCasesReused() + cases.size() - missing.size());
+        });
+    }
+
+    private static List<SubmissionCaseResultEntity> reindex(List<SubmissionCaseResultEntity> verdicts, List<GradingCase> cases) {
+        List<SubmissionCaseResultEntity> results = new ArrayList<>();
+        for (int i = 0; i < cases.size(); i++) {
+            results.add(CaseGrader.reuse(verdicts.get(i), cases.get(i), i));
+        }
+        return results;
+    }
+
+    private synchronized boolean isSuperseded(RegradeProgress job) {
+        return jobs.get(job.getQuestionId()) != job;
+    }
+
+    private synchronized void update(RegradeProgress job, Consumer<RegradeProgress> change) {
+        change.accept(job);
+    }
+
+    private void trimFinishedJobs() {
+        int finished = (int) jobs.values().stream().filter(job -> job.getFinishedAt() != null).count();
+        Iterator<RegradeProgress> iterator = jobs.values().iterator();
+        while (finished > appProperties.getRegrade().getKeepFinishedJobs() && iterator.hasNext()) {
+            if (iterator.next().getFinishedAt() != null) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    @Data
+    @Builder(toBuilder = true)
+    public static class RegradeProgress {
+        public static final String QUEUED = "QUEUED";
+        public static final String RUNNING = "RUNNING";
+        public static final String COMPLETED = "COMPLETED";
+        public static final String CANCELLED = "CANCELLED"; // superseded by a later edit or shut down
+        public static final String FAILED = "FAILED";
+
+        private UUID jobId;
+        private UUID questionId;
+        private String status;
+        private int added;
+        private int changed;
+        private int removed;
+        private int reweighted;
+        private int totalSubmissions;
+        private int distinctCodes;
+        private int processedCodes;
+        private int failedCodes;
+        private int updatedSubmissions;
+        private int casesRun; // distinct code x case runs
+        private int casesReused;
+        private String startedAt;
+        private String finishedAt;
+        private String error;
+    }
+}
@@ -0,0 +1,138 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded work queue for grading submissions off the request threads,
+ * plus the server-sent-event subscribers waiting for their results
+ */
+@Slf4j
+@Component
+public class SubmissionQueue {
+    private final ThreadPoolExecutor executor;
+    private final long sseTimeoutMsec;
+    private final Map<UUID, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    public SubmissionQueue(AppProperties appProperties) {
+        AppProperties.Submission config = appProperties.getSubmission();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                config.getWorkers(), config.getWorkers(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "submission-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.sseTimeoutMsec = config.getSseTimeoutMsec();
+    }
+
+    /**
+     * Queue a grading job
+     *
+     * @param submissionId Submission being graded
+     * @param job          Grading job
+     * @return false if the queue is full
+     */
+    public boolean submit(UUID submissionId, Runnable job) {
+        try {
+            executor.execute(() -> {
+                try {
+                    job.run();
+                } catch (Exception e) {
+                    log.error("Grading job for submission {} failed: {}", submissionId, e.getMessage(), e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Submission queue is full, rejecting submission {}", submissionId);
+            return false;
+        }
+    }
+
+    /**
+     * Register a server-sent-event stream for a submission.
+     * The stream is completed after the final result has been published.
+     */
+    public SseEmitter subscribe(UUID submissionId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMsec);
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(submissionId, key -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        Runnable remove = () -> emitters.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    /**
+     * Send a status update to every subscriber of the submission
+     *
+     * @param submissionId Submission ID
+     * @param payload      Event data
+     * @param terminal     true for the final result; subscribers are completed afterwards
+     */
+    public void publish(UUID submissionId, Object payload, boolean terminal) {
+        List<SseEmitter> emitters = terminal ? subscribers.remove(submissionId) : subscribers.get(submissionId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(payload));
+                if (terminal) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    public QueueStats getStats() {
+        return QueueStats.builder()
+                .workers(executor.getMaximumPoolSize())
+                .active(executor.getActiveCount())
+                .queued(executor.getQueue().size())
+                .remainingCapacity(executor.getQueue().remainingCapacity())
+                .completed(executor.getCompletedTaskCount())
+                .subscribers(subscribers.values().stream().mapToInt(List::size).sum())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Data
+    @Builder
+    public static class QueueStats {
+        private int workers;
+        private int active;
+        private int queued;
+        private int remainingCapacity;
+        private long completed;
+        private int subscribers;
+    }
+}
@@ -9,20 +9,41 @@ import com.anita.multipleauthapi.model.entity.UserEntity;
 import com.anita.multipleauthapi.model.payload.DebugResponse;
 import com.anita.multipleauthapi.model.payload.SubmissionResponse;
 import com.anita.multipleauthapi.model.TestCase;
+import com.anita.multipleauthapi.model.Verdict;
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import com.anita.multipleauthapi.model.payload.CaseResultResponse;
 import com.anita.multipleauthapi.repository.QuestionRepository;
+import com.anita.multipleauthapi.repository.SubmissionCaseResultRepository;
 import com.anita.multipleauthapi.repository.SubmissionRepository;
 import com.anita.multipleauthapi.repository.UserRepository;
 import com.anita.multipleauthapi.security.UserPrincipal;
+import com.anita.multipleauthapi.service.grading.CaseGrader;
+import com.anita.multipleauthapi.service.grading.CodeFingerprint;
+import com.anita.multipleauthapi.service.grading.GradingCase;
+import com.anita.multipleauthapi.service.grading.GradingCases;
+import com.anita.multipleauthapi.service.grading.OutputChecker;
+import com.anita.multipleauthapi.service.grading.OutputCheckers;
+import com.anita.multipleauthapi.service.grading.StreamingCheck;
+import com.anita.multipleauthapi.service.sandbox.CaseFanOut;
+import com.anita.multipleauthapi.service.sandbox.Cancellation;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -31,23 +52,35 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SubmissionService {
     private final SubmissionRepository submissionRepository;
+    private final SubmissionCaseResultRepository caseResultRepository;
     private final QuestionRepository questionRepository;
     private final DockerService dockerService;
     private final UserRepository userRepository;
     private final UserService userService;
     private final ObjectMapper objectMapper;
+    private final ExpectedOutputService expectedOutputService;
+    private final SubmissionQueue submissionQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final VerdictReuseService verdictReuseService;
+    private final ExecutionScheduler executionScheduler;
+    private final CaseFanOut caseFanOut;
+    private final OutputCheckers outputCheckers;
     
-    private static final int DEFAULT_TIMEOUT_SECONDS = 10;
-    private static final int DEBUG_TIMEOUT_SECONDS = 15;
+    static final int DEFAULT_TIMEOUT_SECONDS = 10;
+    static final int DEBUG_TIMEOUT_SECONDS = 15;
 
     /**
      * Debug code without saving to database
      * 
+     * @param userPrincipal Current user, charged against the execution rate limit
      * @param debugRequest Debug request containing code and language
      * @return Debug response with execution results
      */
-    public DebugResponse debugCode(DebugRequest debugRequest) {
-        try {
+    public DebugResponse debugCode(UserPrincipal userPrincipal, DebugRequest debugRequest) {
+        // Rejected with 429 before any sandbox is started
+        ExecutionScheduler.Permit permit = executionScheduler.admit(
+                userPrincipal.getId(), userPrincipal.getCourseId(), ExecutionScheduler.Lane.DEBUG);
+        try (permit) {
             log.info("Debugging code with language: {}", debugRequest.getLanguage());
             log.info("Input data provided: '{}'", debugRequest.getInputData());
             log.info("Code to execute: {}", debugRequest.getCode());
@@ -93,13 +126,16 @@ public class SubmissionService {
     /**
      * Debug code for a specific question without submitting
      * 
+     * @param userPrincipal Current user, charged against the execution rate limit
      * @param questionId ID of the question to debug
      * @param userCode User code to debug
      * @param language Language of the code
      * @return Debug response with execution results
      */
-    public DebugResponse debugQuestionCode(UUID questionId, String userCode, LanguageType language) {
-        try {
+    public DebugResponse debugQuestionCode(UserPrincipal userPrincipal, UUID questionId, String userCode, LanguageType language) {
+        ExecutionScheduler.Permit permit = executionScheduler.admit(
+                userPrincipal.getId(), userPrincipal.getCourseId(), ExecutionScheduler.Lane.DEBUG);
+        try (permit) {
             // Get the question
             QuestionEntity question = questionRepository.findById(questionId)
                     .orElseThrow(() -> new EntityNotFoundException("Question not found with ID: " + questionId));
@@ -163,234 +199,345 @@ public class SubmissionService {
     /**
      * Execute code against multiple test cases
      * 
-     * @param language Programming language
-     * @param code User code to execute
+     * @param submission Submission whose code is run; receives the measurements of the runs
      * @param initialCode Initial code (if any)
      * @param testCases List of test cases
+     * @param partialCredit Whether every case is run; otherwise grading stops at the first failing case
      * @param timeout Execution timeout
-     * @return True if all test cases pass, false otherwise
+     * @return Verdict of each test case, empty if they could not be run
      */
-    private boolean executeTestCases(LanguageType language, String code, String initialCode, List<TestCase> testCases, int timeout) {
+    private List<SubmissionCaseResultEntity> executeTestCases(SubmissionEntity submission, String initialCode, List<TestCase> testCases,
+                                                              boolean partialCredit, int timeout) {
         log.info("Executing {} test cases", testCases.size());
         
-        for (int i = 0; i < testCases.size(); i++) {
-            TestCase testCase = testCases.get(i);
-            String inputData = testCase.getInputAsString();
-            String expectedOutput = testCase.getOutput().trim();
-            
-            log.info("Running test case {}: input='{}', expected='{}'", i + 1, inputData, expectedOutput);
-            
-            try {
-                DockerService.ExecutionResult result = dockerService.executeCode(
-                        language, code, initialCode, inputData, timeout
-                );
-                
-                String actualOutput = result.getStdout().trim();
-                log.info("Test case {} result: actual='{}', expected='{}'", i + 1, actualOutput, expectedOutput);
-                
-                if (result.getExitCode() != 0) {
-                    log.info("Test case {} failed with exit code {}: {}", i + 1, result.getExitCode(), result.getStderr());
-                    return false;
-                }
-                
-                if (!actualOutput.equals(expectedOutput)) {
-                    log.info("Test case {} failed: output mismatch", i + 1);
-                    return false;
-                }
-                
-            } catch (Exception e) {
-                log.error("Error executing test case {}: {}", i + 1, e.getMessage(), e);
-                return false;
+        try {
+            List<SubmissionCaseResultEntity> caseResults = gradeCases(submission, initialCode, GradingCases.of(testCases), partialCredit, timeout);
+            for (SubmissionCaseResultEntity caseResult : caseResults) {
+                log.info("Test case {}: {}", caseResult.getCaseIndex(), caseResult.getVerdict());
             }
+            return caseResults;
+        } catch (Exception e) {
+            log.error("Error executing test cases: {}", e.getMessage(), e);
+            return List.of();
         }
-        
-        log.info("All test cases passed!");
-        return true;
     }
 
-        /**
+    /**
      * Execute test cases using inputData approach (new logic for isTestCase=true)
      * Parse testCases JSON and execute each test case using input as inputData
      * 
-     * @param language      Programming language
-     * @param code          User's code to execute
+     * @param submission    Submission whose code is run; receives the measurements of the runs
      * @param initialCode   Initial code/setup
-     * @param testCasesJson JSON string containing test cases with input and output
+     * @param testCasesJson JSON string containing test cases with input, output and an optional weight
+     * @param partialCredit Whether every case is run; otherwise grading stops at the first failing case
      * @param timeout       Execution timeout in seconds
-     * @param resultText    StringBuilder to collect test case results
-     * @return true if all test cases pass, false otherwise
+     * @param resultText    StringBuilder to collect the passed test cases
+     * @return Verdict of each test case, empty if they could not be run
      */
-    private boolean executeTestCasesWithInputData(LanguageType language, String code, String initialCode, String testCasesJson, int timeout, StringBuilder resultText) {
+    private List<SubmissionCaseResultEntity> executeTestCasesWithInputData(SubmissionEntity submission, String initialCode, String testCasesJson,
+                                                                           boolean partialCredit, int timeout, StringBuilder resultText) {
         try {
-            // Parse testCases JSON string to List<Map>
             List<Map<String, Object>> testCasesList = objectMapper.readValue(testCasesJson, 
                 new TypeReference<List<Map<String, Object>>>() {});
+            List<GradingCase> cases = GradingCases.parse(testCasesJson, true, objectMapper);
             
-            for (Map<String, Object> testCase : testCasesList) {
-                // Get input and expected output from test case
-                Object inputObj = testCase.get("input");
-                String expectedOutput = String.valueOf(testCase.get("output"));
-                
-                // Convert input to string format for dockerService.executeCode
-                String inputData = convertInputToString(inputObj);
-                
-                // Execute code with this input
-                DockerService.ExecutionResult result = dockerService.executeCode(
-                    language,
-                    code,
-                    initialCode,
-                    inputData,
-                    timeout
-                );
-                
-                // Check if execution was successful
-                if (result.getExitCode() != 0) {
-                    log.warn("Test case failed with exit code: {}, stderr: {}", result.getExitCode(), result.getStderr());
-                    return false;
-                }
-                
-                // Compare output
-                String actualOutput = result.getStdout().trim();
-                if (!actualOutput.equals(expectedOutput.trim())) {
-                    log.debug("Test case failed. Expected: '{}', Actual: '{}'", expectedOutput, actualOutput);
-                    return false;
+            List<SubmissionCaseResultEntity> caseResults = gradeCases(submission, initialCode, cases, partialCredit, timeout);
+            for (int i = 0; i < caseResults.size(); i++) {
+                if (caseResults.get(i).getVerdict() == Verdict.AC) {
+                    resultText.append(String.format("%s -> %s\n", testCasesList.get(i).get("input"), cases.get(i).getExpectedOutput()));
+                } else {
+                    log.debug("Test case {} failed: {}", i + 1, caseResults.get(i).getVerdict());
                 }
-                resultText.append(String.format("%s -> %s\n", inputObj, expectedOutput));
             }
-            
-            return true; // All test cases passed
+            return caseResults;
             
         } catch (Exception e) {
             log.error("Error parsing or executing test cases: {}", e.getMessage(), e);
-            return false;
+            return List.of();
         }
     }
-    
+
     /**
-     * Convert input object to string format suitable for dockerService.executeCode
-     * 
-     * @param inputObj Input object (can be array, single value, etc.)
-     * @return String representation of input data
+     * Runs the cases (compiled once, all inputs in one sandbox where possible) and grades each of them
+     * with the question's output checker
      */
-    private String convertInputToString(Object inputObj) {
-        if (inputObj == null) {
-            return "";
-        }
+    private List<SubmissionCaseResultEntity> gradeCases(SubmissionEntity submission, String initialCode, List<GradingCase> cases,
+                                                        boolean partialCredit, int timeout) {
+        OutputChecker checker = outputCheckers.forQuestion(submission.getQuestion());
+        DockerService.BatchExecutionResult batchResult = runTestCases(submission, initialCode, cases, checker,
+                !partialCredit, timeout);
+        recordMeasurements(submission, batchResult);
         
-        if (inputObj instanceof List) {
-            List<?> inputList = (List<?>) inputObj;
-            // Join list elements with newlines for multi-line input
-            return inputList.stream()
-                    .map(String::valueOf)
-                    .collect(Collectors.joining("\n"));
-        } else {
-            return String.valueOf(inputObj);
+        if (!batchResult.isCompileSuccessful()) {
+            log.info("Compilation failed: {}", batchResult.getCompileResult().getStderr());
         }
+        return CaseGrader.grade(batchResult, cases, checker);
     }
 
     /**
-     * Process a code submission and grade it
+     * Accept a code submission and queue it for grading
      * 
      * @param userPrincipal Current user submitting the code
      * @param questionId ID of the question being answered
      * @param submissionRequest Code submission request
-     * @return Submission response with grading results
+     * @return Submission response with PENDING status, or FAILED if the queue is full
      */
-    @Transactional
-    public SubmissionResponse processSubmission(UserPrincipal userPrincipal, UUID questionId, SubmissionRequest submissionRequest) {
-        // Get the question
-        QuestionEntity question = questionRepository.findById(questionId)
-                .orElseThrow(() -> new EntityNotFoundException("Question not found with ID: " + questionId));
-            // Create a new submission entity\
-        UserEntity userInfoById = userRepository.getById(userPrincipal.getId());
-        SubmissionEntity submission = SubmissionEntity.builder()
-                .user(userInfoById)
-                .question(question)
-                .code(submissionRequest.getCode())
-                .language(submissionRequest.getLanguage())
-                .status("PENDING")
-                .build();
+    public SubmissionResponse submitCode(UserPrincipal userPrincipal, UUID questionId, SubmissionRequest submissionRequest) {
+        executionScheduler.checkRate(userPrincipal.getId());
+
+        // Commit the PENDING row before queueing so the worker can always load it
+        SubmissionEntity submission = transactionTemplate.execute(status -> {
+            // Get the question
+            QuestionEntity question = questionRepository.findById(questionId)
+                    .orElseThrow(() -> new EntityNotFoundException("Question not found with ID: " + questionId));
+            // Create a new submission entity
+            UserEntity userInfoById = userRepository.getById(userPrincipal.getId());
+            SubmissionEntity pending = SubmissionEntity.builder()
+                    .user(userInfoById)
+                    .question(question)
+                    .code(submissionRequest.getCode())
+                    .language(submissionRequest.getLanguage())
+                    .inputData(submissionRequest.getInputData())
+                    .status("PENDING")
+                    .build();
+            pending.setCodeFingerprint(CodeFingerprint.of(pending, question));
+            SubmissionEntity saved = submissionRepository.save(pending);
+            // A repeat of code that was graded already is answered right away
+            verdictReuseService.reuse(saved, false);
+            return saved;
+        });
+        if ("COMPLETED".equals(submission.getStatus())) {
+            return mapToResponse(submission);
+        }
+
+        UUID submissionId = submission.getId();
+        if (!submissionQueue.submit(submissionId, () -> gradeSubmission(submissionId))) {
+            submission.setStatus("FAILED");
+            submission.setError("Too many submissions are being graded right now. Please try again shortly.");
+            submission.setScore(0);
+            transactionTemplate.executeWithoutResult(status -> submissionRepository.save(submission));
+        }
+        return mapToResponse(submission);
+    }
 
+    /**
+     * Grade a queued submission and publish the result to its subscribers
+     * 
+     * @param submissionId ID of a PENDING submission
+     */
+    public void gradeSubmission(UUID submissionId) {
+        try {
+            grade(submissionId);
+        } catch (Exception e) {
+            // Otherwise the row stays PENDING and subscribers wait for an event that never comes
+            log.error("Grading submission {} failed: {}", submissionId, e.getMessage(), e);
+            markFailed(submissionId, "Grading failed: " + e.getMessage());
+        }
+    }
+
+    private void grade(UUID submissionId) {
+        submissionQueue.publish(submissionId, Map.of("id", submissionId, "status", "RUNNING"), false);
+        // Grading runs in three steps so no database connection is held while code runs:
+        // load what grading needs, execute outside any transaction, then write the grade at once
+        SubmissionEntity submission = transactionTemplate.execute(status -> {
+            SubmissionEntity loaded = submissionRepository.findById(submissionId)
+                    .orElseThrow(() -> new EntityNotFoundException("Submission not found with ID: " + submissionId));
+            // An identical submission may have been graded while this one was queued
+            loaded.setQueueWaitTime(millisSince(loaded.getCreatedAt()));
+            if (!verdictReuseService.reuse(loaded, true)) {
+                // Used after the transaction ends
+                Hibernate.initialize(loaded.getQuestion());
+                Hibernate.initialize(loaded.getUser());
+            }
+            return loaded;
+        });
+        if ("COMPLETED".equals(submission.getStatus())) {
+            submissionQueue.publish(submissionId, mapToResponse(submission), true);
+            return;
+        }
 
+        List<SubmissionCaseResultEntity> caseResults;
+        // Already admitted when it was queued, so wait for a slot as long as it takes
+        try (ExecutionScheduler.Permit permit = executionScheduler.await(
+                submission.getUser().getCurrentCourseId(), ExecutionScheduler.Lane.SUBMISSION)) {
+            submission.setQueueWaitTime(millisSince(submission.getCreatedAt()));
+            caseResults = processSubmission(submission);
+        }
+
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> saveGrade(submission, caseResults)))) {
+            // Graded against a version of the question that was edited meanwhile; the regrade of
+            // that edit skips this still pending submission, so it is graded again from the start
+            log.info("Question of submission {} changed while it was graded, grading it again", submissionId);
+            if (!submissionQueue.submit(submissionId, () -> gradeSubmission(submissionId))) {
+                markFailed(submissionId, "Too many submissions are being graded right now. Please try again shortly.");
+            }
+            return;
+        }
+        SubmissionResponse response = mapToResponse(submission);
+        response.setCaseResults(mapToCaseResponses(caseResults));
+        submissionQueue.publish(submissionId, response, true);
+    }
+
+    /**
+     * Marks a submission that cannot be graded as FAILED and ends its event stream
+     */
+    private void markFailed(UUID submissionId, String error) {
         try {
-            // Execute the code
-            DockerService.ExecutionResult executionResult;
+            transactionTemplate.executeWithoutResult(status -> submissionRepository.findById(submissionId).ifPresent(stored -> {
+                stored.setStatus("FAILED");
+                stored.setError(error);
+                stored.setScore(0);
+                submissionRepository.save(stored);
+            }));
+        } catch (Exception e) {
+            log.error("Failed to mark submission {} as failed: {}", submissionId, e.getMessage(), e);
+        }
+        submissionQueue.publish(submissionId, Map.of("id", submissionId, "status", "FAILED", "error", error), true);
+    }
+
+    /**
+     * Grade a completed submission again from the start after its question changed, in the
+     * re-grade lane so live grading goes first. Nothing is published to subscribers.
+     *
+     * @param submissionId ID of a COMPLETED submission
+     * @return false if nothing was written because the question was updated again meanwhile
+     */
+    public boolean regradeSubmission(UUID submissionId) {
+        SubmissionEntity submission = transactionTemplate.execute(status -> {
+            SubmissionEntity loaded = submissionRepository.findById(submissionId)
+                    .orElseThrow(() -> new EntityNotFoundException("Submission not found with ID: " + submissionId));
+            // Used after the transaction ends
+            Hibernate.initialize(loaded.getQuestion());
+            Hibernate.initialize(loaded.getUser());
+            return loaded;
+        });
+
+        List<SubmissionCaseResultEntity> caseResults;
+        try (ExecutionScheduler.Permit permit = executionScheduler.await(null, ExecutionScheduler.Lane.REGRADE)) {
+            caseResults = processSubmission(submission);
+        }
+        submission.setRegradedAt(String.valueOf(System.currentTimeMillis()));
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> saveGrade(submission, caseResults)));
+    }
+
+    /**
+     * Re-queue submissions that were still waiting when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeuePendingSubmissions() {
+        List<SubmissionEntity> pending = submissionRepository.findByStatus("PENDING");
+        if (!pending.isEmpty()) {
+            log.info("Re-queueing {} pending submissions", pending.size());
+        }
+        for (SubmissionEntity submission : pending) {
+            UUID submissionId = submission.getId();
+            submissionQueue.submit(submissionId, () -> gradeSubmission(submissionId));
+        }
+    }
+
+    /**
+     * Process a code submission and grade it, without writing to the database
+     * 
+     * @param submission Submission to grade, with its question loaded; receives the grade
+     * @return Verdict of each test case, null if the question is not graded by test cases or grading failed
+     */
+    private List<SubmissionCaseResultEntity> processSubmission(SubmissionEntity submission) {
+        QuestionEntity question = submission.getQuestion();
 
+        try {
             // Check if the language matches the expected language
-            if (question.getLanguage() != submissionRequest.getLanguage()) {
+            if (question.getLanguage() != submission.getLanguage()) {
                 throw new IllegalArgumentException("The submitted code language does not match the question language");
             }
 
-            // Execute code using Docker
-            executionResult = dockerService.executeCode(
-                    submissionRequest.getLanguage(),
-                    submissionRequest.getCode(),
-                    question.getInitialCode(), // Initial code (SQL schema, etc)
-                    submissionRequest.getInputData(), // Input data for programs using input() function
-                    DEFAULT_TIMEOUT_SECONDS
-            );
+            boolean hasTestCases = question.getTestCases() != null && !question.getTestCases().trim().isEmpty();
+            boolean inputDataCases = hasTestCases && Boolean.TRUE.equals(question.getIsTestCase());
+            List<TestCase> testCases = hasTestCases && !inputDataCases ? parseTestCases(question.getTestCases()) : List.of();
+
+            // Only the answer and compare paths grade a single run; test cases are run by the batch alone
+            DockerService.ExecutionResult executionResult = null;
+            String userOutput = "";
+            if (!inputDataCases && testCases.isEmpty()) {
+                executionResult = dockerService.executeCode(
+                        submission.getLanguage(),
+                        submission.getCode(),
+                        question.getInitialCode(), // Initial code (SQL schema, etc)
+                        submission.getInputData(), // Input data for programs using input() function
+                        DEFAULT_TIMEOUT_SECONDS
+                );
+                recordMeasurements(submission, executionResult);
+                userOutput = executionResult.getStdout().trim();
+            }
 
-            // Process execution result
-            String userOutput = executionResult.getStdout().trim();
             String expectedOutput = "";
             boolean hasPassed = false;
             StringBuilder resultText = new StringBuilder();
             boolean dontHaveTestCase  = false;
+            boolean partialCredit = Boolean.TRUE.equals(question.getPartialCredit());
+            OutputChecker checker = outputCheckers.forQuestion(question);
+            // Verdict per test case, null if the question is not graded by test cases
+            List<SubmissionCaseResultEntity> caseResults = null;
             // Check if question uses test cases (new isTestCase flag)
-            if (Boolean.TRUE.equals(question.getIsTestCase()) && question.getTestCases() != null && !question.getTestCases().trim().isEmpty()) {
+            if (inputDataCases) {
                 // Execute against multiple test cases using new logic
-                hasPassed = executeTestCasesWithInputData(
-                        submissionRequest.getLanguage(),
-                        submissionRequest.getCode(),
+                caseResults = executeTestCasesWithInputData(
+                        submission,
                         question.getInitialCode(),
                         question.getTestCases(),
+                        partialCredit,
                         DEFAULT_TIMEOUT_SECONDS,
                         resultText
                 );
+                hasPassed = CaseGrader.allPassed(caseResults);
                 expectedOutput = hasPassed?"Pass All test Cases!":"All test cases must pass";
-            } else if (question.getTestCases() != null && !question.getTestCases().trim().isEmpty()) {
+            } else if (hasTestCases) {
                 // Legacy: Execute against multiple test cases (old logic)
-                List<TestCase> testCases = parseTestCases(question.getTestCases());
                 if (!testCases.isEmpty()) {
-                    hasPassed = executeTestCases(
-                            submissionRequest.getLanguage(),
-                            submissionRequest.getCode(),
+                    caseResults = executeTestCases(
+                            submission,
                             question.getInitialCode(),
                             testCases,
+                            partialCredit,
                             DEFAULT_TIMEOUT_SECONDS
                     );
+                    hasPassed = CaseGrader.allPassed(caseResults);
                     expectedOutput = String.format("All %d test cases must pass", testCases.size());
                 } else {
                     // Fallback to regular execution if test cases parsing failed
                     expectedOutput = question.getAnswer().trim();
-                    hasPassed = userOutput.equals(expectedOutput);
+                    hasPassed = checker.accepts(submission.getInputData(), expectedOutput, userOutput);
                 }
             } else if (Boolean.TRUE.equals(question.getIsCompare()) && question.getCompareCode() != null) {
-                // Execute the comparison code to get expected output
-                DockerService.ExecutionResult comparisonResult = dockerService.executeCode(
-                        question.getLanguage(),
-                        question.getCompareCode(),
-                        question.getInitialCode(),
+                // Get the comparison code output (executed only if not stored for this question version yet)
+                DockerService.ExecutionResult comparisonResult = expectedOutputService.getExpectedOutput(
+                        question,
                         question.getInputData(), // Input data for comparison code
                         DEFAULT_TIMEOUT_SECONDS
                 );
                 expectedOutput = comparisonResult.getStdout().trim();
-                hasPassed = userOutput.equals(expectedOutput);
+                hasPassed = checker.accepts(question.getInputData(), expectedOutput, userOutput);
             } else {
                 // Use direct answer comparison
                 expectedOutput = question.getAnswer().trim();
-                hasPassed = userOutput.equals(expectedOutput);
+                hasPassed = checker.accepts(submission.getInputData(), expectedOutput, userOutput);
                 dontHaveTestCase = true;
             }
             String expectOutput = "";
-            // Calculate score (100 if pass, 0 if fail)
+            // Calculate score (100 if pass, 0 if fail, the weighted share of passed test cases with partial credit)
             int score;
             if (dontHaveTestCase) {
-                score = userOutput.equals(expectedOutput) ? 100 : 0;
+                score = hasPassed ? 100 : 0;
             } else {
                 score = hasPassed ? 100 : 0;
-                if (score == 100) {
+                if (partialCredit && caseResults != null) {
+                    score = CaseGrader.score(caseResults);
+                }
+                if (hasPassed && caseResults != null) {
+                    expectOutput = String.format("Passed all %d test cases", caseResults.size());
+                } else if (hasPassed) {
                     expectOutput = String.format("%s -> %s", question.getInputData().toString(), userOutput);
+                } else if (partialCredit && caseResults != null) {
+                    expectOutput = String.format("Passed %d of %d test cases", CaseGrader.countPassed(caseResults), caseResults.size());
                 } else {
                     expectOutput = "Failed";
 
@@ -403,14 +550,13 @@ public class SubmissionService {
             submission.setOutput(!dontHaveTestCase?expectOutput:userOutput);
             submission.setError(!dontHaveTestCase?"":executionResult.getStderr());
             submission.setExpectedOutput(!dontHaveTestCase?resultText.toString():expectedOutput);
-            submission.setExecutionTime(executionResult.getExecutionTime());
+            if (executionResult != null) {
+                submission.setExecutionTime(executionResult.getExecutionTime());
+            }
+            submission.setPassedCases(caseResults != null ? CaseGrader.countPassed(caseResults) : null);
+            submission.setTotalCases(caseResults != null ? caseResults.size() : null);
             submission.setStatus("COMPLETED");
-
-            submissionRepository.save(submission);
-
-            // Create and return response
-            SubmissionResponse submissionResponse = mapToResponse(submission);
-            return submissionResponse;
+            return caseResults;
 
         } catch (Exception e) {
             log.error("Error processing submission: {}", e.getMessage(), e);
@@ -419,13 +565,219 @@ public class SubmissionService {
             submission.setStatus("FAILED");
             submission.setError(e.getMessage());
             submission.setScore(0);
+            submission.setPassedCases(null);
+            submission.setTotalCases(null);
+            return null;
+        }
 
-            submissionRepository.save(submission);
+    }
 
-            // Create and return error response
-            return mapToResponse(submission);
+    /**
+     * Writes the grade of a submission graded outside a transaction onto its stored row.
+     * Only the grade is copied; saving the detached entity would also write back its question.
+     *
+     * @param graded      Detached submission holding the grade
+     * @param caseResults Verdicts without a submission id yet, null if there are none
+     * @return false if nothing was written because the question was updated since it was loaded
+     */
+    private boolean saveGrade(SubmissionEntity graded, List<SubmissionCaseResultEntity> caseResults) {
+        SubmissionEntity stored = submissionRepository.findById(graded.getId())
+                .orElseThrow(() -> new EntityNotFoundException("Submission not found with ID: " + graded.getId()));
+        if (!Objects.equals(stored.getQuestion().getUpdatedAt(), graded.getQuestion().getUpdatedAt())) {
+            return false;
+        }
+        stored.setScore(graded.getScore());
+        stored.setOutput(graded.getOutput());
+        stored.setError(graded.getError());
+        stored.setExpectedOutput(graded.getExpectedOutput());
+        stored.setExecutionTime(graded.getExecutionTime());
+        stored.setPassedCases(graded.getPassedCases());
+        stored.setTotalCases(graded.getTotalCases());
+        stored.setQueueWaitTime(graded.getQueueWaitTime());
+        stored.setSandboxStartTime(graded.getSandboxStartTime());
+        stored.setCompileTime(graded.getCompileTime());
+        stored.setRunTime(graded.getRunTime());
+        stored.setCpuUserTime(graded.getCpuUserTime());
+        stored.setCpuSystemTime(graded.getCpuSystemTime());
+        stored.setPeakMemoryKb(graded.getPeakMemoryKb());
+        stored.setRegradedAt(graded.getRegradedAt());
+        stored.setStatus(graded.getStatus());
+        submissionRepository.save(stored);
+        replaceCaseResults(stored, caseResults);
+        return true;
+    }
+    
+    /**
+     * Runs every test case of a submission: all in one sandbox when the language allows it,
+     * otherwise each in a sandbox of its own, in parallel
+     *
+     * @param checker            Decides whether an output is accepted; parallel cases are stopped as
+     *                           soon as their output goes wrong
+     * @param stopAtFirstFailure Cancel the remaining parallel cases once one fails
+     */
+    private DockerService.BatchExecutionResult runTestCases(SubmissionEntity submission, String initialCode,
+                                                            List<GradingCase> cases, OutputChecker checker,
+                                                            boolean stopAtFirstFailure, int timeout) {
+        LanguageType language = submission.getLanguage();
+        if (dockerService.supportsBatch(language)) {
+            List<String> inputs = cases.stream()
+                    .map(GradingCase::getInput)
+                    .collect(Collectors.toList());
+            return dockerService.executeBatch(language, submission.getCode(), initialCode, inputs, timeout);
+        }
+        long start = System.currentTimeMillis();
+        List<DockerService.ExecutionResult> caseResults = caseFanOut.run(cases.size(),
+                (index, cancellation) -> runCase(submission, initialCode, cases.get(index), checker, timeout, cancellation),
+                (index, result) -> {
+                    if (!stopAtFirstFailure) {
+                        return true;
+                    }
+                    // Kept on the run for CaseGrader.grade, a custom checker is a program run of its own
+                    result.setVerdict(CaseGrader.classify(result, cases.get(index), checker));
+                    return result.getVerdict() == Verdict.AC;
+                });
+        return DockerService.BatchExecutionResult.builder()
+                .caseResults(caseResults)
+                .executionTime(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    /**
+     * Runs one case in a sandbox of its own, checking its output while it runs
+     *
+     * @param cancellation Stops every case of the submission; a wrong output stops only this one
+     */
+    private DockerService.ExecutionResult runCase(SubmissionEntity submission, String initialCode, GradingCase gradingCase,
+                                                  OutputChecker checker, int timeout, Cancellation cancellation) {
+        if (!checker.isStreaming()) {
+            return dockerService.executeCode(submission.getLanguage(), submission.getCode(), initialCode,
+                    gradingCase.getInput(), timeout, cancellation);
         }
+        Cancellation caseCancellation = new Cancellation();
+        try (Cancellation.Registration registration = cancellation.onCancel(caseCancellation::cancel)) {
+            StreamingCheck check = new StreamingCheck(checker, gradingCase.getInput(), gradingCase.getExpectedOutput(), caseCancellation);
+            DockerService.ExecutionResult result = dockerService.executeCode(submission.getLanguage(), submission.getCode(), initialCode,
+                    gradingCase.getInput(), timeout, caseCancellation, check);
+            if (check.isRejected()) {
+                result.setOutputRejected(true);
+            }
+            return result;
+        }
+    }
 
+    /**
+     * Stores the verdicts of the submission's latest grading, dropping those of an earlier one
+     *
+     * @param caseResults Verdicts without a submission id yet, null if not graded by test cases
+     */
+    private void replaceCaseResults(SubmissionEntity submission, List<SubmissionCaseResultEntity> caseResults) {
+        caseResultRepository.deleteBySubmissionId(submission.getId());
+        if (caseResults == null || caseResults.isEmpty()) {
+            return;
+        }
+        caseResults.forEach(caseResult -> caseResult.setSubmissionId(submission.getId()));
+        caseResultRepository.saveAll(caseResults);
+    }
+
+    private static List<CaseResultResponse> mapToCaseResponses(List<SubmissionCaseResultEntity> caseResults) {
+        if (caseResults == null) {
+            return null;
+        }
+        return caseResults.stream()
+                .map(caseResult -> CaseResultResponse.builder()
+                        .caseIndex(caseResult.getCaseIndex())
+                        .verdict(caseResult.getVerdict())
+                        .weight(caseResult.getWeight())
+                        .runTime(caseResult.getRunTime())
+                        .peakMemoryKb(caseResult.getPeakMemoryKb())
+                        .exitCode(caseResult.getExitCode())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stores the phase timings and usage of a single run on the submission
+     */
+    private void recordMeasurements(SubmissionEntity submission, DockerService.ExecutionResult result) {
+        submission.setCompileTime(result.getCompileTime());
+        submission.setRunTime(result.getRunTime());
+        submission.setSandboxStartTime(startupTime(result.getExecutionTime(), result.getCompileTime(), result.getRunTime()));
+        submission.setCpuUserTime(result.getCpuUserTime());
+        submission.setCpuSystemTime(result.getCpuSystemTime());
+        submission.setPeakMemoryKb(result.getPeakMemoryKb());
+    }
+
+    /**
+     * Stores the execution time, phase timings and usage of a test case batch on the submission
+     */
+    private void recordMeasurements(SubmissionEntity submission, DockerService.BatchExecutionResult batch) {
+        submission.setExecutionTime(batch.getExecutionTime());
+        Long compileTime = batch.getCompileResult() != null ? batch.getCompileResult().getCompileTime() : null;
+        submission.setCompileTime(compileTime);
+        submission.setRunTime(batch.totalRunTime());
+        submission.setSandboxStartTime(startupTime(batch.getExecutionTime(), compileTime, batch.totalRunTime()));
+        submission.setCpuUserTime(batch.totalCpuUserTime());
+        submission.setCpuSystemTime(batch.totalCpuSystemTime());
+        submission.setPeakMemoryKb(batch.maxPeakMemoryKb());
+    }
+
+    /**
+     * @return Part of the wall-clock time spent outside the compile and run steps, null if the run was not measured
+     */
+    private static Long startupTime(Long executionTime, Long compileTime, Long runTime) {
+        if (executionTime == null || runTime == null) {
+            return null;
+        }
+        return Math.max(0, executionTime - runTime - (compileTime != null ? compileTime : 0));
+    }
+
+    private static Long millisSince(String epochMillis) {
+        try {
+            return System.currentTimeMillis() - Long.parseLong(epochMillis);
+        } catch (NumberFormatException | NullPointerException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Get a single submission, e.g. to poll a queued submission for its result
+     * 
+     * @param userPrincipal Current user
+     * @param submissionId Submission ID
+     * @return Submission response
+     */
+    @Transactional(readOnly = true)
+    public SubmissionResponse getSubmission(UserPrincipal userPrincipal, UUID submissionId) {
+        SubmissionEntity submission = submissionRepository.findById(submissionId)
+                .orElseThrow(() -> new EntityNotFoundException("Submission not found with ID: " + submissionId));
+        boolean isAdmin = userPrincipal.getAuthorities().stream()
+                .anyMatch(authority -> "ADMIN".equals(authority.getAuthority()) || "SYSTEM_ADMIN".equals(authority.getAuthority()));
+        if (!isAdmin && !submission.getUser().getId().equals(userPrincipal.getId())) {
+            throw new AccessDeniedException("Not allowed to view submission " + submissionId);
+        }
+        SubmissionResponse response = mapToResponse(submission);
+        if (submission.getTotalCases() != null) {
+            response.setCaseResults(mapToCaseResponses(caseResultRepository.findBySubmissionIdOrderByCaseIndex(submissionId)));
+        }
+        return response;
+    }
+    
+    /**
+     * Open a server-sent-event stream that receives the submission status until it is graded
+     * 
+     * @param userPrincipal Current user
+     * @param submissionId Submission ID
+     * @return Event stream
+     */
+    public SseEmitter subscribe(UserPrincipal userPrincipal, UUID submissionId) {
+        // Checks access before anything is registered
+        getSubmission(userPrincipal, submissionId);
+        SseEmitter emitter = submissionQueue.subscribe(submissionId);
+        // Read after registering, so a result published in between is not missed
+        SubmissionResponse latest = getSubmission(userPrincipal, submissionId);
+        boolean graded = "COMPLETED".equals(latest.getStatus()) || "FAILED".equals(latest.getStatus());
+        submissionQueue.publish(submissionId, latest, graded);
+        return emitter;
     }
     
     /**
@@ -496,6 +848,17 @@ public class SubmissionService {
                 .error(submission.getError())
                 .expectedOutput(submission.getExpectedOutput())
                 .executionTime(submission.getExecutionTime())
+                .passedCases(submission.getPassedCases())
+                .totalCases(submission.getTotalCases())
+                .queueWaitTime(submission.getQueueWaitTime())
+                .sandboxStartTime(submission.getSandboxStartTime())
+                .compileTime(submission.getCompileTime())
+                .runTime(submission.getRunTime())
+                .cpuUserTime(submission.getCpuUserTime())
+                .cpuSystemTime(submission.getCpuSystemTime())
+                .peakMemoryKb(submission.getPeakMemoryKb())
+                .reusedFrom(submission.getReusedFrom())
+                .regradedAt(submission.getRegradedAt())
                 .status(submission.getStatus())
                 .createdAt(submission.getCreatedAt())
                 .build();
@@ -0,0 +1,117 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionEntity;
+import com.anita.multipleauthapi.repository.SubmissionCaseResultRepository;
+import com.anita.multipleauthapi.repository.SubmissionRepository;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Grades repeated submissions of byte-identical code (double-clicked submits, re-submits after a
+ * reload) by copying the verdict of the last graded copy instead of running the code again.
+ * The repeat still gets a submission row of its own, pointing to the copy it reused.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VerdictReuseService {
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionCaseResultRepository caseResultRepository;
+    private final AppProperties appProperties;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong queuedHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public boolean isEnabled(QuestionEntity question) {
+        return appProperties.getSubmission().isReuseVerdicts() && !Boolean.FALSE.equals(question.getReuseVerdicts());
+    }
+
+    /**
+     * Grade the submission with the verdict of an identical graded one, if there is any.
+     * Needs a transaction; saves the submission and its case results when it returns true.
+     *
+     * @param submission Submission with a fingerprint, not graded yet
+     * @param queued     Whether the submission already waited in the grading queue; a miss is
+     *                   only counted then, since a miss on submit is retried once it is dequeued
+     * @return Whether the submission was graded
+     */
+    public boolean reuse(SubmissionEntity submission, boolean queued) {
+        if (submission.getCodeFingerprint() == null || !isEnabled(submission.getQuestion())) {
+            return false;
+        }
+        Optional<SubmissionEntity> graded = submissionRepository
+                .findFirstByCodeFingerprintAndStatusOrderByCreatedAtDesc(submission.getCodeFingerprint(), "COMPLETED");
+        if (graded.isEmpty()) {
+            if (queued) {
+                misses.incrementAndGet();
+            }
+            return false;
+        }
+        SubmissionEntity source = graded.get();
+        submission.setScore(source.getScore());
+        submission.setOutput(source.getOutput());
+        submission.setError(source.getError());
+        submission.setExpectedOutput(source.getExpectedOutput());
+        submission.setExecutionTime(source.getExecutionTime());
+        submission.setPassedCases(source.getPassedCases());
+        submission.setTotalCases(source.getTotalCases());
+        // Properties of the program; the phase timings of this submission stay empty, none ran
+        submission.setRunTime(source.getRunTime());
+        submission.setCpuUserTime(source.getCpuUserTime());
+        submission.setCpuSystemTime(source.getCpuSystemTime());
+        submission.setPeakMemoryKb(source.getPeakMemoryKb());
+        submission.setReusedFrom(source.getReusedFrom() != null ? source.getReusedFrom() : source.getId());
+        submission.setStatus("COMPLETED");
+        submissionRepository.save(submission);
+
+        List<SubmissionCaseResultEntity> caseResults = caseResultRepository.findBySubmissionIdOrderByCaseIndex(source.getId()).stream()
+                .map(caseResult -> SubmissionCaseResultEntity.builder()
+                        .submissionId(submission.getId())
+                        .caseIndex(caseResult.getCaseIndex())
+                        .caseHash(caseResult.getCaseHash())
+                        .verdict(caseResult.getVerdict())
+                        .weight(caseResult.getWeight())
+                        .runTime(caseResult.getRunTime())
+                        .peakMemoryKb(caseResult.getPeakMemoryKb())
+                        .exitCode(caseResult.getExitCode())
+                        .build())
+                .collect(Collectors.toList());
+        caseResultRepository.saveAll(caseResults);
+
+        (queued ? queuedHits : hits).incrementAndGet();
+        log.info("Submission {} reused the verdict of identical submission {}", submission.getId(), submission.getReusedFrom());
+        return true;
+    }
+
+    public ReuseStats getStats() {
+        long reused = hits.get() + queuedHits.get();
+        long total = reused + misses.get();
+        return ReuseStats.builder()
+                .hits(hits.get())
+                .queuedHits(queuedHits.get())
+                .misses(misses.get())
+                .hitRate(total > 0 ? (double) reused / total : 0)
+                .build();
+    }
+
+    @Data
+    @Builder
+    public static class ReuseStats {
+        private long hits; // reused on submit, without queueing
+        private long queuedHits; // an identical submission finished grading while this one was queued
+        private long misses; // graded by running the code
+        private double hitRate;
+    }
+}
@@ -0,0 +1,601 @@
+package com.anita.multipleauthapi.service.docker;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal Docker Engine API client that talks HTTP/1.1 over the daemon's unix socket.
+ * <p>
+ * Plain requests reuse keep-alive connections from a small pool, so a container lifecycle
+ * costs a few socket round trips instead of a docker CLI process per step. Attach and exec
+ * streams take over a connection of their own (HTTP upgrade) and deliver stdout and stderr
+ * as multiplexed frames, see {@link Stream#demultiplex}.
+ */
+@Slf4j
+@Component
+public class DockerEngineClient {
+    public static final int STDOUT = 1;
+    public static final int STDERR = 2;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final UnixDomainSocketAddress address;
+    private final String apiPrefix;
+    private final int maxIdleConnections;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    public DockerEngineClient(AppProperties appProperties) {
+        AppProperties.Docker config = appProperties.getDocker();
+        this.address = UnixDomainSocketAddress.of(Path.of(config.getSocketPath()));
+        this.apiPrefix = "/" + config.getApiVersion();
+        this.maxIdleConnections = config.getMaxIdleConnections();
+    }
+
+    /**
+     * Creates a container, pulling its image first if the daemon does not have it
+     *
+     * @param name Container name, or null for a generated one
+     * @param spec Container configuration as accepted by POST /containers/create
+     * @return Container id
+     */
+    public String createContainer(String name, Map<String, Object> spec) throws IOException {
+        String path = "/containers/create" + (name != null ? "?name=" + encode(name) : "");
+        Response response;
+        try {
+            response = request("POST", path, spec);
+        } catch (DockerEngineException e) {
+            // Create only answers 404 for a missing image
+            if (e.getStatus() != 404) {
+                throw e;
+            }
+            pullImage((String) spec.get("Image"));
+            response = request("POST", path, spec);
+        }
+        return response.json().path("Id").asText();
+    }
+
+    public void startContainer(String id) throws IOException {
+        request("POST", "/containers/" + encode(id) + "/start", null);
+    }
+
+    public void stopContainer(String id, int timeoutSeconds) throws IOException {
+        request("POST", "/containers/" + encode(id) + "/stop?t=" + timeoutSeconds, null);
+    }
+
+    public void killContainer(String id) throws IOException {
+        request("POST", "/containers/" + encode(id) + "/kill", null);
+    }
+
+    public void removeContainer(String id, boolean force) throws IOException {
+        request("DELETE", "/containers/" + encode(id) + "?force=" + force, null);
+    }
+
+    /**
+     * Blocks until the container exits
+     *
+     * @return Exit status of the container's main process
+     */
+    public int waitContainer(String id) throws IOException {
+        return request("POST", "/containers/" + encode(id) + "/wait", null).json().path("StatusCode").asInt(-1);
+    }
+
+    public JsonNode inspectContainer(String id) throws IOException {
+        return request("GET", "/containers/" + encode(id) + "/json", null).json();
+    }
+
+    public JsonNode listContainers(boolean all) throws IOException {
+        return request("GET", "/containers/json?all=" + all, null).json();
+    }
+
+    /**
+     * Pulls an image; the progress the daemon streams is read and discarded
+     *
+     * @param image Image name, optionally with a tag
+     */
+    public void pullImage(String image) throws IOException {
+        log.info("Pulling image {}", image);
+        String progress = request("POST", "/images/create?fromImage=" + encode(image), null).text();
+        // Pull failures arrive as an error object in the progress stream of a 200 response
+        int error = progress.lastIndexOf("{\"error");
+        if (error >= 0) {
+            throw new DockerEngineException(500, MAPPER.readTree(progress.substring(error)).path("error").asText());
+        }
+    }
+
+    /**
+     * Attaches to a created container; attach before starting it so no output is missed
+     *
+     * @param stdin Also attach stdin; the container must have been created with OpenStdin
+     */
+    public Stream attachContainer(String id, boolean stdin) throws IOException {
+        return openStream("/containers/" + encode(id) + "/attach?stream=1&stdout=1&stderr=1&stdin=" + (stdin ? 1 : 0), null);
+    }
+
+    /**
+     * @return Exec instance id
+     */
+    public String createExec(String containerId, List<String> command, boolean stdin, String workingDir) throws IOException {
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("AttachStdin", stdin);
+        spec.put("AttachStdout", true);
+        spec.put("AttachStderr", true);
+        spec.put("Tty", false);
+        spec.put("Cmd", command);
+        spec.put("WorkingDir", workingDir);
+        return request("POST", "/containers/" + encode(containerId) + "/exec", spec).json().path("Id").asText();
+    }
+
+    public Stream startExec(String execId) throws IOException {
+        return openStream("/exec/" + encode(execId) + "/start", Map.of("Detach", false, "Tty", false));
+    }
+
+    public JsonNode inspectExec(String execId) throws IOException {
+        return request("GET", "/exec/" + encode(execId) + "/json", null).json();
+    }
+
+    long getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (idle) {
+            idle.forEach(Connection::close);
+            idle.clear();
+        }
+    }
+
+    Response request(String method, String path, Object body) throws IOException {
+        byte[] payload = body != null ? MAPPER.writeValueAsBytes(body) : null;
+        Response response;
+        while (true) {
+            Connection connection = borrow();
+            try {
+                try {
+                    connection.writeRequest(method, apiPrefix + path, payload, false);
+                } catch (IOException e) {
+                    connection.close();
+                    // The daemon closed an idle keep-alive connection before it got the whole request
+                    if (connection.reused) {
+                        continue;
+                    }
+                    throw e;
+                }
+                response = connection.readResponse();
+            } catch (ClosedByDaemonException e) {
+                connection.close();
+                // The request was written, so the daemon may have acted on it before closing;
+                // only requests that are safe to repeat go out again
+                if (connection.reused && isIdempotent(method)) {
+                    continue;
+                }
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+            if (response.keepAlive) {
+                release(connection);
+            } else {
+                connection.close();
+            }
+            break;
+        }
+        if (response.status >= 400) {
+            throw new DockerEngineException(response.status, response.errorMessage());
+        }
+        return response;
+    }
+
+    private Stream openStream(String path, Object body) throws IOException {
+        byte[] payload = body != null ? MAPPER.writeValueAsBytes(body) : null;
+        // The connection is taken over by the stream, so it is a fresh one rather than a pooled one
+        Connection connection = connect();
+        try {
+            connection.writeRequest("POST", apiPrefix + path, payload, true);
+            Response head = connection.readHead();
+            if (head.status == 101 || head.status == 200) {
+                return new Stream(connection);
+            }
+            connection.readBody(head);
+            throw new DockerEngineException(head.status, head.errorMessage());
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection borrow() throws IOException {
+        while (true) {
+            Connection connection;
+            synchronized (idle) {
+                connection = idle.pollFirst();
+            }
+            if (connection == null) {
+                return connect();
+            }
+            // Drop connections the daemon already closed, so a POST is not written into one
+            // and left in doubt
+            if (connection.isStale()) {
+                connection.close();
+                continue;
+            }
+            connection.reused = true;
+            return connection;
+        }
+    }
+
+    private static boolean isIdempotent(String method) {
+        return method.equals("GET") || method.equals("HEAD") || method.equals("DELETE");
+    }
+
+    private void release(Connection connection) {
+        synchronized (idle) {
+            if (idle.size() < maxIdleConnections) {
+                idle.addFirst(connection);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private Connection connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("Cannot connect to the Docker daemon at " + address.getPath() + ": " + e.getMessage(), e);
+        }
+        openedConnections.incrementAndGet();
+        return new Connection(channel);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An attach or exec stream that has taken over its connection
+     */
+    public static class Stream implements Closeable {
+        private final Connection connection;
+
+        private Stream(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Writes to the process stdin
+         */
+        public void write(byte[] data) throws IOException {
+            connection.write(data);
+        }
+
+        /**
+         * Signals end of input to the process; output can still be read
+         */
+        public void closeStdin() throws IOException {
+            connection.channel.shutdownOutput();
+        }
+
+        /**
+         * Reads stdout/stderr frames until the stream ends. Each frame is an 8 byte header
+         * (stream type, three zero bytes, big-endian payload length) followed by the payload.
+         */
+        public void demultiplex(FrameHandler handler) throws IOException {
+            InputStream input = connection.input;
+            byte[] header = new byte[8];
+            byte[] payload = new byte[BUFFER_SIZE];
+            while (true) {
+                int read = input.readNBytes(header, 0, header.length);
+                if (read == 0) {
+                    return;
+                }
+                if (read < header.length) {
+                    throw new EOFException("Truncated stream frame header");
+                }
+                int type = header[0];
+                long remaining = ByteBuffer.wrap(header, 4, 4).getInt() & 0xFFFFFFFFL;
+                while (remaining > 0) {
+                    int count = input.read(payload, 0, (int) Math.min(payload.length, remaining));
+                    if (count < 0) {
+                        throw new EOFException("Truncated stream frame");
+                    }
+                    handler.onFrame(type, payload, count);
+                    remaining -= count;
+                }
+            }
+        }
+
+        /**
+         * Closing from another thread ends a blocked {@link #demultiplex}
+         */
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    public interface FrameHandler {
+        /**
+         * @param stream {@link #STDOUT} or {@link #STDERR}
+         * @param data   Buffer holding the payload; only valid during the call
+         * @param length Bytes of the payload in the buffer
+         */
+        void onFrame(int stream, byte[] data, int length) throws IOException;
+    }
+
+    static class Response {
+        private int status;
+        private final Map<String, String> headers = new HashMap<>();
+        private byte[] body = new byte[0];
+        private boolean keepAlive = true;
+
+        int getStatus() {
+            return status;
+        }
+
+        JsonNode json() throws IOException {
+            return body.length > 0 ? MAPPER.readTree(body) : MissingNode.getInstance();
+        }
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        private String errorMessage() {
+            try {
+                String message = json().path("message").asText(null);
+                if (message != null) {
+                    return message;
+                }
+            } catch (IOException e) {
+                // not JSON, fall back to the raw body
+            }
+            return body.length > 0 ? text().trim() : "HTTP " + status;
+        }
+    }
+
+    private static class ClosedByDaemonException extends IOException {
+        ClosedByDaemonException() {
+            super("Connection closed by the Docker daemon");
+        }
+    }
+
+    private static class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        // Reads from the channel directly: the stream wrappers of Channels would serialize
+        // reads with stdin writes on the same connection
+        private final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return fill() ? readBuffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                int count = Math.min(length, readBuffer.remaining());
+                readBuffer.get(target, offset, count);
+                return count;
+            }
+        };
+        private boolean reused = false;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private boolean fill() throws IOException {
+            while (!readBuffer.hasRemaining()) {
+                readBuffer.clear();
+                int read = channel.read(readBuffer);
+                readBuffer.flip();
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * An idle connection has nothing to read; EOF or stray bytes mean the daemon is done with it
+         */
+        private boolean isStale() {
+            if (readBuffer.hasRemaining()) {
+                return true;
+            }
+            try {
+                channel.configureBlocking(false);
+                try {
+                    readBuffer.clear();
+                    int read = channel.read(readBuffer);
+                    readBuffer.flip();
+                    return read != 0;
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        private void write(byte[] data) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void writeRequest(String method, String target, byte[] payload, boolean upgrade) throws IOException {
+            StringBuilder head = new StringBuilder(method).append(' ').append(target).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n");
+            if (upgrade) {
+                head.append("Connection: Upgrade\r\nUpgrade: tcp\r\n");
+            }
+            if (payload != null) {
+                head.append("Content-Type: application/json\r\n");
+            }
+            if (payload != null || !method.equals("GET")) {
+                head.append("Content-Length: ").append(payload != null ? payload.length : 0).append("\r\n");
+            }
+            head.append("\r\n");
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+            if (payload == null) {
+                write(headBytes);
+                return;
+            }
+            byte[] request = new byte[headBytes.length + payload.length];
+            System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+            System.arraycopy(payload, 0, request, headBytes.length, payload.length);
+            write(request);
+        }
+
+        private Response readResponse() throws IOException {
+            Response response = readHead();
+            readBody(response);
+            return response;
+        }
+
+        private Response readHead() throws IOException {
+            String statusLine;
+            try {
+                statusLine = readLine();
+            } catch (SocketException e) {
+                // A reset before the status line is the same stale keep-alive connection as an EOF
+                throw new ClosedByDaemonException();
+            }
+            if (statusLine == null) {
+                throw new ClosedByDaemonException();
+            }
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Malformed response from the Docker daemon: " + statusLine);
+            }
+            Response response = new Response();
+            response.status = Integer.parseInt(parts[1]);
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    response.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+                }
+            }
+            if (line == null) {
+                throw new EOFException("Connection closed in response headers");
+            }
+            response.keepAlive = !"close".equalsIgnoreCase(response.headers.get("connection"));
+            return response;
+        }
+
+        private void readBody(Response response) throws IOException {
+            String contentLength = response.headers.get("content-length");
+            if ("chunked".equalsIgnoreCase(response.headers.get("transfer-encoding"))) {
+                response.body = readChunked();
+            } else if (contentLength != null) {
+                response.body = readExactly(Integer.parseInt(contentLength));
+            } else if (response.status == 204 || response.status == 304 || response.status < 200) {
+                response.body = new byte[0];
+            } else {
+                // Delimited by the end of the connection
+                response.body = input.readAllBytes();
+                response.keepAlive = false;
+            }
+        }
+
+        private byte[] readChunked() throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String sizeLine = readLine();
+                if (sizeLine == null) {
+                    throw new EOFException("Connection closed in chunked body");
+                }
+                int extension = sizeLine.indexOf(';');
+                int size = Integer.parseInt((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                if (size == 0) {
+                    // Trailer headers end with an empty line
+                    String line;
+                    while ((line = readLine()) != null && !line.isEmpty()) {
+                        // ignored
+                    }
+                    return body.toByteArray();
+                }
+                body.write(readExactly(size));
+                readLine();
+            }
+        }
+
+        private byte[] readExactly(int length) throws IOException {
+            byte[] data = input.readNBytes(length);
+            if (data.length < length) {
+                throw new EOFException("Connection closed in response body");
+            }
+            return data;
+        }
+
+        /**
+         * @return Line without its CRLF, or null if the connection ended before any byte
+         */
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = input.read()) >= 0) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            if (line.size() == 0) {
+                return null;
+            }
+            throw new EOFException("Connection closed in the middle of a line");
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close Docker connection: {}", e.getMessage());
+            }
+        }
+    }
+}
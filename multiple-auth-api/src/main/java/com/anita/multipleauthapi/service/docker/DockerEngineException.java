@@ -0,0 +1,18 @@
+package com.anita.multipleauthapi.service.docker;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Error response of the Docker Engine API
+ */
+@Getter
+public class DockerEngineException extends IOException {
+    private final int status;
+
+    public DockerEngineException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
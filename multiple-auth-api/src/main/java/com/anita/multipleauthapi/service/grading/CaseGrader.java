@@ -0,0 +1,136 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.model.Verdict;
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import com.anita.multipleauthapi.service.DockerService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the runs of a submission's test cases into one verdict per case and a weighted score.
+ * A case's weight defaults to 1; a weight of 0 makes a sample case that counts for nothing.
+ */
+public final class CaseGrader {
+    // A program killed with SIGKILL that did not time out and was not cancelled hit the memory limit
+    private static final int KILLED_EXIT_CODE = 137;
+    private static final List<String> OUT_OF_MEMORY_ERRORS = List.of(
+            "java.lang.OutOfMemoryError", "MemoryError", "std::bad_alloc", "JavaScript heap out of memory");
+
+    private CaseGrader() {
+    }
+
+    /**
+     * Grades with outputs compared exactly, see {@link #grade(DockerService.BatchExecutionResult, List, OutputChecker)}
+     */
+    public static List<SubmissionCaseResultEntity> grade(DockerService.BatchExecutionResult batch, List<GradingCase> cases) {
+        return grade(batch, cases, ExactChecker.INSTANCE);
+    }
+
+    /**
+     * @param batch   Runs of the cases, in case order
+     * @param cases   The cases that were run
+     * @param checker Decides whether an output is accepted
+     * @return One result per case, without a submission id yet
+     */
+    public static List<SubmissionCaseResultEntity> grade(DockerService.BatchExecutionResult batch, List<GradingCase> cases,
+                                                         OutputChecker checker) {
+        List<SubmissionCaseResultEntity> results = new ArrayList<>();
+        for (int i = 0; i < cases.size(); i++) {
+            GradingCase gradingCase = cases.get(i);
+            DockerService.ExecutionResult run = batch.isCompileSuccessful() && i < batch.getCaseResults().size()
+                    ? batch.getCaseResults().get(i)
+                    : null;
+            results.add(SubmissionCaseResultEntity.builder()
+                    .caseIndex(i + 1)
+                    .caseHash(gradingCase.contentHash())
+                    .verdict(run == null ? Verdict.CE : run.getVerdict() != null ? run.getVerdict() : classify(run, gradingCase, checker))
+                    .weight(weightOf(gradingCase.getWeight()))
+                    .runTime(run != null ? run.getRunTime() : null)
+                    .peakMemoryKb(run != null ? run.getPeakMemoryKb() : null)
+                    .exitCode(run != null ? run.getExitCode() : null)
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Classifies with the output compared exactly
+     */
+    public static Verdict classify(DockerService.ExecutionResult run, String expectedOutput) {
+        return classify(run, GradingCase.builder().input("").expectedOutput(expectedOutput).build(), ExactChecker.INSTANCE);
+    }
+
+    public static Verdict classify(DockerService.ExecutionResult run, GradingCase gradingCase, OutputChecker checker) {
+        // Stopped on purpose, the output had already gone wrong
+        if (Boolean.TRUE.equals(run.getOutputRejected())) {
+            return Verdict.WA;
+        }
+        if (Boolean.TRUE.equals(run.getCancelled())) {
+            return Verdict.SKIPPED;
+        }
+        if (Boolean.TRUE.equals(run.getTimedOut())) {
+            return Verdict.TLE;
+        }
+        Integer exitCode = run.getExitCode();
+        if (exitCode != null && exitCode == 0) {
+            return checker.accepts(gradingCase.getInput(), gradingCase.getExpectedOutput(), run.getStdout()) ? Verdict.AC : Verdict.WA;
+        }
+        // A single run that compiled but never reached its run step failed to compile
+        if (run.getCompileTime() != null && run.getRunTime() == null) {
+            return Verdict.CE;
+        }
+        if (exitCode != null && exitCode == KILLED_EXIT_CODE) {
+            return Verdict.MLE;
+        }
+        String stderr = run.getStderr() != null ? run.getStderr() : "";
+        if (OUT_OF_MEMORY_ERRORS.stream().anyMatch(stderr::contains)) {
+            return Verdict.MLE;
+        }
+        return Verdict.RE;
+    }
+
+    /**
+     * @return Weighted share of accepted cases, 0 to 100; 0 if nothing carries weight
+     */
+    public static int score(List<SubmissionCaseResultEntity> results) {
+        long total = 0;
+        long accepted = 0;
+        for (SubmissionCaseResultEntity result : results) {
+            total += result.getWeight();
+            if (result.getVerdict() == Verdict.AC) {
+                accepted += result.getWeight();
+            }
+        }
+        return total > 0 ? (int) Math.round(100.0 * accepted / total) : 0;
+    }
+
+    public static boolean allPassed(List<SubmissionCaseResultEntity> results) {
+        return !results.isEmpty() && results.stream().allMatch(result -> result.getVerdict() == Verdict.AC);
+    }
+
+    public static int countPassed(List<SubmissionCaseResultEntity> results) {
+        return (int) results.stream().filter(result -> result.getVerdict() == Verdict.AC).count();
+    }
+
+    /**
+     * A stored verdict applied to the case at a position of the current test cases
+     *
+     * @param index 0-based position of the case
+     */
+    public static SubmissionCaseResultEntity reuse(SubmissionCaseResultEntity stored, GradingCase gradingCase, int index) {
+        return SubmissionCaseResultEntity.builder()
+                .caseIndex(index + 1)
+                .caseHash(gradingCase.contentHash())
+                .verdict(stored.getVerdict())
+                .weight(weightOf(gradingCase.getWeight()))
+                .runTime(stored.getRunTime())
+                .peakMemoryKb(stored.getPeakMemoryKb())
+                .exitCode(stored.getExitCode())
+                .build();
+    }
+
+    static int weightOf(Integer weight) {
+        return weight != null ? Math.max(0, weight) : 1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionEntity;
+import com.anita.multipleauthapi.service.util.HashUtils;
+
+/**
+ * Identifies submissions that are certain to grade the same: same language and code, same input,
+ * same version of the same question. The question's updatedAt changes with every edit, so
+ * fingerprints of earlier versions never match.
+ */
+public final class CodeFingerprint {
+
+    private CodeFingerprint() {
+    }
+
+    public static String of(SubmissionEntity submission, QuestionEntity question) {
+        return HashUtils.sha256(
+                String.valueOf(submission.getLanguage()),
+                normalize(submission.getCode()),
+                submission.getInputData(),
+                String.valueOf(question.getId()),
+                question.getUpdatedAt());
+    }
+
+    /**
+     * Differences an editor or a browser introduces without changing the program: line endings,
+     * a byte order mark and trailing whitespace at the end of the file. Whitespace inside the code
+     * is kept, it can be significant (indentation, string literals).
+     */
+    static String normalize(String code) {
+        if (code == null) {
+            return null;
+        }
+        String normalized = code.startsWith("\uFEFF") ? code.substring(1) : code;
+        return normalized.replace("\r\n", "\n").replace('\r', '\n').stripTrailing();
+    }
+}
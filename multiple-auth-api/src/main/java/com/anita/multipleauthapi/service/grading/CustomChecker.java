@@ -0,0 +1,71 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the question's checker program, in the question's language, to judge an output. The
+ * checker reads the input, the expected output and the program's output from stdin, each as a
+ * line with its number of lines followed by those lines, and exits with 0 to accept the output
+ * and 1 to reject it. Any other ending rejects the output as well and is logged as a broken checker.
+ */
+@Slf4j
+final class CustomChecker implements OutputChecker {
+    private static final int CHECKER_TIMEOUT_SECONDS = 10;
+
+    private final DockerService dockerService;
+    private final LanguageType language;
+    private final String checkerCode;
+    private final String initialCode;
+
+    CustomChecker(DockerService dockerService, LanguageType language, String checkerCode, String initialCode) {
+        this.dockerService = dockerService;
+        this.language = language;
+        this.checkerCode = checkerCode;
+        this.initialCode = initialCode;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public Session start(String input, String expectedOutput) {
+        StringBuilder output = new StringBuilder();
+        return new Session() {
+            @Override
+            public boolean accept(CharSequence chunk) {
+                output.append(chunk);
+                return true;
+            }
+
+            @Override
+            public boolean finish() {
+                DockerService.ExecutionResult result = dockerService.executeCode(language, checkerCode, initialCode,
+                        checkerInput(input, expectedOutput, output.toString()), CHECKER_TIMEOUT_SECONDS);
+                Integer exitCode = result.getExitCode();
+                if (Boolean.TRUE.equals(result.getTimedOut()) || exitCode == null || (exitCode != 0 && exitCode != 1)) {
+                    log.warn("Checker program failed with exit code {}: {}", exitCode, result.getStderr());
+                }
+                return !Boolean.TRUE.equals(result.getTimedOut()) && Integer.valueOf(0).equals(exitCode);
+            }
+        };
+    }
+
+    static String checkerInput(String input, String expectedOutput, String output) {
+        StringBuilder stdin = new StringBuilder();
+        for (String part : new String[]{input, expectedOutput, output}) {
+            String text = part != null ? part.replace("\r\n", "\n") : "";
+            if (text.endsWith("\n")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            stdin.append(text.isEmpty() ? 0 : text.split("\n", -1).length).append('\n');
+            if (!text.isEmpty()) {
+                stdin.append(text).append('\n');
+            }
+        }
+        return stdin.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package com.anita.multipleauthapi.service.grading;
+
+/**
+ * Same text after trimming both outputs, compared character by character as the output arrives.
+ * Whitespace is only compared once something follows it, since it may turn out to be trailing.
+ */
+final class ExactChecker implements OutputChecker {
+    static final ExactChecker INSTANCE = new ExactChecker();
+
+    private ExactChecker() {
+    }
+
+    @Override
+    public Session start(String input, String expectedOutput) {
+        String expected = String.valueOf(expectedOutput).trim();
+        return new Session() {
+            private int matched = 0;
+            private boolean started = false;
+            // Whitespace after the last matched character, and whether it differs from the expected text
+            private int pending = 0;
+            private boolean pendingDiffers = false;
+            private boolean rejected = false;
+
+            @Override
+            public boolean accept(CharSequence chunk) {
+                for (int i = 0; i < chunk.length() && !rejected; i++) {
+                    char c = chunk.charAt(i);
+                    if (c <= ' ') {
+                        if (started) {
+                            int at = matched + pending++;
+                            pendingDiffers |= at >= expected.length() || expected.charAt(at) != c;
+                        }
+                        continue;
+                    }
+                    started = true;
+                    if (pendingDiffers) {
+                        rejected = true;
+                        break;
+                    }
+                    matched += pending;
+                    pending = 0;
+                    if (matched >= expected.length() || expected.charAt(matched) != c) {
+                        rejected = true;
+                        break;
+                    }
+                    matched++;
+                }
+                return !rejected;
+            }
+
+            @Override
+            public boolean finish() {
+                return !rejected && matched == expected.length();
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.service.util.HashUtils;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One test case as it is run: the program's stdin, the output it must print and its weight
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradingCase {
+    private String input;
+    private String expectedOutput;
+    /**
+     * Share of the score relative to the other cases, null counts as 1
+     */
+    private Integer weight;
+
+    /**
+     * Identity of the case's content, stored with its verdict. The weight is left out because
+     * re-weighting a case changes the score but not the verdict.
+     */
+    public String contentHash() {
+        return HashUtils.sha256(input, expectedOutput != null ? expectedOutput.trim() : null);
+    }
+}
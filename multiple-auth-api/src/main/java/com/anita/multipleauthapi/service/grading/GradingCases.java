@@ -0,0 +1,85 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.model.TestCase;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the test cases of a question. Questions with isTestCase store them as
+ * [{"input": [..] or value, "output": .., "weight": ..}], older questions as {@link TestCase} objects.
+ */
+public final class GradingCases {
+
+    private GradingCases() {
+    }
+
+    /**
+     * @return Whether submissions to the question are graded by test cases at all
+     */
+    public static boolean hasTestCases(QuestionEntity question) {
+        return question.getTestCases() != null && !question.getTestCases().trim().isEmpty();
+    }
+
+    /**
+     * @param testCasesJson   The question's testCases
+     * @param inputDataFormat True for questions with isTestCase, false for the older format
+     * @throws JsonProcessingException if the test cases cannot be read
+     */
+    public static List<GradingCase> parse(String testCasesJson, boolean inputDataFormat, ObjectMapper objectMapper)
+            throws JsonProcessingException {
+        if (!inputDataFormat) {
+            return of(objectMapper.readValue(testCasesJson, new TypeReference<List<TestCase>>() {}));
+        }
+        List<Map<String, Object>> testCases = objectMapper.readValue(testCasesJson,
+                new TypeReference<List<Map<String, Object>>>() {});
+        return testCases.stream()
+                .map(testCase -> GradingCase.builder()
+                        .input(toStdin(testCase.get("input")))
+                        .expectedOutput(String.valueOf(testCase.get("output")))
+                        .weight(testCase.get("weight") instanceof Number weight ? weight.intValue() : null)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Test cases of the question in the format its isTestCase flag selects
+     */
+    public static List<GradingCase> parse(QuestionEntity question, ObjectMapper objectMapper) throws JsonProcessingException {
+        return parse(question.getTestCases(), Boolean.TRUE.equals(question.getIsTestCase()), objectMapper);
+    }
+
+    public static List<GradingCase> of(List<TestCase> testCases) {
+        return testCases.stream()
+                .map(testCase -> GradingCase.builder()
+                        .input(testCase.getInputAsString())
+                        .expectedOutput(testCase.getOutput())
+                        .weight(testCase.getWeight())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convert input object to string format suitable for program stdin
+     *
+     * @param inputObj Input object (can be array, single value, etc.)
+     * @return String representation of input data
+     */
+    public static String toStdin(Object inputObj) {
+        if (inputObj == null) {
+            return "";
+        }
+        if (inputObj instanceof List<?> inputList) {
+            // Join list elements with newlines for multi-line input
+            return inputList.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining("\n"));
+        }
+        return String.valueOf(inputObj);
+    }
+}
@@ -0,0 +1,125 @@
+package com.anita.multipleauthapi.service.grading;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Same lines, ignoring whitespace at the end of each line (carriage returns included) and empty
+ * lines at the end of the output. Unordered, the same non-empty lines in any order.
+ */
+final class LineChecker implements OutputChecker {
+    private final boolean ordered;
+
+    LineChecker(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    @Override
+    public Session start(String input, String expectedOutput) {
+        List<String> expected = Arrays.stream(String.valueOf(expectedOutput).split("\n", -1))
+                .map(String::stripTrailing)
+                .collect(Collectors.toList());
+        while (!expected.isEmpty() && expected.get(expected.size() - 1).isEmpty()) {
+            expected.remove(expected.size() - 1);
+        }
+        LineMatcher matcher = ordered ? new InOrder(expected) : new AnyOrder(expected);
+        return new Session() {
+            private final StringBuilder line = new StringBuilder();
+            private boolean rejected = false;
+
+            @Override
+            public boolean accept(CharSequence chunk) {
+                for (int i = 0; i < chunk.length() && !rejected; i++) {
+                    char c = chunk.charAt(i);
+                    if (c == '\n') {
+                        rejected = !matcher.line(line.toString().stripTrailing());
+                        line.setLength(0);
+                    } else {
+                        line.append(c);
+                    }
+                }
+                return !rejected;
+            }
+
+            @Override
+            public boolean finish() {
+                return !rejected && matcher.line(line.toString().stripTrailing()) && matcher.complete();
+            }
+        };
+    }
+
+    private interface LineMatcher {
+        /**
+         * @return false if the line cannot be part of an accepted output
+         */
+        boolean line(String line);
+
+        boolean complete();
+    }
+
+    private static final class InOrder implements LineMatcher {
+        private final List<String> expected;
+        private int index = 0;
+        // Empty lines are only compared once a non-empty line follows, trailing ones are ignored
+        private int pendingEmpty = 0;
+
+        InOrder(List<String> expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public boolean line(String line) {
+            if (line.isEmpty()) {
+                pendingEmpty++;
+                return true;
+            }
+            for (; pendingEmpty > 0; pendingEmpty--) {
+                if (index >= expected.size() || !expected.get(index++).isEmpty()) {
+                    return false;
+                }
+            }
+            return index < expected.size() && expected.get(index++).equals(line);
+        }
+
+        @Override
+        public boolean complete() {
+            return index == expected.size();
+        }
+    }
+
+    private static final class AnyOrder implements LineMatcher {
+        private final Map<String, Integer> remaining = new HashMap<>();
+        private int count = 0;
+
+        AnyOrder(List<String> expected) {
+            for (String line : expected) {
+                if (!line.isEmpty()) {
+                    remaining.merge(line, 1, Integer::sum);
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        public boolean line(String line) {
+            if (line.isEmpty()) {
+                return true;
+            }
+            Integer left = remaining.get(line);
+            if (left == null || left == 0) {
+                return false;
+            }
+            remaining.put(line, left - 1);
+            count--;
+            return true;
+        }
+
+        @Override
+        public boolean complete() {
+            return count == 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.anita.multipleauthapi.service.grading;
+
+/**
+ * Decides whether a program's output is an accepted answer. The output is fed in the chunks it
+ * arrives in, so a checker can reject a wrong answer while the program is still running.
+ */
+public interface OutputChecker {
+
+    /**
+     * Starts checking one output
+     *
+     * @param input          Stdin of the program
+     * @param expectedOutput Output of a correct program
+     */
+    Session start(String input, String expectedOutput);
+
+    /**
+     * Whether sessions can reject an output before it is complete; checkers that need the whole
+     * output only buffer it
+     */
+    default boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * Checks a complete output
+     */
+    default boolean accepts(String input, String expectedOutput, String output) {
+        Session session = start(input, expectedOutput);
+        return session.accept(output != null ? output : "") && session.finish();
+    }
+
+    interface Session {
+        /**
+         * @param chunk Next part of the output
+         * @return false once the output cannot be accepted anymore, whatever follows
+         */
+        boolean accept(CharSequence chunk);
+
+        /**
+         * Called once after the last chunk
+         *
+         * @return Whether the output as a whole is accepted
+         */
+        boolean finish();
+    }
+}
@@ -0,0 +1,63 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.CheckerType;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the output checker a question is configured with
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutputCheckers {
+    static final double DEFAULT_EPSILON = 1e-6;
+
+    private final DockerService dockerService;
+
+    /**
+     * @return The question's checker; {@link CheckerType#EXACT} if none is set
+     */
+    public OutputChecker forQuestion(QuestionEntity question) {
+        CheckerType type = question.getChecker() != null ? question.getChecker() : CheckerType.EXACT;
+        if (type != CheckerType.CUSTOM) {
+            return builtIn(type, question.getCheckerEpsilon());
+        }
+        if (question.getCheckerCode() == null || question.getCheckerCode().isBlank()) {
+            log.warn("Question {} has a custom checker without code, comparing outputs exactly", question.getId());
+            return ExactChecker.INSTANCE;
+        }
+        if (!supportsCustom(question.getLanguage())) {
+            log.warn("Question {} has a custom checker in {}, comparing outputs exactly", question.getId(), question.getLanguage());
+            return ExactChecker.INSTANCE;
+        }
+        return new CustomChecker(dockerService, question.getLanguage(), question.getCheckerCode(), question.getInitialCode());
+    }
+
+    /**
+     * The checker program is written in the question's language and reads its input from stdin,
+     * which a SQL query cannot do
+     */
+    public static boolean supportsCustom(LanguageType language) {
+        return language != LanguageType.SQL;
+    }
+
+    /**
+     * @param epsilon Tolerance of {@link CheckerType#FLOAT}, null for the default
+     * @throws IllegalArgumentException for {@link CheckerType#CUSTOM}, which needs a question
+     */
+    public static OutputChecker builtIn(CheckerType type, Double epsilon) {
+        return switch (type) {
+            case EXACT -> ExactChecker.INSTANCE;
+            case TOKENS -> new TokenChecker(null);
+            case LINES -> new LineChecker(true);
+            case FLOAT -> new TokenChecker(epsilon != null ? epsilon : DEFAULT_EPSILON);
+            case UNORDERED_LINES -> new LineChecker(false);
+            case CUSTOM -> throw new IllegalArgumentException("A custom checker needs the checker code of its question");
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.service.sandbox.Cancellation;
+import com.anita.multipleauthapi.service.sandbox.ExecutionListener;
+
+/**
+ * Checks a program's stdout while it runs and stops the program as soon as its output cannot
+ * be accepted anymore, instead of letting a wrong answer run to its end
+ */
+public class StreamingCheck implements ExecutionListener {
+    private final OutputChecker.Session session;
+    private final Cancellation cancellation;
+    // Guarded by this, like the session
+    private boolean rejected = false;
+
+    /**
+     * @param cancellation Stops the program; fired once when the output is rejected
+     */
+    public StreamingCheck(OutputChecker checker, String input, String expectedOutput, Cancellation cancellation) {
+        this.session = checker.start(input, expectedOutput);
+        this.cancellation = cancellation;
+    }
+
+    public synchronized boolean isRejected() {
+        return rejected;
+    }
+
+    @Override
+    public void onPhase(Phase phase) {
+    }
+
+    @Override
+    public void onStdout(String chunk) {
+        synchronized (this) {
+            if (rejected || session.accept(chunk)) {
+                return;
+            }
+            rejected = true;
+        }
+        cancellation.cancel();
+    }
+
+    @Override
+    public void onStderr(String chunk) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.anita.multipleauthapi.service.grading;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What changed between two versions of a question's test cases, compared position by position
+ */
+@Data
+@Builder
+public class TestCaseDiff {
+    private int added;
+    private int changed; // input or expected output differs
+    private int removed;
+    private int reweighted; // same content, other weight
+    private int unchanged;
+
+    public static TestCaseDiff between(List<GradingCase> before, List<GradingCase> after) {
+        TestCaseDiffBuilder diff = TestCaseDiff.builder()
+                .added(Math.max(0, after.size() - before.size()))
+                .removed(Math.max(0, before.size() - after.size()));
+        int changed = 0;
+        int reweighted = 0;
+        int unchanged = 0;
+        for (int i = 0; i < Math.min(before.size(), after.size()); i++) {
+            if (!before.get(i).contentHash().equals(after.get(i).contentHash())) {
+                changed++;
+            } else if (!Objects.equals(CaseGrader.weightOf(before.get(i).getWeight()), CaseGrader.weightOf(after.get(i).getWeight()))) {
+                reweighted++;
+            } else {
+                unchanged++;
+            }
+        }
+        return diff.changed(changed).reweighted(reweighted).unchanged(unchanged).build();
+    }
+
+    /**
+     * @return Whether stored scores may be stale
+     */
+    public boolean affectsScores() {
+        return added > 0 || changed > 0 || removed > 0 || reweighted > 0;
+    }
+}
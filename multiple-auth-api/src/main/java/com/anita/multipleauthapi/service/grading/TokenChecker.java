@@ -0,0 +1,72 @@
+package com.anita.multipleauthapi.service.grading;
+
+/**
+ * Same whitespace-separated tokens. With an epsilon, tokens that are both numbers match if they
+ * differ by at most epsilon, or by epsilon relative to the expected value where that is above 1.
+ */
+final class TokenChecker implements OutputChecker {
+    private final Double epsilon;
+
+    TokenChecker(Double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public Session start(String input, String expectedOutput) {
+        String trimmed = String.valueOf(expectedOutput).trim();
+        String[] expected = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+        return new Session() {
+            private final StringBuilder token = new StringBuilder();
+            private int index = 0;
+            private boolean rejected = false;
+
+            @Override
+            public boolean accept(CharSequence chunk) {
+                for (int i = 0; i < chunk.length() && !rejected; i++) {
+                    char c = chunk.charAt(i);
+                    if (c <= ' ') {
+                        rejected = !completeToken();
+                    } else {
+                        token.append(c);
+                        // A surplus token, or one already longer than an exact match could be
+                        rejected = index >= expected.length
+                                || (epsilon == null && token.length() > expected[index].length());
+                    }
+                }
+                return !rejected;
+            }
+
+            @Override
+            public boolean finish() {
+                return !rejected && completeToken() && index == expected.length;
+            }
+
+            private boolean completeToken() {
+                if (token.length() == 0) {
+                    return true;
+                }
+                boolean matches = index < expected.length && matches(token.toString(), expected[index]);
+                index++;
+                token.setLength(0);
+                return matches;
+            }
+        };
+    }
+
+    private boolean matches(String actual, String expected) {
+        if (actual.equals(expected)) {
+            return true;
+        }
+        if (epsilon == null) {
+            return false;
+        }
+        try {
+            double actualValue = Double.parseDouble(actual);
+            double expectedValue = Double.parseDouble(expected);
+            return Double.isFinite(actualValue) && Double.isFinite(expectedValue)
+                    && Math.abs(actualValue - expectedValue) <= epsilon * Math.max(1, Math.abs(expectedValue));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
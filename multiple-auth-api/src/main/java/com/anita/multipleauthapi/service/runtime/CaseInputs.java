@@ -0,0 +1,54 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Puts test case inputs into the batch script itself, so they reach the programs through pipes
+ * instead of one input file per case. The script is fed to "sh -s" on stdin, and dash and
+ * busybox ash back here-documents with pipes.
+ */
+public final class CaseInputs {
+    private static final String DELIMITER = "INPUT";
+
+    private CaseInputs() {
+    }
+
+    /**
+     * Quoted here-document with the content, to be appended to a command line. The shell ends
+     * every line with a newline, so a content without a final newline gets one.
+     *
+     * @return "&lt;&lt;'DELIMITER'", the content and the delimiter line, each line ended
+     */
+    public static String heredoc(String content) {
+        String body = content == null ? "" : content;
+        if (!body.isEmpty() && !body.endsWith("\n")) {
+            body += "\n";
+        }
+        String delimiter = DELIMITER;
+        for (int i = 1; body.startsWith(delimiter + "\n") || body.contains("\n" + delimiter + "\n"); i++) {
+            delimiter = DELIMITER + "_" + i;
+        }
+        return "<<'" + delimiter + "'\n" + body + delimiter + "\n";
+    }
+
+    /**
+     * UTF-8 byte length of an input, for "head -c" to take exactly the input back out of its
+     * {@link #heredoc} without the newline that may have been added
+     */
+    public static int byteLength(String content) {
+        return content == null ? 0 : content.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * All inputs of a batch as one stream for a worker: per case the UTF-8 byte length on its own
+     * line, then exactly that many bytes. Unlike {@link #heredoc}, inputs are kept byte for byte.
+     */
+    public static String frames(List<String> inputs) {
+        StringBuilder frames = new StringBuilder();
+        for (String input : inputs) {
+            frames.append(byteLength(input)).append('\n').append(input == null ? "" : input);
+        }
+        return frames.toString();
+    }
+}
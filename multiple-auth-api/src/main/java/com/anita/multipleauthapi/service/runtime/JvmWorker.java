@@ -0,0 +1,370 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs inside a JVM language's sandbox in place of "javac" plus one "java" process per test case.
+ * The submission is compiled with the in-process compiler and every case of a batch runs in this
+ * one JVM, each in a fresh class loader (so static state starts over) with stdout and stderr
+ * redirected to the case's files, under a CPU-time and wall-clock watchdog. The inputs of all cases
+ * arrive on the worker's stdin as {@link CaseInputs#frames}, each case reads its own from System.in.
+ * It leaves the same files as the shell batch script (compile.*, out_N.txt, err_N.txt, exit_N.txt,
+ * time_N.txt, usage_N.txt with the CPU time of the case's threads and the worker's peak RSS). A case that calls System.exit, or whose threads cannot be stopped after a timeout,
+ * ends the worker; the script from {@link #batchLoop} then records that case and starts a new
+ * worker at the next one.
+ * The class file is copied into the sandbox as is, so it may only use the JDK and must not have
+ * nested classes.
+ */
+public final class JvmWorker {
+    static final String INSTALL_DIR = ".worker";
+    static final String CASE_FILE = "worker.case";
+    private static final int TIMEOUT_EXIT_CODE = 124;
+    private static final long POLL_MSEC = 5;
+    private static final long STOP_GRACE_MSEC = 1000;
+
+    // The case being run, finished by the shutdown hook when the program calls System.exit
+    private static volatile PrintStream caseOut;
+    private static volatile PrintStream caseErr;
+    private static volatile int currentCase;
+    private static volatile long caseStartNanos;
+
+    private JvmWorker() {
+    }
+
+    /**
+     * Copies the worker class into the work directory, under {@value #INSTALL_DIR}
+     */
+    public static void install(Path workDir) throws IOException {
+        String resource = JvmWorker.class.getName().replace('.', '/') + ".class";
+        Path target = workDir.resolve(INSTALL_DIR).resolve(resource);
+        Files.createDirectories(target.getParent());
+        try (InputStream in = JvmWorker.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Class file of the JVM worker not found: " + resource);
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Shell script part that runs the cases of a batch through the worker, restarting it after a
+     * case that ended the JVM
+     *
+     * @param mainClass  Class whose main method is the program
+     * @param classPath  Class path of the program, relative to /code, ':' separated
+     * @param inputs     Stdin contents, one per case
+     * @param sourceFile Java source to compile in-process first, null if already compiled
+     */
+    public static String batchLoop(String mainClass, String classPath, List<String> inputs, int timeoutSeconds, String sourceFile) {
+        int caseCount = inputs.size();
+        // A restarted worker is fed the same inputs again and skips the cases before its first one
+        String launch = "java -XX:+UseSerialGC -Dfile.encoding=UTF-8 -cp " + INSTALL_DIR + " " + JvmWorker.class.getName()
+                + " " + mainClass + " " + classPath + " $i " + caseCount + " " + timeoutSeconds + " $source "
+                + CaseInputs.heredoc(CaseInputs.frames(inputs));
+        return "source=" + (sourceFile != null ? sourceFile : "-") + "\n"
+                + "i=1\n"
+                + "while [ $i -le " + caseCount + " ]; do\n"
+                + "  rm -f " + CASE_FILE + "\n"
+                + "  " + launch
+                + "  code=$?\n"
+                + "  source=-\n"
+                + "  if [ -f compile.exit ] && [ \"$(cat compile.exit)\" != 0 ]; then exit 0; fi\n"
+                // Without a case file the worker did not start; the remaining cases stay incomplete
+                + "  [ -f " + CASE_FILE + " ] || exit 0\n"
+                + "  i=$(cat " + CASE_FILE + ")\n"
+                + "  if [ $i -le " + caseCount + " ]; then\n"
+                + "    [ -f exit_$i.txt ] || echo $code > exit_$i.txt\n"
+                + "    [ -f time_$i.txt ] || echo 0 > time_$i.txt\n"
+                + "    i=$((i + 1))\n"
+                + "  fi\n"
+                + "done\n";
+    }
+
+    /**
+     * Arguments: mainClass classPath firstCase caseCount timeoutSeconds sourceFile|-
+     * Stdin: the inputs of all cases, see {@link CaseInputs#frames}
+     */
+    public static void main(String[] args) throws Exception {
+        String mainClass = args[0];
+        String[] entries = args[1].split(":");
+        URL[] classPath = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            classPath[i] = Path.of(entries[i]).toAbsolutePath().toUri().toURL();
+        }
+        int first = Integer.parseInt(args[2]);
+        int count = Integer.parseInt(args[3]);
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args[4]));
+        byte[][] inputs = readInputs(System.in, count);
+
+        if (!"-".equals(args[5]) && !compile(args[5], timeoutNanos)) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(JvmWorker::finishExitedCase));
+        for (int i = first; i <= count; i++) {
+            Files.writeString(Path.of(CASE_FILE), Integer.toString(i));
+            runCase(i, inputs[i - 1], mainClass, classPath, timeoutNanos);
+        }
+        Files.writeString(Path.of(CASE_FILE), Integer.toString(count + 1));
+        // Do not wait for daemon threads a program may have left behind
+        System.exit(0);
+    }
+
+    private static boolean compile(String sourceFile, long timeoutNanos) throws IOException {
+        long start = System.nanoTime();
+        Thread watchdog = new Thread(() -> {
+            try {
+                TimeUnit.NANOSECONDS.sleep(timeoutNanos);
+                Files.writeString(Path.of("compile.time"), Long.toString(elapsedMillis(start)));
+                Files.writeString(Path.of("compile.exit"), Integer.toString(TIMEOUT_EXIT_CODE));
+                Runtime.getRuntime().halt(TIMEOUT_EXIT_CODE);
+            } catch (InterruptedException | IOException e) {
+                // compiled in time
+            }
+        }, "compile-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        int exitCode;
+        try (OutputStream out = Files.newOutputStream(Path.of("compile.out"));
+             OutputStream err = Files.newOutputStream(Path.of("compile.err"))) {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                err.write("No Java compiler in this runtime\n".getBytes(StandardCharsets.UTF_8));
+                exitCode = 2;
+            } else {
+                exitCode = compiler.run(InputStream.nullInputStream(), out, err,
+                        "-encoding", "UTF-8", "-cp", ".", "-d", ".", sourceFile);
+            }
+        }
+        watchdog.interrupt();
+        Files.writeString(Path.of("compile.time"), Long.toString(elapsedMillis(start)));
+        Files.writeString(Path.of("compile.exit"), Integer.toString(exitCode));
+        return exitCode == 0;
+    }
+
+    /**
+     * Reads the frames of all cases, so every case gets its own input however much the ones
+     * before it read
+     */
+    private static byte[][] readInputs(InputStream stdin, int count) throws IOException {
+        InputStream in = new BufferedInputStream(stdin);
+        byte[][] inputs = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < '0' || b > '9') {
+                    throw new IOException("Malformed input frame of case " + (i + 1));
+                }
+                length = length * 10 + (b - '0');
+            }
+            inputs[i] = in.readNBytes(length);
+            if (inputs[i].length != length) {
+                throw new IOException("Input of case " + (i + 1) + " is incomplete");
+            }
+        }
+        return inputs;
+    }
+
+    private static void runCase(int index, byte[] input, String mainClass, URL[] classPath, long timeoutNanos) throws Exception {
+        PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(Path.of("out_" + index + ".txt")), 64 * 1024), false);
+        PrintStream err = new PrintStream(new BufferedOutputStream(Files.newOutputStream(Path.of("err_" + index + ".txt"))), true);
+        InputStream in = new ByteArrayInputStream(input);
+        System.setIn(in);
+        System.setOut(out);
+        System.setErr(err);
+        caseOut = out;
+        caseErr = err;
+        currentCase = index;
+        caseStartNanos = System.nanoTime();
+
+        int[] exitCode = {0};
+        URLClassLoader loader = new URLClassLoader(classPath, ClassLoader.getPlatformClassLoader());
+        ThreadGroup group = new ThreadGroup("case-" + index);
+        Thread main = new Thread(group, () -> {
+            try {
+                Method entry = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+                entry.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                if (!(e.getCause() instanceof ThreadDeath)) {
+                    System.err.print("Exception in thread \"main\" ");
+                    withoutWorkerFrames(e.getCause()).printStackTrace();
+                    exitCode[0] = 1;
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Error: Could not find or load main class " + mainClass);
+                System.err.println("Caused by: " + e);
+                exitCode[0] = 1;
+            }
+        }, "main");
+        main.setContextClassLoader(loader);
+        main.start();
+
+        Map<Long, Long> cpuNanos = new HashMap<>();
+        Map<Long, Long> userNanos = new HashMap<>();
+        boolean timedOut = awaitCase(group, timeoutNanos, cpuNanos, userNanos);
+        boolean stopped = stopAll(group);
+        int code = timedOut ? TIMEOUT_EXIT_CODE : exitCode[0];
+        long elapsed = elapsedMillis(caseStartNanos);
+        long cpuMillis = TimeUnit.NANOSECONDS.toMillis(sum(cpuNanos));
+        long userMillis = TimeUnit.NANOSECONDS.toMillis(sum(userNanos));
+
+        caseOut = null;
+        out.close();
+        err.close();
+        in.close();
+        Files.writeString(Path.of("exit_" + index + ".txt"), Integer.toString(code));
+        Files.writeString(Path.of("time_" + index + ".txt"), Long.toString(elapsed));
+        Files.writeString(Path.of("usage_" + index + ".txt"),
+                userMillis + " " + Math.max(0, cpuMillis - userMillis) + " " + peakRssKb());
+        if (!stopped) {
+            // Threads that survive Thread.stop would keep running into the next case
+            Runtime.getRuntime().halt(code);
+        }
+        loader.close();
+    }
+
+    /**
+     * Waits until no non-daemon thread of the case is left, like a JVM waiting to exit
+     *
+     * @param cpuNanos  Filled with the CPU time per thread as last seen, so threads that already ended still count
+     * @param userNanos Filled with the user part of it
+     * @return true if the case used more CPU time or wall-clock time than allowed
+     */
+    private static boolean awaitCase(ThreadGroup group, long timeoutNanos, Map<Long, Long> cpuNanos,
+                                     Map<Long, Long> userNanos) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        while (true) {
+            boolean running = false;
+            for (Thread thread : threadsOf(group)) {
+                if (!thread.isAlive()) {
+                    continue;
+                }
+                running |= !thread.isDaemon();
+                long cpu = threads.getThreadCpuTime(thread.getId());
+                if (cpu >= 0) {
+                    cpuNanos.put(thread.getId(), cpu);
+                    userNanos.put(thread.getId(), Math.max(0, threads.getThreadUserTime(thread.getId())));
+                }
+            }
+            if (!running) {
+                return false;
+            }
+            if (sum(cpuNanos) > timeoutNanos || System.nanoTime() - caseStartNanos > timeoutNanos) {
+                return true;
+            }
+            Thread.sleep(POLL_MSEC);
+        }
+    }
+
+    /**
+     * Stops every thread the case left running
+     *
+     * @return false if some thread did not stop within the grace period
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean stopAll(ThreadGroup group) throws InterruptedException {
+        for (Thread thread : threadsOf(group)) {
+            try {
+                thread.stop();
+            } catch (UnsupportedOperationException e) {
+                // JDKs after 19 cannot stop threads; the worker is restarted instead
+                return false;
+            }
+        }
+        long deadline = System.currentTimeMillis() + STOP_GRACE_MSEC;
+        for (Thread thread : threadsOf(group)) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuts the reflection and worker frames below the program's main method, so the trace reads like one from "java Main"
+     */
+    private static Throwable withoutWorkerFrames(Throwable error) {
+        StackTraceElement[] trace = error.getStackTrace();
+        for (int i = 0; i < trace.length; i++) {
+            if (trace[i].getClassName().startsWith("jdk.internal.reflect.")) {
+                error.setStackTrace(Arrays.copyOf(trace, i));
+                break;
+            }
+        }
+        return error;
+    }
+
+    private static long sum(Map<Long, Long> nanos) {
+        return nanos.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return High-water mark of this worker's resident memory (VmHWM), -1 where /proc is not available
+     */
+    private static long peakRssKb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    private static Thread[] threadsOf(ThreadGroup group) {
+        Thread[] threads = new Thread[group.activeCount() + 16];
+        int count = group.enumerate(threads, true);
+        Thread[] result = new Thread[count];
+        System.arraycopy(threads, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Saves the output of a case whose program called System.exit; the batch script records the exit code
+     */
+    private static void finishExitedCase() {
+        PrintStream out = caseOut;
+        if (out == null) {
+            return;
+        }
+        out.flush();
+        caseErr.flush();
+        try {
+            Files.writeString(Path.of("time_" + currentCase + ".txt"), Long.toString(elapsedMillis(caseStartNanos)));
+        } catch (IOException e) {
+            // the script falls back to 0
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
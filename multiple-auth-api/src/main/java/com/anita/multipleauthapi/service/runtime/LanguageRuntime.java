@@ -0,0 +1,106 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * How one language is built and run inside a sandbox, as declared in the runtime registry file
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LanguageRuntime {
+    private LanguageType language;
+    /**
+     * Image the language's sandboxes are started from
+     */
+    private String image;
+    /**
+     * Name the submitted source is written to in /code
+     */
+    private String sourceFile;
+    /**
+     * Shell command that compiles the source, null for interpreted languages
+     */
+    private String compile;
+    /**
+     * Shell command that runs the program, reading the test input from stdin
+     */
+    private String run;
+    /**
+     * Files (globs allowed) the compile step produces; they are cached so the same source is not compiled twice
+     */
+    @Builder.Default
+    private List<String> artifacts = List.of();
+    /**
+     * Per-sandbox limits; null falls back to app.sandbox.memoryLimit / cpuLimit
+     */
+    private String memoryLimit;
+    private String cpuLimit;
+    /**
+     * Warm sandboxes kept ready for this language, 0 to start one per execution
+     */
+    private int poolSize;
+    /**
+     * False for programs whose test cases cannot run one after the other in the same sandbox;
+     * each case then gets a sandbox of its own and graded cases run in parallel
+     */
+    @Builder.Default
+    private boolean batched = true;
+    /**
+     * Set for JVM languages whose graded test cases run in one {@link JvmWorker} instead of a JVM per case
+     */
+    private JvmWorkerOptions jvmWorker;
+    /**
+     * Set for Python runtimes whose graded test cases run through the {@link PythonWorker} fork server
+     */
+    private PythonWorkerOptions pythonWorker;
+
+    public boolean isCompiled() {
+        return compile != null && !compile.isBlank();
+    }
+
+    /**
+     * The compile and run steps as one shell command line
+     */
+    public String getCommandLine() {
+        return isCompiled() ? compile + " && " + run : run;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class JvmWorkerOptions {
+        private String mainClass;
+        /**
+         * Class path of the compiled program, relative to /code, ':' separated
+         */
+        @Builder.Default
+        private String classPath = ".";
+        /**
+         * Compile sourceFile (Java only) inside the worker instead of running the compile step
+         */
+        private boolean compileInProcess;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PythonWorkerOptions {
+        @Builder.Default
+        private String interpreter = "python";
+        /**
+         * Modules imported once by the fork server, so cases that import them start at once
+         */
+        @Builder.Default
+        private List<String> preload = List.of();
+    }
+}
@@ -0,0 +1,48 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Installs and launches workers/python_worker.py, the fork server that runs every test case of a
+ * Python batch from one interpreter: modules such as pandas are imported once and each case runs
+ * in a forked child with the case's input as stdin.
+ */
+public final class PythonWorker {
+    static final String RESOURCE = "workers/python_worker.py";
+    static final String INSTALL_PATH = ".worker/python_worker.py";
+
+    private PythonWorker() {
+    }
+
+    /**
+     * Copies the worker script into the work directory
+     */
+    public static void install(Path workDir) throws IOException {
+        Path target = workDir.resolve(INSTALL_PATH);
+        Files.createDirectories(target.getParent());
+        try (InputStream in = PythonWorker.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Python worker script not found: " + RESOURCE);
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Shell script part that runs the cases of a batch through the worker
+     *
+     * @param interpreter Python executable in the sandbox
+     * @param sourceFile  The submission, relative to /code
+     * @param inputs      Stdin contents, one per case
+     * @param preload     Modules imported once before the first case is forked
+     */
+    public static String batchCommand(String interpreter, String sourceFile, List<String> inputs, int timeoutSeconds, List<String> preload) {
+        return interpreter + " " + INSTALL_PATH + " " + sourceFile + " " + inputs.size() + " " + timeoutSeconds
+                + " '" + String.join(",", preload) + "' " + CaseInputs.heredoc(CaseInputs.frames(inputs));
+    }
+}
@@ -0,0 +1,260 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Language runtimes (image, build and run steps, resource limits, warm pool size) loaded from YAML.
+ * The bundled runtimes.yaml is used unless app.sandbox.runtimes.file points to another file, which
+ * is then watched and reloaded when it changes. A file that fails to load never replaces the
+ * runtimes already in use.
+ */
+@Slf4j
+@Component
+public class RuntimeRegistry {
+    static final String BUNDLED_FILE = "runtimes.yaml";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern MEMORY_LIMIT = Pattern.compile("\\d+[bkmgBKMG]?");
+    private static final Pattern PYTHON_MODULE = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final AppProperties.Runtimes config;
+    private final List<Consumer<Map<LanguageType, LanguageRuntime>>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "runtime-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Map<LanguageType, LanguageRuntime> runtimes;
+    // Modification time of the external file when it was last read
+    private volatile long loadedModified = -1;
+
+    public RuntimeRegistry(AppProperties appProperties) {
+        this.config = appProperties.getSandbox().getRuntimes();
+        // Starting without runtimes would fail every execution, so a broken file stops startup
+        this.runtimes = load();
+        log.info("Loaded {} language runtimes from {}", runtimes.size(), describeSource());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (isExternal() && config.getReloadIntervalMsec() > 0) {
+            watcher.scheduleWithFixedDelay(this::reloadIfModified,
+                    config.getReloadIntervalMsec(), config.getReloadIntervalMsec(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        watcher.shutdownNow();
+    }
+
+    /**
+     * @return The runtime of the language, or null if none is configured
+     */
+    public LanguageRuntime get(LanguageType language) {
+        return runtimes.get(language);
+    }
+
+    /**
+     * @return The runtime of the language
+     * @throws IllegalArgumentException if none is configured
+     */
+    public LanguageRuntime require(LanguageType language) {
+        LanguageRuntime runtime = runtimes.get(language);
+        if (runtime == null) {
+            throw new IllegalArgumentException("No runtime configured for " + language);
+        }
+        return runtime;
+    }
+
+    public Map<LanguageType, LanguageRuntime> getAll() {
+        return runtimes;
+    }
+
+    /**
+     * Registers a callback that receives all runtimes whenever a reload changed them
+     */
+    public void addListener(Consumer<Map<LanguageType, LanguageRuntime>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reads the runtimes file again and applies it if it differs from the runtimes in use
+     *
+     * @return The runtimes in use afterwards
+     * @throws IllegalArgumentException if the file is invalid; the previous runtimes stay in use
+     */
+    public synchronized Map<LanguageType, LanguageRuntime> reload() {
+        Map<LanguageType, LanguageRuntime> next = load();
+        if (next.equals(runtimes)) {
+            return runtimes;
+        }
+        runtimes = next;
+        log.info("Reloaded {} language runtimes from {}", next.size(), describeSource());
+        for (Consumer<Map<LanguageType, LanguageRuntime>> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                log.error("Runtime reload listener failed: {}", e.getMessage(), e);
+            }
+        }
+        return next;
+    }
+
+    private void reloadIfModified() {
+        Path file = Path.of(config.getFile());
+        try {
+            // A file that is missing for a moment (e.g. replaced by an editor) keeps the current runtimes
+            if (!Files.exists(file) || Files.getLastModifiedTime(file).toMillis() == loadedModified) {
+                return;
+            }
+            reload();
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Keeping the current language runtimes, {} could not be loaded: {}", file, e.getMessage());
+        }
+    }
+
+    private Map<LanguageType, LanguageRuntime> load() {
+        try {
+            if (isExternal()) {
+                Path file = Path.of(config.getFile());
+                loadedModified = Files.getLastModifiedTime(file).toMillis();
+                try (InputStream in = Files.newInputStream(file)) {
+                    return parse(in, file.toString());
+                }
+            }
+            try (InputStream in = new ClassPathResource(BUNDLED_FILE).getInputStream()) {
+                return parse(in, describeSource());
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read " + describeSource() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a runtimes document: a top-level "runtimes" mapping from language name to runtime
+     *
+     * @param source Name of the document, used in error messages
+     * @throws IllegalArgumentException if the document or one of its runtimes is invalid
+     */
+    static Map<LanguageType, LanguageRuntime> parse(InputStream in, String source) {
+        Object document = new Yaml(new SafeConstructor(new LoaderOptions())).load(in);
+        if (!(document instanceof Map<?, ?> root) || !(root.get("runtimes") instanceof Map<?, ?> entries)) {
+            throw new IllegalArgumentException(source + ": expected a top-level 'runtimes' mapping");
+        }
+        Map<LanguageType, LanguageRuntime> result = new EnumMap<>(LanguageType.class);
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            LanguageType language;
+            try {
+                language = LanguageType.valueOf(String.valueOf(entry.getKey()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ": unknown language " + entry.getKey());
+            }
+            LanguageRuntime runtime;
+            try {
+                runtime = MAPPER.convertValue(entry.getValue(), LanguageRuntime.class);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ": invalid runtime for " + language + ": " + e.getMessage());
+            }
+            if (runtime == null) {
+                throw new IllegalArgumentException(source + ": empty runtime for " + language);
+            }
+            runtime.setLanguage(language);
+            validate(runtime, source);
+            result.put(language, runtime);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static void validate(LanguageRuntime runtime, String source) {
+        String prefix = source + ": " + runtime.getLanguage() + " ";
+        if (isBlank(runtime.getImage()) || isBlank(runtime.getSourceFile()) || isBlank(runtime.getRun())) {
+            throw new IllegalArgumentException(prefix + "needs an image, a sourceFile and a run command");
+        }
+        if (runtime.getSourceFile().contains("/")) {
+            throw new IllegalArgumentException(prefix + "sourceFile must be a plain file name");
+        }
+        // Steps are embedded in single-quoted sh -c arguments of the batch script
+        if (runtime.getRun().contains("'") || (runtime.isCompiled() && runtime.getCompile().contains("'"))) {
+            throw new IllegalArgumentException(prefix + "commands must not contain single quotes");
+        }
+        if (runtime.getMemoryLimit() != null && !MEMORY_LIMIT.matcher(runtime.getMemoryLimit()).matches()) {
+            throw new IllegalArgumentException(prefix + "has an invalid memoryLimit: " + runtime.getMemoryLimit());
+        }
+        if (runtime.getCpuLimit() != null) {
+            try {
+                if (Double.parseDouble(runtime.getCpuLimit()) <= 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(prefix + "has an invalid cpuLimit: " + runtime.getCpuLimit());
+            }
+        }
+        if (runtime.getPoolSize() < 0) {
+            throw new IllegalArgumentException(prefix + "has a negative poolSize");
+        }
+        LanguageRuntime.JvmWorkerOptions worker = runtime.getJvmWorker();
+        if (worker != null) {
+            if (isBlank(worker.getMainClass()) || isBlank(worker.getClassPath())) {
+                throw new IllegalArgumentException(prefix + "jvmWorker needs a mainClass and a classPath");
+            }
+            if (worker.isCompileInProcess() && !runtime.getSourceFile().endsWith(".java")) {
+                throw new IllegalArgumentException(prefix + "jvmWorker can only compile Java sources in-process");
+            }
+        }
+        LanguageRuntime.PythonWorkerOptions pythonWorker = runtime.getPythonWorker();
+        if (pythonWorker != null) {
+            if (isBlank(pythonWorker.getInterpreter()) || pythonWorker.getInterpreter().contains("'")) {
+                throw new IllegalArgumentException(prefix + "pythonWorker needs an interpreter without single quotes");
+            }
+            if (pythonWorker.getPreload() == null) {
+                pythonWorker.setPreload(List.of());
+            }
+            for (String module : pythonWorker.getPreload()) {
+                if (!PYTHON_MODULE.matcher(module).matches()) {
+                    throw new IllegalArgumentException(prefix + "pythonWorker has an invalid preload module: " + module);
+                }
+            }
+        }
+        if (runtime.getArtifacts() == null) {
+            runtime.setArtifacts(List.of());
+        }
+    }
+
+    private boolean isExternal() {
+        return config.getFile() != null && !config.getFile().isBlank();
+    }
+
+    private String describeSource() {
+        return isExternal() ? config.getFile() : "classpath:" + BUNDLED_FILE;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
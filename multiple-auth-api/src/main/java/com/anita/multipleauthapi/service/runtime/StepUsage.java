@@ -0,0 +1,60 @@
+package com.anita.multipleauthapi.service.runtime;
+
+/**
+ * Shell parts that measure a step of an execution script. A usage file holds one line,
+ * "USER_MSEC SYSTEM_MSEC PEAK_KB": CPU time of the step's processes and the peak memory they
+ * reached, -1 where it could not be measured. The workers write the same format.
+ * CPU time comes from the shell's "times" for children it has waited for, so it counts the
+ * program and its descendants only. Peak memory is the sandbox cgroup's high-water mark
+ * (cgroup v2 memory.peak, v1 memory.max_usage_in_bytes), which also covers earlier steps
+ * of the same sandbox, such as the compile step. Every step tries to reset the v1 counter;
+ * a warm sandbox that already served a job reports -1 unless that reset succeeded, since its
+ * mark may come from an earlier job. A v2 reset only applies to reads through the file
+ * descriptor that wrote it, which the shell cannot rewind, so it is not attempted.
+ */
+public final class StepUsage {
+    /**
+     * now: centiseconds since boot, available in every image without relying on date +%N.
+     * cpu: sets $user and $system to the milliseconds used by waited-for children so far.
+     * peak_reset: restarts the v1 high-water mark at the current usage, marking it valid.
+     * peak_kb: high-water mark of the sandbox's memory in KB, or -1.
+     */
+    private static final String HELPERS = ""
+            + "now() { read up rest < /proc/uptime; echo \"${up%.*}${up#*.}\"; }\n"
+            // "1m2.345000s" (dash) or "1m2.345s" (bash, busybox) to milliseconds
+            + "ms() { f=${1#*.}; f=${f%s}000; s=${1#*m}; s=${s%.*}; echo $(( ${1%%m*} * 60000 + s * 1000 + 1${f%\"${f#???}\"} - 1000 )); }\n"
+            // In the current shell, a subshell would report its own children only
+            + "cpu() { times > .times; { read self; read user system; } < .times; user=$(ms $user); system=$(ms $system); }\n"
+            + "peak_reset() { echo 0 2>/dev/null > /sys/fs/cgroup/memory/memory.max_usage_in_bytes && peak_valid=1; }\n"
+            + "peak_kb() { [ -n \"$peak_valid\" ] || { echo -1; return; }; "
+            + "cat /sys/fs/cgroup/memory.peak /sys/fs/cgroup/memory/memory.max_usage_in_bytes 2>/dev/null"
+            + " | { read bytes && echo $((bytes / 1024)) || echo -1; }; }\n";
+
+    private StepUsage() {
+    }
+
+    /**
+     * Shell functions the other parts call
+     *
+     * @param reusedSandbox true if the sandbox already ran an earlier job, whose memory
+     *                      the high-water mark may still hold
+     */
+    public static String functions(boolean reusedSandbox) {
+        return HELPERS + (reusedSandbox ? "peak_valid=\n" : "peak_valid=1\n");
+    }
+
+    /**
+     * Starts measuring a step; needs {@link #functions}
+     */
+    public static String begin() {
+        return "peak_reset; cpu; u0=$user; s0=$system; start=$(now)\n";
+    }
+
+    /**
+     * Ends measuring a step, writing its elapsed milliseconds and its usage line
+     */
+    public static String end(String timeFile, String usageFile) {
+        return "echo $(( ($(now) - start) * 10 )) > " + timeFile + "\n"
+                + "cpu; echo \"$((user - u0)) $((system - s0)) $(peak_kb)\" > " + usageFile + "\n";
+    }
+}
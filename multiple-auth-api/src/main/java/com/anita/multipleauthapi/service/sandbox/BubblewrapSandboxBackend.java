@@ -0,0 +1,94 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs every job in fresh bubblewrap namespaces (no network, own PID and IPC namespace, private
+ * /tmp) over the toolchains installed on the host, which are mounted read-only. The sandbox
+ * work directory is the only writable mount. Without a container to start, a cold job costs
+ * about as much as a warm one; the image of a handle is ignored.
+ * <p>
+ * CPU time and address space are capped with ulimit. The memory limit of the docker backends
+ * needs a cgroup, so run the service in a memory-limited slice when using this backend.
+ */
+@Slf4j
+public class BubblewrapSandboxBackend implements SandboxBackend {
+    private static final String PATH = "/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin";
+
+    private final AppProperties.Sandbox config;
+    private final long addressSpaceKb;
+
+    public BubblewrapSandboxBackend(AppProperties.Sandbox config) {
+        this.config = config;
+        this.addressSpaceKb = ExecutionScheduler.parseBytes(config.getBubblewrap().getAddressSpaceLimit()) / 1024;
+    }
+
+    @Override
+    public String getName() {
+        return "bwrap";
+    }
+
+    @Override
+    public void start(SandboxHandle handle) throws IOException {
+        Files.createDirectories(handle.getWorkDir());
+    }
+
+    @Override
+    public DockerService.ExecutionResult run(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                             ExecutionListener listener) {
+        return exec(handle, shellCommand, stdin, timeoutSeconds, listener);
+    }
+
+    @Override
+    public DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                              ExecutionListener listener) {
+        return ProcessRunner.run(buildCommand(handle, shellCommand, timeoutSeconds), null, stdin, timeoutSeconds,
+                config.getMaxOutputBytes(), listener);
+    }
+
+    List<String> buildCommand(SandboxHandle handle, String shellCommand, int timeoutSeconds) {
+        AppProperties.Bubblewrap bubblewrap = config.getBubblewrap();
+        List<String> command = new ArrayList<>();
+        command.add(bubblewrap.getBinary());
+        command.addAll(List.of("--unshare-all", "--die-with-parent", "--new-session", "--clearenv"));
+        for (String path : bubblewrap.getReadOnlyPaths()) {
+            command.addAll(List.of("--ro-bind-try", path, path));
+        }
+        command.addAll(List.of(
+                "--proc", "/proc",
+                "--dev", "/dev",
+                "--tmpfs", "/tmp",
+                "--bind", handle.getWorkDir().toString(), "/code",
+                "--chdir", "/code",
+                "--setenv", "PATH", PATH,
+                "--setenv", "HOME", "/code",
+                "sh", "-c",
+                // CPU seconds get one second of slack over the wall clock timeout that ProcessRunner enforces
+                "ulimit -t " + (timeoutSeconds + 1) + "; ulimit -v " + addressSpaceKb + "; " + shellCommand
+        ));
+        return command;
+    }
+
+    @Override
+    public boolean isHealthy(SandboxHandle handle) {
+        return Files.isDirectory(handle.getWorkDir());
+    }
+
+    @Override
+    public void reset(SandboxHandle handle) throws IOException {
+        // Processes of a job end with its PID namespace, only the files remain
+        Workspaces.clean(handle.getWorkDir());
+    }
+
+    @Override
+    public void destroy(SandboxHandle handle) {
+        Workspaces.deleteQuietly(handle.getWorkDir());
+    }
+}
@@ -0,0 +1,68 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets a caller stop executions it started, e.g. the remaining test cases of a submission once
+ * one of them failed. Running executions register how they are stopped; executions that have
+ * not started yet check {@link #isCancelled()} and do not start at all.
+ */
+@Slf4j
+public class Cancellation {
+    // Guarded by this
+    private final List<Runnable> hooks = new ArrayList<>();
+    private boolean cancelled = false;
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs every registered hook once; later calls do nothing
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        for (Runnable hook : toRun) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                log.warn("Failed to stop a cancelled execution: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registers how to stop a running execution, until the returned registration is closed.
+     * If already cancelled, the hook runs at once.
+     */
+    public Registration onCancel(Runnable hook) {
+        synchronized (this) {
+            if (!cancelled) {
+                hooks.add(hook);
+                return () -> {
+                    synchronized (this) {
+                        hooks.remove(hook);
+                    }
+                };
+            }
+        }
+        hook.run();
+        return () -> { };
+    }
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,125 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Runs the test cases of one submission at the same time, each in a sandbox of its own, for
+ * languages whose cases cannot be batched in one sandbox. The calling thread already holds a
+ * scheduler permit and runs cases itself; every further parallel case needs a slot the
+ * scheduler can spare right now, so a busy host degrades to running the cases one by one and
+ * never lets a submission jump the queue. The first failing case cancels the others:
+ * running ones are killed and the rest never start.
+ */
+@Slf4j
+@Component
+public class CaseFanOut {
+    private final ExecutionScheduler scheduler;
+    private final int maxParallelCases;
+    private final ExecutorService helpers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "case-fan-out");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CaseFanOut(ExecutionScheduler scheduler, AppProperties appProperties) {
+        this.scheduler = scheduler;
+        this.maxParallelCases = Math.max(1, appProperties.getSubmission().getMaxParallelCases());
+    }
+
+    @PreDestroy
+    public void stop() {
+        helpers.shutdownNow();
+    }
+
+    /**
+     * @param caseCount Number of cases
+     * @param executor  Runs one case, stopping it when the cancellation fires
+     * @param passes    Whether a case's result passes; the first that does not cancels the rest
+     * @return One result per case; cases cut short by the cancellation get {@link DockerService#cancelled()}
+     */
+    public List<DockerService.ExecutionResult> run(int caseCount, CaseExecutor executor,
+                                                   BiPredicate<Integer, DockerService.ExecutionResult> passes) {
+        DockerService.ExecutionResult[] results = new DockerService.ExecutionResult[caseCount];
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        Cancellation cancellation = new Cancellation();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < caseCount && !failed.get(); i = next.getAndIncrement()) {
+                DockerService.ExecutionResult result = executor.execute(i, cancellation);
+                if (!passes.test(i, result)) {
+                    if (failed.compareAndSet(false, true)) {
+                        cancellation.cancel();
+                    } else {
+                        // Killed, or failing after another case already decided the grade
+                        result = DockerService.cancelled();
+                    }
+                }
+                results[i] = result;
+            }
+        };
+
+        List<Future<?>> started = new ArrayList<>();
+        for (int i = 1; i < Math.min(maxParallelCases, caseCount); i++) {
+            ExecutionScheduler.Permit permit = scheduler.tryAcquire(ExecutionScheduler.Lane.SUBMISSION);
+            if (permit == null) {
+                break;
+            }
+            started.add(helpers.submit(() -> {
+                try (permit) {
+                    worker.run();
+                }
+            }));
+        }
+        log.info("Running {} test cases on {} sandboxes at a time", caseCount, started.size() + 1);
+        try {
+            worker.run();
+        } finally {
+            awaitAll(started, cancellation);
+        }
+
+        for (int i = 0; i < caseCount; i++) {
+            if (results[i] == null) {
+                results[i] = DockerService.cancelled();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Waits for the helpers, which also makes their results visible to this thread
+     */
+    private static void awaitAll(List<Future<?>> started, Cancellation cancellation) {
+        for (Future<?> future : started) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancellation.cancel();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Test case runner failed: {}", e.getCause().getMessage(), e.getCause());
+                cancellation.cancel();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface CaseExecutor {
+        DockerService.ExecutionResult execute(int index, Cancellation cancellation);
+    }
+}
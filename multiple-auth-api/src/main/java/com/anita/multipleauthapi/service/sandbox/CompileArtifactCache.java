@@ -0,0 +1,233 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.util.HashUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compiled output on local disk.
+ * Entries are keyed by a hash of the source, toolchain image and compile command,
+ * and evicted least-recently-used first once the configured size or entry count is exceeded.
+ */
+@Slf4j
+@Component
+public class CompileArtifactCache {
+    private final AppProperties.ArtifactCache config;
+    private final Path cacheRoot;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CompileArtifactCache(AppProperties appProperties) {
+        this.config = appProperties.getSandbox().getArtifactCache();
+        this.cacheRoot = Path.of(appProperties.getSandbox().getWorkRoot(), "artifact-cache");
+    }
+
+    /**
+     * Indexes entries left on disk by a previous run, oldest first
+     */
+    @PostConstruct
+    public void load() {
+        if (!config.isEnabled() || !Files.isDirectory(cacheRoot)) {
+            return;
+        }
+        File[] dirs = cacheRoot.toFile().listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        Arrays.sort(dirs, Comparator.comparingLong(File::lastModified));
+        synchronized (entries) {
+            for (File dir : dirs) {
+                if (dir.getName().startsWith(".")) {
+                    Workspaces.deleteQuietly(dir.toPath());
+                    continue;
+                }
+                long size = sizeOf(dir.toPath());
+                entries.put(dir.getName(), size);
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+        log.info("Loaded {} compile artifacts ({} bytes) from {}", entries.size(), totalBytes, cacheRoot);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Builds a cache key from everything that influences the compiled output
+     */
+    public static String key(String... parts) {
+        return HashUtils.sha256(parts);
+    }
+
+    /**
+     * Copies the cached artifacts for the key into the target directory
+     *
+     * @return true on a cache hit
+     */
+    public boolean restore(String key, Path targetDir) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        Path entryDir = cacheRoot.resolve(key);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(entryDir)) {
+            // Copies, not links: the sandbox may modify or delete what it is given
+            for (Path file : files) {
+                Files.copy(file, targetDir.resolve(file.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            log.warn("Dropping unreadable compile artifact {}: {}", key, e.getMessage());
+            remove(key);
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Stores the files in sourceDir matching any of the glob patterns under the key.
+     * Nothing is stored if no file matches.
+     */
+    public void store(String key, Path sourceDir, List<String> patterns) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+        Path staging = cacheRoot.resolve("." + UUID.randomUUID());
+        try {
+            List<Path> artifacts = new ArrayList<>();
+            for (String pattern : patterns) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(sourceDir, pattern)) {
+                    files.forEach(file -> {
+                        if (Files.isRegularFile(file)) {
+                            artifacts.add(file);
+                        }
+                    });
+                }
+            }
+            if (artifacts.isEmpty()) {
+                return;
+            }
+
+            Files.createDirectories(staging);
+            long size = 0;
+            for (Path artifact : artifacts) {
+                Files.copy(artifact, staging.resolve(artifact.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
+                size += Files.size(artifact);
+            }
+            if (size > config.getMaxBytes()) {
+                return;
+            }
+            // Publish atomically so a concurrent restore never sees a half-written entry
+            Files.move(staging, cacheRoot.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (entries) {
+                entries.put(key, size);
+                totalBytes += size;
+                stores.incrementAndGet();
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            // Another request may have published the same key first
+            log.debug("Could not store compile artifact {}: {}", key, e.getMessage());
+        } finally {
+            Workspaces.deleteQuietly(staging);
+        }
+    }
+
+    public CacheStats getStats() {
+        synchronized (entries) {
+            return CacheStats.builder()
+                    .entries(entries.size())
+                    .bytes(totalBytes)
+                    .hits(hits.get())
+                    .misses(misses.get())
+                    .stores(stores.get())
+                    .evictions(evictions.get())
+                    .build();
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        Workspaces.deleteQuietly(cacheRoot.resolve(key));
+    }
+
+    /**
+     * Must be called while holding the entries lock
+     */
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while ((totalBytes > config.getMaxBytes() || entries.size() > config.getMaxEntries()) && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            Workspaces.deleteQuietly(cacheRoot.resolve(eldest.getKey()));
+        }
+    }
+
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Data
+    @Builder
+    public static class CacheStats {
+        private int entries;
+        private long bytes;
+        private long hits;
+        private long misses;
+        private long stores;
+        private long evictions;
+    }
+}
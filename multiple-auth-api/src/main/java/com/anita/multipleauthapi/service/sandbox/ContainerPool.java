@@ -0,0 +1,351 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.service.runtime.LanguageRuntime;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-warmed sandboxes per language.
+ * Sandboxes are started ahead of time, reset between jobs and reclaimed when idle too long,
+ * unhealthy, used more than app.sandbox.pool.maxUses times, or started from a runtime
+ * (image or limits) that has since been replaced.
+ */
+@Slf4j
+@Component
+public class ContainerPool {
+    private final SandboxBackend backend;
+    private final AppProperties.Pool config;
+    private final Path poolRoot;
+    private final Map<LanguageType, LanguagePool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenance = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "container-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed = false;
+
+    public ContainerPool(SandboxBackend backend, AppProperties appProperties) {
+        this.backend = backend;
+        this.config = appProperties.getSandbox().getPool();
+        this.poolRoot = Path.of(appProperties.getSandbox().getWorkRoot(), "pool");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.isEnabled()) {
+            maintenance.scheduleWithFixedDelay(this::maintain,
+                    config.getMaintenanceIntervalMsec(), config.getMaintenanceIntervalMsec(), TimeUnit.MILLISECONDS);
+            log.info("Container pool started with backend '{}' (maxSize={})", backend.getName(), config.getMaxSize());
+        }
+    }
+
+    public SandboxBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @return true if the pool serves the given language
+     */
+    public boolean isEnabled(LanguageType language) {
+        LanguagePool pool = pools.get(language);
+        return config.isEnabled() && !closed && pool != null && pool.getMinIdle() > 0;
+    }
+
+    /**
+     * Registers a language with the pool, or updates it after its runtime changed, and warms up
+     * poolSize sandboxes in the background. Sandboxes of an earlier image or with other limits
+     * are replaced as they come back to the pool.
+     *
+     * @param runtime Runtime the sandboxes are started from; a poolSize of 0 stops pooling the language
+     */
+    public void register(LanguageRuntime runtime) {
+        LanguageType language = runtime.getLanguage();
+        if (!config.isEnabled() || (runtime.getPoolSize() <= 0 && !pools.containsKey(language))) {
+            return;
+        }
+        LanguagePool pool = pools.computeIfAbsent(language, key -> new LanguagePool());
+        pool.runtime = runtime;
+        maintenance.execute(() -> {
+            reclaim(pool);
+            topUp(language, pool);
+        });
+    }
+
+    /**
+     * Stops pooling a language; its idle sandboxes are destroyed, busy ones when they are released
+     */
+    public void unregister(LanguageType language) {
+        LanguagePool pool = pools.get(language);
+        if (pool == null) {
+            return;
+        }
+        pool.runtime = null;
+        maintenance.execute(() -> reclaim(pool));
+    }
+
+    /**
+     * Takes a warm sandbox for the language, starting a new one if the pool is below its maximum size
+     *
+     * @param language Language of the job
+     * @return A sandbox reserved for the caller, or null if none became available within acquireTimeoutMsec
+     */
+    public SandboxHandle acquire(LanguageType language) {
+        LanguagePool pool = pools.get(language);
+        if (pool == null || !isEnabled(language)) {
+            return null;
+        }
+
+        long deadline = System.currentTimeMillis() + config.getAcquireTimeoutMsec();
+        try {
+            while (true) {
+                // Most recently used first so that the oldest sandboxes age out at the tail
+                SandboxHandle handle = takeIdle(pool, pool.idle.pollFirst());
+                if (handle != null) {
+                    pool.reused.incrementAndGet();
+                    handle.markUsed();
+                    return handle;
+                }
+                if (pool.tryReserve(config.getMaxSize())) {
+                    handle = create(language, pool);
+                    if (handle == null) {
+                        return null;
+                    }
+                    handle.markUsed();
+                    return handle;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    pool.acquireTimeouts.incrementAndGet();
+                    log.warn("No warm {} sandbox available within {} ms", language, config.getAcquireTimeoutMsec());
+                    return null;
+                }
+                handle = takeIdle(pool, pool.idle.pollFirst(remaining, TimeUnit.MILLISECONDS));
+                if (handle != null) {
+                    pool.reused.incrementAndGet();
+                    handle.markUsed();
+                    return handle;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Returns a sandbox to the pool. The sandbox is reset in the background before it is reused.
+     *
+     * @param handle   Sandbox obtained from {@link #acquire}
+     * @param reusable false if the job left the sandbox in an unknown state (e.g. it timed out)
+     */
+    public void release(SandboxHandle handle, boolean reusable) {
+        LanguagePool pool = pools.get(handle.getLanguage());
+        if (pool == null) {
+            backend.destroy(handle);
+            return;
+        }
+        if (!reusable || closed || handle.getUses().get() >= config.getMaxUses() || !pool.fits(handle)) {
+            discard(pool, handle);
+            return;
+        }
+        maintenance.execute(() -> {
+            try {
+                backend.reset(handle);
+                handle.markIdle();
+                pool.idle.offerFirst(handle);
+            } catch (IOException e) {
+                log.warn("Discarding sandbox {}: {}", handle.getId(), e.getMessage());
+                discard(pool, handle);
+            }
+        });
+    }
+
+    /**
+     * Health-checks idle sandboxes, reclaims expired ones and tops every pool up to minIdle
+     */
+    public void maintain() {
+        pools.forEach((language, pool) -> {
+            try {
+                reclaim(pool);
+                topUp(language, pool);
+            } catch (Exception e) {
+                log.error("Container pool maintenance failed for {}: {}", language, e.getMessage(), e);
+            }
+        });
+    }
+
+    public Map<LanguageType, PoolStats> getStats() {
+        Map<LanguageType, PoolStats> stats = new EnumMap<>(LanguageType.class);
+        pools.forEach((language, pool) -> stats.put(language, PoolStats.builder()
+                .idle(pool.idle.size())
+                .total(pool.total.get())
+                .created(pool.created.get())
+                .reused(pool.reused.get())
+                .destroyed(pool.destroyed.get())
+                .acquireTimeouts(pool.acquireTimeouts.get())
+                .build()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        maintenance.shutdownNow();
+        pools.values().forEach(pool -> {
+            SandboxHandle handle;
+            while ((handle = pool.idle.pollFirst()) != null) {
+                pool.total.decrementAndGet();
+                backend.destroy(handle);
+            }
+        });
+    }
+
+    private void reclaim(LanguagePool pool) {
+        long now = System.currentTimeMillis();
+        List<SandboxHandle> snapshot = new ArrayList<>(pool.idle);
+        for (SandboxHandle handle : snapshot) {
+            // Only handles we manage to take out of the deque are ours to inspect
+            if (!pool.idle.remove(handle)) {
+                continue;
+            }
+            boolean stale = !pool.fits(handle);
+            boolean expired = now - handle.getLastUsedAt() > config.getIdleTimeoutMsec()
+                    && pool.total.get() > pool.getMinIdle();
+            if (stale || expired || !backend.isHealthy(handle)) {
+                log.info("Reclaiming {} sandbox {}", stale ? "outdated" : expired ? "idle" : "unhealthy", handle.getId());
+                discard(pool, handle);
+            } else {
+                pool.idle.offerLast(handle);
+            }
+        }
+    }
+
+    private void topUp(LanguageType language, LanguagePool pool) {
+        while (!closed && pool.idle.size() < pool.getMinIdle() && pool.tryReserve(config.getMaxSize())) {
+            SandboxHandle handle = create(language, pool);
+            if (handle == null) {
+                return;
+            }
+            pool.idle.offerLast(handle);
+        }
+    }
+
+    /**
+     * Starts a sandbox for a slot already reserved with {@link LanguagePool#tryReserve}
+     */
+    private SandboxHandle create(LanguageType language, LanguagePool pool) {
+        LanguageRuntime runtime = pool.runtime;
+        if (runtime == null) {
+            pool.total.decrementAndGet();
+            return null;
+        }
+        String id = "code-exec-pool-" + language.name().toLowerCase() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        SandboxHandle handle = new SandboxHandle(id, language, runtime.getImage(), runtime.getMemoryLimit(),
+                runtime.getCpuLimit(), poolRoot.resolve(id));
+        try {
+            Workspaces.clean(handle.getWorkDir());
+            backend.start(handle);
+            pool.created.incrementAndGet();
+            log.info("Started {} sandbox {}", language, id);
+            return handle;
+        } catch (IOException e) {
+            log.error("Failed to start {} sandbox: {}", language, e.getMessage());
+            pool.total.decrementAndGet();
+            backend.destroy(handle);
+            return null;
+        }
+    }
+
+    /**
+     * @return The idle sandbox if it still matches the pool's runtime; an outdated one is discarded
+     */
+    private SandboxHandle takeIdle(LanguagePool pool, SandboxHandle handle) {
+        if (handle != null && !pool.fits(handle)) {
+            discard(pool, handle);
+            return null;
+        }
+        return handle;
+    }
+
+    private void discard(LanguagePool pool, SandboxHandle handle) {
+        pool.total.decrementAndGet();
+        pool.destroyed.incrementAndGet();
+        if (closed) {
+            backend.destroy(handle);
+        } else {
+            maintenance.execute(() -> backend.destroy(handle));
+        }
+    }
+
+    private static class LanguagePool {
+        // Null once the language is no longer pooled
+        private volatile LanguageRuntime runtime;
+        private final LinkedBlockingDeque<SandboxHandle> idle = new LinkedBlockingDeque<>();
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong reused = new AtomicLong();
+        private final AtomicLong destroyed = new AtomicLong();
+        private final AtomicLong acquireTimeouts = new AtomicLong();
+
+        private int getMinIdle() {
+            LanguageRuntime current = runtime;
+            return current != null ? current.getPoolSize() : 0;
+        }
+
+        /**
+         * @return true if the sandbox was started from the current runtime's image and limits
+         */
+        private boolean fits(SandboxHandle handle) {
+            LanguageRuntime current = runtime;
+            return current != null && current.getPoolSize() > 0
+                    && Objects.equals(current.getImage(), handle.getImage())
+                    && Objects.equals(current.getMemoryLimit(), handle.getMemoryLimit())
+                    && Objects.equals(current.getCpuLimit(), handle.getCpuLimit());
+        }
+
+        private boolean tryReserve(int maxSize) {
+            while (true) {
+                int current = total.get();
+                if (current >= maxSize) {
+                    return false;
+                }
+                if (total.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Data
+    @Builder
+    public static class PoolStats {
+        private int idle;
+        private int total;
+        private long created;
+        private long reused;
+        private long destroyed;
+        private long acquireTimeouts;
+    }
+}
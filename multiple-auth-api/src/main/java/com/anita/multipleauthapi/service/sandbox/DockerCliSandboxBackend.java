@@ -0,0 +1,131 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs warm sandboxes as detached containers driven through the docker CLI.
+ * Each container idles on "tail -f /dev/null" and jobs reach it with "docker exec".
+ * One-off jobs use "docker run --rm".
+ */
+@Slf4j
+public class DockerCliSandboxBackend implements SandboxBackend {
+    private static final int CONTROL_TIMEOUT_SECONDS = 30;
+
+    private final AppProperties.Sandbox config;
+    // Sandboxes killed while their job may still be starting; see run
+    private final Set<String> killed = ConcurrentHashMap.newKeySet();
+
+    public DockerCliSandboxBackend(AppProperties.Sandbox config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getName() {
+        return "docker-cli";
+    }
+
+    @Override
+    public void start(SandboxHandle handle) throws IOException {
+        List<String> command = List.of(
+                "docker", "run", "-d",
+                "--name", handle.getId(),
+                "--label", "code-exec-pool=true",
+                "--memory=" + handle.memoryLimitOr(config.getMemoryLimit()),
+                "--cpus=" + handle.cpuLimitOr(config.getCpuLimit()),
+                "--network=none",
+                "-v", handle.getWorkDir() + ":/code",
+                "-w", "/code",
+                "--entrypoint", "tail",
+                handle.getImage(),
+                "-f", "/dev/null"
+        );
+        DockerService.ExecutionResult result = ProcessRunner.run(command, null, null, CONTROL_TIMEOUT_SECONDS);
+        if (result.getExitCode() == null || result.getExitCode() != 0) {
+            destroy(handle);
+            throw new IOException("Failed to start sandbox " + handle.getId() + ": " + result.getStderr());
+        }
+    }
+
+    @Override
+    public DockerService.ExecutionResult run(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                             ExecutionListener listener) {
+        List<String> command = new ArrayList<>(List.of("docker", "run", "--rm"));
+        if (stdin != null) {
+            command.add("-i");
+        }
+        command.addAll(List.of(
+                "--name", handle.getId(),
+                "--memory=" + handle.memoryLimitOr(config.getMemoryLimit()),
+                "--cpus=" + handle.cpuLimitOr(config.getCpuLimit()),
+                "--network=none",
+                "--stop-timeout=" + timeoutSeconds,
+                "-v", handle.getWorkDir() + ":/code",
+                "-w", "/code",
+                handle.getImage(),
+                "sh", "-c", shellCommand
+        ));
+        DockerService.ExecutionResult result = null;
+        try {
+            result = ProcessRunner.run(command, null, stdin, timeoutSeconds, config.getMaxOutputBytes(), listener);
+            return result;
+        } finally {
+            // A timeout only destroys the docker CLI process and leaves its container running, and a
+            // kill can reach the daemon before the container exists; --rm only acts once it exits
+            boolean wasKilled = killed.remove(handle.getId());
+            if (result == null || Boolean.TRUE.equals(result.getTimedOut()) || wasKilled) {
+                remove(handle);
+            }
+        }
+    }
+
+    @Override
+    public DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                              ExecutionListener listener) {
+        List<String> command = stdin != null
+                ? List.of("docker", "exec", "-i", "-w", "/code", handle.getId(), "sh", "-c", shellCommand)
+                : List.of("docker", "exec", "-w", "/code", handle.getId(), "sh", "-c", shellCommand);
+        return ProcessRunner.run(command, null, stdin, timeoutSeconds, config.getMaxOutputBytes(), listener);
+    }
+
+    @Override
+    public boolean isHealthy(SandboxHandle handle) {
+        DockerService.ExecutionResult result = ProcessRunner.run(
+                List.of("docker", "inspect", "-f", "{{.State.Running}}", handle.getId()), null, null, CONTROL_TIMEOUT_SECONDS);
+        return result.getExitCode() != null && result.getExitCode() == 0 && "true".equals(result.getStdout().trim());
+    }
+
+    @Override
+    public void kill(SandboxHandle handle) {
+        killed.add(handle.getId());
+        remove(handle);
+    }
+
+    @Override
+    public void reset(SandboxHandle handle) throws IOException {
+        // kill -9 -1 signals every process except PID 1 (the idle tail) and the calling shell
+        DockerService.ExecutionResult result = exec(handle,
+                "kill -9 -1 2>/dev/null; rm -rf /tmp/* /code/* /code/.[!.]* 2>/dev/null; true", null, CONTROL_TIMEOUT_SECONDS);
+        if (result.getExitCode() == null || result.getExitCode() != 0) {
+            throw new IOException("Failed to reset sandbox " + handle.getId() + ": " + result.getStderr());
+        }
+    }
+
+    @Override
+    public void destroy(SandboxHandle handle) {
+        killed.remove(handle.getId());
+        remove(handle);
+        Workspaces.deleteQuietly(handle.getWorkDir());
+    }
+
+    private void remove(SandboxHandle handle) {
+        ProcessRunner.run(List.of("docker", "rm", "-f", handle.getId()), null, null, CONTROL_TIMEOUT_SECONDS);
+    }
+}
@@ -0,0 +1,292 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import com.anita.multipleauthapi.service.docker.DockerEngineClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs sandboxes as containers driven through the Docker Engine API, without forking a docker
+ * CLI process per step. Warm sandboxes idle on "tail -f /dev/null" and jobs run as exec
+ * instances; one-off jobs create, attach, start, wait and remove a container.
+ */
+@Slf4j
+public class DockerEngineSandboxBackend implements SandboxBackend {
+    private static final int EXIT_CODE_POLLS = 100;
+    private static final long EXIT_CODE_POLL_MSEC = 10;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "docker-api-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Stdin is written from its own thread so a program that never reads cannot stall the output
+    private static final ExecutorService STDIN_WRITERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "docker-api-stdin");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AppProperties.Sandbox config;
+    private final DockerEngineClient client;
+
+    public DockerEngineSandboxBackend(AppProperties.Sandbox config, DockerEngineClient client) {
+        this.config = config;
+        this.client = client;
+    }
+
+    @Override
+    public String getName() {
+        return "docker-api";
+    }
+
+    @Override
+    public void start(SandboxHandle handle) throws IOException {
+        Map<String, Object> spec = containerSpec(handle, List.of("-f", "/dev/null"), false);
+        spec.put("Entrypoint", List.of("tail"));
+        spec.put("Labels", Map.of("code-exec-pool", "true"));
+        try {
+            client.createContainer(handle.getId(), spec);
+            client.startContainer(handle.getId());
+        } catch (IOException e) {
+            destroy(handle);
+            throw new IOException("Failed to start sandbox " + handle.getId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public DockerService.ExecutionResult run(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                             ExecutionListener listener) {
+        long startTime = System.currentTimeMillis();
+        String id = null;
+        try {
+            id = client.createContainer(handle.getId(), containerSpec(handle, List.of("sh", "-c", shellCommand), stdin != null));
+            String containerId = id;
+            try (DockerEngineClient.Stream stream = client.attachContainer(id, stdin != null)) {
+                client.startContainer(id);
+                Captured captured = capture(stream, stdin, timeoutSeconds, listener, () -> killQuietly(containerId));
+                if (captured.timedOut) {
+                    return timedOut(startTime, timeoutSeconds);
+                }
+                return captured.toResult(client.waitContainer(id), startTime);
+            }
+        } catch (IOException e) {
+            log.error("Error running sandbox {}: {}", handle.getId(), e.getMessage());
+            return failed(startTime, e);
+        } finally {
+            if (id != null) {
+                removeQuietly(id);
+            }
+        }
+    }
+
+    @Override
+    public DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                              ExecutionListener listener) {
+        long startTime = System.currentTimeMillis();
+        try {
+            String execId = client.createExec(handle.getId(), List.of("sh", "-c", shellCommand), stdin != null, "/code");
+            Captured captured;
+            try (DockerEngineClient.Stream stream = client.startExec(execId)) {
+                // An exec cannot be killed through the API; the pool discards a sandbox whose job timed out
+                captured = capture(stream, stdin, timeoutSeconds, listener, () -> { });
+            }
+            if (captured.timedOut) {
+                return timedOut(startTime, timeoutSeconds);
+            }
+            return captured.toResult(waitForExitCode(execId), startTime);
+        } catch (IOException e) {
+            log.error("Error running job in sandbox {}: {}", handle.getId(), e.getMessage());
+            return failed(startTime, e);
+        }
+    }
+
+    @Override
+    public boolean isHealthy(SandboxHandle handle) {
+        try {
+            return client.inspectContainer(handle.getId()).path("State").path("Running").asBoolean(false);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void kill(SandboxHandle handle) {
+        // One-off containers are created under the handle's id as well
+        killQuietly(handle.getId());
+    }
+
+    @Override
+    public void reset(SandboxHandle handle) throws IOException {
+        // kill -9 -1 signals every process except PID 1 (the idle tail) and the calling shell
+        DockerService.ExecutionResult result = exec(handle,
+                "kill -9 -1 2>/dev/null; rm -rf /tmp/* /code/* /code/.[!.]* 2>/dev/null; true", null, 30);
+        if (result.getExitCode() == null || result.getExitCode() != 0) {
+            throw new IOException("Failed to reset sandbox " + handle.getId() + ": " + result.getStderr());
+        }
+    }
+
+    @Override
+    public void destroy(SandboxHandle handle) {
+        removeQuietly(handle.getId());
+        Workspaces.deleteQuietly(handle.getWorkDir());
+    }
+
+    private Map<String, Object> containerSpec(SandboxHandle handle, List<String> command, boolean stdin) {
+        Map<String, Object> hostConfig = new LinkedHashMap<>();
+        hostConfig.put("Binds", List.of(handle.getWorkDir() + ":/code"));
+        hostConfig.put("Memory", ExecutionScheduler.parseBytes(handle.memoryLimitOr(config.getMemoryLimit())));
+        hostConfig.put("NanoCpus", (long) (Double.parseDouble(handle.cpuLimitOr(config.getCpuLimit())) * 1_000_000_000L));
+        hostConfig.put("NetworkMode", "none");
+
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("Image", handle.getImage());
+        spec.put("Cmd", command);
+        spec.put("WorkingDir", "/code");
+        spec.put("AttachStdin", stdin);
+        spec.put("AttachStdout", true);
+        spec.put("AttachStderr", true);
+        spec.put("OpenStdin", stdin);
+        spec.put("StdinOnce", stdin);
+        spec.put("Tty", false);
+        spec.put("HostConfig", hostConfig);
+        return spec;
+    }
+
+    /**
+     * Feeds stdin and collects output until the stream ends or the timeout fires
+     *
+     * @param onTimeout Stops the job; the stream is closed afterwards either way
+     */
+    private Captured capture(DockerEngineClient.Stream stream, String stdin, int timeoutSeconds,
+                             ExecutionListener listener, Runnable onTimeout) throws IOException {
+        Captured captured = new Captured(config.getMaxOutputBytes());
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timer = WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            onTimeout.run();
+            stream.close();
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        try {
+            if (stdin != null) {
+                STDIN_WRITERS.execute(() -> {
+                    try {
+                        stream.write(stdin.getBytes(StandardCharsets.UTF_8));
+                        stream.closeStdin();
+                    } catch (IOException e) {
+                        // The process exited without reading all of its input
+                        log.debug("Failed to write stdin: {}", e.getMessage());
+                    }
+                });
+            }
+            Consumer<String> onStdout = listener != null ? listener::onStdout : null;
+            Consumer<String> onStderr = listener != null ? listener::onStderr : null;
+            stream.demultiplex((type, data, length) -> {
+                if (type == DockerEngineClient.STDERR) {
+                    captured.stderr.write(data, 0, length, onStderr);
+                } else {
+                    captured.stdout.write(data, 0, length, onStdout);
+                }
+            });
+        } catch (IOException e) {
+            // Closing the stream on timeout ends the read with an error
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            timer.cancel(false);
+        }
+        captured.timedOut = timedOut.get();
+        return captured;
+    }
+
+    /**
+     * The exit code is recorded shortly after the output stream ends
+     */
+    private Integer waitForExitCode(String execId) throws IOException {
+        for (int i = 0; i < EXIT_CODE_POLLS; i++) {
+            JsonNode exec = client.inspectExec(execId);
+            if (!exec.path("Running").asBoolean(false) && exec.path("ExitCode").isInt()) {
+                return exec.path("ExitCode").asInt();
+            }
+            try {
+                Thread.sleep(EXIT_CODE_POLL_MSEC);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return null;
+    }
+
+    private void killQuietly(String id) {
+        try {
+            client.killContainer(id);
+        } catch (IOException e) {
+            log.debug("Failed to kill container {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void removeQuietly(String id) {
+        try {
+            client.removeContainer(id, true);
+        } catch (IOException e) {
+            log.debug("Failed to remove container {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static DockerService.ExecutionResult timedOut(long startTime, int timeoutSeconds) {
+        return DockerService.ExecutionResult.builder()
+                .stdout("")
+                .stderr("Execution timed out after " + timeoutSeconds + " seconds")
+                .executionTime(System.currentTimeMillis() - startTime)
+                .timedOut(true)
+                .build();
+    }
+
+    private static DockerService.ExecutionResult failed(long startTime, IOException e) {
+        return DockerService.ExecutionResult.builder()
+                .stdout("")
+                .stderr("Internal execution error: " + e.getMessage())
+                .executionTime(System.currentTimeMillis() - startTime)
+                .exitCode(-1)
+                .timedOut(false)
+                .build();
+    }
+
+    private static class Captured {
+        private final OutputCapture stdout;
+        private final OutputCapture stderr;
+        private boolean timedOut = false;
+
+        private Captured(long maxOutputBytes) {
+            this.stdout = new OutputCapture(maxOutputBytes);
+            this.stderr = new OutputCapture(maxOutputBytes);
+        }
+
+        private DockerService.ExecutionResult toResult(Integer exitCode, long startTime) {
+            return DockerService.ExecutionResult.builder()
+                    .stdout(stdout.asString())
+                    .stderr(stderr.asString())
+                    .outputSize(stdout.getTotalBytes())
+                    .executionTime(System.currentTimeMillis() - startTime)
+                    .exitCode(exitCode)
+                    .timedOut(false)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+/**
+ * Receives progress of a running execution. Callbacks arrive on the stream pump threads,
+ * so implementations must be thread-safe and should not block for long.
+ */
+public interface ExecutionListener {
+
+    enum Phase {
+        COMPILE,
+        RUN
+    }
+
+    void onPhase(Phase phase);
+
+    /**
+     * @param chunk Decoded text as it was read; only output within the output limit is reported
+     */
+    void onStdout(String chunk);
+
+    void onStderr(String chunk);
+}
@@ -0,0 +1,500 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.model.error.TooManyRequestsException;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for sandbox executions.
+ * Caps the number of sandboxes running at once and queues the rest in priority lanes:
+ * waiting submissions are always started before reference runs, those before debug runs
+ * and those before background re-grading.
+ * Part of the capacity is reserved for submissions. Within a lane, waiters are queued
+ * per course and the courses are served round-robin. Each user is rate limited with a token bucket.
+ */
+@Slf4j
+@Component
+public class ExecutionScheduler {
+    private static final UUID NO_COURSE = new UUID(0, 0);
+    private static final long DEFAULT_RUN_MSEC = 2000;
+    private static final int BUCKET_CLEANUP_INTERVAL = 1000;
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final AppProperties.Admission config;
+    private final int maxConcurrent;
+    // Slots only the submission lane may use
+    private final int reservedForSubmissions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private int running = 0;
+    private int queued = 0;
+
+    private final Map<UUID, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong rateChecks = new AtomicLong();
+
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalRunMsec = new AtomicLong();
+
+    public ExecutionScheduler(AppProperties appProperties) {
+        this.config = appProperties.getSandbox().getAdmission();
+        this.maxConcurrent = config.getMaxConcurrent() > 0
+                ? config.getMaxConcurrent()
+                : hostCapacity(appProperties.getSandbox());
+        // Never reserve every slot, the other lanes must be able to make progress
+        this.reservedForSubmissions = Math.max(0, Math.min(config.getReservedForSubmissions(), maxConcurrent - 1));
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState());
+        }
+        log.info("Execution scheduler allows {} concurrent sandboxes, {} reserved for submissions",
+                maxConcurrent, reservedForSubmissions);
+    }
+
+    /**
+     * Admit an interactive execution: charges the user's token bucket, then waits
+     * up to the configured queue timeout for a free slot
+     *
+     * @param userId   User requesting the execution
+     * @param courseId Course of the user, used for fair sharing (may be null)
+     * @param lane     Lane to queue in
+     * @return Permit to close once the execution has finished
+     * @throws TooManyRequestsException if the user is rate limited or no slot frees up in time
+     */
+    public Permit admit(UUID userId, UUID courseId, Lane lane) {
+        checkRate(userId);
+        return acquire(courseId, lane, config.getQueueTimeoutMsec(), true);
+    }
+
+    /**
+     * Wait for a slot without a deadline, for work that was already admitted
+     * (e.g. queued submissions being graded in the background)
+     *
+     * @param courseId Course the work belongs to (may be null)
+     * @param lane     Lane to queue in
+     * @return Permit to close once the execution has finished
+     */
+    public Permit await(UUID courseId, Lane lane) {
+        return acquire(courseId, lane, -1, false);
+    }
+
+    /**
+     * Take a slot only if one is free right now and no one in this lane or a higher one waits for it,
+     * for work that already holds a permit and can use more slots but does not need them
+     * (e.g. running test cases in parallel)
+     *
+     * @param lane Lane the slot is counted in
+     * @return Permit to close once the execution has finished, null if no slot is free
+     */
+    public Permit tryAcquire(Lane lane) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (canStart(lane) && !hasWaitersUpTo(lane)) {
+                start(lane);
+                return admitted(lane, start);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Charge one token from the user's bucket
+     *
+     * @throws TooManyRequestsException if the bucket is empty
+     */
+    public void checkRate(UUID userId) {
+        if (userId == null || config.getUserBurst() <= 0 || config.getUserRefillPerMinute() <= 0) {
+            return;
+        }
+        if (rateChecks.incrementAndGet() % BUCKET_CLEANUP_INTERVAL == 0) {
+            // A full bucket carries no state worth keeping
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(userId,
+                id -> new TokenBucket(config.getUserBurst(), config.getUserRefillPerMinute()));
+        long waitMsec = bucket.tryConsume();
+        if (waitMsec > 0) {
+            rateLimited.incrementAndGet();
+            throw new TooManyRequestsException("Too many code executions, please slow down", toSeconds(waitMsec));
+        }
+    }
+
+    private Permit acquire(UUID courseId, Lane lane, long timeoutMsec, boolean bounded) {
+        UUID course = courseId != null ? courseId : NO_COURSE;
+        LaneState state = lanes.get(lane);
+        long start = System.nanoTime();
+        Waiter waiter = null;
+        lock.lock();
+        try {
+            if (canStart(lane) && !hasWaitersUpTo(lane)) {
+                start(lane);
+                return admitted(lane, start);
+            }
+            if (bounded && queued >= config.getMaxQueued()) {
+                rejected.incrementAndGet();
+                throw new TooManyRequestsException("The code runner is busy, please try again shortly", estimateRetryAfter());
+            }
+
+            waiter = new Waiter(course, lock.newCondition());
+            ArrayDeque<Waiter> queue = state.waiting.computeIfAbsent(course, key -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                state.rotation.addLast(course);
+            }
+            queue.addLast(waiter);
+            state.queued++;
+            queued++;
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMsec);
+            while (!waiter.granted) {
+                if (timeoutMsec < 0) {
+                    waiter.condition.await();
+                } else if (remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } else {
+                    removeWaiter(state, waiter);
+                    timedOut.incrementAndGet();
+                    throw new TooManyRequestsException("The code runner is busy, please try again shortly", estimateRetryAfter());
+                }
+            }
+            return admitted(lane, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter.granted) {
+                // The slot was granted just before the interrupt, pass it on
+                finish(lane);
+            } else {
+                removeWaiter(state, waiter);
+            }
+            throw new TooManyRequestsException("Interrupted while waiting for a free sandbox", 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit admitted(Lane lane, long startNanos) {
+        LaneState state = lanes.get(lane);
+        state.admitted.incrementAndGet();
+        state.waitLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return new Permit(lane);
+    }
+
+    /**
+     * Must be called while holding the lock
+     */
+    private boolean canStart(Lane lane) {
+        if (running >= maxConcurrent) {
+            return false;
+        }
+        int runningOthers = running - lanes.get(Lane.SUBMISSION).running;
+        return lane == Lane.SUBMISSION || runningOthers < maxConcurrent - reservedForSubmissions;
+    }
+
+    /**
+     * Whether the lane or a lane of higher priority has waiters.
+     * Must be called while holding the lock.
+     */
+    private boolean hasWaitersUpTo(Lane lane) {
+        for (Lane other : Lane.values()) {
+            if (lanes.get(other).queued > 0) {
+                return true;
+            }
+            if (other == lane) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Must be called while holding the lock
+     */
+    private void start(Lane lane) {
+        running++;
+        lanes.get(lane).running++;
+    }
+
+    /**
+     * Frees the slot of the lane and starts whichever waiters can run now.
+     * Must be called while holding the lock.
+     */
+    private void finish(Lane lane) {
+        running--;
+        lanes.get(lane).running--;
+        dispatch();
+    }
+
+    /**
+     * Grants free slots to waiters, highest priority lane first.
+     * Must be called while holding the lock.
+     */
+    private void dispatch() {
+        for (Lane lane : Lane.values()) {
+            LaneState state = lanes.get(lane);
+            while (state.queued > 0 && canStart(lane)) {
+                UUID course = state.rotation.pollFirst();
+                ArrayDeque<Waiter> queue = state.waiting.get(course);
+                Waiter next = queue.pollFirst();
+                state.queued--;
+                queued--;
+                if (queue.isEmpty()) {
+                    state.waiting.remove(course);
+                } else {
+                    state.rotation.addLast(course);
+                }
+                start(lane);
+                next.granted = true;
+                next.condition.signal();
+            }
+            if (state.queued > 0 && running >= maxConcurrent) {
+                // Strict priority: nothing below this lane may start while it waits
+                return;
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock
+     */
+    private void removeWaiter(LaneState state, Waiter waiter) {
+        ArrayDeque<Waiter> queue = state.waiting.get(waiter.course);
+        if (queue != null && queue.remove(waiter)) {
+            state.queued--;
+            queued--;
+            if (queue.isEmpty()) {
+                state.waiting.remove(waiter.course);
+                state.rotation.remove(waiter.course);
+            }
+        }
+    }
+
+    private long estimateRetryAfter() {
+        long done = completed.get();
+        long averageRunMsec = done > 0 ? totalRunMsec.get() / done : DEFAULT_RUN_MSEC;
+        return toSeconds(averageRunMsec * (queued / maxConcurrent + 1));
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public SchedulerStats getStats() {
+        lock.lock();
+        try {
+            Map<Lane, LaneStats> laneStats = new EnumMap<>(Lane.class);
+            lanes.forEach((lane, state) -> {
+                Map<UUID, Integer> queuedByCourse = new HashMap<>();
+                state.waiting.forEach((course, queue) -> queuedByCourse.put(course, queue.size()));
+                laneStats.put(lane, LaneStats.builder()
+                        .running(state.running)
+                        .queued(state.queued)
+                        .queuedByCourse(queuedByCourse)
+                        .admitted(state.admitted.get())
+                        .waitMsec(state.waitLatency.snapshot())
+                        .runMsec(state.runLatency.snapshot())
+                        .build());
+            });
+            return SchedulerStats.builder()
+                    .maxConcurrent(maxConcurrent)
+                    .reservedForSubmissions(reservedForSubmissions)
+                    .running(running)
+                    .queued(queued)
+                    .lanes(laneStats)
+                    .rateLimited(rateLimited.get())
+                    .rejected(rejected.get())
+                    .timedOut(timedOut.get())
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of sandboxes the host fits by CPU and by memory, whichever is lower
+     */
+    static int hostCapacity(AppProperties.Sandbox sandbox) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int byCpu = (int) Math.max(1, Math.floor(cpus / Double.parseDouble(sandbox.getCpuLimit())));
+        long memory = 0;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            memory = os.getTotalMemorySize();
+        }
+        if (memory <= 0) {
+            return byCpu;
+        }
+        // Keep a quarter of the memory for the application and the OS
+        long byMemory = Math.max(1, memory * 3 / 4 / parseBytes(sandbox.getMemoryLimit()));
+        return (int) Math.min(byCpu, byMemory);
+    }
+
+    /**
+     * Parses a docker memory size such as "256m" or "1g"
+     */
+    static long parseBytes(String size) {
+        String value = size.trim().toLowerCase();
+        long unit = switch (value.charAt(value.length() - 1)) {
+            case 'k' -> 1024L;
+            case 'm' -> 1024L * 1024;
+            case 'g' -> 1024L * 1024 * 1024;
+            case 'b' -> 1L;
+            default -> 0L;
+        };
+        if (unit == 0) {
+            return Long.parseLong(value);
+        }
+        return Long.parseLong(value.substring(0, value.length() - 1)) * unit;
+    }
+
+    private static long toSeconds(long msec) {
+        return Math.max(1, (msec + 999) / 1000);
+    }
+
+    /**
+     * Slot held by a running execution; closing it frees the slot
+     */
+    public class Permit implements AutoCloseable {
+        private final Lane lane;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            long runMsec = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            completed.incrementAndGet();
+            totalRunMsec.addAndGet(runMsec);
+            lanes.get(lane).runLatency.record(runMsec);
+            lock.lock();
+            try {
+                finish(lane);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Execution lanes, highest priority first
+     */
+    public enum Lane {
+        /** Graded submissions */
+        SUBMISSION,
+        /** Reference (compareCode) runs */
+        COMPARE,
+        /** Interactive debug runs */
+        DEBUG,
+        /** Background re-grading of stored submissions */
+        REGRADE
+    }
+
+    /**
+     * Guarded by the scheduler lock, except for the counters
+     */
+    private static final class LaneState {
+        private final Map<UUID, ArrayDeque<Waiter>> waiting = new HashMap<>();
+        // Courses with waiters, in the order they are served next
+        private final ArrayDeque<UUID> rotation = new ArrayDeque<>();
+        private int running = 0;
+        private int queued = 0;
+        private final AtomicLong admitted = new AtomicLong();
+        private final LatencyWindow waitLatency = new LatencyWindow(LATENCY_SAMPLES);
+        private final LatencyWindow runLatency = new LatencyWindow(LATENCY_SAMPLES);
+    }
+
+    private static final class Waiter {
+        private final UUID course;
+        private final Condition condition;
+        private boolean granted = false;
+
+        private Waiter(UUID course, Condition condition) {
+            this.course = course;
+            this.condition = condition;
+        }
+    }
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final double refillPerMsec;
+        private double tokens;
+        private long lastRefill = System.currentTimeMillis();
+
+        private TokenBucket(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.refillPerMsec = refillPerMinute / 60000.0;
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the milliseconds until one is available
+         */
+        synchronized long tryConsume() {
+            refill();
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / refillPerMsec);
+        }
+
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMsec);
+            lastRefill = now;
+        }
+    }
+
+    @Data
+    @Builder
+    public static class SchedulerStats {
+        private int maxConcurrent;
+        private int reservedForSubmissions;
+        private int running;
+        private int queued;
+        private Map<Lane, LaneStats> lanes;
+        private long rateLimited;
+        private long rejected;
+        private long timedOut;
+    }
+
+    @Data
+    @Builder
+    public static class LaneStats {
+        private int running;
+        private int queued;
+        private Map<UUID, Integer> queuedByCourse;
+        private long admitted;
+        private LatencyWindow.Percentiles waitMsec;
+        private LatencyWindow.Percentiles runMsec;
+    }
+}
@@ -0,0 +1,59 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples and reports percentiles over them
+ */
+public class LatencyWindow {
+    private final long[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long msec) {
+        samples[next] = msec;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public Percentiles snapshot() {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        return Percentiles.builder()
+                .count(sorted.length)
+                .p50(percentile(sorted, 50))
+                .p95(percentile(sorted, 95))
+                .p99(percentile(sorted, 99))
+                .max(sorted.length > 0 ? sorted[sorted.length - 1] : 0)
+                .build();
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        // Nearest-rank method
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    @Data
+    @Builder
+    public static class Percentiles {
+        private int count;
+        private long p50;
+        private long p95;
+        private long p99;
+        private long max;
+    }
+}
@@ -0,0 +1,61 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.service.DockerService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Stand-in backend that runs jobs as plain host processes inside the sandbox work directory.
+ * It provides no isolation and is meant for tests and local development without a Docker daemon.
+ */
+public class LocalProcessSandboxBackend implements SandboxBackend {
+    private final long maxOutputBytes;
+
+    public LocalProcessSandboxBackend() {
+        this(ProcessRunner.DEFAULT_MAX_OUTPUT_BYTES);
+    }
+
+    public LocalProcessSandboxBackend(long maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public void start(SandboxHandle handle) throws IOException {
+        Files.createDirectories(handle.getWorkDir());
+    }
+
+    @Override
+    public DockerService.ExecutionResult run(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                             ExecutionListener listener) {
+        return exec(handle, shellCommand, stdin, timeoutSeconds, listener);
+    }
+
+    @Override
+    public DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                              ExecutionListener listener) {
+        return ProcessRunner.run(List.of("sh", "-c", shellCommand), handle.getWorkDir().toFile(), stdin, timeoutSeconds,
+                maxOutputBytes, listener);
+    }
+
+    @Override
+    public boolean isHealthy(SandboxHandle handle) {
+        return Files.isDirectory(handle.getWorkDir());
+    }
+
+    @Override
+    public void reset(SandboxHandle handle) throws IOException {
+        Workspaces.clean(handle.getWorkDir());
+    }
+
+    @Override
+    public void destroy(SandboxHandle handle) {
+        Workspaces.deleteQuietly(handle.getWorkDir());
+    }
+}
@@ -0,0 +1,189 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Drains a process stream while keeping at most a fixed number of bytes.
+ * Everything past the limit is read and discarded, so the process never blocks on a full pipe,
+ * but it is still counted so the total output size is exact.
+ */
+public class OutputCapture {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private final int maxBytes;
+    private byte[] buffer;
+    private int length = 0;
+    private long totalBytes = 0;
+    // Decoding state of write(), which is called once per piece
+    private CharsetDecoder writeDecoder;
+    private int writeDecoded = 0;
+
+    public OutputCapture(long maxBytes) {
+        this.maxBytes = (int) Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        this.buffer = new byte[Math.min(INITIAL_CAPACITY, this.maxBytes)];
+    }
+
+    /**
+     * Reads the stream until end of file
+     */
+    public OutputCapture drain(InputStream stream) throws IOException {
+        return drain(stream, null);
+    }
+
+    /**
+     * Reads the stream until end of file, passing the kept output on as it arrives
+     *
+     * @param onChunk Receives decoded text of every read within the limit, may be null
+     */
+    public OutputCapture drain(InputStream stream, Consumer<String> onChunk) throws IOException {
+        CharsetDecoder decoder = onChunk != null ? StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE) : null;
+        // Kept bytes up to here have been passed to onChunk
+        int decoded = 0;
+        try (ReadableByteChannel channel = Channels.newChannel(stream)) {
+            ByteBuffer discard = null;
+            while (true) {
+                int read;
+                if (length < maxBytes) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxBytes));
+                    }
+                    // Read straight into the kept buffer, no intermediate copy
+                    read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+                    if (read > 0) {
+                        length += read;
+                        if (decoder != null) {
+                            decoded = emit(decoder, decoded, onChunk);
+                        }
+                    }
+                } else {
+                    if (discard == null) {
+                        discard = ByteBuffer.allocate(INITIAL_CAPACITY);
+                    }
+                    discard.clear();
+                    read = channel.read(discard);
+                }
+                if (read < 0) {
+                    return this;
+                }
+                totalBytes += Math.max(read, 0);
+            }
+        }
+    }
+
+    /**
+     * Adds output that arrives in pieces rather than as a stream, e.g. demultiplexed frames.
+     * Pieces must belong to one stream and be added in order from a single thread.
+     *
+     * @param onChunk Receives decoded text of the part within the limit, may be null
+     */
+    public void write(byte[] data, int offset, int count, Consumer<String> onChunk) {
+        totalBytes += count;
+        int kept = Math.min(count, maxBytes - length);
+        if (kept <= 0) {
+            return;
+        }
+        if (length + kept > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(Math.max((long) buffer.length * 2, length + kept), maxBytes));
+        }
+        System.arraycopy(data, offset, buffer, length, kept);
+        length += kept;
+        if (onChunk != null) {
+            if (writeDecoder == null) {
+                writeDecoder = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            writeDecoded = emit(writeDecoder, writeDecoded, onChunk);
+        }
+    }
+
+    /**
+     * Decodes the kept bytes from the given offset; an incomplete trailing character
+     * is left for the next call
+     *
+     * @return Offset up to which bytes were decoded
+     */
+    private int emit(CharsetDecoder decoder, int from, Consumer<String> onChunk) {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, from, length - from);
+        CharBuffer chars = CharBuffer.allocate(length - from);
+        decoder.decode(bytes, chars, false);
+        chars.flip();
+        if (chars.hasRemaining()) {
+            onChunk.accept(chars.toString());
+        }
+        return bytes.position();
+    }
+
+    /**
+     * Total number of bytes the stream produced, including any that were discarded
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public boolean isTruncated() {
+        return totalBytes > length;
+    }
+
+    /**
+     * The kept output as text, followed by a marker line if output was discarded
+     */
+    public String asString() {
+        if (!isTruncated()) {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+        int end = completeCharactersEnd();
+        return new String(buffer, 0, end, StandardCharsets.UTF_8)
+                + "\n[output truncated: " + totalBytes + " bytes total, first " + end + " bytes shown]\n";
+    }
+
+    /**
+     * Reads at most maxBytes of a file with the same truncation rules as a stream.
+     * The rest of the file is not read, its size is taken from the file system.
+     */
+    public static OutputCapture ofFile(Path file, long maxBytes) throws IOException {
+        OutputCapture capture = new OutputCapture(maxBytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            capture.buffer = new byte[(int) Math.min(size, capture.maxBytes)];
+            ByteBuffer target = ByteBuffer.wrap(capture.buffer);
+            while (target.hasRemaining() && channel.read(target) >= 0) {
+                // keep reading until the kept part is complete
+            }
+            capture.length = target.position();
+            capture.totalBytes = Math.max(size, capture.length);
+        }
+        return capture;
+    }
+
+    /**
+     * End of the kept bytes without a trailing, incomplete UTF-8 sequence
+     */
+    private int completeCharactersEnd() {
+        int start = length;
+        while (start > 0 && length - start < 4 && (buffer[start - 1] & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start == 0) {
+            return length;
+        }
+        int lead = buffer[start - 1] & 0xFF;
+        int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return length - (start - 1) < expected ? start - 1 : length;
+    }
+}
@@ -0,0 +1,130 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs a host process with optional stdin and a timeout, draining stdout/stderr while it runs.
+ * Output beyond the configured limit is discarded and marked as truncated.
+ */
+@Slf4j
+public final class ProcessRunner {
+
+    // Stream pumps block on I/O, so they get their own threads instead of the common pool
+    private static final ExecutorService PUMPS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "process-pump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Limit for commands whose output is not user controlled
+     */
+    public static final long DEFAULT_MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    private ProcessRunner() {
+    }
+
+    public static DockerService.ExecutionResult run(List<String> command, File directory, String stdin, int timeoutSeconds) {
+        return run(command, directory, stdin, timeoutSeconds, DEFAULT_MAX_OUTPUT_BYTES);
+    }
+
+    public static DockerService.ExecutionResult run(List<String> command, File directory, String stdin, int timeoutSeconds,
+                                                    long maxOutputBytes) {
+        return run(command, directory, stdin, timeoutSeconds, maxOutputBytes, null);
+    }
+
+    /**
+     * @param maxOutputBytes Bytes kept per stream; the rest is drained and counted but discarded
+     * @param listener       Receives output as it is produced, may be null
+     */
+    public static DockerService.ExecutionResult run(List<String> command, File directory, String stdin, int timeoutSeconds,
+                                                    long maxOutputBytes, ExecutionListener listener) {
+        long startTime = System.currentTimeMillis();
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(false);
+            if (directory != null) {
+                processBuilder.directory(directory);
+            }
+            if (stdin == null) {
+                processBuilder.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")));
+            }
+            Process process = processBuilder.start();
+
+            // Drain both pipes while the process runs so a chatty program cannot block on a full pipe
+            CompletableFuture<OutputCapture> stdout = drain(process.getInputStream(), maxOutputBytes,
+                    listener != null ? listener::onStdout : null);
+            CompletableFuture<OutputCapture> stderr = drain(process.getErrorStream(), maxOutputBytes,
+                    listener != null ? listener::onStderr : null);
+
+            if (stdin != null) {
+                // Feed stdin from a pump as well so a program that never reads cannot stall the timeout
+                PUMPS.execute(() -> {
+                    try (OutputStream in = process.getOutputStream()) {
+                        in.write(stdin.getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        // The process exited without reading all of its input
+                        log.debug("Failed to write stdin: {}", e.getMessage());
+                    }
+                });
+            }
+
+            boolean completed = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            long executionTime = System.currentTimeMillis() - startTime;
+
+            if (!completed) {
+                process.destroyForcibly();
+                return DockerService.ExecutionResult.builder()
+                        .stdout("")
+                        .stderr("Execution timed out after " + timeoutSeconds + " seconds")
+                        .executionTime(executionTime)
+                        .timedOut(true)
+                        .build();
+            }
+
+            OutputCapture out = stdout.get(5, TimeUnit.SECONDS);
+            return DockerService.ExecutionResult.builder()
+                    .stdout(out.asString())
+                    .stderr(stderr.get(5, TimeUnit.SECONDS).asString())
+                    .outputSize(out.getTotalBytes())
+                    .executionTime(executionTime)
+                    .exitCode(process.exitValue())
+                    .timedOut(false)
+                    .build();
+        } catch (Exception e) {
+            log.error("Error running process {}: {}", command.get(0), e.getMessage());
+            return DockerService.ExecutionResult.builder()
+                    .stdout("")
+                    .stderr("Internal execution error: " + e.getMessage())
+                    .executionTime(System.currentTimeMillis() - startTime)
+                    .exitCode(-1)
+                    .timedOut(false)
+                    .build();
+        }
+    }
+
+    private static CompletableFuture<OutputCapture> drain(InputStream stream, long maxOutputBytes, Consumer<String> onChunk) {
+        return CompletableFuture.supplyAsync(() -> {
+            OutputCapture capture = new OutputCapture(maxOutputBytes);
+            try {
+                return capture.drain(stream, onChunk);
+            } catch (IOException e) {
+                // The process was killed, keep what was read so far
+                return capture;
+            }
+        }, PUMPS);
+    }
+}
@@ -0,0 +1,81 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.service.DockerService;
+
+import java.io.IOException;
+
+/**
+ * Low-level driver that starts, runs commands in, resets and removes long-lived sandboxes
+ */
+public interface SandboxBackend {
+
+    /**
+     * @return Backend name as used in app.sandbox.backend
+     */
+    String getName();
+
+    /**
+     * Starts a sandbox for the given handle and keeps it alive until {@link #destroy} is called
+     *
+     * @param handle Sandbox to start; its work directory already exists
+     */
+    void start(SandboxHandle handle) throws IOException;
+
+    /**
+     * Runs a single command in a throwaway sandbox over the handle's work directory, for jobs
+     * that do not get a warm sandbox. The work directory is left in place for the caller.
+     *
+     * @param handle         Sandbox that has not been started; its work directory already exists
+     * @param shellCommand   Command passed to "sh -c"
+     * @param stdin          Data written to the process stdin, or null for none
+     * @param timeoutSeconds Maximum execution time in seconds
+     * @param listener       Receives stdout/stderr chunks while the command runs, may be null
+     * @return Execution result
+     */
+    DockerService.ExecutionResult run(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                      ExecutionListener listener);
+
+    /**
+     * Runs a shell command inside a started sandbox with /code as the working directory
+     *
+     * @param handle         Started sandbox
+     * @param shellCommand   Command passed to "sh -c"
+     * @param stdin          Data written to the process stdin, or null for none
+     * @param timeoutSeconds Maximum execution time in seconds
+     * @return Execution result
+     */
+    default DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds) {
+        return exec(handle, shellCommand, stdin, timeoutSeconds, null);
+    }
+
+    /**
+     * Same as {@link #exec(SandboxHandle, String, String, int)}, reporting output as it is produced
+     *
+     * @param listener Receives stdout/stderr chunks while the command runs, may be null
+     */
+    DockerService.ExecutionResult exec(SandboxHandle handle, String shellCommand, String stdin, int timeoutSeconds,
+                                       ExecutionListener listener);
+
+    /**
+     * @return true if the sandbox is still running and usable
+     */
+    boolean isHealthy(SandboxHandle handle);
+
+    /**
+     * Stops the job running in a sandbox from another thread; the run or exec then returns early.
+     * A warm sandbox must not be reused afterwards. Backends that cannot do this leave the job
+     * to its timeout.
+     */
+    default void kill(SandboxHandle handle) {
+    }
+
+    /**
+     * Kills leftover processes and clears the work directory so the sandbox can serve the next job
+     */
+    void reset(SandboxHandle handle) throws IOException;
+
+    /**
+     * Removes the sandbox and its work directory; never throws
+     */
+    void destroy(SandboxHandle handle);
+}
@@ -0,0 +1,181 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.service.DockerService;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Measures the isolation overhead of the configured backend: a trivial command run cold
+ * (throwaway sandbox per run) and warm (exec into a started sandbox, then reset).
+ * Comparing the results of different backends shows the fastest one that is isolated enough.
+ * The warm sandbox also compares the two ways of giving a program its input: an input file
+ * written into the work directory and redirected, and the input piped into its stdin.
+ */
+@Slf4j
+@Component
+public class SandboxBenchmark {
+    public static final int MAX_ITERATIONS = 100;
+    public static final int MAX_INPUT_BYTES = 16 * 1024 * 1024;
+    private static final String COMMAND = "echo ok";
+    private static final String INPUT_FILE = "input.txt";
+    private static final String COUNT_COMMAND = "wc -c";
+    private static final int TIMEOUT_SECONDS = 30;
+
+    private final SandboxBackend backend;
+    private final ExecutionScheduler executionScheduler;
+    private final Path benchmarkRoot;
+
+    public SandboxBenchmark(SandboxBackend backend, ExecutionScheduler executionScheduler, AppProperties appProperties) {
+        this.backend = backend;
+        this.executionScheduler = executionScheduler;
+        this.benchmarkRoot = Path.of(appProperties.getSandbox().getWorkRoot(), "benchmark");
+    }
+
+    /**
+     * Runs the benchmark in one execution slot, so it never competes with more than one job
+     *
+     * @param language   Language whose image is used
+     * @param image      Image the sandboxes are started from
+     * @param iterations Runs per mode, at most {@link #MAX_ITERATIONS}
+     * @param inputBytes Size of the input of the stdin modes, at most {@link #MAX_INPUT_BYTES}
+     * @return Latency percentiles per mode
+     */
+    public BenchmarkResult run(LanguageType language, String image, int iterations, int inputBytes) throws IOException {
+        int runs = Math.max(1, Math.min(iterations, MAX_ITERATIONS));
+        int size = Math.max(0, Math.min(inputBytes, MAX_INPUT_BYTES));
+        try (ExecutionScheduler.Permit permit = executionScheduler.await(null, ExecutionScheduler.Lane.COMPARE)) {
+            return measure(backend, benchmarkRoot, language, image, runs, size);
+        }
+    }
+
+    static BenchmarkResult measure(SandboxBackend backend, Path root, LanguageType language, String image, int runs,
+                                   int inputBytes) throws IOException {
+        LatencyWindow cold = new LatencyWindow(runs);
+        LatencyWindow warm = new LatencyWindow(runs);
+        LatencyWindow reset = new LatencyWindow(runs);
+        LatencyWindow inputFile = new LatencyWindow(runs);
+        LatencyWindow inputPipe = new LatencyWindow(runs);
+        String input = "1\n".repeat(inputBytes / 2) + (inputBytes % 2 == 1 ? "1" : "");
+        long warmStartMsec;
+        int failures = 0;
+
+        for (int i = 0; i < runs; i++) {
+            SandboxHandle handle = newHandle(root, language, image);
+            try {
+                Files.createDirectories(handle.getWorkDir());
+                long start = System.nanoTime();
+                DockerService.ExecutionResult result = backend.run(handle, COMMAND, null, TIMEOUT_SECONDS, null);
+                cold.record(elapsedMsec(start));
+                failures += succeeded(result) ? 0 : 1;
+            } finally {
+                Workspaces.deleteQuietly(handle.getWorkDir());
+            }
+        }
+
+        SandboxHandle handle = newHandle(root, language, image);
+        try {
+            Files.createDirectories(handle.getWorkDir());
+            long start = System.nanoTime();
+            backend.start(handle);
+            warmStartMsec = elapsedMsec(start);
+            for (int i = 0; i < runs; i++) {
+                start = System.nanoTime();
+                DockerService.ExecutionResult result = backend.exec(handle, COMMAND, null, TIMEOUT_SECONDS);
+                warm.record(elapsedMsec(start));
+                failures += succeeded(result) ? 0 : 1;
+
+                start = System.nanoTime();
+                Files.writeString(handle.getWorkDir().resolve(INPUT_FILE), input);
+                result = backend.exec(handle, COUNT_COMMAND + " < " + INPUT_FILE, null, TIMEOUT_SECONDS);
+                inputFile.record(elapsedMsec(start));
+                failures += counted(result, inputBytes) ? 0 : 1;
+
+                start = System.nanoTime();
+                result = backend.exec(handle, COUNT_COMMAND, input, TIMEOUT_SECONDS);
+                inputPipe.record(elapsedMsec(start));
+                failures += counted(result, inputBytes) ? 0 : 1;
+
+                start = System.nanoTime();
+                backend.reset(handle);
+                reset.record(elapsedMsec(start));
+            }
+        } finally {
+            backend.destroy(handle);
+        }
+
+        log.info("Benchmarked sandbox backend '{}' with {} runs per mode", backend.getName(), runs);
+        return BenchmarkResult.builder()
+                .backend(backend.getName())
+                .image(image)
+                .iterations(runs)
+                .failures(failures)
+                .cold(cold.snapshot())
+                .warmStartMsec(warmStartMsec)
+                .warm(warm.snapshot())
+                .reset(reset.snapshot())
+                .inputBytes(inputBytes)
+                .inputFile(inputFile.snapshot())
+                .inputPipe(inputPipe.snapshot())
+                .build();
+    }
+
+    private static SandboxHandle newHandle(Path root, LanguageType language, String image) {
+        String id = "code-exec-bench-" + UUID.randomUUID().toString().substring(0, 8);
+        return new SandboxHandle(id, language, image, root.resolve(id));
+    }
+
+    private static boolean succeeded(DockerService.ExecutionResult result) {
+        return result.getExitCode() != null && result.getExitCode() == 0;
+    }
+
+    private static boolean counted(DockerService.ExecutionResult result, int inputBytes) {
+        return succeeded(result) && result.getStdout().trim().equals(Integer.toString(inputBytes));
+    }
+
+    private static long elapsedMsec(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @Data
+    @Builder
+    public static class BenchmarkResult {
+        private String backend;
+        private String image;
+        private int iterations;
+        private int failures;
+        /**
+         * Throwaway sandbox per run, as used when no warm sandbox is available
+         */
+        private LatencyWindow.Percentiles cold;
+        /**
+         * One-time cost of starting the warm sandbox
+         */
+        private long warmStartMsec;
+        private LatencyWindow.Percentiles warm;
+        /**
+         * Cleaning the warm sandbox between jobs
+         */
+        private LatencyWindow.Percentiles reset;
+        /**
+         * Input size of the stdin modes, also what the file mode writes to disk per run and the pipe mode does not
+         */
+        private int inputBytes;
+        /**
+         * Input written to the work directory and redirected to the command's stdin
+         */
+        private LatencyWindow.Percentiles inputFile;
+        /**
+         * Input piped into the command's stdin by the backend
+         */
+        private LatencyWindow.Percentiles inputPipe;
+    }
+}
@@ -0,0 +1,55 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived sandbox (a warm container, or a plain directory for the local backend)
+ * whose working directory is mounted at /code inside the sandbox
+ */
+@Getter
+public class SandboxHandle {
+    private final String id;
+    private final LanguageType language;
+    private final String image;
+    // Per-language limits, null where the backend's defaults apply
+    private final String memoryLimit;
+    private final String cpuLimit;
+    private final Path workDir;
+    private final long createdAt = System.currentTimeMillis();
+    private volatile long lastUsedAt = createdAt;
+    private final AtomicInteger uses = new AtomicInteger();
+
+    public SandboxHandle(String id, LanguageType language, String image, Path workDir) {
+        this(id, language, image, null, null, workDir);
+    }
+
+    public SandboxHandle(String id, LanguageType language, String image, String memoryLimit, String cpuLimit, Path workDir) {
+        this.id = id;
+        this.language = language;
+        this.image = image;
+        this.memoryLimit = memoryLimit;
+        this.cpuLimit = cpuLimit;
+        this.workDir = workDir;
+    }
+
+    String memoryLimitOr(String defaultLimit) {
+        return memoryLimit != null ? memoryLimit : defaultLimit;
+    }
+
+    String cpuLimitOr(String defaultLimit) {
+        return cpuLimit != null ? cpuLimit : defaultLimit;
+    }
+
+    void markUsed() {
+        uses.incrementAndGet();
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    void markIdle() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+}
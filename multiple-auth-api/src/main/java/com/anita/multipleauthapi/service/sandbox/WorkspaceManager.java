@@ -0,0 +1,322 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Hands out the work directories of executions that do not get a warm sandbox.
+ * They live under workRoot/workspaces unless another root is configured, which can be a tmpfs
+ * so source files, inputs and build output never touch the disk. A fixed number of slot
+ * directories is created up front and cleaned between executions; when all are in use, a
+ * throwaway directory is created instead.
+ * Every directory is returned by closing its {@link Workspace}. A reaper deletes slot and
+ * throwaway directories nobody holds (left by a crash or a previous process), leaving anything
+ * else under the root alone, and reclaims leases held past the configured maximum.
+ */
+@Slf4j
+@Component
+public class WorkspaceManager {
+    private static final String SLOT_PREFIX = "slot-";
+    private static final String OVERFLOW_PREFIX = "job-";
+
+    private final AppProperties.Workspace config;
+    private final Path root;
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "workspace-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    // Guarded by this
+    private final Deque<Path> freeSlots = new ArrayDeque<>();
+    // Directories handed out, with the time they were handed out; guarded by this
+    private final Map<Path, Long> leases = new HashMap<>();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong leaked = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    public WorkspaceManager(AppProperties appProperties) {
+        this.config = appProperties.getSandbox().getWorkspace();
+        this.root = resolveRoot(config.getRoot(), Path.of(appProperties.getSandbox().getWorkRoot(), "workspaces"));
+    }
+
+    /**
+     * Removes what a previous process left behind and creates the slots
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        reapOrphans();
+        for (int i = 0; i < config.getSlots(); i++) {
+            Path slot = newSlot();
+            synchronized (this) {
+                freeSlots.addLast(slot);
+            }
+        }
+        if (config.getReaperIntervalMsec() > 0) {
+            reaper.scheduleWithFixedDelay(this::reap,
+                    config.getReaperIntervalMsec(), config.getReaperIntervalMsec(), TimeUnit.MILLISECONDS);
+        }
+        log.info("Workspaces under {} ({}), {} reusable slots", root, fileSystemType(), config.getSlots());
+    }
+
+    @PreDestroy
+    public void stop() {
+        reaper.shutdownNow();
+    }
+
+    /**
+     * @return An empty work directory, to be closed once the execution is over
+     */
+    public Workspace acquire() throws IOException {
+        Path dir;
+        synchronized (this) {
+            dir = freeSlots.pollFirst();
+            if (dir == null) {
+                dir = root.resolve(OVERFLOW_PREFIX + UUID.randomUUID());
+                overflows.incrementAndGet();
+            }
+            // Leased before it exists, so the reaper never takes it for an orphan
+            leases.put(dir, System.currentTimeMillis());
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            release(dir);
+            throw e;
+        }
+        acquired.incrementAndGet();
+        return new Workspace(dir);
+    }
+
+    /**
+     * Reclaims leases held past the maximum and deletes directories nobody holds
+     */
+    public void reap() {
+        long deadline = System.currentTimeMillis() - config.getMaxLeaseMsec();
+        List<Path> expired = new ArrayList<>();
+        synchronized (this) {
+            leases.entrySet().removeIf(lease -> {
+                if (lease.getValue() < deadline) {
+                    expired.add(lease.getKey());
+                    return true;
+                }
+                return false;
+            });
+        }
+        for (Path dir : expired) {
+            log.warn("Reclaiming workspace {} that was not released within {} ms", dir, config.getMaxLeaseMsec());
+            leaked.incrementAndGet();
+            reclaim(dir);
+        }
+        try {
+            reapOrphans();
+        } catch (IOException e) {
+            log.warn("Failed to scan workspaces in {}: {}", root, e.getMessage());
+        }
+    }
+
+    public WorkspaceStats getStats() {
+        synchronized (this) {
+            return WorkspaceStats.builder()
+                    .root(root.toString())
+                    .fileSystem(fileSystemType())
+                    .slots(config.getSlots())
+                    .freeSlots(freeSlots.size())
+                    .inUse(leases.size())
+                    .acquired(acquired.get())
+                    .overflows(overflows.get())
+                    .released(released.get())
+                    .leaked(leaked.get())
+                    .reclaimed(reclaimed.get())
+                    .build();
+        }
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    private void release(Path dir) {
+        synchronized (this) {
+            if (leases.remove(dir) == null) {
+                // Already reclaimed by the reaper, the directory may be someone else's by now
+                return;
+            }
+        }
+        released.incrementAndGet();
+        if (!isSlot(dir)) {
+            Workspaces.deleteQuietly(dir);
+            return;
+        }
+        try {
+            Workspaces.clean(dir);
+            synchronized (this) {
+                freeSlots.addLast(dir);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean workspace {}, replacing it: {}", dir, e.getMessage());
+            reclaim(dir);
+        }
+    }
+
+    /**
+     * Deletes a directory that is no longer handed out; a slot is replaced by a new one
+     */
+    private void reclaim(Path dir) {
+        Workspaces.deleteQuietly(dir);
+        reclaimed.incrementAndGet();
+        if (!isSlot(dir)) {
+            return;
+        }
+        try {
+            Path slot = newSlot();
+            synchronized (this) {
+                freeSlots.addLast(slot);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to replace workspace slot {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void reapOrphans() throws IOException {
+        // Listed before the known directories are taken, so one created in between is never deleted
+        List<Path> present;
+        try (Stream<Path> dirs = Files.list(root)) {
+            present = dirs.toList();
+        }
+        Set<Path> known;
+        synchronized (this) {
+            known = new HashSet<>(leases.keySet());
+            known.addAll(freeSlots);
+        }
+        for (Path dir : present) {
+            // The root may be shared, e.g. /dev/shm, so only names this manager hands out are touched
+            if (isWorkspaceName(dir) && !known.contains(dir)) {
+                log.info("Deleting orphaned workspace {}", dir);
+                Workspaces.deleteQuietly(dir);
+                reclaimed.incrementAndGet();
+            }
+        }
+    }
+
+    private Path newSlot() throws IOException {
+        return Files.createDirectories(root.resolve(SLOT_PREFIX + nextSlot.incrementAndGet()));
+    }
+
+    private static boolean isWorkspaceName(Path dir) {
+        String name = dir.getFileName().toString();
+        return name.startsWith(SLOT_PREFIX) || name.startsWith(OVERFLOW_PREFIX);
+    }
+
+    private static boolean isSlot(Path dir) {
+        return dir.getFileName().toString().startsWith(SLOT_PREFIX);
+    }
+
+    private String fileSystemType() {
+        try {
+            return Files.getFileStore(root).type();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static Path resolveRoot(String configured, Path fallback) {
+        if (configured != null && !configured.isBlank()) {
+            Path root = Path.of(configured);
+            try {
+                Files.createDirectories(root);
+                if (Files.isWritable(root)) {
+                    return root;
+                }
+            } catch (IOException e) {
+                // not available on this host
+            }
+            log.warn("Workspace root {} is not usable, falling back to {}", root, fallback);
+        }
+        try {
+            Files.createDirectories(fallback);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create workspace root " + fallback, e);
+        }
+        return fallback;
+    }
+
+    /**
+     * A leased work directory; closing it returns the directory, repeated closes are ignored
+     */
+    public class Workspace implements AutoCloseable {
+        private final Path path;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Workspace(Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(path);
+            }
+        }
+    }
+
+    @Data
+    @Builder
+    public static class WorkspaceStats {
+        private String root;
+        /**
+         * File system type of the root, "tmpfs" when workspaces are kept in memory
+         */
+        private String fileSystem;
+        private int slots;
+        private int freeSlots;
+        private int inUse;
+        private long acquired;
+        /**
+         * Throwaway directories created because every slot was in use
+         */
+        private long overflows;
+        private long released;
+        /**
+         * Leases never released within the maximum lease time
+         */
+        private long leaked;
+        /**
+         * Directories deleted by the reaper: leaked leases and orphans of crashed executions
+         */
+        private long reclaimed;
+    }
+}
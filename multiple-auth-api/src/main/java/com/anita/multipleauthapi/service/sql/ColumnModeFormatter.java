@@ -0,0 +1,92 @@
+package com.anita.multipleauthapi.service.sql;
+
+import java.util.List;
+
+/**
+ * Formats a result set like the sqlite3 shell with ".mode column" and ".headers on":
+ * every column is padded to its widest value (header included), columns are separated by
+ * two spaces, and the header is underlined with dashes. NULL is printed as an empty string.
+ */
+public final class ColumnModeFormatter {
+    private static final String COLUMN_SEPARATOR = "  ";
+
+    private ColumnModeFormatter() {
+    }
+
+    /**
+     * @param headers Column names
+     * @param rows    Values as text, null for NULL
+     * @param out     Receives the formatted table
+     */
+    public static void format(List<String> headers, List<String[]> rows, StringBuilder out) {
+        // The shell prints nothing at all, not even headers, for an empty result
+        if (rows.isEmpty()) {
+            return;
+        }
+        int columns = headers.size();
+        int[] widths = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            widths[i] = displayWidth(headers.get(i));
+        }
+        for (String[] row : rows) {
+            for (int i = 0; i < columns; i++) {
+                widths[i] = Math.max(widths[i], displayWidth(row[i]));
+            }
+        }
+
+        for (int i = 0; i < columns; i++) {
+            pad(out, headers.get(i), widths[i]);
+            out.append(i == columns - 1 ? "\n" : COLUMN_SEPARATOR);
+        }
+        for (int i = 0; i < columns; i++) {
+            out.append("-".repeat(widths[i]));
+            out.append(i == columns - 1 ? "\n" : COLUMN_SEPARATOR);
+        }
+        for (String[] row : rows) {
+            for (int i = 0; i < columns; i++) {
+                pad(out, row[i], widths[i]);
+                out.append(i == columns - 1 ? "\n" : COLUMN_SEPARATOR);
+            }
+        }
+    }
+
+    private static void pad(StringBuilder out, String value, int width) {
+        String text = value != null ? value : "";
+        out.append(text);
+        out.append(" ".repeat(Math.max(0, width - displayWidth(text))));
+    }
+
+    /**
+     * Terminal columns the text occupies: East Asian wide characters count double
+     * and combining marks not at all, as in the shell
+     */
+    static int displayWidth(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int width = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int type = Character.getType(codePoint);
+            if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || codePoint == 0x200B) {
+                continue;
+            }
+            width += isWide(codePoint) ? 2 : 1;
+        }
+        return width;
+    }
+
+    private static boolean isWide(int codePoint) {
+        return (codePoint >= 0x1100 && codePoint <= 0x115F)     // Hangul Jamo
+                || (codePoint >= 0x2E80 && codePoint <= 0xA4CF && codePoint != 0x303F) // CJK ... Yi
+                || (codePoint >= 0xAC00 && codePoint <= 0xD7A3)  // Hangul syllables
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF)  // CJK compatibility ideographs
+                || (codePoint >= 0xFE30 && codePoint <= 0xFE4F)  // CJK compatibility forms
+                || (codePoint >= 0xFF00 && codePoint <= 0xFF60)  // Fullwidth forms
+                || (codePoint >= 0xFFE0 && codePoint <= 0xFFE6)
+                || (codePoint >= 0x1F300 && codePoint <= 0x1F64F) // Emoji
+                || (codePoint >= 0x1F900 && codePoint <= 0x1F9FF)
+                || (codePoint >= 0x20000 && codePoint <= 0x3FFFD);
+    }
+}
@@ -0,0 +1,444 @@
+package com.anita.multipleauthapi.service.sql;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import com.anita.multipleauthapi.service.sandbox.OutputCapture;
+import com.anita.multipleauthapi.service.sandbox.Workspaces;
+import com.anita.multipleauthapi.service.util.HashUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteLimits;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs SQL questions on an embedded SQLite database inside the JVM.
+ * <p>
+ * The initialCode of a question is executed once into a template database file, named after
+ * the hash of the code, so it is shared by questions with the same seed data and survives restarts.
+ * Every execution restores that template into a private in-memory database, runs the
+ * user's statements there and prints result sets like the sqlite3 shell with
+ * ".mode column" and ".headers on".
+ */
+@Slf4j
+@Component
+public class EmbeddedSqlEngine {
+    private static final String MEMORY_URL = "jdbc:sqlite::memory:";
+    private static final String TEMPLATE_SUFFIX = ".db";
+    // Pragmas that only read the schema or change how it is enforced; all others could lift the
+    // limits of applyLimits or change settings of the whole process
+    private static final Set<String> ALLOWED_PRAGMAS = Set.of(
+            "foreign_keys", "defer_foreign_keys", "recursive_triggers", "case_sensitive_like",
+            "table_info", "table_xinfo", "table_list", "index_list", "index_info", "index_xinfo",
+            "foreign_key_list", "foreign_key_check", "integrity_check", "quick_check");
+
+    private final AppProperties.Sql config;
+    private final long maxOutputBytes;
+    private final Path templateRoot;
+    // Access-ordered, so iteration starts at the least recently used template
+    private final LinkedHashMap<String, Path> templates = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Object> buildLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sql-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public EmbeddedSqlEngine(AppProperties appProperties) {
+        this.config = appProperties.getSql();
+        this.maxOutputBytes = appProperties.getSandbox().getMaxOutputBytes();
+        this.templateRoot = Path.of(appProperties.getSandbox().getWorkRoot(), "sql-templates");
+    }
+
+    @PostConstruct
+    public void init() throws IOException, SQLException {
+        loadTemplates();
+        try (Connection connection = DriverManager.getConnection(MEMORY_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA hard_heap_limit = " + config.getHeapLimitBytes());
+        }
+    }
+
+    /**
+     * Indexes the templates left by a previous run, least recently modified first
+     */
+    private void loadTemplates() throws IOException {
+        Files.createDirectories(templateRoot);
+        File[] files = templateRoot.toFile().listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        synchronized (templates) {
+            for (File file : files) {
+                String name = file.getName();
+                // Dot files are builds that were interrupted
+                if (name.startsWith(".") || !name.endsWith(TEMPLATE_SUFFIX)) {
+                    Workspaces.deleteQuietly(file.toPath());
+                    continue;
+                }
+                templates.put(name.substring(0, name.length() - TEMPLATE_SUFFIX.length()), file.toPath());
+            }
+            evictTemplates();
+        }
+        log.info("Loaded {} SQL template databases from {}", templates.size(), templateRoot);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Executes the user's SQL against a fresh copy of the database built from initialCode
+     *
+     * @param code           SQL code to execute (user query)
+     * @param initialCode    Initial SQL code (create tables/insert data), may be empty
+     * @param timeoutSeconds Time limit for building the template (on first use) and running the query
+     * @return Execution result with the formatted output
+     */
+    public DockerService.ExecutionResult execute(String code, String initialCode, int timeoutSeconds) {
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        try {
+            Path template = null;
+            if (initialCode != null && !initialCode.isBlank()) {
+                ScriptResult init = new ScriptResult(maxOutputBytes);
+                template = getTemplate(initialCode, deadline, init);
+                if (template == null) {
+                    return DockerService.ExecutionResult.builder()
+                            .stdout("")
+                            .stderr(init.timedOut ? "Database initialization timed out" : "Database initialization error: " + init.stderr)
+                            .executionTime(System.currentTimeMillis() - startTime)
+                            .exitCode(1)
+                            .timedOut(init.timedOut)
+                            .build();
+                }
+            }
+
+            ScriptResult result = new ScriptResult(maxOutputBytes);
+            try (Connection connection = DriverManager.getConnection(MEMORY_URL)) {
+                if (template != null) {
+                    restore(connection, template, initialCode, deadline);
+                }
+                applyLimits(connection);
+                runScript(connection, code, deadline, result);
+            }
+
+            return DockerService.ExecutionResult.builder()
+                    .stdout(result.stdout.asString())
+                    .stderr(result.timedOut
+                            ? "Query execution timed out after " + timeoutSeconds + " seconds"
+                            : result.stderr.toString())
+                    .executionTime(System.currentTimeMillis() - startTime)
+                    .exitCode(result.failed ? 1 : 0)
+                    .timedOut(result.timedOut)
+                    .outputSize(result.stdout.getTotalBytes())
+                    .build();
+        } catch (Exception e) {
+            log.error("Error executing SQL: {}", e.getMessage(), e);
+            return DockerService.ExecutionResult.builder()
+                    .stdout("")
+                    .stderr("Internal execution error: " + e.getMessage())
+                    .executionTime(System.currentTimeMillis() - startTime)
+                    .exitCode(-1)
+                    .timedOut(false)
+                    .build();
+        }
+    }
+
+    /**
+     * Drops the template built from this initial code, e.g. after the question's seed data changed.
+     * Another question with the same initial code rebuilds it on its next execution.
+     *
+     * @param initialCode Initial code the template was built from, may be empty
+     */
+    public void invalidate(String initialCode) {
+        if (initialCode == null || initialCode.isBlank()) {
+            return;
+        }
+        Path template;
+        synchronized (templates) {
+            template = templates.remove(HashUtils.sha256(initialCode));
+        }
+        if (template != null) {
+            // A restore that already opened the file keeps reading it
+            Workspaces.deleteQuietly(template);
+            log.info("Invalidated SQL template database {}", template.getFileName());
+        }
+    }
+
+    public TemplateStats getStats() {
+        synchronized (templates) {
+            return TemplateStats.builder()
+                    .templates(templates.size())
+                    .maxTemplates(config.getMaxTemplates())
+                    .hits(hits.get())
+                    .builds(builds.get())
+                    .evictions(evictions.get())
+                    .build();
+        }
+    }
+
+    /**
+     * Returns the template database for the initial code, building it on first use
+     *
+     * @return Template file, or null if the initial code failed (details in init)
+     */
+    private Path getTemplate(String initialCode, long deadline, ScriptResult init) throws IOException, SQLException {
+        String key = HashUtils.sha256(initialCode);
+        synchronized (templates) {
+            Path template = templates.get(key);
+            if (template != null) {
+                hits.incrementAndGet();
+                return template;
+            }
+        }
+        // Concurrent first executions of the same question build it once
+        synchronized (buildLocks.computeIfAbsent(key, k -> new Object())) {
+            try {
+                synchronized (templates) {
+                    Path template = templates.get(key);
+                    if (template != null) {
+                        return template;
+                    }
+                }
+                Path template = buildTemplate(key, initialCode, deadline, init);
+                if (template != null) {
+                    synchronized (templates) {
+                        templates.put(key, template);
+                        evictTemplates();
+                    }
+                }
+                return template;
+            } finally {
+                buildLocks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Copies the template into the in-memory database. A template evicted in the meantime is rebuilt.
+     */
+    private void restore(Connection connection, Path template, String initialCode, long deadline) throws IOException, SQLException {
+        if (Files.exists(template)) {
+            try {
+                ((SQLiteConnection) connection).getDatabase().restore("main", template.toString(), null);
+                return;
+            } catch (SQLException e) {
+                log.warn("Rebuilding SQL template {}: {}", template.getFileName(), e.getMessage());
+            }
+        }
+        synchronized (templates) {
+            templates.values().remove(template);
+        }
+        Path rebuilt = getTemplate(initialCode, deadline, new ScriptResult(maxOutputBytes));
+        if (rebuilt == null) {
+            throw new SQLException("Template database could not be rebuilt");
+        }
+        ((SQLiteConnection) connection).getDatabase().restore("main", rebuilt.toString(), null);
+    }
+
+    private Path buildTemplate(String key, String initialCode, long deadline, ScriptResult init) throws IOException, SQLException {
+        Files.createDirectories(templateRoot);
+        Path staging = templateRoot.resolve("." + UUID.randomUUID() + TEMPLATE_SUFFIX);
+        try {
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + staging)) {
+                applyLimits(connection);
+                runScript(connection, initialCode, deadline, init);
+            }
+            if (init.failed || init.timedOut) {
+                return null;
+            }
+            Path template = templateRoot.resolve(key + TEMPLATE_SUFFIX);
+            Files.move(staging, template, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            builds.incrementAndGet();
+            log.info("Built SQL template database {}", template.getFileName());
+            return template;
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /**
+     * Must be called while holding the templates lock
+     */
+    private void evictTemplates() {
+        Iterator<Map.Entry<String, Path>> iterator = templates.entrySet().iterator();
+        while (templates.size() > config.getMaxTemplates() && iterator.hasNext()) {
+            Path eldest = iterator.next().getValue();
+            iterator.remove();
+            evictions.incrementAndGet();
+            // A restore that already opened the file keeps reading it
+            Workspaces.deleteQuietly(eldest);
+        }
+    }
+
+    private void applyLimits(Connection connection) throws SQLException {
+        // No ATTACH (or VACUUM INTO, which attaches its target): code must not reach the host file system
+        ((SQLiteConnection) connection).setLimit(SQLiteLimits.SQLITE_LIMIT_ATTACHED, 0);
+        try (Statement statement = connection.createStatement();
+             ResultSet pageSize = statement.executeQuery("PRAGMA page_size")) {
+            long maxPages = Math.max(1, config.getMaxDatabaseBytes() / pageSize.getLong(1));
+            try (Statement pragma = connection.createStatement()) {
+                pragma.execute("PRAGMA max_page_count = " + maxPages);
+                // Temporary tables and indexes stay in memory, under the same cap as the database
+                pragma.execute("PRAGMA temp_store = MEMORY");
+                pragma.execute("PRAGMA temp.max_page_count = " + maxPages);
+            }
+        }
+    }
+
+    /**
+     * Runs every statement of the script like the sqlite3 shell does with .read:
+     * result sets are printed, errors are reported and the next statement runs anyway.
+     * The script is interrupted once the deadline has passed. PRAGMA statements outside of
+     * {@link #ALLOWED_PRAGMAS} are reported as errors without being run.
+     */
+    private void runScript(Connection connection, String script, long deadline, ScriptResult result) {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        long delay = Math.max(0, deadline - System.currentTimeMillis());
+        ScheduledFuture<?> timer = watchdog.schedule(() -> {
+            interrupted.set(true);
+            try {
+                ((SQLiteConnection) connection).getDatabase().interrupt();
+            } catch (SQLException e) {
+                log.warn("Failed to interrupt SQL execution: {}", e.getMessage());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        try {
+            for (String sql : SqlStatementSplitter.split(script)) {
+                if (interrupted.get() || System.currentTimeMillis() >= deadline) {
+                    result.timedOut = true;
+                    return;
+                }
+                String pragma = SqlStatementSplitter.pragmaName(sql);
+                if (pragma != null && !ALLOWED_PRAGMAS.contains(pragma)) {
+                    result.failed = true;
+                    result.stderr.append("Error: PRAGMA ").append(pragma).append(" is not allowed\n");
+                    continue;
+                }
+                try (Statement statement = connection.createStatement()) {
+                    if (statement.execute(sql)) {
+                        try (ResultSet resultSet = statement.getResultSet()) {
+                            printResultSet(resultSet, deadline, result);
+                        }
+                    }
+                } catch (SQLException e) {
+                    if (interrupted.get()) {
+                        result.timedOut = true;
+                        return;
+                    }
+                    result.failed = true;
+                    result.stderr.append("Error: ").append(errorMessage(e)).append('\n');
+                }
+            }
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    private void printResultSet(ResultSet resultSet, long deadline, ScriptResult result) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columns = metaData.getColumnCount();
+        if (columns == 0) {
+            return;
+        }
+        List<String> headers = new ArrayList<>(columns);
+        for (int i = 1; i <= columns; i++) {
+            headers.add(metaData.getColumnLabel(i));
+        }
+        List<String[]> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            if (rows.size() >= config.getMaxRows()) {
+                result.stderr.append("Result truncated after ").append(config.getMaxRows()).append(" rows\n");
+                break;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                result.timedOut = true;
+                break;
+            }
+            String[] row = new String[columns];
+            for (int i = 1; i <= columns; i++) {
+                row[i - 1] = resultSet.getString(i);
+            }
+            rows.add(row);
+        }
+        // Formatted one result set at a time; only what fits the output limit is kept
+        StringBuilder table = new StringBuilder();
+        ColumnModeFormatter.format(headers, rows, table);
+        byte[] bytes = table.toString().getBytes(StandardCharsets.UTF_8);
+        result.stdout.write(bytes, 0, bytes.length, null);
+    }
+
+    /**
+     * "[SQLITE_ERROR] SQL error or missing database (no such table: foo)" becomes "no such table: foo"
+     */
+    private static String errorMessage(SQLException e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.toString();
+        int open = message.indexOf('(');
+        if (message.startsWith("[") && open >= 0 && message.endsWith(")")) {
+            return message.substring(open + 1, message.length() - 1);
+        }
+        return message;
+    }
+
+    @Data
+    @Builder
+    public static class TemplateStats {
+        private int templates;
+        private int maxTemplates;
+        private long hits;
+        private long builds;
+        private long evictions;
+    }
+
+    private static class ScriptResult {
+        // Same limit and truncation marker as the output of a sandbox
+        private final OutputCapture stdout;
+        private final StringBuilder stderr = new StringBuilder();
+        private boolean failed = false;
+        private boolean timedOut = false;
+
+        private ScriptResult(long maxOutputBytes) {
+            this.stdout = new OutputCapture(maxOutputBytes);
+        }
+    }
+}
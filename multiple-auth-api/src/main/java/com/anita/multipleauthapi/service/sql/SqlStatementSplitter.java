@@ -0,0 +1,191 @@
+package com.anita.multipleauthapi.service.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL script into statements the way the sqlite3 shell does: on semicolons outside
+ * of string literals, quoted identifiers and comments, keeping CREATE TRIGGER bodies together.
+ * Lines starting with a dot outside of a statement are shell meta-commands and are skipped.
+ */
+public final class SqlStatementSplitter {
+    private static final Pattern PRAGMA = Pattern.compile(
+            "^\\s*(?:EXPLAIN\\b\\s*(?:QUERY\\b\\s*PLAN\\b\\s*)?)?PRAGMA\\b\\s*(?:['\"`\\[]?\\w+['\"`\\]]?\\s*\\.\\s*)?['\"`\\[]?(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PRAGMA_KEYWORD = Pattern.compile(
+            "^\\s*(?:EXPLAIN\\b\\s*(?:QUERY\\b\\s*PLAN\\b\\s*)?)?PRAGMA\\b", Pattern.CASE_INSENSITIVE);
+
+    private SqlStatementSplitter() {
+    }
+
+    public static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        if (script == null) {
+            return statements;
+        }
+        StringBuilder current = new StringBuilder();
+        // BEGIN/CASE ... END nesting inside a trigger body
+        int blockDepth = 0;
+        boolean trigger = false;
+        int length = script.length();
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+
+            if (c == '.' && isBlank(current) && atLineStart(script, i)) {
+                i = lineEnd(script, i);
+                current.setLength(0);
+                continue;
+            }
+
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int end = i + 1;
+                while (end < length) {
+                    if (script.charAt(end) == close) {
+                        // A doubled quote is an escaped quote
+                        if (close != ']' && end + 1 < length && script.charAt(end + 1) == close) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, length);
+                current.append(script, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                int end = lineEnd(script, i);
+                current.append(script, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                current.append(script, i, end);
+                i = end;
+                continue;
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(script.charAt(end)) || script.charAt(end) == '_')) {
+                    end++;
+                }
+                String word = script.substring(i, end).toUpperCase(Locale.ROOT);
+                if (word.equals("TRIGGER") && startsWithCreate(current)) {
+                    trigger = true;
+                } else if (trigger && (word.equals("BEGIN") || word.equals("CASE"))) {
+                    blockDepth++;
+                } else if (trigger && word.equals("END") && blockDepth > 0) {
+                    blockDepth--;
+                }
+                current.append(script, i, end);
+                i = end;
+                continue;
+            }
+            if (c == ';' && blockDepth == 0) {
+                addStatement(statements, current);
+                current.setLength(0);
+                trigger = false;
+                i++;
+                continue;
+            }
+            current.append(c);
+            i++;
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    /**
+     * @param statement One statement of {@link #split}
+     * @return Lower-case name of the pragma the statement runs (also under EXPLAIN), "" if it is a
+     *         PRAGMA statement whose name cannot be read, null if it is not a PRAGMA statement
+     */
+    public static String pragmaName(String statement) {
+        String code = withoutComments(statement);
+        if (!PRAGMA_KEYWORD.matcher(code).find()) {
+            return null;
+        }
+        Matcher matcher = PRAGMA.matcher(code);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Replaces comments by a space; string literals are not taken into account, which only
+     * matters past the leading keywords
+     */
+    private static String withoutComments(String statement) {
+        StringBuilder code = new StringBuilder(statement.length());
+        int i = 0;
+        while (i < statement.length()) {
+            if (statement.startsWith("--", i)) {
+                i = lineEnd(statement, i);
+                code.append(' ');
+            } else if (statement.startsWith("/*", i)) {
+                int end = statement.indexOf("*/", i + 2);
+                i = end < 0 ? statement.length() : end + 2;
+                code.append(' ');
+            } else {
+                code.append(statement.charAt(i++));
+            }
+        }
+        return code.toString();
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty() && !isOnlyComments(statement)) {
+            statements.add(statement);
+        }
+    }
+
+    private static boolean isBlank(StringBuilder current) {
+        for (int i = 0; i < current.length(); i++) {
+            if (!Character.isWhitespace(current.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithCreate(StringBuilder current) {
+        return current.toString().stripLeading().toUpperCase(Locale.ROOT).startsWith("CREATE");
+    }
+
+    private static boolean isOnlyComments(String statement) {
+        String rest = statement;
+        while (!rest.isEmpty()) {
+            if (rest.startsWith("--")) {
+                int end = rest.indexOf('\n');
+                rest = end < 0 ? "" : rest.substring(end + 1).trim();
+            } else if (rest.startsWith("/*")) {
+                int end = rest.indexOf("*/");
+                rest = end < 0 ? "" : rest.substring(end + 2).trim();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean atLineStart(String script, int index) {
+        int i = index - 1;
+        while (i >= 0 && (script.charAt(i) == ' ' || script.charAt(i) == '\t')) {
+            i--;
+        }
+        return i < 0 || script.charAt(i) == '\n';
+    }
+
+    private static int lineEnd(String script, int index) {
+        int end = script.indexOf('\n', index);
+        return end < 0 ? script.length() : end;
+    }
+}
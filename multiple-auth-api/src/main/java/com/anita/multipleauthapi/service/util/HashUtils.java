@@ -0,0 +1,26 @@
+package com.anita.multipleauthapi.service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class HashUtils {
+
+    /**
+     * Hex-encoded SHA-256 over all parts, each part terminated by a NUL byte so that
+     * ("ab", "c") and ("a", "bc") hash differently. Null parts hash like the string "null".
+     */
+    public static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+"""Fork server for the graded test cases of one Python submission.
+
+Imports the preload modules once, compiles the submission once, then forks a
+child per test case. The child gets the case's input as its stdin and its
+output files as stdout/stderr, a CPU-time limit, and a fresh __main__ module.
+It leaves the same files as the shell batch script (out_N.txt, err_N.txt,
+exit_N.txt, time_N.txt, usage_N.txt with the child's CPU time and peak RSS).
+
+Usage: python_worker.py SOURCE_FILE CASE_COUNT TIMEOUT_SECONDS [MODULE,MODULE...]
+Stdin: per case the input's length in bytes on its own line, then the input
+"""
+import os
+
+# Native thread pools started by numpy and friends do not survive fork
+for _variable in ("OPENBLAS_NUM_THREADS", "OMP_NUM_THREADS", "MKL_NUM_THREADS"):
+    os.environ.setdefault(_variable, "1")
+
+import importlib
+import resource
+import signal
+import sys
+import time
+import traceback
+import types
+
+TIMEOUT_EXIT_CODE = 124
+POLL_SECONDS = 0.005
+
+
+def main():
+    source_file = sys.argv[1]
+    case_count = int(sys.argv[2])
+    timeout = int(sys.argv[3])
+    preload = [name for name in (sys.argv[4] if len(sys.argv) > 4 else "").split(",") if name]
+    inputs = read_inputs(sys.stdin.buffer, case_count)
+
+    for name in preload:
+        try:
+            importlib.import_module(name)
+        except Exception:
+            # A module the image does not have is imported by the program itself, if at all
+            pass
+
+    with open(source_file, "rb") as source:
+        text = source.read()
+    try:
+        code = compile(text, source_file, "exec")
+    except (SyntaxError, ValueError):
+        # Every case reports the error the way the interpreter would
+        code = None
+
+    sys.stdout.flush()
+    sys.stderr.flush()
+    for index in range(1, case_count + 1):
+        run_case(index, inputs[index - 1], source_file, code, text, timeout)
+
+
+def read_inputs(stream, count):
+    inputs = []
+    for index in range(1, count + 1):
+        length = int(stream.readline())
+        data = stream.read(length)
+        if len(data) != length:
+            raise EOFError("Input of case %d is incomplete" % index)
+        inputs.append(data)
+    return inputs
+
+
+def run_case(index, data, source_file, code, text, timeout):
+    start = time.monotonic()
+    pid = os.fork()
+    if pid == 0:
+        run_child(index, data, source_file, code, text, timeout)
+
+    timed_out = False
+    while True:
+        finished, status, usage = os.wait4(pid, os.WNOHANG)
+        if finished:
+            break
+        if time.monotonic() - start > timeout:
+            timed_out = True
+            kill_group(pid)
+            _, status, usage = os.wait4(pid, 0)
+            break
+        time.sleep(POLL_SECONDS)
+    elapsed_ms = int((time.monotonic() - start) * 1000)
+    # Whatever the program left running in the background does not outlive its case
+    kill_group(pid)
+
+    if timed_out or (os.WIFSIGNALED(status) and os.WTERMSIG(status) == signal.SIGXCPU):
+        exit_code = TIMEOUT_EXIT_CODE
+    elif os.WIFSIGNALED(status):
+        exit_code = 128 + os.WTERMSIG(status)
+    else:
+        exit_code = os.WEXITSTATUS(status)
+    write("exit_%d.txt" % index, exit_code)
+    write("time_%d.txt" % index, elapsed_ms)
+    with open("usage_%d.txt" % index, "w") as target:
+        # ru_maxrss is in KB on Linux; it covers the pages shared with the preloaded parent too
+        target.write("%d %d %d\n" % (usage.ru_utime * 1000, usage.ru_stime * 1000, usage.ru_maxrss))
+
+
+def run_child(index, data, source_file, code, text, timeout):
+    exit_code = 1
+    try:
+        os.setpgid(0, 0)
+        feed_stdin(data)
+        redirect(1, "out_%d.txt" % index, os.O_WRONLY | os.O_CREAT | os.O_TRUNC)
+        redirect(2, "err_%d.txt" % index, os.O_WRONLY | os.O_CREAT | os.O_TRUNC)
+        sys.stdin = open(0, "r", encoding="utf-8", closefd=False)
+        sys.stdout = open(1, "w", encoding="utf-8", closefd=False)
+        sys.stderr = open(2, "w", encoding="utf-8", errors="backslashreplace", buffering=1, closefd=False)
+        resource.setrlimit(resource.RLIMIT_CPU, (timeout, timeout + 1))
+        resource.setrlimit(resource.RLIMIT_CORE, (0, 0))
+        exit_code = execute(source_file, code, text)
+    finally:
+        for stream in (sys.stdout, sys.stderr):
+            try:
+                stream.flush()
+            except Exception:
+                pass
+        os._exit(exit_code)
+
+
+def execute(source_file, code, text):
+    """Runs the program like "python SOURCE_FILE" and returns its exit status"""
+    module = types.ModuleType("__main__")
+    module.__file__ = source_file
+    sys.modules["__main__"] = module
+    sys.argv = [source_file]
+    sys.path[0] = os.path.dirname(os.path.abspath(source_file))
+    try:
+        if code is None:
+            code = compile(text, source_file, "exec")
+        exec(code, module.__dict__)
+        return 0
+    except SystemExit as e:
+        return exit_status(e.code)
+    except BaseException as e:
+        # Leave out this function's frame, as the interpreter would have no such frame
+        traceback.print_exception(type(e), e, e.__traceback__.tb_next if e.__traceback__ else None)
+        return 1
+
+
+def exit_status(code):
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code & 0xFF
+    print(code, file=sys.stderr)
+    return 1
+
+
+def feed_stdin(data):
+    """Makes the input the child's stdin through an in-memory file, which unlike a pipe
+    cannot fill up before the program reads it"""
+    fd = os.memfd_create("stdin")
+    view = memoryview(data)
+    while view:
+        view = view[os.write(fd, view):]
+    os.lseek(fd, 0, os.SEEK_SET)
+    os.dup2(fd, 0)
+    os.close(fd)
+
+
+def redirect(fd, path, flags):
+    opened = os.open(path, flags, 0o644)
+    os.dup2(opened, fd)
+    os.close(opened)
+
+
+def kill_group(pid):
+    try:
+        os.killpg(pid, signal.SIGKILL)
+    except OSError:
+        pass
+
+
+def write(path, value):
+    with open(path, "w") as target:
+        target.write("%d\n" % value)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,217 @@
+package com.anita.multipleauthapi.service;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionEntity;
+import com.anita.multipleauthapi.model.entity.UserEntity;
+import com.anita.multipleauthapi.repository.SubmissionCaseResultRepository;
+import com.anita.multipleauthapi.repository.SubmissionRepository;
+import com.anita.multipleauthapi.service.grading.OutputCheckers;
+import com.anita.multipleauthapi.service.sandbox.ExecutionScheduler;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Grades more submissions at once than the connection pool has connections. While code ran
+ * inside the grading transaction, every running submission held a connection and the rest
+ * could not even start; now none is held while code runs. Since the question can change in that
+ * time, a grade for an outdated question is not saved, and a grade that cannot be saved leaves
+ * the submission FAILED rather than PENDING.
+ */
+class SubmissionGradingLoadTest {
+    private static final int POOL_SIZE = 2;
+    private static final int SUBMISSIONS = 8;
+
+    @Test
+    void holdsNoConnectionWhileCodeRuns() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite::memory:");
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setConnectionTimeout(1000);
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            AtomicInteger peakWhileRunning = new AtomicInteger();
+            // Every submission has to be running at once to get past the latch
+            CountDownLatch allRunning = new CountDownLatch(SUBMISSIONS);
+            // ...and stay running until all have looked at the pool, so none is saving its grade yet
+            CountDownLatch allSampled = new CountDownLatch(SUBMISSIONS);
+            DockerService dockerService = mock(DockerService.class);
+            when(dockerService.executeCode(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+                allRunning.countDown();
+                allRunning.await(10, TimeUnit.SECONDS);
+                peakWhileRunning.accumulateAndGet(dataSource.getHikariPoolMXBean().getActiveConnections(), Math::max);
+                allSampled.countDown();
+                allSampled.await(10, TimeUnit.SECONDS);
+                return DockerService.ExecutionResult.builder()
+                        .stdout("42").stderr("").exitCode(0).timedOut(false).executionTime(5L).build();
+            });
+
+            Map<UUID, SubmissionEntity> stored = new ConcurrentHashMap<>();
+            SubmissionRepository submissionRepository = mock(SubmissionRepository.class);
+            when(submissionRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<UUID>getArgument(0))));
+            when(submissionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+            SubmissionService submissionService = submissionService(dataSource, dockerService, submissionRepository,
+                    mock(SubmissionQueue.class));
+            QuestionEntity question = QuestionEntity.builder()
+                    .id(UUID.randomUUID()).language(LanguageType.PYTHON).answer("42").build();
+            for (int i = 0; i < SUBMISSIONS; i++) {
+                SubmissionEntity submission = SubmissionEntity.builder()
+                        .id(UUID.randomUUID())
+                        .question(question)
+                        .user(UserEntity.builder().build())
+                        .language(LanguageType.PYTHON)
+                        .code("print(42)")
+                        .status("PENDING")
+                        .createdAt(String.valueOf(System.currentTimeMillis()))
+                        .build();
+                stored.put(submission.getId(), submission);
+            }
+
+            ExecutorService workers = Executors.newFixedThreadPool(SUBMISSIONS);
+            try {
+                List<Future<?>> grading = new ArrayList<>();
+                for (UUID submissionId : stored.keySet()) {
+                    grading.add(workers.submit(() -> submissionService.gradeSubmission(submissionId)));
+                }
+                for (Future<?> future : grading) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                workers.shutdownNow();
+            }
+
+            assertThat(allRunning.getCount()).isZero();
+            assertThat(peakWhileRunning).hasValue(0);
+            assertThat(stored.values()).extracting(SubmissionEntity::getStatus).containsOnly("COMPLETED");
+            assertThat(stored.values()).extracting(SubmissionEntity::getScore).containsOnly(100);
+        }
+    }
+
+    @Test
+    void gradesAgainWhenTheQuestionChangedWhileRunning() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite::memory:");
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            QuestionEntity question = QuestionEntity.builder()
+                    .id(UUID.randomUUID()).language(LanguageType.PYTHON).answer("42").updatedAt("1").build();
+            SubmissionEntity submission = SubmissionEntity.builder()
+                    .id(UUID.randomUUID())
+                    .question(question)
+                    .user(UserEntity.builder().build())
+                    .language(LanguageType.PYTHON)
+                    .code("print(42)")
+                    .status("PENDING")
+                    .build();
+            SubmissionEntity afterEdit = SubmissionEntity.builder()
+                    .id(submission.getId())
+                    .question(QuestionEntity.builder().id(question.getId()).answer("43").updatedAt("2").build())
+                    .status("PENDING")
+                    .build();
+            Map<UUID, SubmissionEntity> stored = new ConcurrentHashMap<>(Map.of(submission.getId(), submission));
+
+            DockerService dockerService = mock(DockerService.class);
+            when(dockerService.executeCode(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+                // The question is edited while the code runs
+                stored.put(afterEdit.getId(), afterEdit);
+                return DockerService.ExecutionResult.builder()
+                        .stdout("42").stderr("").exitCode(0).timedOut(false).executionTime(5L).build();
+            });
+            SubmissionRepository submissionRepository = mock(SubmissionRepository.class);
+            when(submissionRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<UUID>getArgument(0))));
+            SubmissionQueue submissionQueue = mock(SubmissionQueue.class);
+            when(submissionQueue.submit(any(), any())).thenReturn(true);
+
+            submissionService(dataSource, dockerService, submissionRepository, submissionQueue).gradeSubmission(submission.getId());
+
+            verify(submissionQueue).submit(eq(submission.getId()), any());
+            verify(submissionRepository, never()).save(any());
+            assertThat(afterEdit.getStatus()).isEqualTo("PENDING");
+        }
+    }
+
+    @Test
+    void failsAndEndsTheStreamWhenSavingTheGradeThrows() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite::memory:");
+
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            QuestionEntity question = QuestionEntity.builder()
+                    .id(UUID.randomUUID()).language(LanguageType.PYTHON).answer("42").updatedAt("1").build();
+            SubmissionEntity submission = SubmissionEntity.builder()
+                    .id(UUID.randomUUID())
+                    .question(question)
+                    .user(UserEntity.builder().build())
+                    .language(LanguageType.PYTHON)
+                    .code("print(42)")
+                    .status("PENDING")
+                    .build();
+
+            DockerService dockerService = mock(DockerService.class);
+            when(dockerService.executeCode(any(), any(), any(), any(), anyInt())).thenReturn(DockerService.ExecutionResult.builder()
+                    .stdout("42").stderr("").exitCode(0).timedOut(false).executionTime(5L).build());
+            SubmissionRepository submissionRepository = mock(SubmissionRepository.class);
+            when(submissionRepository.findById(submission.getId())).thenReturn(Optional.of(submission));
+            when(submissionRepository.save(any()))
+                    .thenThrow(new IllegalStateException("connection lost"))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+            SubmissionQueue submissionQueue = mock(SubmissionQueue.class);
+
+            submissionService(dataSource, dockerService, submissionRepository, submissionQueue).gradeSubmission(submission.getId());
+
+            assertThat(submission.getStatus()).isEqualTo("FAILED");
+            assertThat(submission.getError()).contains("connection lost");
+            verify(submissionQueue).publish(eq(submission.getId()),
+                    eq(Map.of("id", submission.getId(), "status", "FAILED", "error", "Grading failed: connection lost")), eq(true));
+        }
+    }
+
+    private static SubmissionService submissionService(HikariDataSource dataSource, DockerService dockerService,
+                                                       SubmissionRepository submissionRepository, SubmissionQueue submissionQueue) {
+        AppProperties properties = new AppProperties();
+        properties.getSandbox().getAdmission().setMaxConcurrent(SUBMISSIONS);
+        properties.getSandbox().getAdmission().setReservedForSubmissions(0);
+        return new SubmissionService(
+                submissionRepository,
+                mock(SubmissionCaseResultRepository.class),
+                null,
+                dockerService,
+                null,
+                null,
+                null,
+                null,
+                submissionQueue,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                mock(VerdictReuseService.class),
+                new ExecutionScheduler(properties),
+                null,
+                new OutputCheckers(dockerService));
+    }
+}
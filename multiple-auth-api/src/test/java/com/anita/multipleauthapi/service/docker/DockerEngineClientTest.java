@@ -0,0 +1,254 @@
+package com.anita.multipleauthapi.service.docker;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.service.DockerService;
+import com.anita.multipleauthapi.service.sandbox.DockerEngineSandboxBackend;
+import com.anita.multipleauthapi.service.sandbox.SandboxHandle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DockerEngineClientTest {
+
+    @TempDir
+    Path dir;
+
+    private FakeDaemon daemon;
+    private AppProperties appProperties;
+    private DockerEngineClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        daemon = new FakeDaemon(dir.resolve("docker.sock"));
+        appProperties = new AppProperties();
+        appProperties.getDocker().setSocketPath(dir.resolve("docker.sock").toString());
+        client = new DockerEngineClient(appProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        daemon.close();
+    }
+
+    @Test
+    void runsContainerOverPooledConnections() {
+        daemon.route("POST /v1.41/containers/create", body -> json(201, "{\"Id\":\"c1\"}"));
+        daemon.route("POST /v1.41/containers/c1/attach", body -> upgrade(
+                frame(1, "hello\n"), frame(2, "warn\n"), frame(1, "world\n")));
+        daemon.route("POST /v1.41/containers/c1/start", body -> empty(204));
+        daemon.route("POST /v1.41/containers/c1/wait", body -> json(200, "{\"StatusCode\":3}"));
+        daemon.route("DELETE /v1.41/containers/c1", body -> empty(204));
+        DockerEngineSandboxBackend backend = new DockerEngineSandboxBackend(appProperties.getSandbox(), client);
+
+        DockerService.ExecutionResult result = backend.run(
+                new SandboxHandle("code-exec-1", LanguageType.PYTHON, "python:3", dir.resolve("work")), "python3 main.py", null, 5, null);
+
+        assertThat(result.getStdout()).isEqualTo("hello\nworld\n");
+        assertThat(result.getStderr()).isEqualTo("warn\n");
+        assertThat(result.getExitCode()).isEqualTo(3);
+        assertThat(daemon.requests).containsExactly(
+                "POST /v1.41/containers/create?name=code-exec-1",
+                "POST /v1.41/containers/c1/attach?stream=1&stdout=1&stderr=1&stdin=0",
+                "POST /v1.41/containers/c1/start",
+                "POST /v1.41/containers/c1/wait",
+                "DELETE /v1.41/containers/c1?force=true");
+        // One keep-alive connection for the plain requests, one taken over by the attach stream
+        assertThat(client.getOpenedConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void pullsMissingImageBeforeCreating() throws IOException {
+        AtomicInteger creates = new AtomicInteger();
+        daemon.route("POST /v1.41/containers/create", body -> creates.getAndIncrement() == 0
+                ? json(404, "{\"message\":\"No such image: python:3\"}")
+                : json(201, "{\"Id\":\"c2\"}"));
+        daemon.route("POST /v1.41/images/create", body -> chunked("{\"status\":\"Pulling\"}\n", "{\"status\":\"Done\"}\n"));
+
+        assertThat(client.createContainer("job", Map.of("Image", "python:3"))).isEqualTo("c2");
+        assertThat(daemon.requests).contains("POST /v1.41/images/create?fromImage=python%3A3");
+    }
+
+    @Test
+    void reportsDaemonErrors() {
+        daemon.route("DELETE /v1.41/containers/busy", body -> json(409, "{\"message\":\"container is running\"}"));
+
+        assertThatThrownBy(() -> client.removeContainer("busy", false))
+                .isInstanceOf(DockerEngineException.class)
+                .hasMessage("container is running")
+                .extracting(e -> ((DockerEngineException) e).getStatus()).isEqualTo(409);
+    }
+
+    @Test
+    void retriesWhenTheDaemonClosedAnIdleConnection() throws IOException {
+        daemon.route("GET /v1.41/containers/json", body -> json(200, "[]"));
+        daemon.closeAfterResponse = true;
+
+        client.listContainers(true);
+        client.listContainers(true);
+
+        assertThat(daemon.requests).hasSize(2);
+        assertThat(client.getOpenedConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRepeatAPostTheDaemonMayHaveExecuted() throws IOException {
+        AtomicInteger starts = new AtomicInteger();
+        daemon.route("POST /v1.41/containers/c1/start", body -> starts.getAndIncrement() == 0 ? empty(204) : null);
+
+        client.startContainer("c1");
+        assertThatThrownBy(() -> client.startContainer("c1")).isInstanceOf(IOException.class);
+
+        assertThat(daemon.requests).containsExactly(
+                "POST /v1.41/containers/c1/start",
+                "POST /v1.41/containers/c1/start");
+    }
+
+    private static byte[] json(int status, String body) {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        return concat(("HTTP/1.1 " + status + " X\r\nContent-Type: application/json\r\nContent-Length: "
+                + payload.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII), payload);
+    }
+
+    private static byte[] empty(int status) {
+        return ("HTTP/1.1 " + status + " X\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] chunked(String... chunks) {
+        StringBuilder response = new StringBuilder("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for (String chunk : chunks) {
+            response.append(Integer.toHexString(chunk.length())).append("\r\n").append(chunk).append("\r\n");
+        }
+        return response.append("0\r\n\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] upgrade(byte[]... frames) {
+        byte[] response = "HTTP/1.1 101 UPGRADED\r\nConnection: Upgrade\r\nUpgrade: tcp\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        for (byte[] frame : frames) {
+            response = concat(response, frame);
+        }
+        return response;
+    }
+
+    private static byte[] frame(int stream, String data) {
+        byte[] payload = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.put((byte) stream).put(new byte[3]).putInt(payload.length).put(payload);
+        return frame.array();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Serves canned responses on a unix socket. Upgraded (attach/exec) connections are closed
+     * after their frames, like a stream whose process exited.
+     */
+    private static class FakeDaemon implements Closeable {
+        private final ServerSocketChannel server;
+        private final Map<String, Function<String, byte[]>> routes = new ConcurrentHashMap<>();
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        private volatile boolean closeAfterResponse = false;
+
+        private FakeDaemon(Path socket) throws IOException {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread acceptor = new Thread(() -> {
+                while (server.isOpen()) {
+                    try {
+                        SocketChannel connection = server.accept();
+                        Thread handler = new Thread(() -> serve(connection));
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void route(String request, Function<String, byte[]> handler) {
+            routes.put(request, handler);
+        }
+
+        private void serve(SocketChannel connection) {
+            try (connection) {
+                InputStream in = Channels.newInputStream(connection);
+                OutputStream out = Channels.newOutputStream(connection);
+                String requestLine;
+                while ((requestLine = readLine(in)) != null) {
+                    int contentLength = 0;
+                    String line;
+                    while (!(line = readLine(in)).isEmpty()) {
+                        if (line.toLowerCase().startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(line.substring(15).trim());
+                        }
+                    }
+                    String body = new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+                    String[] parts = requestLine.split(" ");
+                    String target = parts[0] + " " + parts[1];
+                    requests.add(target);
+                    Function<String, byte[]> handler = routes.get(target.split("\\?")[0]);
+                    byte[] response = handler != null ? handler.apply(body) : json(404, "{\"message\":\"no route\"}");
+                    if (response == null) {
+                        // Hang up without answering, like a daemon that died mid-request
+                        return;
+                    }
+                    out.write(response);
+                    if (closeAfterResponse || response[9] == '1') {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // client went away
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return b < 0 && line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
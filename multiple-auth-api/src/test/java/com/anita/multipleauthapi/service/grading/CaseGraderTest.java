@@ -0,0 +1,96 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.model.Verdict;
+import com.anita.multipleauthapi.model.entity.SubmissionCaseResultEntity;
+import com.anita.multipleauthapi.service.DockerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseGraderTest {
+
+    private static DockerService.ExecutionResult run(String stdout, Integer exitCode, String stderr) {
+        return DockerService.ExecutionResult.builder()
+                .stdout(stdout).stderr(stderr).exitCode(exitCode).timedOut(false).runTime(5L).build();
+    }
+
+    private static GradingCase gradingCase(String expectedOutput, Integer weight) {
+        return GradingCase.builder().input("").expectedOutput(expectedOutput).weight(weight).build();
+    }
+
+    @Test
+    void classifiesEveryOutcome() {
+        assertThat(CaseGrader.classify(run("42\n", 0, ""), "42")).isEqualTo(Verdict.AC);
+        assertThat(CaseGrader.classify(run("41", 0, ""), "42")).isEqualTo(Verdict.WA);
+        assertThat(CaseGrader.classify(run("", 1, "Traceback"), "42")).isEqualTo(Verdict.RE);
+        assertThat(CaseGrader.classify(run("", 137, ""), "42")).isEqualTo(Verdict.MLE);
+        assertThat(CaseGrader.classify(run("", 1, "Exception in thread \"main\" java.lang.OutOfMemoryError"), "42"))
+                .isEqualTo(Verdict.MLE);
+        DockerService.ExecutionResult timedOut = run("", 124, "Execution timed out");
+        timedOut.setTimedOut(true);
+        assertThat(CaseGrader.classify(timedOut, "42")).isEqualTo(Verdict.TLE);
+        assertThat(CaseGrader.classify(DockerService.cancelled(), "42")).isEqualTo(Verdict.SKIPPED);
+        DockerService.ExecutionResult compileError = run("", 1, "error: ';' expected");
+        compileError.setCompileTime(300L);
+        compileError.setRunTime(null);
+        assertThat(CaseGrader.classify(compileError, "42")).isEqualTo(Verdict.CE);
+    }
+
+    @Test
+    void scoresAcceptedCasesByWeight() {
+        DockerService.BatchExecutionResult batch = DockerService.BatchExecutionResult.builder()
+                .caseResults(List.of(run("1", 0, ""), run("2", 0, ""), run("x", 0, ""), run("4", 0, "")))
+                .executionTime(20L)
+                .build();
+
+        List<SubmissionCaseResultEntity> results = CaseGrader.grade(batch, List.of(
+                gradingCase("1", null), gradingCase("2", 2), gradingCase("3", 3), gradingCase("4", 0)));
+
+        assertThat(results).extracting(SubmissionCaseResultEntity::getVerdict)
+                .containsExactly(Verdict.AC, Verdict.AC, Verdict.WA, Verdict.AC);
+        assertThat(results).extracting(SubmissionCaseResultEntity::getCaseIndex).containsExactly(1, 2, 3, 4);
+        assertThat(results.get(0).getCaseHash()).isEqualTo(gradingCase("1", 5).contentHash());
+        // 1 + 2 of 6, the weightless sample case counts for nothing
+        assertThat(CaseGrader.score(results)).isEqualTo(50);
+        assertThat(CaseGrader.countPassed(results)).isEqualTo(3);
+        assertThat(CaseGrader.allPassed(results)).isFalse();
+    }
+
+    @Test
+    void failedCompilationFailsEveryCase() {
+        DockerService.BatchExecutionResult batch = DockerService.BatchExecutionResult.builder()
+                .compileResult(run("", 1, "error"))
+                .caseResults(List.of())
+                .executionTime(20L)
+                .build();
+
+        List<SubmissionCaseResultEntity> results = CaseGrader.grade(batch, List.of(gradingCase("1", null), gradingCase("2", null)));
+
+        assertThat(results).extracting(SubmissionCaseResultEntity::getVerdict).containsOnly(Verdict.CE);
+        assertThat(CaseGrader.score(results)).isZero();
+    }
+
+    @Test
+    void keepsVerdictsClassifiedWhileTheCasesRan() {
+        DockerService.ExecutionResult classified = run("1", 0, "");
+        classified.setVerdict(Verdict.AC);
+        DockerService.ExecutionResult unclassified = run("2", 0, "");
+        AtomicInteger checks = new AtomicInteger();
+        OutputChecker checker = (input, expectedOutput) -> {
+            checks.incrementAndGet();
+            return ExactChecker.INSTANCE.start(input, expectedOutput);
+        };
+        DockerService.BatchExecutionResult batch = DockerService.BatchExecutionResult.builder()
+                .caseResults(List.of(classified, unclassified))
+                .executionTime(20L)
+                .build();
+
+        List<SubmissionCaseResultEntity> results = CaseGrader.grade(batch, List.of(gradingCase("1", null), gradingCase("2", null)), checker);
+
+        assertThat(results).extracting(SubmissionCaseResultEntity::getVerdict).containsExactly(Verdict.AC, Verdict.AC);
+        assertThat(checks).hasValue(1);
+    }
+}
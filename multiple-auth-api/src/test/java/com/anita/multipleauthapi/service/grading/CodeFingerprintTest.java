@@ -0,0 +1,51 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.model.entity.QuestionEntity;
+import com.anita.multipleauthapi.model.entity.SubmissionEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodeFingerprintTest {
+
+    private static final QuestionEntity QUESTION = QuestionEntity.builder()
+            .id(UUID.randomUUID())
+            .updatedAt("1700000000000")
+            .build();
+
+    private static String fingerprint(String code, String inputData, QuestionEntity question) {
+        SubmissionEntity submission = SubmissionEntity.builder()
+                .language(LanguageType.PYTHON)
+                .code(code)
+                .inputData(inputData)
+                .build();
+        return CodeFingerprint.of(submission, question);
+    }
+
+    @Test
+    void ignoresLineEndingsAndTrailingWhitespace() {
+        assertThat(fingerprint("\uFEFFif x:\r\n    print(1)\r\n\r\n", null, QUESTION))
+                .isEqualTo(fingerprint("if x:\n    print(1)", null, QUESTION));
+    }
+
+    @Test
+    void keepsWhitespaceInsideTheCode() {
+        assertThat(fingerprint("if x:\n    print(1)", null, QUESTION))
+                .isNotEqualTo(fingerprint("if x:\n  print(1)", null, QUESTION));
+    }
+
+    @Test
+    void differsPerInputAndQuestionVersion() {
+        QuestionEntity edited = QuestionEntity.builder()
+                .id(QUESTION.getId())
+                .updatedAt("1700000000001")
+                .build();
+
+        assertThat(fingerprint("print(input())", "1", QUESTION))
+                .isNotEqualTo(fingerprint("print(input())", "2", QUESTION))
+                .isNotEqualTo(fingerprint("print(input())", "1", edited));
+    }
+}
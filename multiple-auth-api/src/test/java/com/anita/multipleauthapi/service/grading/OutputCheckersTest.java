@@ -0,0 +1,71 @@
+package com.anita.multipleauthapi.service.grading;
+
+import com.anita.multipleauthapi.model.CheckerType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputCheckersTest {
+
+    private static boolean accepts(CheckerType type, String expected, String output) {
+        return OutputCheckers.builtIn(type, null).accepts("", expected, output);
+    }
+
+    @Test
+    void exactIgnoresOnlySurroundingWhitespace() {
+        assertThat(accepts(CheckerType.EXACT, "1 2\n3", "\n1 2\n3  \n")).isTrue();
+        assertThat(accepts(CheckerType.EXACT, "1 2\n3", "1  2\n3")).isFalse();
+        assertThat(accepts(CheckerType.EXACT, "1 2", "1 2 3")).isFalse();
+        assertThat(accepts(CheckerType.EXACT, "1 2", "1")).isFalse();
+    }
+
+    @Test
+    void tokensIgnoreSpacingAndLineBreaks() {
+        assertThat(accepts(CheckerType.TOKENS, "1 2 3", "1\n2   3\n")).isTrue();
+        assertThat(accepts(CheckerType.TOKENS, "1 2 3", "1 2")).isFalse();
+        assertThat(accepts(CheckerType.TOKENS, "1 2", "1 2 3")).isFalse();
+    }
+
+    @Test
+    void linesIgnoreTrailingWhitespaceButNotIndentation() {
+        assertThat(accepts(CheckerType.LINES, "a\n\nb\n", "a  \r\n\nb\n\n\n")).isTrue();
+        assertThat(accepts(CheckerType.LINES, "a\n\nb", "a\nb")).isFalse();
+        assertThat(accepts(CheckerType.LINES, "a\nb", " a\nb")).isFalse();
+    }
+
+    @Test
+    void floatsMatchWithinEpsilon() {
+        assertThat(accepts(CheckerType.FLOAT, "0.333333 x", "0.3333333333 x")).isTrue();
+        assertThat(accepts(CheckerType.FLOAT, "1000000", "1000000.5")).isTrue();
+        assertThat(accepts(CheckerType.FLOAT, "0.5", "0.51")).isFalse();
+        assertThat(accepts(CheckerType.FLOAT, "x", "y")).isFalse();
+        assertThat(OutputCheckers.builtIn(CheckerType.FLOAT, 0.1).accepts("", "0.5", "0.55")).isTrue();
+    }
+
+    @Test
+    void unorderedLinesMatchAsMultiset() {
+        assertThat(accepts(CheckerType.UNORDERED_LINES, "a\nb\na", "b\na\n\na\n")).isTrue();
+        assertThat(accepts(CheckerType.UNORDERED_LINES, "a\nb\na", "a\nb\nb")).isFalse();
+        assertThat(accepts(CheckerType.UNORDERED_LINES, "a\nb", "a")).isFalse();
+    }
+
+    @Test
+    void rejectsWrongOutputBeforeItIsComplete() {
+        for (CheckerType type : new CheckerType[]{CheckerType.EXACT, CheckerType.TOKENS, CheckerType.LINES, CheckerType.UNORDERED_LINES}) {
+            OutputChecker.Session session = OutputCheckers.builtIn(type, null).start("", "1\n2\n3");
+            assertThat(session.accept("1\n")).as(type.name()).isTrue();
+            assertThat(session.accept("5\n")).as(type.name()).isFalse();
+        }
+        // A correct output is accepted however it is split into chunks
+        OutputChecker.Session session = OutputCheckers.builtIn(CheckerType.EXACT, null).start("", "12 3");
+        assertThat(session.accept("1")).isTrue();
+        assertThat(session.accept("2 ")).isTrue();
+        assertThat(session.accept("3\n")).isTrue();
+        assertThat(session.finish()).isTrue();
+    }
+
+    @Test
+    void customCheckerReceivesLineCountedParts() {
+        assertThat(CustomChecker.checkerInput("5\n", "a\nb", "")).isEqualTo("1\n5\n2\na\nb\n0\n");
+    }
+}
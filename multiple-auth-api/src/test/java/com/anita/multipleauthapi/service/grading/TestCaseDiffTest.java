@@ -0,0 +1,46 @@
+package com.anita.multipleauthapi.service.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestCaseDiffTest {
+
+    private static GradingCase gradingCase(String input, String expected, Integer weight) {
+        return GradingCase.builder().input(input).expectedOutput(expected).weight(weight).build();
+    }
+
+    @Test
+    void comparesCasesByPosition() {
+        List<GradingCase> before = List.of(
+                gradingCase("1", "1", null),
+                gradingCase("2", "4", null),
+                gradingCase("3", "9", 1),
+                gradingCase("4", "16", null));
+        List<GradingCase> after = List.of(
+                gradingCase("1", "1\n", null), // trailing whitespace is not compared
+                gradingCase("2", "5", null),
+                gradingCase("3", "9", 3));
+
+        TestCaseDiff diff = TestCaseDiff.between(before, after);
+
+        assertThat(diff.getUnchanged()).isEqualTo(1);
+        assertThat(diff.getChanged()).isEqualTo(1);
+        assertThat(diff.getReweighted()).isEqualTo(1);
+        assertThat(diff.getRemoved()).isEqualTo(1);
+        assertThat(diff.getAdded()).isZero();
+        assertThat(diff.affectsScores()).isTrue();
+    }
+
+    @Test
+    void defaultWeightEqualsExplicitWeightOfOne() {
+        TestCaseDiff diff = TestCaseDiff.between(
+                List.of(gradingCase("1", "1", null)),
+                List.of(gradingCase("1", "1", 1), gradingCase("2", "4", null)));
+
+        assertThat(diff.getReweighted()).isZero();
+        assertThat(diff.getAdded()).isEqualTo(1);
+    }
+}
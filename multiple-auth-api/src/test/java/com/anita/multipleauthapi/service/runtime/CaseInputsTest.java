@@ -0,0 +1,44 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseInputsTest {
+
+    @Test
+    void heredocPicksADelimiterTheInputDoesNotContain() throws Exception {
+        String input = "INPUT\n$HOME `id` \\n 'x'\nINPUT_1";
+
+        assertThat(CaseInputs.heredoc(input)).startsWith("<<'INPUT_2'\n");
+        assertThat(shell("cat " + CaseInputs.heredoc(input))).isEqualTo(input + "\n");
+        assertThat(shell("cat " + CaseInputs.heredoc(""))).isEmpty();
+    }
+
+    @Test
+    void headTakesTheExactInputBackOutOfItsHeredoc() throws Exception {
+        for (String input : List.of("1 2", "ä\n", "", "\n\nx")) {
+            assertThat(shell("head -c " + CaseInputs.byteLength(input) + " " + CaseInputs.heredoc(input))).isEqualTo(input);
+        }
+    }
+
+    @Test
+    void framesCountBytesNotCharacters() {
+        assertThat(CaseInputs.frames(List.of("ä\n", "", "1 2"))).isEqualTo("3\nä\n0\n3\n1 2");
+    }
+
+    private static String shell(String script) throws Exception {
+        Process process = new ProcessBuilder(List.of("sh", "-s")).start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        }
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        return output;
+    }
+}
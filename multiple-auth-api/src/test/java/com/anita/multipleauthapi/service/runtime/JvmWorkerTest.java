@@ -0,0 +1,95 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JvmWorkerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compilesOnceAndRunsEveryCaseInAFreshClassLoader() throws Exception {
+        runBatch("""
+                import java.util.Scanner;
+                public class Main {
+                    static int runs = 0;
+                    public static void main(String[] args) {
+                        runs++;
+                        System.out.println(new Scanner(System.in).nextInt() * 2 + " " + runs);
+                    }
+                }
+                """, 5, "1", "21");
+
+        assertThat(read("compile.exit")).isEqualTo("0");
+        assertThat(read("out_1.txt")).isEqualTo("2 1");
+        assertThat(read("out_2.txt")).isEqualTo("42 1");
+        assertThat(read("exit_1.txt")).isEqualTo("0");
+        assertThat(read("exit_2.txt")).isEqualTo("0");
+        assertThat(read("usage_2.txt")).matches("\\d+ \\d+ -?\\d+");
+        assertThat(Files.exists(dir.resolve("Main.class"))).isTrue();
+    }
+
+    @Test
+    void reportsCompileErrorsWithoutRunningCases() throws Exception {
+        runBatch("public class Main { int x = ; }", 5, "1");
+
+        assertThat(read("compile.exit")).isNotEqualTo("0");
+        assertThat(read("compile.err")).contains("Main.java");
+        assertThat(Files.exists(dir.resolve("exit_1.txt"))).isFalse();
+    }
+
+    @Test
+    void continuesAfterExceptionsExitsAndTimeouts() throws Exception {
+        runBatch("""
+                public class Main {
+                    public static void main(String[] args) throws Exception {
+                        int mode = System.in.read() - '0';
+                        System.out.print("case " + mode);
+                        if (mode == 1) throw new IllegalStateException("boom");
+                        if (mode == 2) System.exit(3);
+                        if (mode == 3) while (true) { }
+                    }
+                }
+                """, 3, "1", "2", "3", "4");
+
+        assertThat(read("exit_1.txt")).isEqualTo("1");
+        assertThat(read("err_1.txt")).isEqualTo("Exception in thread \"main\" java.lang.IllegalStateException: boom\n"
+                + "\tat Main.main(Main.java:5)");
+        assertThat(read("exit_2.txt")).isEqualTo("3");
+        assertThat(read("out_2.txt")).isEqualTo("case 2");
+        assertThat(read("exit_3.txt")).isEqualTo("124");
+        assertThat(read("exit_4.txt")).isEqualTo("0");
+        assertThat(read("out_4.txt")).isEqualTo("case 4");
+    }
+
+    private void runBatch(String source, int timeoutSeconds, String... inputs) throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("Main.java"), source);
+        JvmWorker.install(dir);
+        String script = JvmWorker.batchLoop("Main", ".", List.of(inputs), timeoutSeconds, "Main.java");
+
+        // Fed to the shell on stdin the way the batch script is
+        Process process = new ProcessBuilder(List.of("sh", "-s"))
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private String read(String file) throws IOException {
+        return Files.readString(dir.resolve(file)).trim();
+    }
+}
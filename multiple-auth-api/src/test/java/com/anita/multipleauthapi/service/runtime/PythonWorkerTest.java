@@ -0,0 +1,105 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PythonWorkerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forksEveryCaseWithItsInputAsStdin() throws Exception {
+        runBatch("""
+                import json
+                seen = []
+                seen.append(int(input()))
+                print(seen, __name__)
+                """, 5, "1", "2");
+
+        assertThat(read("out_1.txt")).isEqualTo("[1] __main__");
+        assertThat(read("out_2.txt")).isEqualTo("[2] __main__");
+        assertThat(read("exit_1.txt")).isEqualTo("0");
+        assertThat(read("exit_2.txt")).isEqualTo("0");
+        // user and system CPU milliseconds, peak KB of the forked child
+        assertThat(read("usage_1.txt")).matches("\\d+ \\d+ [1-9]\\d*");
+    }
+
+    @Test
+    void passesInputsByteForByte() throws Exception {
+        runBatch("""
+                import sys
+                sys.stdout.write(repr(sys.stdin.read()))
+                """, 5, "INPUT\n\u00e4 ", "");
+
+        assertThat(read("out_1.txt")).isEqualTo("'INPUT\\n\u00e4 '");
+        assertThat(read("out_2.txt")).isEqualTo("''");
+    }
+
+    @Test
+    void reportsErrorsExitsAndTimeoutsPerCase() throws Exception {
+        runBatch("""
+                import sys
+                mode = sys.stdin.read().strip()
+                print("case", mode)
+                if mode == "1":
+                    raise ValueError("boom")
+                if mode == "2":
+                    sys.exit(3)
+                if mode == "3":
+                    while True:
+                        pass
+                """, 1, "1", "2", "3", "4");
+
+        assertThat(read("exit_1.txt")).isEqualTo("1");
+        assertThat(read("err_1.txt")).isEqualTo("""
+                Traceback (most recent call last):
+                  File "main.py", line 5, in <module>
+                    raise ValueError("boom")
+                ValueError: boom""");
+        assertThat(read("exit_2.txt")).isEqualTo("3");
+        assertThat(read("out_2.txt")).isEqualTo("case 2");
+        assertThat(read("exit_3.txt")).isEqualTo("124");
+        assertThat(read("exit_4.txt")).isEqualTo("0");
+        assertThat(read("out_4.txt")).isEqualTo("case 4");
+    }
+
+    @Test
+    void reportsSyntaxErrorsInEveryCase() throws Exception {
+        runBatch("print(\n", 5, "", "");
+
+        assertThat(read("exit_1.txt")).isEqualTo("1");
+        assertThat(read("exit_2.txt")).isEqualTo("1");
+        assertThat(read("err_2.txt")).contains("SyntaxError");
+    }
+
+    private void runBatch(String source, int timeoutSeconds, String... inputs) throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("main.py"), source);
+        PythonWorker.install(dir);
+        String script = PythonWorker.batchCommand("python3", "main.py", List.of(inputs), timeoutSeconds, List.of("json", "no_such_module"));
+
+        // Fed to the shell on stdin the way the batch script is
+        Process process = new ProcessBuilder(List.of("sh", "-s"))
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private String read(String file) throws IOException {
+        return Files.readString(dir.resolve(file)).trim();
+    }
+}
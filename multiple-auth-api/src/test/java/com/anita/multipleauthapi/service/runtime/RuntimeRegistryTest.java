@@ -0,0 +1,94 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RuntimeRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void bundledFileCoversEveryLanguageExceptSql() {
+        RuntimeRegistry registry = new RuntimeRegistry(new AppProperties());
+
+        assertThat(registry.getAll().keySet()).containsExactlyInAnyOrderElementsOf(Arrays.stream(LanguageType.values())
+                .filter(language -> language != LanguageType.SQL)
+                .toList());
+        LanguageRuntime java = registry.require(LanguageType.JAVA);
+        assertThat(java.getCommandLine()).isEqualTo("javac Main.java && java Main");
+        assertThat(java.getArtifacts()).containsExactly("*.class");
+        assertThat(java.isBatched()).isTrue();
+        assertThat(registry.require(LanguageType.PYTHON).isCompiled()).isFalse();
+        assertThat(registry.get(LanguageType.SQL)).isNull();
+    }
+
+    @Test
+    void reloadAppliesChangesAndKeepsRuntimesOnInvalidFile() throws Exception {
+        Path file = dir.resolve("runtimes.yaml");
+        Files.writeString(file, runtimes("python:3", "cpuLimit: 1"));
+        AppProperties properties = new AppProperties();
+        properties.getSandbox().getRuntimes().setFile(file.toString());
+        RuntimeRegistry registry = new RuntimeRegistry(properties);
+        List<Map<LanguageType, LanguageRuntime>> notified = new ArrayList<>();
+        registry.addListener(notified::add);
+
+        assertThat(registry.require(LanguageType.PYTHON).getCpuLimit()).isEqualTo("1");
+
+        Files.writeString(file, runtimes("python:3.12", "poolSize: 3"));
+        registry.reload();
+        assertThat(registry.require(LanguageType.PYTHON).getImage()).isEqualTo("python:3.12");
+        assertThat(registry.require(LanguageType.PYTHON).getPoolSize()).isEqualTo(3);
+        assertThat(notified).hasSize(1);
+
+        // Unchanged content is not announced again
+        registry.reload();
+        assertThat(notified).hasSize(1);
+
+        Files.writeString(file, runtimes("python:3.13", "poolSize: -1"));
+        assertThatThrownBy(registry::reload)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("negative poolSize");
+        assertThat(registry.require(LanguageType.PYTHON).getImage()).isEqualTo("python:3.12");
+        assertThat(notified).hasSize(1);
+    }
+
+    @Test
+    void rejectsUnknownLanguagesAndUnsafeCommands() {
+        assertThatThrownBy(() -> parse("runtimes:\n  COBOL:\n    image: x\n    sourceFile: a\n    run: b\n"))
+                .hasMessageContaining("unknown language COBOL");
+        assertThatThrownBy(() -> parse("runtimes:\n  RUBY:\n    image: x\n    sourceFile: a.rb\n    run: ruby -e 'p 1'\n"))
+                .hasMessageContaining("single quotes");
+        assertThatThrownBy(() -> parse("runtimes:\n  RUBY:\n    image: x\n    run: ruby a.rb\n"))
+                .hasMessageContaining("needs an image, a sourceFile and a run command");
+        assertThatThrownBy(() -> parse("runtimes:\n  RUBY:\n    image: x\n    sourceFile: a.rb\n    run: ruby a.rb\n    memoryLimit: lots\n"))
+                .hasMessageContaining("invalid memoryLimit");
+    }
+
+    private static String runtimes(String image, String extra) {
+        return "runtimes:\n"
+                + "  PYTHON:\n"
+                + "    image: " + image + "\n"
+                + "    sourceFile: main.py\n"
+                + "    run: python main.py\n"
+                + "    " + extra + "\n";
+    }
+
+    private static Map<LanguageType, LanguageRuntime> parse(String yaml) {
+        return RuntimeRegistry.parse(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+}
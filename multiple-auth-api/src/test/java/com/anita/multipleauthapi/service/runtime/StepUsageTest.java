@@ -0,0 +1,44 @@
+package com.anita.multipleauthapi.service.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StepUsageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reusedSandboxReportsNoPeakBeforeAReset() throws Exception {
+        run(StepUsage.functions(true) + "peak_kb > peak.txt\n");
+
+        assertThat(read("peak.txt")).isEqualTo("-1");
+    }
+
+    @Test
+    void writesTimeAndUsageOfAStep() throws Exception {
+        run(StepUsage.functions(false) + StepUsage.begin() + "sh -c 'true'\n" + StepUsage.end("step.time", "step.usage"));
+
+        assertThat(read("step.time")).matches("\\d+");
+        // user and system CPU milliseconds, then peak KB or -1 where the cgroup is not visible
+        assertThat(read("step.usage")).matches("\\d+ \\d+ (-1|[1-9]\\d*)");
+    }
+
+    private void run(String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).directory(dir.toFile()).start();
+        assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isZero();
+    }
+
+    private String read(String file) throws IOException {
+        return Files.readString(dir.resolve(file), StandardCharsets.UTF_8).trim();
+    }
+}
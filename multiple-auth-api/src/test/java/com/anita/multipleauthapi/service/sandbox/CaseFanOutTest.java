@@ -0,0 +1,74 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseFanOutTest {
+
+    private static CaseFanOut fanOut(ExecutionScheduler scheduler, int maxParallelCases) {
+        AppProperties properties = new AppProperties();
+        properties.getSubmission().setMaxParallelCases(maxParallelCases);
+        return new CaseFanOut(scheduler, properties);
+    }
+
+    private static ExecutionScheduler scheduler(int maxConcurrent) {
+        AppProperties properties = new AppProperties();
+        properties.getSandbox().getAdmission().setMaxConcurrent(maxConcurrent);
+        properties.getSandbox().getAdmission().setReservedForSubmissions(0);
+        return new ExecutionScheduler(properties);
+    }
+
+    private static DockerService.ExecutionResult output(String stdout) {
+        return DockerService.ExecutionResult.builder().stdout(stdout).exitCode(0).timedOut(false).build();
+    }
+
+    @Test
+    void runsCasesInParallelWithinFreeSlots() {
+        ExecutionScheduler scheduler = scheduler(3);
+        // All three cases have to be running at once to get past the latch
+        CountDownLatch allRunning = new CountDownLatch(3);
+
+        try (ExecutionScheduler.Permit permit = scheduler.await(null, ExecutionScheduler.Lane.SUBMISSION)) {
+            List<DockerService.ExecutionResult> results = fanOut(scheduler, 4).run(3, (index, cancellation) -> {
+                allRunning.countDown();
+                try {
+                    return output(allRunning.await(5, TimeUnit.SECONDS) ? "case " + index : "alone");
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, (index, result) -> true);
+
+            assertThat(results).extracting(DockerService.ExecutionResult::getStdout)
+                    .containsExactly("case 0", "case 1", "case 2");
+        }
+        assertThat(scheduler.getStats().getRunning()).isZero();
+    }
+
+    @Test
+    void cancelsRemainingCasesAfterFirstFailure() {
+        // No free slot besides the caller's, so the cases run one by one
+        ExecutionScheduler scheduler = scheduler(1);
+        AtomicInteger executed = new AtomicInteger();
+
+        try (ExecutionScheduler.Permit permit = scheduler.await(null, ExecutionScheduler.Lane.SUBMISSION)) {
+            List<DockerService.ExecutionResult> results = fanOut(scheduler, 4).run(4, (index, cancellation) -> {
+                executed.incrementAndGet();
+                return output(index == 1 ? "wrong" : "right");
+            }, (index, result) -> result.getStdout().equals("right"));
+
+            assertThat(executed).hasValue(2);
+            assertThat(results.get(0).getStdout()).isEqualTo("right");
+            assertThat(results.get(1).getStdout()).isEqualTo("wrong");
+            assertThat(results.subList(2, 4)).extracting(DockerService.ExecutionResult::getExitCode)
+                    .containsOnly(DockerService.CANCELLED_EXIT_CODE);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import com.anita.multipleauthapi.service.DockerService;
+import com.anita.multipleauthapi.service.runtime.LanguageRuntime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContainerPoolTest {
+
+    @TempDir
+    Path workRoot;
+
+    private ContainerPool pool;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.getSandbox().setWorkRoot(workRoot.toString());
+        AppProperties.Pool config = properties.getSandbox().getPool();
+        config.setEnabled(true);
+        config.setMaxSize(2);
+        config.setAcquireTimeoutMsec(200);
+        config.setMaxUses(3);
+        pool = new ContainerPool(new LocalProcessSandboxBackend(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void warmsUpToMinIdleOnRegister() throws Exception {
+        pool.register(python("python:3"));
+
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getIdle() == 1);
+        assertThat(pool.isEnabled(LanguageType.PYTHON)).isTrue();
+        assertThat(pool.isEnabled(LanguageType.JAVA)).isFalse();
+    }
+
+    @Test
+    void releasedSandboxIsResetAndReused() throws Exception {
+        pool.register(python("python:3"));
+        SandboxHandle first = pool.acquire(LanguageType.PYTHON);
+        assertThat(first).isNotNull();
+
+        DockerService.ExecutionResult result = pool.getBackend().exec(first, "echo hi > out.txt && cat", "from stdin", 5);
+        assertThat(result.getExitCode()).isZero();
+        assertThat(result.getStdout()).isEqualTo("from stdin");
+        assertThat(Files.exists(first.getWorkDir().resolve("out.txt"))).isTrue();
+
+        pool.release(first, true);
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getIdle() >= 1);
+
+        SandboxHandle second = pool.acquire(LanguageType.PYTHON);
+        assertThat(second).isNotNull();
+        assertThat(Files.list(second.getWorkDir())).isEmpty();
+        pool.release(second, true);
+    }
+
+    @Test
+    void acquireGivesUpWhenPoolIsExhausted() {
+        pool.register(python("python:3"));
+        SandboxHandle first = pool.acquire(LanguageType.PYTHON);
+        SandboxHandle second = pool.acquire(LanguageType.PYTHON);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(pool.acquire(LanguageType.PYTHON)).isNull();
+        assertThat(pool.getStats().get(LanguageType.PYTHON).getAcquireTimeouts()).isEqualTo(1);
+
+        pool.release(first, true);
+        pool.release(second, true);
+    }
+
+    @Test
+    void nonReusableSandboxIsDestroyed() throws Exception {
+        pool.register(python("python:3"));
+        SandboxHandle handle = pool.acquire(LanguageType.PYTHON);
+
+        pool.release(handle, false);
+
+        waitUntil(() -> !Files.exists(handle.getWorkDir()));
+        assertThat(pool.getStats().get(LanguageType.PYTHON).getDestroyed()).isEqualTo(1);
+    }
+
+    @Test
+    void maintenanceReclaimsUnhealthySandboxes() throws Exception {
+        pool.register(python("python:3"));
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getIdle() == 1);
+        SandboxHandle handle = pool.acquire(LanguageType.PYTHON);
+        pool.release(handle, true);
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getIdle() >= 1);
+
+        Workspaces.deleteQuietly(handle.getWorkDir());
+        pool.maintain();
+
+        ContainerPool.PoolStats stats = pool.getStats().get(LanguageType.PYTHON);
+        assertThat(stats.getDestroyed()).isGreaterThanOrEqualTo(1);
+        assertThat(stats.getIdle()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void sandboxesOfAReplacedRuntimeAreNotReused() throws Exception {
+        pool.register(python("python:3"));
+        SandboxHandle old = pool.acquire(LanguageType.PYTHON);
+
+        pool.register(python("python:3.12"));
+        pool.release(old, true);
+
+        waitUntil(() -> !Files.exists(old.getWorkDir()));
+        SandboxHandle current = pool.acquire(LanguageType.PYTHON);
+        assertThat(current.getImage()).isEqualTo("python:3.12");
+        pool.release(current, true);
+    }
+
+    @Test
+    void poolSizeZeroStopsPoolingTheLanguage() throws Exception {
+        pool.register(python("python:3"));
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getIdle() == 1);
+
+        pool.register(LanguageRuntime.builder().language(LanguageType.PYTHON).image("python:3").poolSize(0).build());
+
+        assertThat(pool.isEnabled(LanguageType.PYTHON)).isFalse();
+        waitUntil(() -> pool.getStats().get(LanguageType.PYTHON).getTotal() == 0);
+    }
+
+    private static LanguageRuntime python(String image) {
+        return LanguageRuntime.builder().language(LanguageType.PYTHON).image(image).poolSize(1).build();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.model.error.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static com.anita.multipleauthapi.service.sandbox.ExecutionScheduler.Lane.DEBUG;
+import static com.anita.multipleauthapi.service.sandbox.ExecutionScheduler.Lane.SUBMISSION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExecutionSchedulerTest {
+
+    private ExecutionScheduler scheduler(int maxConcurrent, int maxQueued, long queueTimeoutMsec, int userBurst) {
+        return scheduler(maxConcurrent, 0, maxQueued, queueTimeoutMsec, userBurst);
+    }
+
+    private ExecutionScheduler scheduler(int maxConcurrent, int reserved, int maxQueued, long queueTimeoutMsec, int userBurst) {
+        AppProperties properties = new AppProperties();
+        AppProperties.Admission admission = properties.getSandbox().getAdmission();
+        admission.setMaxConcurrent(maxConcurrent);
+        admission.setReservedForSubmissions(reserved);
+        admission.setMaxQueued(maxQueued);
+        admission.setQueueTimeoutMsec(queueTimeoutMsec);
+        admission.setUserBurst(userBurst);
+        admission.setUserRefillPerMinute(1);
+        return new ExecutionScheduler(properties);
+    }
+
+    @Test
+    void rateLimitsUserAfterBurst() {
+        ExecutionScheduler scheduler = scheduler(4, 10, 100, 2);
+        UUID user = UUID.randomUUID();
+
+        scheduler.admit(user, null, DEBUG).close();
+        scheduler.admit(user, null, DEBUG).close();
+
+        assertThatThrownBy(() -> scheduler.admit(user, null, DEBUG))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(e -> assertThat(((TooManyRequestsException) e).getRetryAfterSeconds()).isPositive());
+        // Other users have their own bucket
+        scheduler.admit(UUID.randomUUID(), null, DEBUG).close();
+        assertThat(scheduler.getStats().getRateLimited()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWhenSaturated() {
+        ExecutionScheduler scheduler = scheduler(1, 0, 100, 100);
+        ExecutionScheduler.Permit running = scheduler.admit(UUID.randomUUID(), null, DEBUG);
+
+        assertThatThrownBy(() -> scheduler.admit(UUID.randomUUID(), null, DEBUG))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(scheduler.getStats().getRejected()).isEqualTo(1);
+
+        running.close();
+        scheduler.admit(UUID.randomUUID(), null, DEBUG).close();
+    }
+
+    @Test
+    void timesOutWhileQueued() {
+        ExecutionScheduler scheduler = scheduler(1, 10, 50, 100);
+        ExecutionScheduler.Permit running = scheduler.admit(UUID.randomUUID(), null, DEBUG);
+
+        assertThatThrownBy(() -> scheduler.admit(UUID.randomUUID(), null, DEBUG))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(scheduler.getStats().getTimedOut()).isEqualTo(1);
+        assertThat(scheduler.getStats().getQueued()).isZero();
+        running.close();
+    }
+
+    @Test
+    void servesCoursesRoundRobin() throws Exception {
+        ExecutionScheduler scheduler = scheduler(1, 10, 5000, 100);
+        UUID busyCourse = UUID.randomUUID();
+        UUID quietCourse = UUID.randomUUID();
+        List<UUID> order = new CopyOnWriteArrayList<>();
+        ExecutionScheduler.Permit running = scheduler.await(busyCourse, SUBMISSION);
+
+        List<CompletableFuture<Void>> waiters = new CopyOnWriteArrayList<>();
+        for (UUID course : List.of(busyCourse, busyCourse, quietCourse)) {
+            int queuedBefore = scheduler.getStats().getQueued();
+            waiters.add(CompletableFuture.runAsync(() -> {
+                try (ExecutionScheduler.Permit permit = scheduler.await(course, SUBMISSION)) {
+                    order.add(course);
+                }
+            }));
+            waitUntil(() -> scheduler.getStats().getQueued() == queuedBefore + 1);
+        }
+
+        running.close();
+        CompletableFuture.allOf(waiters.toArray(new CompletableFuture[0])).get();
+
+        // The quiet course does not wait behind the second busy-course job
+        assertThat(order).containsExactly(busyCourse, quietCourse, busyCourse);
+        assertThat(scheduler.getStats().getRunning()).isZero();
+    }
+
+    @Test
+    void reservesCapacityForSubmissions() {
+        ExecutionScheduler scheduler = scheduler(2, 1, 10, 50, 100);
+        ExecutionScheduler.Permit debug = scheduler.admit(UUID.randomUUID(), null, DEBUG);
+
+        // The second slot is reserved, another debug run has to wait for the first one
+        assertThatThrownBy(() -> scheduler.admit(UUID.randomUUID(), null, DEBUG))
+                .isInstanceOf(TooManyRequestsException.class);
+        scheduler.await(null, SUBMISSION).close();
+        debug.close();
+    }
+
+    @Test
+    void startsWaitingSubmissionsBeforeDebugRuns() throws Exception {
+        ExecutionScheduler scheduler = scheduler(1, 0, 10, 5000, 100);
+        List<ExecutionScheduler.Lane> order = new CopyOnWriteArrayList<>();
+        ExecutionScheduler.Permit running = scheduler.await(null, SUBMISSION);
+
+        CompletableFuture<Void> debug = CompletableFuture.runAsync(() -> {
+            try (ExecutionScheduler.Permit permit = scheduler.admit(UUID.randomUUID(), null, DEBUG)) {
+                order.add(DEBUG);
+            }
+        });
+        waitUntil(() -> scheduler.getStats().getQueued() == 1);
+        CompletableFuture<Void> submission = CompletableFuture.runAsync(() -> {
+            try (ExecutionScheduler.Permit permit = scheduler.await(null, SUBMISSION)) {
+                order.add(SUBMISSION);
+            }
+        });
+        waitUntil(() -> scheduler.getStats().getQueued() == 2);
+
+        running.close();
+        CompletableFuture.allOf(debug, submission).get();
+
+        assertThat(order).containsExactly(SUBMISSION, DEBUG);
+        ExecutionScheduler.LaneStats debugStats = scheduler.getStats().getLanes().get(DEBUG);
+        assertThat(debugStats.getAdmitted()).isEqualTo(1);
+        assertThat(debugStats.getWaitMsec().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquireNeverQueuesOrOvertakesWaiters() throws Exception {
+        ExecutionScheduler scheduler = scheduler(2, 0, 10, 5000, 100);
+        ExecutionScheduler.Permit first = scheduler.await(null, SUBMISSION);
+        ExecutionScheduler.Permit extra = scheduler.tryAcquire(SUBMISSION);
+        assertThat(extra).isNotNull();
+        assertThat(scheduler.tryAcquire(SUBMISSION)).isNull();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> scheduler.await(null, SUBMISSION).close());
+        waitUntil(() -> scheduler.getStats().getQueued() == 1);
+        // The slot freed by the extra permit goes to the waiting submission
+        extra.close();
+        waiting.get();
+        first.close();
+        assertThat(scheduler.getStats().getRunning()).isZero();
+    }
+
+    @Test
+    void parsesDockerMemorySizes() {
+        assertThat(ExecutionScheduler.parseBytes("256m")).isEqualTo(256L * 1024 * 1024);
+        assertThat(ExecutionScheduler.parseBytes("1g")).isEqualTo(1024L * 1024 * 1024);
+        assertThat(ExecutionScheduler.parseBytes("1024")).isEqualTo(1024L);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
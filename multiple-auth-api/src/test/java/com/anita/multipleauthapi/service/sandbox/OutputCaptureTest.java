@@ -0,0 +1,90 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputCaptureTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsOutputBelowLimit() throws Exception {
+        OutputCapture capture = new OutputCapture(1024).drain(stream("hello\n"));
+
+        assertThat(capture.asString()).isEqualTo("hello\n");
+        assertThat(capture.getTotalBytes()).isEqualTo(6);
+        assertThat(capture.isTruncated()).isFalse();
+    }
+
+    @Test
+    void truncatesButCountsEveryByte() throws Exception {
+        byte[] output = "x".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+        OutputCapture capture = new OutputCapture(10).drain(new ByteArrayInputStream(output));
+
+        assertThat(capture.isTruncated()).isTrue();
+        assertThat(capture.getTotalBytes()).isEqualTo(100_000);
+        assertThat(capture.asString()).startsWith("xxxxxxxxxx\n[output truncated: 100000 bytes total");
+    }
+
+    @Test
+    void doesNotSplitMultiByteCharacters() throws Exception {
+        // "가" is three bytes in UTF-8, the limit cuts the second one after its first byte
+        OutputCapture capture = new OutputCapture(4).drain(stream("가나다"));
+
+        assertThat(capture.asString()).startsWith("가\n[output truncated: 9 bytes total, first 3 bytes shown]");
+    }
+
+    @Test
+    void passesChunksOnWithoutBreakingCharacters() throws Exception {
+        byte[] bytes = "a가b".getBytes(StandardCharsets.UTF_8);
+        // Delivers one byte per read, like a slow pipe
+        InputStream slow = new InputStream() {
+            private int position = 0;
+
+            @Override
+            public int read() {
+                return position < bytes.length ? bytes[position++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) {
+                if (position >= bytes.length) {
+                    return -1;
+                }
+                target[offset] = bytes[position++];
+                return 1;
+            }
+        };
+        List<String> chunks = new ArrayList<>();
+
+        new OutputCapture(1024).drain(slow, chunks::add);
+
+        assertThat(chunks).containsExactly("a", "가", "b");
+    }
+
+    @Test
+    void readsOnlyTheKeptPartOfAFile() throws Exception {
+        Path file = dir.resolve("out.txt");
+        Files.writeString(file, "line\n".repeat(1000));
+
+        OutputCapture capture = OutputCapture.ofFile(file, 5);
+
+        assertThat(capture.getTotalBytes()).isEqualTo(5000);
+        assertThat(capture.asString()).startsWith("line\n\n[output truncated: 5000 bytes total");
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
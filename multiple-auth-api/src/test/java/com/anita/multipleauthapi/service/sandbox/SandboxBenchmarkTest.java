@@ -0,0 +1,52 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.controller.request.LanguageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SandboxBenchmarkTest {
+
+    @TempDir
+    Path workRoot;
+
+    @Test
+    void measuresColdAndWarmRuns() throws Exception {
+        SandboxBenchmark.BenchmarkResult result = SandboxBenchmark.measure(
+                new LocalProcessSandboxBackend(), workRoot, LanguageType.PYTHON, "python:3", 3, 4097);
+
+        assertThat(result.getBackend()).isEqualTo("local");
+        assertThat(result.getFailures()).isZero();
+        assertThat(result.getCold().getCount()).isEqualTo(3);
+        assertThat(result.getWarm().getCount()).isEqualTo(3);
+        assertThat(result.getReset().getCount()).isEqualTo(3);
+        assertThat(result.getInputBytes()).isEqualTo(4097);
+        assertThat(result.getInputFile().getCount()).isEqualTo(3);
+        assertThat(result.getInputPipe().getCount()).isEqualTo(3);
+        // Every sandbox of the benchmark is cleaned up
+        try (var files = Files.list(workRoot)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void bubblewrapMountsOnlyTheWorkDirectoryWritable() {
+        AppProperties.Sandbox config = new AppProperties().getSandbox();
+        config.getBubblewrap().setReadOnlyPaths(List.of("/usr"));
+        SandboxHandle handle = new SandboxHandle("job", LanguageType.PYTHON, "python:3", workRoot.resolve("job"));
+
+        List<String> command = new BubblewrapSandboxBackend(config).buildCommand(handle, "python3 main.py", 5);
+
+        assertThat(command).startsWith("bwrap", "--unshare-all");
+        assertThat(String.join(" ", command))
+                .contains("--ro-bind-try /usr /usr")
+                .contains("--bind " + workRoot.resolve("job") + " /code")
+                .endsWith("sh -c ulimit -t 6; ulimit -v 4194304; python3 main.py");
+    }
+}
@@ -0,0 +1,91 @@
+package com.anita.multipleauthapi.service.sandbox;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkspaceManagerTest {
+
+    @TempDir
+    Path workRoot;
+
+    private AppProperties properties;
+    private WorkspaceManager manager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AppProperties();
+        properties.getSandbox().setWorkRoot(workRoot.toString());
+        properties.getSandbox().getWorkspace().setRoot(workRoot.resolve("shm").toString());
+        properties.getSandbox().getWorkspace().setSlots(1);
+        properties.getSandbox().getWorkspace().setReaperIntervalMsec(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.stop();
+    }
+
+    @Test
+    void reusesCleanedSlotsAndDeletesOverflowDirectories() throws Exception {
+        start();
+        Path slot;
+        Path overflow;
+        try (WorkspaceManager.Workspace first = manager.acquire();
+             WorkspaceManager.Workspace second = manager.acquire()) {
+            slot = first.getPath();
+            overflow = second.getPath();
+            Files.writeString(slot.resolve("Main.java"), "class Main {}");
+            Files.writeString(overflow.resolve("Main.java"), "class Main {}");
+            assertThat(manager.getStats().getInUse()).isEqualTo(2);
+        }
+
+        assertThat(slot).isEmptyDirectory();
+        assertThat(overflow).doesNotExist();
+        try (WorkspaceManager.Workspace again = manager.acquire()) {
+            assertThat(again.getPath()).isEqualTo(slot);
+        }
+        WorkspaceManager.WorkspaceStats stats = manager.getStats();
+        assertThat(stats.getAcquired()).isEqualTo(3);
+        assertThat(stats.getOverflows()).isEqualTo(1);
+        assertThat(stats.getReleased()).isEqualTo(3);
+        assertThat(stats.getFreeSlots()).isEqualTo(1);
+    }
+
+    @Test
+    void reapsOrphansAndLeakedLeases() throws Exception {
+        Path root = workRoot.resolve("shm");
+        Files.createDirectories(root.resolve("job-from-last-run"));
+        Files.createDirectories(root.resolve("not-a-workspace"));
+        properties.getSandbox().getWorkspace().setMaxLeaseMsec(0);
+        start();
+        assertThat(root.resolve("job-from-last-run")).doesNotExist();
+        assertThat(root.resolve("not-a-workspace")).exists();
+
+        WorkspaceManager.Workspace leaked = manager.acquire();
+        Thread.sleep(5);
+        manager.reap();
+
+        assertThat(leaked.getPath()).doesNotExist();
+        WorkspaceManager.WorkspaceStats stats = manager.getStats();
+        assertThat(stats.getLeaked()).isEqualTo(1);
+        assertThat(stats.getReclaimed()).isEqualTo(2);
+        assertThat(stats.getInUse()).isZero();
+        // The leaked slot was replaced, and releasing it late changes nothing
+        assertThat(stats.getFreeSlots()).isEqualTo(1);
+        leaked.close();
+        assertThat(manager.getStats().getReleased()).isZero();
+    }
+
+    private void start() throws Exception {
+        manager = new WorkspaceManager(properties);
+        manager.start();
+    }
+}
@@ -0,0 +1,185 @@
+package com.anita.multipleauthapi.service.sql;
+
+import com.anita.multipleauthapi.config.AppProperties;
+import com.anita.multipleauthapi.service.DockerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddedSqlEngineTest {
+    private static final String SCHEMA = """
+            CREATE TABLE member (id INTEGER PRIMARY KEY, name TEXT, age INTEGER);
+            INSERT INTO member VALUES (1, 'kim', 30), (2, 'lee', NULL);
+            """;
+
+    @TempDir
+    Path dir;
+
+    private AppProperties appProperties;
+    private EmbeddedSqlEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        appProperties = new AppProperties();
+        appProperties.getSandbox().setWorkRoot(dir.toString());
+        appProperties.getSql().setMaxRows(3);
+        engine = new EmbeddedSqlEngine(appProperties);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void printsResultInColumnMode() {
+        DockerService.ExecutionResult result = engine.execute("SELECT name, age FROM member ORDER BY id;", SCHEMA, 5);
+
+        assertThat(result.getExitCode()).isZero();
+        assertThat(result.getStdout()).isEqualTo("""
+                name  age
+                ----  ---
+                kim   30\s
+                lee     \s
+                """);
+    }
+
+    @Test
+    void everyExecutionStartsFromTheTemplate() {
+        engine.execute("DELETE FROM member;", SCHEMA, 5);
+        DockerService.ExecutionResult result = engine.execute("SELECT count(*) AS n FROM member;", SCHEMA, 5);
+
+        assertThat(result.getStdout()).isEqualTo("n\n-\n2\n");
+    }
+
+    @Test
+    void reusesTemplatesAcrossRestarts() throws Exception {
+        engine.execute("SELECT 1;", SCHEMA, 5);
+        engine.shutdown();
+        engine = new EmbeddedSqlEngine(appProperties);
+        engine.init();
+
+        DockerService.ExecutionResult result = engine.execute("SELECT count(*) AS n FROM member;", SCHEMA, 5);
+
+        assertThat(result.getStdout()).isEqualTo("n\n-\n2\n");
+        assertThat(engine.getStats().getHits()).isEqualTo(1);
+        assertThat(engine.getStats().getBuilds()).isZero();
+    }
+
+    @Test
+    void rebuildsInvalidatedTemplates() {
+        engine.execute("SELECT 1;", SCHEMA, 5);
+        engine.invalidate(SCHEMA);
+        engine.execute("SELECT 1;", SCHEMA, 5);
+
+        assertThat(engine.getStats().getBuilds()).isEqualTo(2);
+        assertThat(engine.getStats().getTemplates()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsErrorsAndKeepsGoing() {
+        DockerService.ExecutionResult result = engine.execute("SELECT * FROM nope; SELECT 1 AS one;", SCHEMA, 5);
+
+        assertThat(result.getExitCode()).isEqualTo(1);
+        assertThat(result.getStderr()).isEqualTo("Error: no such table: nope\n");
+        assertThat(result.getStdout()).isEqualTo("one\n---\n1  \n");
+    }
+
+    @Test
+    void reportsInitializationErrors() {
+        DockerService.ExecutionResult result = engine.execute("SELECT 1;", "CREATE TABLE broken (;", 5);
+
+        assertThat(result.getExitCode()).isEqualTo(1);
+        assertThat(result.getStderr()).startsWith("Database initialization error: Error:");
+    }
+
+    @Test
+    void limitsRows() {
+        DockerService.ExecutionResult result = engine.execute(
+                "WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM n LIMIT 10) SELECT x FROM n;", "", 5);
+
+        assertThat(result.getStdout()).isEqualTo("x\n-\n1\n2\n3\n");
+        assertThat(result.getStderr()).isEqualTo("Result truncated after 3 rows\n");
+    }
+
+    @Test
+    void limitsOutputBytesAcrossStatements() throws Exception {
+        String script = "SELECT '가나다' AS k; SELECT '라마바' AS k; SELECT '사아' AS k;";
+        long fullSize = engine.execute(script, "", 5).getOutputSize();
+        engine.shutdown();
+        appProperties.getSandbox().setMaxOutputBytes(16);
+        engine = new EmbeddedSqlEngine(appProperties);
+        engine.init();
+
+        DockerService.ExecutionResult result = engine.execute(script, "", 5);
+
+        String kept = result.getStdout().substring(0, result.getStdout().indexOf("\n[output truncated: "));
+        assertThat(kept.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(16);
+        assertThat(kept).doesNotContain("\uFFFD");
+        assertThat(result.getStdout()).endsWith(" bytes shown]\n");
+        assertThat(result.getOutputSize()).isEqualTo(fullSize);
+    }
+
+    @Test
+    void interruptsRunawayQueries() {
+        DockerService.ExecutionResult result = engine.execute(
+                "WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM n) SELECT count(*) FROM n;", "", 1);
+
+        assertThat(result.getTimedOut()).isTrue();
+    }
+
+    @Test
+    void cannotAttachFiles() {
+        DockerService.ExecutionResult result = engine.execute(
+                "ATTACH DATABASE '" + dir.resolve("escape.db") + "' AS escape;", "", 5);
+
+        assertThat(result.getExitCode()).isEqualTo(1);
+        assertThat(dir.resolve("escape.db")).doesNotExist();
+    }
+
+    @Test
+    void cannotRaiseTheDatabaseCap() {
+        appProperties.getSql().setMaxDatabaseBytes(1024 * 1024);
+
+        DockerService.ExecutionResult result = engine.execute("""
+                PRAGMA max_page_count = 2147483646;
+                /* hidden */ pragma main . "max_page_count" = 2147483646;
+                CREATE TABLE big (b BLOB);
+                INSERT INTO big VALUES (zeroblob(50 * 1024 * 1024));
+                CREATE TEMP TABLE scratch (b BLOB);
+                INSERT INTO scratch VALUES (zeroblob(50 * 1024 * 1024));
+                SELECT count(*) AS n FROM big;
+                """, "", 5);
+
+        assertThat(result.getExitCode()).isEqualTo(1);
+        assertThat(result.getStderr()).contains("PRAGMA max_page_count is not allowed").contains("database or disk is full");
+        assertThat(result.getStdout()).isEqualTo("n\n-\n0\n");
+    }
+
+    @Test
+    void allowsSchemaPragmas() {
+        DockerService.ExecutionResult result = engine.execute("PRAGMA foreign_keys = ON; PRAGMA foreign_keys;", "", 5);
+
+        assertThat(result.getExitCode()).isZero();
+        assertThat(result.getStdout()).isEqualTo("foreign_keys\n------------\n1           \n");
+    }
+
+    @Test
+    void splitsStatementsOutsideQuotesAndTriggers() {
+        assertThat(SqlStatementSplitter.split("""
+                .headers on
+                SELECT 'a;b';
+                CREATE TRIGGER t AFTER INSERT ON member BEGIN UPDATE member SET age = 1; END;
+                -- only a comment;
+                """)).containsExactly(
+                "SELECT 'a;b'",
+                "CREATE TRIGGER t AFTER INSERT ON member BEGIN UPDATE member SET age = 1; END");
+    }
+}
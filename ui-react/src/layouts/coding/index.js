@@ -50,6 +50,9 @@ import api from '../../api';
 import { useEffect, useState, useRef } from 'react';
 import { useNavigate, useLocation } from 'react-router-dom';
 
+// Stop waiting for a grade after this long; the result stays available in the submission history
+const SUBMISSION_POLL_TIMEOUT_MS = 3 * 60 * 1000;
+
 function CodingPage() {
     const location = useLocation();
     const navigate = useNavigate();
@@ -219,12 +222,27 @@ function CodingPage() {
         setExecutionResult(null);
         
         try {
-            const response = await api.post(`/api/submissions/questions/${questionId}`, {
+            let response = await api.post(`/api/submissions/questions/${questionId}`, {
                 code: code,
                 language: language,
                 inputData: inputData
             });
             
+            // Submissions are graded in the background, poll until grading has finished or the deadline passes
+            const deadline = Date.now() + SUBMISSION_POLL_TIMEOUT_MS;
+            while (response.data && response.data.status === 'PENDING' && Date.now() < deadline) {
+                await new Promise(resolve => setTimeout(resolve, 1000));
+                response = await api.get(`/api/submissions/${response.data.id}`);
+            }
+            if (response.data && response.data.status === 'PENDING') {
+                setSubmissionResult({
+                    success: false,
+                    message: '채점이 지연되고 있습니다.',
+                    error: '잠시 후 제출 기록에서 결과를 확인해 주세요.'
+                });
+                return;
+            }
+            
             setSubmissionResult(response.data);
             
             // If submission was successful with perfect score, update question status